@@ -0,0 +1,3 @@
+#!/bin/bash
+# Executado pela imagem oficial do Postgres na primeira subida do primário: libera conexões de replicação
+echo "host replication all all scram-sha-256" >> "$PGDATA/pg_hba.conf"
@@ -0,0 +1,67 @@
+package com.estudo_raul.java.benchmark;
+
+import com.estudo_raul.java.infrastructure.cep.ArquivoCep;
+import com.estudo_raul.java.infrastructure.cep.IndiceCep;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Consulta no índice local com 1 milhão de CEPs sintéticos; rode com -prof gc para conferir que busca não aloca
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class IndiceCepBenchmark {
+
+    private static final int CEPS = 1_000_000;
+
+    private Path diretorio;
+    private ArquivoCep arquivo;
+    private int consulta;
+
+    @Setup
+    public void setup() throws IOException {
+        diretorio = Files.createTempDirectory("indice-cep");
+        Path dataset = diretorio.resolve("cep.csv");
+        try (BufferedWriter saida = Files.newBufferedWriter(dataset)) {
+            for (int i = 0; i < CEPS; i++) {
+                saida.write("%08d;Rua %d;Cidade %d;SP\n".formatted(i * 97, i, i % 5000));
+            }
+        }
+        IndiceCep indiceCep = new IndiceCep(true, dataset, diretorio.resolve("cep.idx"), false);
+        indiceCep.recarrega();
+        arquivo = indiceCep.atual();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> arquivos = Files.walk(diretorio)) {
+            arquivos.sorted(Comparator.reverseOrder()).forEach(caminho -> caminho.toFile().delete());
+        }
+    }
+
+    // Do CEP à cidade: o caminho da normalização de endereço, sem alocação
+    @Benchmark
+    public String busca() {
+        consulta = (consulta + 7919) % CEPS;
+        int posicao = arquivo.posicao(consulta * 97);
+        return posicao < 0 ? null : arquivo.cidade(posicao);
+    }
+
+    @Benchmark
+    public int numero() {
+        return ArquivoCep.numero("01001-000");
+    }
+
+    // Inclui decodificar a rua, que aloca a String
+    @Benchmark
+    public String rua() {
+        consulta = (consulta + 7919) % CEPS;
+        return arquivo.rua(arquivo.posicao(consulta * 97));
+    }
+}
@@ -0,0 +1,38 @@
+package com.estudo_raul.java.benchmark;
+
+import com.estudo_raul.java.infrastructure.security.JwtUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Custo do JWT no filtro: geração, parse com verificação da assinatura e validação
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtBenchmark {
+
+    private JwtUtil jwtUtil;
+    private String token;
+
+    @Setup
+    public void setup() {
+        jwtUtil = new JwtUtil(10_000);
+        token = jwtUtil.generateToken("usuario@teste.com");
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtil.generateToken("usuario@teste.com");
+    }
+
+    @Benchmark
+    public Object extractClaims() {
+        return jwtUtil.extractClaims(token);
+    }
+
+    // Com o token já verificado no cache; o custo sem cache é o de extractClaims
+    @Benchmark
+    public boolean validateToken() {
+        return jwtUtil.validateToken(token, "usuario@teste.com");
+    }
+}
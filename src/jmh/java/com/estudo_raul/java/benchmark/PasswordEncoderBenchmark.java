@@ -0,0 +1,37 @@
+package com.estudo_raul.java.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+// Tempo de hash e de verificação do BCrypt em cada custo, para escolher seguranca.bcrypt.custo
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+public class PasswordEncoderBenchmark {
+
+    @Param({"4", "8", "10", "12"})
+    private int custo;
+
+    private BCryptPasswordEncoder encoder;
+    private String hash;
+
+    @Setup
+    public void setup() {
+        encoder = new BCryptPasswordEncoder(custo);
+        hash = encoder.encode("senha-de-teste");
+    }
+
+    @Benchmark
+    public String encode() {
+        return encoder.encode("senha-de-teste");
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return encoder.matches("senha-de-teste", hash);
+    }
+}
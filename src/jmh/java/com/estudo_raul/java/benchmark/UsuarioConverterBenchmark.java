@@ -0,0 +1,87 @@
+package com.estudo_raul.java.benchmark;
+
+import com.estudo_raul.java.business.converter.UsuarioConverter;
+import com.estudo_raul.java.business.dtos.EnderecoDTO;
+import com.estudo_raul.java.business.dtos.TelefoneDTO;
+import com.estudo_raul.java.business.dtos.UsuarioDTO;
+import com.estudo_raul.java.infrastructure.cep.IndiceCep;
+import com.estudo_raul.java.infrastructure.entity.Endereco;
+import com.estudo_raul.java.infrastructure.entity.Telefone;
+import com.estudo_raul.java.infrastructure.entity.Usuario;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// Conversões entre entidade e DTO com 0, 5 e 50 endereços e telefones por usuário
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UsuarioConverterBenchmark {
+
+    @Param({"0", "5", "50"})
+    private int quantidade;
+
+    private UsuarioConverter converter;
+    private Usuario usuario;
+    private UsuarioDTO usuarioDTO;
+    private UsuarioDTO atualizacaoUsuario;
+    private Endereco endereco;
+    private EnderecoDTO atualizacaoEndereco;
+    private Telefone telefone;
+    private TelefoneDTO atualizacaoTelefone;
+
+    @Setup
+    public void setup() {
+        // Sem dataset de CEP: mede só a conversão; a consulta de CEP tem o próprio benchmark
+        converter = new UsuarioConverter(new IndiceCep(false, Path.of("cep.csv"), Path.of("cep.idx"), false));
+
+        List<Endereco> enderecos = IntStream.range(0, quantidade)
+                .mapToObj(i -> Endereco.builder().id((long) i).rua("Rua " + i).numero(String.valueOf(i))
+                        .cidade("São Paulo").cep("01000-000").estado("SP").usuario_id(1L).build())
+                .toList();
+        List<Telefone> telefones = IntStream.range(0, quantidade)
+                .mapToObj(i -> Telefone.builder().id((long) i).numero("9" + (10000000 + i)).ddd("11").usuario_id(1L).build())
+                .toList();
+        usuario = Usuario.builder().id(1L).nome("Usuário").email("usuario@teste.com").senha("{bcrypt}hash")
+                .enderecos(enderecos).telefones(telefones).build();
+        usuarioDTO = converter.paraUsuarioDTO(usuario);
+
+        atualizacaoUsuario = UsuarioDTO.builder().nome("Outro nome").build();
+        endereco = enderecos.isEmpty()
+                ? Endereco.builder().id(1L).rua("Rua").cidade("São Paulo").estado("SP").usuario_id(1L).build()
+                : enderecos.get(0);
+        atualizacaoEndereco = EnderecoDTO.builder().numero("100").complemento("Apto 1").build();
+        telefone = telefones.isEmpty()
+                ? Telefone.builder().id(1L).numero("999999999").ddd("11").usuario_id(1L).build()
+                : telefones.get(0);
+        atualizacaoTelefone = TelefoneDTO.builder().numero("988888888").build();
+    }
+
+    @Benchmark
+    public UsuarioDTO paraUsuarioDTO() {
+        return converter.paraUsuarioDTO(usuario);
+    }
+
+    @Benchmark
+    public Usuario paraUsuario() {
+        return converter.paraUsuario(usuarioDTO);
+    }
+
+    @Benchmark
+    public Usuario updateUsuario() {
+        return converter.updateUsuario(atualizacaoUsuario, usuario);
+    }
+
+    @Benchmark
+    public Endereco updateEndereco() {
+        return converter.updateEndereco(atualizacaoEndereco, endereco);
+    }
+
+    @Benchmark
+    public Telefone updateTelefone() {
+        return converter.updateTelefone(atualizacaoTelefone, telefone);
+    }
+}
@@ -0,0 +1,68 @@
+package com.estudo_raul.java.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+// Parâmetros de uma execução da suíte, lidos de um arquivo .properties
+public class Cenario {
+
+    private static final String PREFIXO_APLICACAO = "app.";
+    private static final List<String> PREFIXOS_CENARIO = List.of("carga.", PREFIXO_APLICACAO, "limite.");
+
+    private final Properties propriedades = new Properties();
+
+    public Cenario(Path arquivo) throws IOException {
+        try (InputStream entrada = Files.newInputStream(arquivo)) {
+            propriedades.load(entrada);
+        }
+        // -Dapp.spring.threads.virtual.enabled=true e afins trocam uma propriedade sem duplicar o arquivo do cenário
+        for (String nome : System.getProperties().stringPropertyNames()) {
+            if (PREFIXOS_CENARIO.stream().anyMatch(nome::startsWith)) {
+                propriedades.setProperty(nome, System.getProperty(nome));
+            }
+        }
+    }
+
+    public int usuarios() {
+        return Integer.parseInt(propriedades.getProperty("carga.usuarios", "1000"));
+    }
+
+    public int concorrencia() {
+        return Integer.parseInt(propriedades.getProperty("carga.concorrencia", "32"));
+    }
+
+    public int aquecimento() {
+        return Integer.parseInt(propriedades.getProperty("carga.aquecimento", "100"));
+    }
+
+    // Requisições simultâneas com o mesmo e-mail no fluxo cadastro-concorrente
+    public int tamanhoGrupoDisputa() {
+        return Integer.parseInt(propriedades.getProperty("carga.disputa.tamanho-grupo", "20"));
+    }
+
+    public double taxaErroMaxima() {
+        return Double.parseDouble(propriedades.getProperty("limite.taxa-erro", "0.01"));
+    }
+
+    // Limite de p99 do fluxo em milissegundos, ou null se o cenário não define
+    public Double p99MaximoMs(String fluxo) {
+        String valor = propriedades.getProperty("limite." + fluxo + ".p99-ms");
+        return valor != null ? Double.parseDouble(valor) : null;
+    }
+
+    public Map<String, String> propriedadesAplicacao() {
+        Map<String, String> resultado = new HashMap<>();
+        for (String nome : propriedades.stringPropertyNames()) {
+            if (nome.startsWith(PREFIXO_APLICACAO)) {
+                resultado.put(nome.substring(PREFIXO_APLICACAO.length()), propriedades.getProperty(nome));
+            }
+        }
+        return resultado;
+    }
+}
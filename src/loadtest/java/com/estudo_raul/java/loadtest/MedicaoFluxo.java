@@ -0,0 +1,81 @@
+package com.estudo_raul.java.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latências (em microssegundos) e erros de um fluxo
+public class MedicaoFluxo {
+
+    private final String nome;
+    // Até 1 minuto com 3 dígitos significativos
+    private final Histogram latencias = new ConcurrentHistogram(60_000_000L, 3);
+    private final LongAdder erros = new LongAdder();
+    private long inicioNanos;
+    private long duracaoNanos;
+
+    public MedicaoFluxo(String nome) {
+        this.nome = nome;
+    }
+
+    public String nome() {
+        return nome;
+    }
+
+    public void inicia() {
+        inicioNanos = System.nanoTime();
+    }
+
+    public void finaliza() {
+        duracaoNanos = System.nanoTime() - inicioNanos;
+    }
+
+    public void registra(long nanos, boolean sucesso) {
+        latencias.recordValue(Math.max(1, nanos / 1_000));
+        if (!sucesso) {
+            erros.increment();
+        }
+    }
+
+    public long operacoes() {
+        return latencias.getTotalCount();
+    }
+
+    public double taxaErro() {
+        return operacoes() == 0 ? 0 : erros.sum() / (double) operacoes();
+    }
+
+    public double vazaoPorSegundo() {
+        return duracaoNanos == 0 ? 0 : operacoes() / (duracaoNanos / 1_000_000_000.0);
+    }
+
+    public double percentilMs(double percentil) {
+        return latencias.getValueAtPercentile(percentil) / 1_000.0;
+    }
+
+    public Map<String, Object> resumo() {
+        Map<String, Object> resumo = new LinkedHashMap<>();
+        resumo.put("operacoes", operacoes());
+        resumo.put("erros", erros.sum());
+        resumo.put("vazaoPorSegundo", vazaoPorSegundo());
+        resumo.put("p50Ms", percentilMs(50));
+        resumo.put("p99Ms", percentilMs(99));
+        resumo.put("p999Ms", percentilMs(99.9));
+        resumo.put("maxMs", latencias.getMaxValue() / 1_000.0);
+        return resumo;
+    }
+
+    // Distribuição completa no formato .hgrm do HdrHistogram, com valores em milissegundos
+    public void escreveHistograma(Path diretorio) throws IOException {
+        try (PrintStream saida = new PrintStream(Files.newOutputStream(diretorio.resolve(nome + ".hgrm")))) {
+            latencias.outputPercentileDistribution(saida, 1_000.0);
+        }
+    }
+}
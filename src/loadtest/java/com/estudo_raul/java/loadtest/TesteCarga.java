@@ -0,0 +1,382 @@
+package com.estudo_raul.java.loadtest;
+
+import com.estudo_raul.java.JavaApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.BiConsumer;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * Suíte de carga HTTP do UsuarioController. Sobe a aplicação com as propriedades do
+ * cenário, cria os usuários e executa em sequência os fluxos de cadastro, login, leitura
+ * do perfil (completa e condicional, com o ETag), atualizações, busca e exclusão. Para cada
+ * fluxo grava vazão, p50/p99/p999 e o histograma completo; termina com código 1 se algum
+ * limite do cenário for ultrapassado.
+ *
+ * Os clientes rodam na mesma JVM que a aplicação, então os números servem para comparar
+ * execuções do mesmo cenário na mesma máquina, não como capacidade absoluta.
+ */
+public class TesteCarga {
+
+    private final Cenario cenario;
+    private final HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private String baseUrl;
+
+    // Dados de cada usuário criado, usados pelos fluxos seguintes
+    private final Map<Integer, String> tokens = new HashMap<>();
+    private final Map<Integer, Long> enderecoIds = new HashMap<>();
+    private final Map<Integer, Long> telefoneIds = new HashMap<>();
+    private final Map<Integer, String> etags = new HashMap<>();
+
+    // Falhas de consistência encontradas pelos fluxos, além dos limites de latência e erro
+    private final List<String> inconsistencias = new ArrayList<>();
+
+    public TesteCarga(Cenario cenario) {
+        this.cenario = cenario;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path arquivoCenario = Path.of(args.length > 0 ? args[0] : "src/loadtest/resources/cenario-padrao.properties");
+        Path diretorioRelatorio = Path.of(args.length > 1 ? args[1] : "build/reports/carga");
+        Files.createDirectories(diretorioRelatorio);
+
+        TesteCarga teste = new TesteCarga(new Cenario(arquivoCenario));
+        boolean aprovado = teste.executa(diretorioRelatorio);
+        System.exit(aprovado ? 0 : 1);
+    }
+
+    public boolean executa(Path diretorioRelatorio) throws Exception {
+        // Passadas como argumentos de linha de comando para terem precedência sobre o application.properties
+        List<String> argumentos = new ArrayList<>();
+        cenario.propriedadesAplicacao().forEach((nome, valor) -> argumentos.add("--" + nome + "=" + valor));
+        argumentos.add("--server.port=0");
+
+        List<MedicaoFluxo> medicoes = new ArrayList<>();
+        try (ConfigurableApplicationContext contexto = new SpringApplicationBuilder(JavaApplication.class)
+                .run(argumentos.toArray(String[]::new))) {
+            baseUrl = "http://localhost:" + contexto.getEnvironment().getProperty("local.server.port");
+            medicoes.add(cadastro());
+            medicoes.add(cadastroDuplicado());
+            medicoes.add(cadastroConcorrente());
+            medicoes.add(login());
+            medicoes.add(leitura());
+            medicoes.add(leituraCondicional());
+            medicoes.add(atualizaUsuario());
+            medicoes.add(atualizaEndereco());
+            medicoes.add(atualizaTelefone());
+            medicoes.add(leituraAlterada());
+            medicoes.add(busca());
+            medicoes.add(exclusao());
+        }
+
+        return relata(medicoes, diretorioRelatorio);
+    }
+
+    private MedicaoFluxo cadastro() throws InterruptedException {
+        return executaFluxo("cadastro",
+                i -> json("/usuario", "POST", null, """
+                        {"nome":"Usuario %d","email":"%s","senha":"senha-%d",
+                         "enderecos":[{"rua":"Rua %d","numero":"%d","cidade":"São Paulo","cep":"01000-000","estado":"SP"}],
+                         "telefones":[{"numero":"%s","ddd":"11"}]}
+                        """.formatted(i, email(i), i, i, i, numeroTelefone(i))),
+                (i, resposta) -> {
+                    JsonNode corpo = leJson(resposta.body());
+                    synchronized (this) {
+                        enderecoIds.put(i, corpo.path("enderecos").path(0).path("id").asLong());
+                        telefoneIds.put(i, corpo.path("telefones").path(0).path("id").asLong());
+                    }
+                });
+    }
+
+    // Repete o cadastro de cada usuário já criado: todas as respostas devem ser 409
+    private MedicaoFluxo cadastroDuplicado() throws InterruptedException {
+        return executaFluxo("cadastro-duplicado",
+                i -> json("/usuario", "POST", null, """
+                        {"nome":"Usuario %d","email":"%s","senha":"senha-%d","enderecos":[],"telefones":[]}
+                        """.formatted(i, email(i), i)),
+                status -> status == 409,
+                null);
+    }
+
+    // Grupos de cadastros simultâneos do mesmo e-mail novo: exatamente um por grupo deve ser aceito
+    private MedicaoFluxo cadastroConcorrente() throws InterruptedException {
+        int tamanhoGrupo = cenario.tamanhoGrupoDisputa();
+        Map<Integer, Integer> aceitos = new HashMap<>();
+        MedicaoFluxo medicao = executaFluxo("cadastro-concorrente",
+                i -> json("/usuario", "POST", null, """
+                        {"nome":"Disputa","email":"d%d@carga.com","senha":"senha","enderecos":[],"telefones":[]}
+                        """.formatted(i / tamanhoGrupo)),
+                status -> status == 200 || status == 409,
+                (i, resposta) -> {
+                    if (resposta.statusCode() == 200) {
+                        synchronized (aceitos) {
+                            aceitos.merge(i / tamanhoGrupo, 1, Integer::sum);
+                        }
+                    }
+                });
+
+        int grupos = (cenario.usuarios() + tamanhoGrupo - 1) / tamanhoGrupo;
+        for (int grupo = 0; grupo < grupos; grupo++) {
+            int quantidade = aceitos.getOrDefault(grupo, 0);
+            if (quantidade != 1) {
+                inconsistencias.add("cadastro-concorrente: e-mail d%d@carga.com aceito %d vezes".formatted(grupo, quantidade));
+            }
+        }
+        return medicao;
+    }
+
+    private MedicaoFluxo login() throws InterruptedException {
+        return executaFluxo("login",
+                i -> json("/usuario/login", "POST", null,
+                        "{\"email\":\"%s\",\"senha\":\"senha-%d\"}".formatted(email(i), i)),
+                (i, resposta) -> {
+                    synchronized (this) {
+                        tokens.put(i, resposta.body());
+                    }
+                });
+    }
+
+    private MedicaoFluxo leitura() throws InterruptedException {
+        return executaFluxo("leitura",
+                i -> HttpRequest.newBuilder(URI.create(baseUrl + "/usuario?email=" + email(i)))
+                        .header("Authorization", token(i))
+                        .GET()
+                        .build(),
+                (i, resposta) -> {
+                    synchronized (this) {
+                        etags.put(i, resposta.headers().firstValue("ETag").orElse(null));
+                    }
+                    if (resposta.body().contains("\"senha\"")) {
+                        synchronized (inconsistencias) {
+                            inconsistencias.add("leitura: perfil de %s com o campo senha".formatted(email(i)));
+                        }
+                    }
+                });
+    }
+
+    // Repete a leitura com o ETag recebido: nada mudou, então todas as respostas devem ser 304
+    private MedicaoFluxo leituraCondicional() throws InterruptedException {
+        return executaFluxo("leitura-condicional",
+                i -> HttpRequest.newBuilder(URI.create(baseUrl + "/usuario?email=" + email(i)))
+                        .header("Authorization", token(i))
+                        .header("If-None-Match", etag(i))
+                        .GET()
+                        .build(),
+                status -> status == 304,
+                null);
+    }
+
+    // Depois das alterações de usuário, endereço e telefone o ETag antigo não vale mais: 200 com um ETag novo
+    private MedicaoFluxo leituraAlterada() throws InterruptedException {
+        return executaFluxo("leitura-alterada",
+                i -> HttpRequest.newBuilder(URI.create(baseUrl + "/usuario?email=" + email(i)))
+                        .header("Authorization", token(i))
+                        .header("If-None-Match", etag(i))
+                        .GET()
+                        .build(),
+                status -> status == 200,
+                (i, resposta) -> {
+                    if (resposta.headers().firstValue("ETag").orElse("").equals(etag(i))) {
+                        synchronized (inconsistencias) {
+                            inconsistencias.add("leitura-alterada: perfil de %s alterado com o mesmo ETag".formatted(email(i)));
+                        }
+                    }
+                });
+    }
+
+    private MedicaoFluxo atualizaUsuario() throws InterruptedException {
+        // Só o nome muda: trocar senha ou e-mail revogaria o token usado pelos fluxos seguintes
+        return executaFluxo("atualiza-usuario",
+                i -> json("/usuario", "PUT", token(i), "{\"nome\":\"Alterado %d\"}".formatted(i)),
+                null);
+    }
+
+    private MedicaoFluxo atualizaEndereco() throws InterruptedException {
+        return executaFluxo("atualiza-endereco",
+                i -> json("/usuario/endereco?id=" + enderecoId(i), "PUT", token(i),
+                        "{\"complemento\":\"Apto %d\"}".formatted(i)),
+                null);
+    }
+
+    private MedicaoFluxo atualizaTelefone() throws InterruptedException {
+        return executaFluxo("atualiza-telefone",
+                i -> json("/usuario/telefone?id=" + telefoneId(i), "PUT", token(i),
+                        "{\"ddd\":\"21\"}"),
+                null);
+    }
+
+    // Alterna busca por começo do nome com estado e busca pelo telefone; o usuário buscado deve
+    // aparecer, salvo quando a página enche com outros nomes de mesmo começo ("Alterado 2" e "Alterado 20").
+    // A busca é restrita aos administradores: todas as requisições usam o token de u0, administrador no cenário
+    private MedicaoFluxo busca() throws InterruptedException {
+        return executaFluxo("busca",
+                i -> HttpRequest.newBuilder(URI.create(baseUrl + (i % 2 == 0
+                                ? "/usuario/busca?estado=SP&nome=" + URLEncoder.encode("Alterado " + i, StandardCharsets.UTF_8)
+                                : "/usuario/busca?ddd=21&numero=" + numeroTelefone(i))))
+                        .header("Authorization", token(0))
+                        .GET()
+                        .build(),
+                (i, resposta) -> {
+                    JsonNode pagina = leJson(resposta.body());
+                    boolean encontrado = !pagina.path("proximoId").isNull();
+                    for (JsonNode item : pagina.path("itens")) {
+                        encontrado |= email(i).equals(item.path("email").asText());
+                    }
+                    if (!encontrado) {
+                        synchronized (inconsistencias) {
+                            inconsistencias.add("busca: usuário %s não encontrado".formatted(email(i)));
+                        }
+                    }
+                });
+    }
+
+    private MedicaoFluxo exclusao() throws InterruptedException {
+        return executaFluxo("exclusao",
+                i -> HttpRequest.newBuilder(URI.create(baseUrl + "/usuario/" + email(i)))
+                        .header("Authorization", token(i))
+                        .DELETE()
+                        .build(),
+                null);
+    }
+
+    private MedicaoFluxo executaFluxo(String nome, IntFunction<HttpRequest> requisicao,
+                                      BiConsumer<Integer, HttpResponse<String>> aoConcluir) throws InterruptedException {
+        return executaFluxo(nome, requisicao, status -> status / 100 == 2, aoConcluir);
+    }
+
+    // Executa uma operação por usuário com no máximo "concorrencia" requisições em andamento
+    private MedicaoFluxo executaFluxo(String nome, IntFunction<HttpRequest> requisicao, IntPredicate statusEsperado,
+                                      BiConsumer<Integer, HttpResponse<String>> aoConcluir) throws InterruptedException {
+        MedicaoFluxo medicao = new MedicaoFluxo(nome);
+        Semaphore emAndamento = new Semaphore(cenario.concorrencia());
+        int aquecimento = Math.min(cenario.aquecimento(), cenario.usuarios());
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < cenario.usuarios(); i++) {
+                if (i == aquecimento) {
+                    // Espera o aquecimento terminar antes de começar a medir a vazão
+                    emAndamento.acquire(cenario.concorrencia());
+                    emAndamento.release(cenario.concorrencia());
+                    medicao.inicia();
+                }
+                emAndamento.acquire();
+                final int usuario = i;
+                final boolean medir = i >= aquecimento;
+                executor.submit(() -> {
+                    try {
+                        long inicio = System.nanoTime();
+                        HttpResponse<String> resposta = http.send(requisicao.apply(usuario), HttpResponse.BodyHandlers.ofString());
+                        long duracao = System.nanoTime() - inicio;
+                        boolean sucesso = statusEsperado.test(resposta.statusCode());
+                        if (medir) {
+                            medicao.registra(duracao, sucesso);
+                        }
+                        if (sucesso && aoConcluir != null) {
+                            aoConcluir.accept(usuario, resposta);
+                        }
+                    } catch (Exception e) {
+                        if (medir) {
+                            medicao.registra(0, false);
+                        }
+                    } finally {
+                        emAndamento.release();
+                    }
+                });
+            }
+        }
+        medicao.finaliza();
+        System.out.printf("%-18s %6d ops  %8.1f ops/s  p50 %8.2f ms  p99 %8.2f ms  p999 %8.2f ms  erros %.2f%%%n",
+                nome, medicao.operacoes(), medicao.vazaoPorSegundo(), medicao.percentilMs(50),
+                medicao.percentilMs(99), medicao.percentilMs(99.9), medicao.taxaErro() * 100);
+        return medicao;
+    }
+
+    private boolean relata(List<MedicaoFluxo> medicoes, Path diretorio) throws Exception {
+        Map<String, Object> resumo = new LinkedHashMap<>();
+        List<String> violacoes = new ArrayList<>();
+
+        for (MedicaoFluxo medicao : medicoes) {
+            medicao.escreveHistograma(diretorio);
+            resumo.put(medicao.nome(), medicao.resumo());
+
+            if (medicao.taxaErro() > cenario.taxaErroMaxima()) {
+                violacoes.add("%s: taxa de erro %.2f%% acima do limite".formatted(medicao.nome(), medicao.taxaErro() * 100));
+            }
+            Double limite = cenario.p99MaximoMs(medicao.nome());
+            if (limite != null && medicao.percentilMs(99) > limite) {
+                violacoes.add("%s: p99 %.2f ms acima do limite de %.2f ms".formatted(medicao.nome(), medicao.percentilMs(99), limite));
+            }
+        }
+        violacoes.addAll(inconsistencias);
+        resumo.put("violacoes", violacoes);
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(diretorio.resolve("resumo.json").toFile(), resumo);
+
+        violacoes.forEach(violacao -> System.out.println("LIMITE ULTRAPASSADO: " + violacao));
+        return violacoes.isEmpty();
+    }
+
+    private HttpRequest json(String caminho, String metodo, String token, String corpo) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + caminho))
+                .header("Content-Type", "application/json")
+                .method(metodo, HttpRequest.BodyPublishers.ofString(corpo));
+        if (token != null) {
+            builder.header("Authorization", token);
+        }
+        return builder.build();
+    }
+
+    private JsonNode leJson(String corpo) {
+        try {
+            return objectMapper.readTree(corpo);
+        } catch (Exception e) {
+            throw new IllegalStateException("Resposta inválida: " + corpo, e);
+        }
+    }
+
+    private static String email(int i) {
+        return "u" + i + "@carga.com";
+    }
+
+    private static String numeroTelefone(int i) {
+        return "9%08d".formatted(i);
+    }
+
+    private synchronized String token(int i) {
+        return tokens.getOrDefault(i, "");
+    }
+
+    private synchronized Long enderecoId(int i) {
+        return enderecoIds.get(i);
+    }
+
+    private synchronized Long telefoneId(int i) {
+        return telefoneIds.get(i);
+    }
+
+    // Sem ETag da leitura (falha ou resposta sem o cabeçalho), um valor que não corresponde a nenhuma versão
+    private synchronized String etag(int i) {
+        String etag = etags.get(i);
+        return etag != null ? etag : "\"sem-etag\"";
+    }
+}
@@ -0,0 +1,206 @@
+package com.estudo_raul.java.loadtest;
+
+import com.estudo_raul.java.JavaApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Verifica a reaplicação do diário da escrita adiada depois de uma queda. Sobe a aplicação
+ * em outra JVM com a gravação no banco praticamente parada, envia alterações de endereço e
+ * telefone (202), mata o processo com SIGKILL e sobe de novo com o mesmo diário e o mesmo
+ * banco (H2 em arquivo). As alterações precisam chegar ao banco sem nenhuma nova requisição.
+ * Termina com código 1 se alguma verificação falhar.
+ */
+public class TesteReplayDiario {
+
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Path diretorio;
+    private final List<String> falhas = new ArrayList<>();
+    private String baseUrl;
+
+    public TesteReplayDiario(Path diretorio) {
+        this.diretorio = diretorio;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path diretorio = Path.of(args.length > 0 ? args[0] : "build/tmp/replay-diario");
+        boolean aprovado = new TesteReplayDiario(diretorio).executa();
+        System.exit(aprovado ? 0 : 1);
+    }
+
+    public boolean executa() throws Exception {
+        limpa(diretorio);
+        Files.createDirectories(diretorio);
+
+        // Primeira execução: aceita as alterações e cai antes de gravá-las no banco
+        Process aplicacao = sobe("3600000");
+        String token;
+        try {
+            token = preparaUsuario();
+            confere(put(token, "/usuario/endereco?id=1", "{\"rua\":\"Rua Nova\"}").statusCode() == 202, "PUT de endereço deveria responder 202");
+            confere(put(token, "/usuario/endereco?id=1", "{\"cidade\":\"Recife\"}").statusCode() == 202, "segundo PUT de endereço deveria responder 202");
+            confere(put(token, "/usuario/telefone?id=1", "{\"ddd\":\"81\"}").statusCode() == 202, "PUT de telefone deveria responder 202");
+
+            JsonNode perfil = perfil(token);
+            confere("Rua Nova".equals(perfil.path("enderecos").path(0).path("rua").asText()), "leitura deveria ver a alteração pendente");
+            confere(perfil.path("enderecos").path(0).path("versao").asLong() == 0, "alteração não deveria estar no banco antes da queda");
+            // Dá tempo de o H2 gravar o cadastro no arquivo antes de matar o processo
+            Thread.sleep(2000);
+        } finally {
+            aplicacao.destroyForcibly().waitFor();
+        }
+
+        // Segunda execução: o diário é relido na subida e gravado pela tarefa em segundo plano
+        aplicacao = sobe("100");
+        try {
+            JsonNode perfil = esperaGravacao(token);
+            JsonNode endereco = perfil.path("enderecos").path(0);
+            JsonNode telefone = perfil.path("telefones").path(0);
+            confere(endereco.path("versao").asLong() == 1, "endereço deveria ter sido gravado uma vez (alterações combinadas)");
+            confere("Rua Nova".equals(endereco.path("rua").asText()), "rua não foi reaplicada");
+            confere("Recife".equals(endereco.path("cidade").asText()), "cidade não foi reaplicada");
+            confere("81".equals(telefone.path("ddd").asText()), "ddd não foi reaplicado");
+        } finally {
+            aplicacao.destroy();
+            aplicacao.waitFor();
+        }
+
+        falhas.forEach(falha -> System.out.println("FALHA: " + falha));
+        if (falhas.isEmpty()) {
+            System.out.println("Diário reaplicado corretamente após a queda");
+        }
+        return falhas.isEmpty();
+    }
+
+    // Outra JVM com o classpath atual, para poder ser morta sem encerramento ordenado
+    private Process sobe(String intervaloGravacaoMs) throws Exception {
+        int porta;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            porta = socket.getLocalPort();
+        }
+        baseUrl = "http://localhost:" + porta;
+        List<String> comando = List.of(
+                ProcessHandle.current().info().command().orElse("java"),
+                "-cp", System.getProperty("java.class.path"),
+                JavaApplication.class.getName(),
+                "--server.port=" + porta,
+                "--spring.datasource.url=jdbc:h2:file:" + diretorio.toAbsolutePath().resolve("banco") + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.hibernate.ddl-auto=update",
+                "--usuario.escrita-adiada.habilitada=true",
+                "--usuario.escrita-adiada.arquivo=" + diretorio.toAbsolutePath().resolve("escrita-adiada.diario"),
+                "--usuario.escrita-adiada.intervalo-ms=" + intervaloGravacaoMs);
+        Process processo = new ProcessBuilder(comando)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(diretorio.resolve("aplicacao.log").toFile()))
+                .start();
+
+        long limite = System.nanoTime() + Duration.ofSeconds(120).toNanos();
+        while (System.nanoTime() < limite) {
+            if (!processo.isAlive()) {
+                throw new IllegalStateException("Aplicação terminou na subida; veja " + diretorio.resolve("aplicacao.log"));
+            }
+            try {
+                if (get("/actuator/health", null).statusCode() == 200) {
+                    return processo;
+                }
+            } catch (IOException e) {
+                // Ainda subindo
+            }
+            Thread.sleep(500);
+        }
+        processo.destroyForcibly();
+        throw new IllegalStateException("Aplicação não respondeu em 120 s");
+    }
+
+    private String preparaUsuario() throws Exception {
+        HttpResponse<String> cadastro = post("/usuario", """
+                {"nome":"Replay","email":"replay@teste.com","senha":"senha",
+                 "enderecos":[{"rua":"Rua Antiga","numero":"1","cidade":"São Paulo","cep":"01000-000","estado":"SP"}],
+                 "telefones":[{"numero":"988887777","ddd":"11"}]}
+                """);
+        if (cadastro.statusCode() != 200) {
+            throw new IllegalStateException("Cadastro falhou: " + cadastro.statusCode() + " " + cadastro.body());
+        }
+        return post("/usuario/login", "{\"email\":\"replay@teste.com\",\"senha\":\"senha\"}").body();
+    }
+
+    // Espera a versão do endereço mudar, o que só acontece quando o UPDATE chega ao banco
+    private JsonNode esperaGravacao(String token) throws Exception {
+        JsonNode perfil = null;
+        long limite = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (System.nanoTime() < limite) {
+            perfil = perfil(token);
+            if (perfil.path("enderecos").path(0).path("versao").asLong() > 0) {
+                return perfil;
+            }
+            Thread.sleep(200);
+        }
+        falhas.add("alterações do diário não chegaram ao banco em 30 s");
+        return perfil;
+    }
+
+    private JsonNode perfil(String token) throws Exception {
+        return objectMapper.readTree(get("/usuario?email=replay@teste.com", token).body());
+    }
+
+    private void confere(boolean condicao, String mensagem) {
+        if (!condicao) {
+            falhas.add(mensagem);
+        }
+    }
+
+    private HttpResponse<String> get(String caminho, String token) throws Exception {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + caminho)).GET();
+        if (token != null) {
+            builder.header("Authorization", token);
+        }
+        return http.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> post(String caminho, String corpo) throws Exception {
+        return envia(caminho, "POST", null, corpo);
+    }
+
+    private HttpResponse<String> put(String token, String caminho, String corpo) throws Exception {
+        return envia(caminho, "PUT", token, corpo);
+    }
+
+    private HttpResponse<String> envia(String caminho, String metodo, String token, String corpo) throws Exception {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + caminho))
+                .header("Content-Type", "application/json")
+                .method(metodo, HttpRequest.BodyPublishers.ofString(corpo));
+        if (token != null) {
+            builder.header("Authorization", token);
+        }
+        return http.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static void limpa(Path diretorio) throws IOException {
+        if (!Files.exists(diretorio)) {
+            return;
+        }
+        try (Stream<Path> caminhos = Files.walk(diretorio)) {
+            for (Path caminho : caminhos.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(caminho);
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.estudo_raul.java.business;
+
+import com.estudo_raul.java.business.dtos.CepDTO;
+import com.estudo_raul.java.infrastructure.cep.ArquivoCep;
+import com.estudo_raul.java.infrastructure.cep.IndiceCep;
+import com.estudo_raul.java.infrastructure.exceptions.ResourceNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Consulta e autocompletar de CEP para os formulários de endereço, no índice local de CEPs:
+ * substitui a chamada do cliente a um serviço externo.
+ */
+@Service
+public class CepService {
+
+    private final IndiceCep indiceCep;
+    private final int limiteMaximo;
+
+    public CepService(IndiceCep indiceCep,
+                      @Value("${cep.autocompletar.limite-maximo:50}") int limiteMaximo) {
+        this.indiceCep = indiceCep;
+        this.limiteMaximo = limiteMaximo;
+    }
+
+    /**
+     * Endereço de um CEP.
+     * * @param cep O CEP, com ou sem hífen.
+     * @return Rua, cidade e estado do CEP.
+     * @throws ResourceNotFoundException se o CEP não estiver no índice.
+     */
+    public CepDTO busca(String cep) {
+        ArquivoCep arquivo = indiceCep.atual();
+        int numero = ArquivoCep.numero(cep);
+        int posicao = numero < 0 ? -1 : arquivo.posicao(numero);
+        if (posicao < 0) {
+            throw new ResourceNotFoundException("CEP não encontrado: " + cep);
+        }
+        return paraDTO(arquivo, posicao);
+    }
+
+    /**
+     * CEPs que começam com os dígitos informados, em ordem de CEP.
+     * * @param prefixo De 1 a 8 dígitos; hífen é ignorado.
+     * @param limite Quantidade máxima de CEPs devolvidos.
+     * @return Os CEPs encontrados, possivelmente nenhum.
+     * @throws IllegalArgumentException se o prefixo ou o limite forem inválidos.
+     */
+    public List<CepDTO> autocompleta(String prefixo, int limite) {
+        String digitos = prefixo == null ? "" : prefixo.replace("-", "").trim();
+        if (digitos.isEmpty() || digitos.length() > 8 || !digitos.chars().allMatch(Character::isDigit)) {
+            throw new IllegalArgumentException("O prefixo deve ter de 1 a 8 dígitos");
+        }
+        if (limite < 1 || limite > limiteMaximo) {
+            throw new IllegalArgumentException("O limite deve ficar entre 1 e " + limiteMaximo);
+        }
+        // Os CEPs com o prefixo formam o intervalo [prefixo000..., prefixo+1 000...)
+        int escala = (int) Math.pow(10, 8 - digitos.length());
+        int inicio = Integer.parseInt(digitos) * escala;
+        int fim = inicio + escala;
+
+        ArquivoCep arquivo = indiceCep.atual();
+        List<CepDTO> ceps = new ArrayList<>(Math.min(limite, 16));
+        for (int posicao = arquivo.primeiraAPartirDe(inicio);
+             posicao < arquivo.quantidade() && arquivo.cep(posicao) < fim && ceps.size() < limite; posicao++) {
+            ceps.add(paraDTO(arquivo, posicao));
+        }
+        return ceps;
+    }
+
+    private static CepDTO paraDTO(ArquivoCep arquivo, int posicao) {
+        return new CepDTO(ArquivoCep.formata(arquivo.cep(posicao)), arquivo.rua(posicao), arquivo.cidade(posicao),
+                arquivo.estado(posicao));
+    }
+}
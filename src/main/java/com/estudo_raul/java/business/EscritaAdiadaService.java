@@ -0,0 +1,455 @@
+package com.estudo_raul.java.business;
+
+import com.estudo_raul.java.business.cache.UsuarioPerfilCache;
+import com.estudo_raul.java.business.converter.UsuarioConverter;
+import com.estudo_raul.java.business.dtos.EnderecoDTO;
+import com.estudo_raul.java.business.dtos.TelefoneDTO;
+import com.estudo_raul.java.business.dtos.UsuarioDTO;
+import com.estudo_raul.java.infrastructure.banco.ShardUsuario;
+import com.estudo_raul.java.infrastructure.escrita.DiarioEscrita;
+import com.estudo_raul.java.infrastructure.eventos.EventoUsuario;
+import com.estudo_raul.java.infrastructure.eventos.SaidaEventos;
+import com.estudo_raul.java.infrastructure.repository.AtualizacaoParcialRepository;
+import com.estudo_raul.java.infrastructure.repository.AtualizacaoParcialRepository.AtualizacaoLinha;
+import com.estudo_raul.java.infrastructure.security.JwtUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Modo opcional de escrita adiada para atualizações de endereços e telefones. A alteração
+ * aceita é gravada no DiarioEscrita (forçada para o disco) e respondida com 202; uma tarefa
+ * em segundo plano junta as alterações repetidas da mesma linha e grava tudo no banco em
+ * batches. As leituras de perfil aplicam por cima as alterações ainda não gravadas.
+ *
+ * Uma alteração que o banco recusa na gravação (linha de outro usuário ou inexistente,
+ * versão desatualizada, número de telefone em uso) é descartada e contada em
+ * escrita.adiada.descartadas; o cliente já recebeu 202 e não é avisado.
+ */
+@Slf4j
+@Service
+public class EscritaAdiadaService implements MeterBinder {
+
+    private final AtualizacaoParcialRepository atualizacaoParcialRepository;
+    private final UsuarioPerfilCache usuarioPerfilCache;
+    private final UsuarioConverter usuarioConverter;
+    private final JwtUtil jwtUtil;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardUsuario shardUsuario;
+    private final SaidaEventos saidaEventos;
+    private final ObjectMapper objectMapper;
+    private final boolean habilitada;
+    private final Path arquivo;
+    private final DataSize tamanhoArquivo;
+    private final int tamanhoLote;
+
+    // Alterações aceitas e ainda não gravadas, já combinadas por linha
+    private final Map<Chave, Pendente> pendentes = new ConcurrentHashMap<>();
+    // Alterações sendo gravadas agora; continuam visíveis para as leituras até o commit
+    private final Map<Chave, Pendente> emGravacao = new ConcurrentHashMap<>();
+    // Linhas com alterações em "pendentes" ou "emGravacao", por e-mail do dono, para a leitura do perfil não percorrer todas
+    private final Map<String, Set<Chave>> chavesPorEmail = new ConcurrentHashMap<>();
+    // Anexar ao diário e publicar em "pendentes" acontece sob a leitura; o cálculo do ponto confirmado, sob a escrita
+    private final ReadWriteLock ordemDiario = new ReentrantReadWriteLock();
+
+    private final LongAdder aplicadas = new LongAdder();
+    private final LongAdder descartadas = new LongAdder();
+
+    private volatile DiarioEscrita diario;
+
+    public EscritaAdiadaService(AtualizacaoParcialRepository atualizacaoParcialRepository,
+                                UsuarioPerfilCache usuarioPerfilCache,
+                                UsuarioConverter usuarioConverter,
+                                JwtUtil jwtUtil,
+                                TransactionTemplate transactionTemplate,
+                                ShardUsuario shardUsuario,
+                                SaidaEventos saidaEventos,
+                                ObjectMapper objectMapper,
+                                @Value("${usuario.escrita-adiada.habilitada:false}") boolean habilitada,
+                                @Value("${usuario.escrita-adiada.arquivo:dados/escrita-adiada.diario}") Path arquivo,
+                                @Value("${usuario.escrita-adiada.tamanho-arquivo:64MB}") DataSize tamanhoArquivo,
+                                @Value("${usuario.escrita-adiada.tamanho-lote:500}") int tamanhoLote) {
+        this.atualizacaoParcialRepository = atualizacaoParcialRepository;
+        this.usuarioPerfilCache = usuarioPerfilCache;
+        this.usuarioConverter = usuarioConverter;
+        this.jwtUtil = jwtUtil;
+        this.transactionTemplate = transactionTemplate;
+        this.shardUsuario = shardUsuario;
+        this.saidaEventos = saidaEventos;
+        this.objectMapper = objectMapper;
+        this.habilitada = habilitada;
+        this.arquivo = arquivo;
+        this.tamanhoArquivo = tamanhoArquivo;
+        this.tamanhoLote = tamanhoLote;
+    }
+
+    // Com o modo desligado, um diário que ficou com pendências ainda é reaplicado
+    @PostConstruct
+    void abreDiario() throws IOException {
+        if (!habilitada && !Files.exists(arquivo)) {
+            return;
+        }
+        DiarioEscrita aberto = new DiarioEscrita(arquivo, (int) tamanhoArquivo.toBytes());
+        for (DiarioEscrita.Registro registro : aberto.recuperados()) {
+            Alteracao alteracao = objectMapper.readValue(registro.dados(), Alteracao.class);
+            pendentes.merge(alteracao.chave(), new Pendente(alteracao, registro.sequencia()), Pendente::combina);
+            indexa(alteracao.chave());
+        }
+        if (!aberto.recuperados().isEmpty()) {
+            log.info("Diário de escrita adiada: {} alterações recuperadas para reaplicar", aberto.recuperados().size());
+        }
+        diario = aberto;
+    }
+
+    public boolean isHabilitada() {
+        return habilitada;
+    }
+
+    /**
+     * Aceita a atualização de um endereço do usuário do token para gravação posterior.
+     * * @param token O token de autorização (incluindo "Bearer ").
+     * @param idEndereco ID do endereço.
+     * @param dto Campos a alterar e, opcionalmente, a versão lida.
+     * @return O DTO recebido, com o id; os dados completos aparecem na leitura do perfil.
+     */
+    public EnderecoDTO agendaEndereco(String token, Long idEndereco, EnderecoDTO dto) {
+        String email = jwtUtil.extrairEmailToken(token.substring(7));
+        agenda(new Alteracao(Tipo.ENDERECO, idEndereco, email, usuarioConverter.paraColunasEndereco(dto), dto.getVersao()));
+        dto.setId(idEndereco);
+        return dto;
+    }
+
+    public TelefoneDTO agendaTelefone(String token, Long idTelefone, TelefoneDTO dto) {
+        String email = jwtUtil.extrairEmailToken(token.substring(7));
+        agenda(new Alteracao(Tipo.TELEFONE, idTelefone, email, usuarioConverter.paraColunasTelefone(dto), dto.getVersao()));
+        dto.setId(idTelefone);
+        return dto;
+    }
+
+    private void agenda(Alteracao alteracao) {
+        if (alteracao.colunas().isEmpty()) {
+            return;
+        }
+        byte[] dados;
+        try {
+            dados = objectMapper.writeValueAsBytes(alteracao);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        ordemDiario.readLock().lock();
+        try {
+            long sequencia = diario.anexa(dados);
+            pendentes.merge(alteracao.chave(), new Pendente(alteracao, sequencia), Pendente::combina);
+            indexa(alteracao.chave());
+        } finally {
+            ordemDiario.readLock().unlock();
+        }
+    }
+
+    private void indexa(Chave chave) {
+        chavesPorEmail.computeIfAbsent(chave.email(), email -> ConcurrentHashMap.newKeySet()).add(chave);
+    }
+
+    /**
+     * Aplica sobre o perfil as alterações do usuário ainda não gravadas no banco.
+     * * @param email O e-mail do perfil.
+     * @param perfil O perfil lido do cache ou do banco (não é alterado).
+     * @return O próprio perfil, se não houver pendências, ou uma cópia com elas aplicadas.
+     */
+    public UsuarioDTO aplicaPendentes(String email, UsuarioDTO perfil) {
+        Set<Chave> chaves = chavesPorEmail.get(email);
+        if (chaves == null) {
+            return perfil;
+        }
+        // As alterações em gravação são mais antigas que as pendentes da mesma linha
+        Map<Long, Map<String, Object>> enderecos = new LinkedHashMap<>();
+        Map<Long, Map<String, Object>> telefones = new LinkedHashMap<>();
+        for (Chave chave : chaves) {
+            for (Map<Chave, Pendente> origem : List.of(emGravacao, pendentes)) {
+                Pendente pendente = origem.get(chave);
+                if (pendente != null) {
+                    (chave.tipo() == Tipo.ENDERECO ? enderecos : telefones)
+                            .computeIfAbsent(chave.id(), id -> new LinkedHashMap<>())
+                            .putAll(pendente.alteracao().colunas());
+                }
+            }
+        }
+        if (enderecos.isEmpty() && telefones.isEmpty()) {
+            return perfil;
+        }
+
+        return UsuarioDTO.builder()
+                .id(perfil.getId())
+                .nome(perfil.getNome())
+                .email(perfil.getEmail())
+                .senha(perfil.getSenha())
+                .versao(perfil.getVersao())
+                .enderecos(perfil.getEnderecos() == null ? null : perfil.getEnderecos().stream()
+                        .map(endereco -> enderecos.containsKey(endereco.getId())
+                                ? usuarioConverter.aplicaColunasEndereco(endereco, enderecos.get(endereco.getId()))
+                                : endereco)
+                        .toList())
+                .telefones(perfil.getTelefones() == null ? null : perfil.getTelefones().stream()
+                        .map(telefone -> telefones.containsKey(telefone.getId())
+                                ? usuarioConverter.aplicaColunasTelefone(telefone, telefones.get(telefone.getId()))
+                                : telefone)
+                        .toList())
+                .build();
+    }
+
+    /**
+     * Grava no banco até tamanho-lote alterações pendentes e avança o ponto confirmado do
+     * diário. Se o banco falhar em um shard, só as alterações daquele shard voltam para a fila
+     * e são tentadas de novo; as dos outros já foram confirmadas e não são gravadas outra vez.
+     */
+    @Scheduled(fixedDelayString = "${usuario.escrita-adiada.intervalo-ms:200}")
+    public synchronized void descarrega() {
+        if (diario == null || pendentes.isEmpty()) {
+            return;
+        }
+        List<Chave> lote = separaLote();
+        Set<Chave> falhas = grava(lote);
+
+        Set<String> emails = new HashSet<>();
+        for (Chave chave : lote) {
+            if (falhas.contains(chave)) {
+                // Volta para a fila antes de sair de "emGravacao", sem sumir das leituras; o que chegou
+                // depois para a mesma linha é mais novo e fica por cima
+                pendentes.merge(chave, emGravacao.get(chave), (novo, antigo) -> antigo.combina(novo));
+            } else {
+                emails.add(chave.email());
+            }
+            emGravacao.remove(chave);
+        }
+        emails.forEach(usuarioPerfilCache::invalida);
+        confirmaDiario(lote);
+    }
+
+    // Move as alterações de "pendentes" para "emGravacao" sem deixar de mostrá-las nas leituras
+    private List<Chave> separaLote() {
+        List<Chave> lote = new ArrayList<>(tamanhoLote);
+        for (Map.Entry<Chave, Pendente> entrada : pendentes.entrySet()) {
+            if (lote.size() == tamanhoLote) {
+                break;
+            }
+            Chave chave = entrada.getKey();
+            Pendente pendente = entrada.getValue();
+            emGravacao.put(chave, pendente);
+            if (pendentes.remove(chave, pendente)) {
+                lote.add(chave);
+            } else {
+                // Recebeu outra alteração nesse meio tempo: vai inteira no próximo ciclo
+                emGravacao.remove(chave, pendente);
+            }
+        }
+        return lote;
+    }
+
+    // Devolve as linhas que não chegaram ao banco por uma falha de acesso; as demais já foram gravadas ou descartadas
+    private Set<Chave> grava(List<Chave> lote) {
+        Set<Chave> falhas = new HashSet<>();
+        for (Tipo tipo : Tipo.values()) {
+            List<Chave> chaves = lote.stream().filter(chave -> chave.tipo() == tipo).toList();
+            if (chaves.isEmpty()) {
+                continue;
+            }
+            List<AtualizacaoLinha> linhas = chaves.stream().map(chave -> emGravacao.get(chave).linha()).toList();
+            // Uma transação por shard, com as linhas dos usuários de cada um
+            Map<Integer, List<AtualizacaoLinha>> porShard;
+            try {
+                porShard = shardUsuario.agrupa(linhas, AtualizacaoLinha::emailDono);
+            } catch (DataAccessException e) {
+                log.warn("Falha ao localizar os shards de {} alterações adiadas; nova tentativa no próximo ciclo", linhas.size(), e);
+                falhas.addAll(chaves);
+                continue;
+            }
+            porShard.forEach((shard, doShard) -> gravaNoShard(tipo, shard, doShard)
+                    .forEach(linha -> falhas.add(new Chave(tipo, linha.id(), linha.emailDono()))));
+        }
+        return falhas;
+    }
+
+    private List<AtualizacaoLinha> gravaNoShard(Tipo tipo, int shard, List<AtualizacaoLinha> linhas) {
+        try {
+            int[] afetadas = shardUsuario.executaNoShard(shard, () -> transactionTemplate.execute(status -> atualiza(tipo, linhas)));
+            for (int i = 0; i < linhas.size(); i++) {
+                contabiliza(linhas.get(i), tipo, afetadas[i]);
+            }
+            return List.of();
+        } catch (DataIntegrityViolationException e) {
+            // Alguma linha violou uma restrição (número de telefone em uso): grava uma a uma para isolar
+            return linhas.stream().filter(linha -> !gravaIndividual(tipo, linha)).toList();
+        } catch (DataAccessException e) {
+            log.warn("Falha ao gravar {} alterações adiadas no shard {}; nova tentativa no próximo ciclo", linhas.size(), shard, e);
+            return linhas;
+        }
+    }
+
+    // Falso se a linha não chegou ao banco e deve ser tentada de novo
+    private boolean gravaIndividual(Tipo tipo, AtualizacaoLinha linha) {
+        try {
+            int[] afetadas = shardUsuario.executa(linha.emailDono(),
+                    () -> transactionTemplate.execute(status -> atualiza(tipo, List.of(linha))));
+            contabiliza(linha, tipo, afetadas[0]);
+        } catch (DataIntegrityViolationException e) {
+            descartadas.increment();
+            log.warn("Alteração adiada de {} {} descartada: {}", tipo.tabela, linha.id(), e.getMostSpecificCause().getMessage());
+        } catch (DataAccessException e) {
+            log.warn("Falha ao gravar a alteração adiada de {} {}; nova tentativa no próximo ciclo", tipo.tabela, linha.id(), e);
+            return false;
+        }
+        return true;
+    }
+
+    // Grava as linhas e, na mesma transação, um evento por linha que o banco aceitou e uma nova
+    // versão do perfil de cada dono
+    private int[] atualiza(Tipo tipo, List<AtualizacaoLinha> linhas) {
+        int[] afetadas = atualizacaoParcialRepository.atualizaEmLote(tipo.tabela, linhas);
+        List<EventoUsuario> eventos = new ArrayList<>(linhas.size());
+        Set<String> donos = new HashSet<>();
+        for (int i = 0; i < linhas.size(); i++) {
+            if (afetadas[i] > 0) {
+                AtualizacaoLinha linha = linhas.get(i);
+                donos.add(linha.emailDono());
+                eventos.add(tipo == Tipo.ENDERECO
+                        ? EventoUsuario.enderecoAlterado(null, linha.emailDono(), linha.id(), linha.colunas())
+                        : EventoUsuario.telefoneAlterado(null, linha.emailDono(), linha.id(), linha.colunas()));
+            }
+        }
+        atualizacaoParcialRepository.incrementaVersaoUsuarios(donos);
+        saidaEventos.registra(eventos);
+        return afetadas;
+    }
+
+    private void contabiliza(AtualizacaoLinha linha, Tipo tipo, int afetadas) {
+        if (afetadas > 0) {
+            aplicadas.increment();
+        } else {
+            descartadas.increment();
+            log.warn("Alteração adiada de {} {} descartada: registro inexistente, de outro usuário ou versão desatualizada",
+                    tipo.tabela, linha.id());
+        }
+    }
+
+    // Confirma no diário tudo o que vem antes da alteração pendente mais antiga e tira do índice
+    // por e-mail as linhas do lote que não têm mais nada pendente
+    private void confirmaDiario(List<Chave> lote) {
+        ordemDiario.writeLock().lock();
+        try {
+            for (Chave chave : lote) {
+                if (!pendentes.containsKey(chave) && !emGravacao.containsKey(chave)) {
+                    chavesPorEmail.computeIfPresent(chave.email(), (email, chaves) -> {
+                        chaves.remove(chave);
+                        return chaves.isEmpty() ? null : chaves;
+                    });
+                }
+            }
+            long maisAntiga = Long.MAX_VALUE;
+            for (Map<Chave, Pendente> origem : List.of(pendentes, emGravacao)) {
+                for (Pendente pendente : origem.values()) {
+                    maisAntiga = Math.min(maisAntiga, pendente.primeiraSequencia());
+                }
+            }
+            diario.confirmaAte(maisAntiga == Long.MAX_VALUE ? diario.ultimaSequencia() : maisAntiga - 1);
+        } finally {
+            ordemDiario.writeLock().unlock();
+        }
+    }
+
+    // Tenta gravar tudo antes de encerrar; o que sobrar é reaplicado a partir do diário na próxima subida
+    @PreDestroy
+    void encerra() throws IOException {
+        if (diario == null) {
+            return;
+        }
+        int restantes = Integer.MAX_VALUE;
+        while (!pendentes.isEmpty() && pendentes.size() < restantes) {
+            restantes = pendentes.size();
+            descarrega();
+        }
+        diario.close();
+    }
+
+    public long quantidadePendentes() {
+        return pendentes.size() + emGravacao.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("escrita.adiada.pendentes", this, EscritaAdiadaService::quantidadePendentes)
+                .description("Linhas com alterações aceitas e ainda não gravadas no banco")
+                .register(registry);
+        FunctionCounter.builder("escrita.adiada.aplicadas", aplicadas, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("escrita.adiada.descartadas", descartadas, LongAdder::sum)
+                .description("Alterações aceitas com 202 que o banco recusou na gravação")
+                .register(registry);
+    }
+
+    enum Tipo {
+        ENDERECO("endereco"),
+        TELEFONE("telefone");
+
+        private final String tabela;
+
+        Tipo(String tabela) {
+            this.tabela = tabela;
+        }
+    }
+
+    record Chave(Tipo tipo, Long id, String email) {
+    }
+
+    // Conteúdo de cada registro do diário
+    record Alteracao(Tipo tipo, Long id, String email, Map<String, Object> colunas, Long versao) {
+
+        Chave chave() {
+            return new Chave(tipo, id, email);
+        }
+    }
+
+    // Alterações combinadas de uma linha e a sequência do diário da mais antiga delas
+    private record Pendente(Alteracao alteracao, long primeiraSequencia) {
+
+        // A versão esperada é a da primeira alteração: as seguintes leram o mesmo registro do banco
+        Pendente combina(Pendente nova) {
+            Map<String, Object> colunas = new LinkedHashMap<>(alteracao.colunas());
+            colunas.putAll(nova.alteracao().colunas());
+            Long versao = alteracao.versao() != null ? alteracao.versao() : nova.alteracao().versao();
+            return new Pendente(new Alteracao(alteracao.tipo(), alteracao.id(), alteracao.email(), colunas, versao),
+                    Math.min(primeiraSequencia, nova.primeiraSequencia()));
+        }
+
+        AtualizacaoLinha linha() {
+            return new AtualizacaoLinha(alteracao.id(), alteracao.email(), alteracao.colunas(), alteracao.versao());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.estudo_raul.java.business;
+
+import com.estudo_raul.java.business.dtos.ModoBusca;
+import com.estudo_raul.java.business.dtos.PaginaUsuariosDTO;
+import com.estudo_raul.java.business.dtos.UsuarioResumoDTO;
+import com.estudo_raul.java.infrastructure.banco.LeituraReplica;
+import com.estudo_raul.java.infrastructure.banco.ShardUsuario;
+import com.estudo_raul.java.infrastructure.repository.BuscaUsuarioRepository;
+import com.estudo_raul.java.infrastructure.repository.BuscaUsuarioRepository.Filtro;
+import com.estudo_raul.java.infrastructure.repository.BuscaUsuarioRepository.UsuarioEncontrado;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Busca de usuários para as ferramentas de suporte, em páginas por keyset de id. Os shards são
+ * consultados ao mesmo tempo, cada um devolve a própria página e as páginas são juntadas em
+ * ordem de id, como na exportação; um
+ * usuário no meio de uma mudança de shard, presente nos dois, aparece uma vez só. A leitura
+ * vai para uma réplica quando banco.replicas.habilitadas=true.
+ */
+@Service
+@Timed("usuario.service")
+public class UsuarioBuscaService {
+
+    // Abaixo de três letras não há trigrama e a busca por nome percorreria a tabela
+    private static final int MINIMO_NOME = 3;
+
+    private final BuscaUsuarioRepository buscaUsuarioRepository;
+    private final ShardUsuario shardUsuario;
+    private final LeituraReplica leituraReplica;
+    private final int limitePadrao;
+    private final int limiteMaximo;
+
+    public UsuarioBuscaService(BuscaUsuarioRepository buscaUsuarioRepository,
+                               ShardUsuario shardUsuario,
+                               LeituraReplica leituraReplica,
+                               @Value("${usuario.busca.limite-padrao:20}") int limitePadrao,
+                               @Value("${usuario.busca.limite-maximo:100}") int limiteMaximo) {
+        this.buscaUsuarioRepository = buscaUsuarioRepository;
+        this.shardUsuario = shardUsuario;
+        this.leituraReplica = leituraReplica;
+        this.limitePadrao = limitePadrao;
+        this.limiteMaximo = limiteMaximo;
+    }
+
+    /**
+     * Busca usuários que atendem todos os filtros informados; ao menos nome, cidade, estado ou
+     * número é obrigatório.
+     * * @param nome Começo do nome (PREFIXO) ou nome aproximado (APROXIMADO), com pelo menos três letras.
+     * @param modo Como o nome é comparado.
+     * @param cidade Cidade de algum endereço do usuário, sem diferenciar maiúsculas.
+     * @param estado UF de algum endereço do usuário.
+     * @param ddd DDD do telefone; só vale junto com o número.
+     * @param numero Número de algum telefone do usuário.
+     * @param aposId Id do último usuário da página anterior, ou null na primeira página.
+     * @param limite Tamanho da página, ou null para usuario.busca.limite-padrao.
+     * @return A página com os usuários em ordem de id e o id para pedir a próxima.
+     * @throws IllegalArgumentException se os filtros ou o limite forem inválidos.
+     */
+    public PaginaUsuariosDTO busca(String nome, ModoBusca modo, String cidade, String estado, String ddd, String numero,
+                                   Long aposId, Integer limite) {
+        Filtro filtro = new Filtro(normaliza(nome), modo == ModoBusca.APROXIMADO, normaliza(cidade), normaliza(estado),
+                normaliza(ddd), normaliza(numero));
+        valida(filtro);
+        int tamanho = limite != null ? limite : limitePadrao;
+        if (tamanho < 1 || tamanho > limiteMaximo) {
+            throw new IllegalArgumentException("O limite deve ficar entre 1 e " + limiteMaximo);
+        }
+        long inicio = aposId != null ? aposId : 0;
+
+        Map<Long, UsuarioEncontrado> encontrados = new TreeMap<>();
+        shardUsuario.emTodosEmParalelo(shard -> leituraReplica.executa(null, () -> buscaUsuarioRepository.busca(filtro, inicio, tamanho)))
+                .forEach(pagina -> pagina.forEach(usuario -> encontrados.putIfAbsent(usuario.id(), usuario)));
+
+        List<UsuarioResumoDTO> itens = encontrados.values().stream()
+                .limit(tamanho)
+                .map(usuario -> new UsuarioResumoDTO(usuario.id(), usuario.nome(), usuario.email()))
+                .toList();
+        Long proximoId = itens.size() == tamanho ? itens.get(itens.size() - 1).getId() : null;
+        return new PaginaUsuariosDTO(itens, proximoId);
+    }
+
+    private static void valida(Filtro filtro) {
+        if (filtro.nome() == null && filtro.cidade() == null && filtro.estado() == null && filtro.numero() == null) {
+            throw new IllegalArgumentException("Informe nome, cidade, estado ou número de telefone");
+        }
+        if (filtro.nome() != null && filtro.nome().length() < MINIMO_NOME) {
+            throw new IllegalArgumentException("O nome deve ter pelo menos " + MINIMO_NOME + " letras");
+        }
+        if (filtro.ddd() != null && filtro.numero() == null) {
+            throw new IllegalArgumentException("O DDD só filtra junto com o número de telefone");
+        }
+    }
+
+    private static String normaliza(String valor) {
+        return valor == null || valor.isBlank() ? null : valor.trim();
+    }
+}
@@ -0,0 +1,129 @@
+package com.estudo_raul.java.business;
+
+import com.estudo_raul.java.business.converter.UsuarioConverter;
+import com.estudo_raul.java.business.dtos.UsuarioDTO;
+import com.estudo_raul.java.infrastructure.banco.ShardUsuario;
+import com.estudo_raul.java.infrastructure.entity.Endereco;
+import com.estudo_raul.java.infrastructure.entity.Telefone;
+import com.estudo_raul.java.infrastructure.entity.Usuario;
+import com.estudo_raul.java.infrastructure.repository.EnderecoRepository;
+import com.estudo_raul.java.infrastructure.repository.TelefoneRepository;
+import com.estudo_raul.java.infrastructure.repository.UsuarioRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Exportação de todos os usuários em NDJSON com memória limitada. A tabela é percorrida
+ * em páginas por keyset (id > último id lido), cada uma em uma transação curta de leitura;
+ * endereços e telefones de cada página são carregados com uma consulta por tabela. Com as
+ * tabelas particionadas, cada página junta a próxima página de cada shard em ordem de id.
+ */
+@Service
+public class UsuarioExportacaoService {
+
+    private final UsuarioRepository usuarioRepository;
+    private final EnderecoRepository enderecoRepository;
+    private final TelefoneRepository telefoneRepository;
+    private final UsuarioConverter usuarioConverter;
+    private final ShardUsuario shardUsuario;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transacaoLeitura;
+    private final ObjectWriter escritorUsuario;
+    private final int tamanhoPagina;
+
+    public UsuarioExportacaoService(UsuarioRepository usuarioRepository,
+                                    EnderecoRepository enderecoRepository,
+                                    TelefoneRepository telefoneRepository,
+                                    UsuarioConverter usuarioConverter,
+                                    ShardUsuario shardUsuario,
+                                    EntityManager entityManager,
+                                    PlatformTransactionManager transactionManager,
+                                    ObjectMapper objectMapper,
+                                    @Value("${usuario.exportacao.tamanho-pagina:500}") int tamanhoPagina) {
+        this.usuarioRepository = usuarioRepository;
+        this.enderecoRepository = enderecoRepository;
+        this.telefoneRepository = telefoneRepository;
+        this.usuarioConverter = usuarioConverter;
+        this.shardUsuario = shardUsuario;
+        this.entityManager = entityManager;
+        this.transacaoLeitura = new TransactionTemplate(transactionManager);
+        this.transacaoLeitura.setReadOnly(true);
+        this.escritorUsuario = objectMapper.writerFor(UsuarioDTO.class);
+        this.tamanhoPagina = tamanhoPagina;
+    }
+
+    /**
+     * Escreve um UsuarioDTO por linha, sem a senha, em ordem de id.
+     * * @param aPartirDeId Exporta apenas usuários com id maior que este (permite retomar uma exportação).
+     * @param saida Onde as linhas são escritas.
+     * @throws IOException se a escrita falhar.
+     */
+    public void exporta(Long aPartirDeId, OutputStream saida) throws IOException {
+        Long ultimoId = aPartirDeId;
+        while (true) {
+            final Long inicio = ultimoId;
+            // Os ids são únicos entre shards, então o último id escrito continua servindo para retomar;
+            // o que passa do tamanho da página é relido na próxima volta
+            List<UsuarioDTO> pagina = shardUsuario.emTodos(shard -> transacaoLeitura.execute(status -> carregaPagina(inicio)))
+                    .stream()
+                    .flatMap(List::stream)
+                    .sorted(Comparator.comparing(UsuarioDTO::getId))
+                    .limit(tamanhoPagina)
+                    .toList();
+            if (pagina.isEmpty()) {
+                return;
+            }
+            for (UsuarioDTO usuario : pagina) {
+                saida.write(escritorUsuario.writeValueAsBytes(usuario));
+                saida.write('\n');
+            }
+            saida.flush();
+            ultimoId = pagina.get(pagina.size() - 1).getId();
+        }
+    }
+
+    private List<UsuarioDTO> carregaPagina(Long ultimoId) {
+        List<Usuario> usuarios;
+        try (Stream<Usuario> stream = usuarioRepository.findByIdGreaterThanOrderByIdAsc(ultimoId, Limit.of(tamanhoPagina))) {
+            usuarios = stream.toList();
+        }
+        if (usuarios.isEmpty()) {
+            return List.of();
+        }
+
+        List<Long> ids = usuarios.stream().map(Usuario::getId).toList();
+        Map<Long, List<Endereco>> enderecos = enderecoRepository.findByUsuarioIds(ids).stream()
+                .collect(Collectors.groupingBy(Endereco::getUsuario_id));
+        Map<Long, List<Telefone>> telefones = telefoneRepository.findByUsuarioIds(ids).stream()
+                .collect(Collectors.groupingBy(Telefone::getUsuario_id));
+
+        // Monta os DTOs sem tocar nas coleções lazy da entidade, que gerariam um select por usuário
+        List<UsuarioDTO> pagina = usuarios.stream()
+                .map(usuario -> UsuarioDTO.builder()
+                        .id(usuario.getId())
+                        .nome(usuario.getNome())
+                        .email(usuario.getEmail())
+                        .enderecos(usuarioConverter.paraListaEnderecoDTO(enderecos.getOrDefault(usuario.getId(), List.of())))
+                        .telefones(usuarioConverter.paraListaTelefoneDTO(telefones.getOrDefault(usuario.getId(), List.of())))
+                        .build())
+                .toList();
+
+        // Solta as entidades da página para o contexto de persistência não crescer durante a exportação
+        entityManager.clear();
+        return pagina;
+    }
+}
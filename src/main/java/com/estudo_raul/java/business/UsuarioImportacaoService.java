@@ -0,0 +1,299 @@
+package com.estudo_raul.java.business;
+
+import com.estudo_raul.java.business.cache.EmailsCadastradosFiltro;
+import com.estudo_raul.java.business.converter.UsuarioConverter;
+import com.estudo_raul.java.business.dtos.Cadastro;
+import com.estudo_raul.java.business.dtos.EnderecoDTO;
+import com.estudo_raul.java.business.dtos.ResultadoItemDTO;
+import com.estudo_raul.java.business.dtos.StatusItem;
+import com.estudo_raul.java.business.dtos.UsuarioDTO;
+import com.estudo_raul.java.infrastructure.banco.LeituraReplica;
+import com.estudo_raul.java.infrastructure.banco.ShardUsuario;
+import com.estudo_raul.java.infrastructure.entity.Endereco;
+import com.estudo_raul.java.infrastructure.entity.Telefone;
+import com.estudo_raul.java.infrastructure.entity.Usuario;
+import com.estudo_raul.java.infrastructure.eventos.EventoUsuario;
+import com.estudo_raul.java.infrastructure.eventos.SaidaEventos;
+import com.estudo_raul.java.infrastructure.repository.UsuarioLoteRepository;
+import com.estudo_raul.java.infrastructure.repository.UsuarioRepository;
+import com.estudo_raul.java.infrastructure.security.PasswordEncoderLimitado;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Importação de usuários em massa a partir de um arquivo NDJSON (um UsuarioDTO por linha).
+ * O arquivo é lido em lotes: cada lote verifica os e-mails com uma única consulta, codifica
+ * as senhas em paralelo e grava usuários, endereços e telefones com inserts em batch.
+ * O resultado de cada linha é escrito na saída, também em NDJSON, conforme os lotes terminam.
+ */
+@Service
+public class UsuarioImportacaoService {
+
+    private final UsuarioRepository usuarioRepository;
+    private final UsuarioLoteRepository usuarioLoteRepository;
+    private final UsuarioConverter usuarioConverter;
+    private final EmailsCadastradosFiltro emailsCadastradosFiltro;
+    private final LeituraReplica leituraReplica;
+    private final ShardUsuario shardUsuario;
+    private final PasswordEncoderLimitado passwordEncoder;
+    private final TransactionTemplate transactionTemplate;
+    private final SaidaEventos saidaEventos;
+    private final Validator validator;
+    private final ObjectReader leitorUsuario;
+    private final ObjectWriter escritorResultado;
+    private final int tamanhoLote;
+
+    public UsuarioImportacaoService(UsuarioRepository usuarioRepository,
+                                   UsuarioLoteRepository usuarioLoteRepository,
+                                   UsuarioConverter usuarioConverter,
+                                   EmailsCadastradosFiltro emailsCadastradosFiltro,
+                                   LeituraReplica leituraReplica,
+                                   ShardUsuario shardUsuario,
+                                   PasswordEncoderLimitado passwordEncoder,
+                                   TransactionTemplate transactionTemplate,
+                                   SaidaEventos saidaEventos,
+                                   Validator validator,
+                                   ObjectMapper objectMapper,
+                                   @Value("${usuario.importacao.tamanho-lote:500}") int tamanhoLote) {
+        this.usuarioRepository = usuarioRepository;
+        this.usuarioLoteRepository = usuarioLoteRepository;
+        this.usuarioConverter = usuarioConverter;
+        this.emailsCadastradosFiltro = emailsCadastradosFiltro;
+        this.leituraReplica = leituraReplica;
+        this.shardUsuario = shardUsuario;
+        // Os hashes da importação vão para o pool de lote do encoder, separado da fila do login
+        this.passwordEncoder = passwordEncoder;
+        this.transactionTemplate = transactionTemplate;
+        this.saidaEventos = saidaEventos;
+        this.validator = validator;
+        this.leitorUsuario = objectMapper.readerFor(UsuarioDTO.class);
+        this.escritorResultado = objectMapper.writerFor(ResultadoItemDTO.class);
+        this.tamanhoLote = tamanhoLote;
+    }
+
+    /**
+     * Lê o NDJSON da entrada e escreve um ResultadoItemDTO por linha na saída.
+     * * @param entrada O corpo da requisição com um usuário por linha.
+     * @param saida Onde o relatório por linha é escrito.
+     * @throws IOException se a leitura ou a escrita falharem.
+     */
+    public void importa(InputStream entrada, OutputStream saida) throws IOException {
+        BufferedReader leitor = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8));
+        List<Linha> lote = new ArrayList<>(tamanhoLote);
+        long indice = 0;
+        String conteudo;
+
+        while ((conteudo = leitor.readLine()) != null) {
+            indice++;
+            if (conteudo.isBlank()) {
+                continue;
+            }
+            lote.add(leLinha(indice, conteudo));
+            if (lote.size() == tamanhoLote) {
+                escreve(processaLote(lote), saida);
+                lote.clear();
+            }
+        }
+        if (!lote.isEmpty()) {
+            escreve(processaLote(lote), saida);
+        }
+    }
+
+    private Linha leLinha(long indice, String conteudo) {
+        try {
+            UsuarioDTO dto = leitorUsuario.readValue(conteudo);
+            return new Linha(indice, dto, valida(dto));
+        } catch (JsonProcessingException e) {
+            return new Linha(indice, null, "JSON inválido: " + e.getOriginalMessage());
+        }
+    }
+
+    // Regras de inclusão do DTO (tamanhos das colunas, endereço vazio, telefone sem número); com cep.recusa-desconhecido=true,
+    // CEPs fora do índice local
+    private String valida(UsuarioDTO dto) {
+        if (dto.getEmail() == null || dto.getEmail().isBlank()) {
+            return "Email obrigatório";
+        }
+        if (dto.getSenha() == null || dto.getSenha().isEmpty()) {
+            return "Senha obrigatória";
+        }
+        String erroRegra = validator.validate(dto, Cadastro.class).stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .findFirst()
+                .orElse(null);
+        if (erroRegra != null) {
+            return erroRegra;
+        }
+        if (dto.getEnderecos() != null) {
+            for (EnderecoDTO endereco : dto.getEnderecos()) {
+                String erroCep = endereco != null ? usuarioConverter.validaCep(endereco.getCep()) : null;
+                if (erroCep != null) {
+                    return erroCep;
+                }
+            }
+        }
+        return null;
+    }
+
+    private List<ResultadoItemDTO> processaLote(List<Linha> lote) {
+        List<ResultadoItemDTO> resultados = new ArrayList<>(lote.size());
+        List<Linha> validas = new ArrayList<>(lote.size());
+        Set<String> emailsDoLote = new HashSet<>();
+
+        for (Linha linha : lote) {
+            if (linha.erro() != null) {
+                resultados.add(resultado(linha, StatusItem.INVALIDO, linha.erro()));
+            } else if (!emailsDoLote.add(linha.dto().getEmail())) {
+                resultados.add(resultado(linha, StatusItem.CONFLITO, "Email repetido no arquivo: " + linha.dto().getEmail()));
+            } else {
+                validas.add(linha);
+            }
+        }
+
+        // Uma consulta por shard no lugar de um existsByEmail por usuário
+        Set<String> existentes = new HashSet<>();
+        shardUsuario.agrupa(emailsDoLote, email -> email).forEach((shard, emails) -> existentes.addAll(
+                shardUsuario.executaNoShard(shard, () -> usuarioRepository.findEmailsExistentes(emails))));
+        List<Linha> novas = new ArrayList<>(validas.size());
+        for (Linha linha : validas) {
+            if (existentes.contains(linha.dto().getEmail())) {
+                resultados.add(resultado(linha, StatusItem.CONFLITO, "Email já cadastrado: " + linha.dto().getEmail()));
+            } else {
+                novas.add(linha);
+            }
+        }
+
+        List<Usuario> usuarios = codificaEConverte(novas);
+        List<Integer> posicoes = IntStream.range(0, novas.size()).boxed().toList();
+        shardUsuario.agrupa(posicoes, i -> novas.get(i).dto().getEmail()).forEach((shard, doShard) -> resultados.addAll(
+                gravaNoShard(shard, doShard.stream().map(novas::get).toList(), doShard.stream().map(usuarios::get).toList())));
+
+        resultados.sort((a, b) -> Long.compare(a.getIndice(), b.getIndice()));
+        return resultados;
+    }
+
+    // Uma transação por shard com os usuários que moram nele
+    private List<ResultadoItemDTO> gravaNoShard(int shard, List<Linha> linhas, List<Usuario> usuarios) {
+        List<ResultadoItemDTO> resultados = new ArrayList<>(linhas.size());
+        try {
+            shardUsuario.executaNoShard(shard, () -> transactionTemplate.execute(status -> grava(usuarios)));
+            for (int i = 0; i < linhas.size(); i++) {
+                resultados.add(criado(linhas.get(i), usuarios.get(i)));
+            }
+        } catch (DataIntegrityViolationException e) {
+            // Algum registro violou uma restrição (e-mail ou telefone duplicado por concorrência):
+            // regrava o lote linha a linha para saber qual
+            for (int i = 0; i < linhas.size(); i++) {
+                resultados.add(gravaIndividual(linhas.get(i), usuarios.get(i)));
+            }
+        }
+        return resultados;
+    }
+
+    // Codifica as senhas em paralelo no pool de importação do encoder e monta as entidades
+    private List<Usuario> codificaEConverte(List<Linha> linhas) {
+        List<String> senhas = passwordEncoder.codificaLote(linhas.stream().map(linha -> linha.dto().getSenha()).toList());
+
+        List<Usuario> usuarios = new ArrayList<>(linhas.size());
+        for (int i = 0; i < linhas.size(); i++) {
+            UsuarioDTO dto = linhas.get(i).dto();
+            dto.setSenha(senhas.get(i));
+            dto.setEnderecos(dto.getEnderecos() != null ? dto.getEnderecos() : List.of());
+            dto.setTelefones(dto.getTelefones() != null ? dto.getTelefones() : List.of());
+            usuarios.add(usuarioConverter.paraUsuario(dto));
+        }
+        return usuarios;
+    }
+
+    private List<Usuario> grava(List<Usuario> usuarios) {
+        if (usuarios.isEmpty()) {
+            return usuarios;
+        }
+        usuarioLoteRepository.insereUsuarios(usuarios);
+
+        List<Endereco> enderecos = new ArrayList<>();
+        List<Telefone> telefones = new ArrayList<>();
+        for (Usuario usuario : usuarios) {
+            for (Endereco endereco : usuario.getEnderecos()) {
+                endereco.setUsuario_id(usuario.getId());
+                enderecos.add(endereco);
+            }
+            for (Telefone telefone : usuario.getTelefones()) {
+                telefone.setUsuario_id(usuario.getId());
+                telefones.add(telefone);
+            }
+        }
+        usuarioLoteRepository.insereEnderecos(enderecos);
+        usuarioLoteRepository.insereTelefones(telefones);
+        saidaEventos.registra(usuarios.stream().flatMap(usuario -> EventoUsuario.cadastro(usuario).stream()).toList());
+        return usuarios;
+    }
+
+    private ResultadoItemDTO gravaIndividual(Linha linha, Usuario usuario) {
+        try {
+            shardUsuario.executa(usuario.getEmail(), () -> transactionTemplate.execute(status -> grava(List.of(usuario))));
+            return criado(linha, usuario);
+        } catch (DuplicateKeyException e) {
+            return resultado(linha, StatusItem.CONFLITO, "Email ou telefone já cadastrado: " + linha.dto().getEmail());
+        } catch (DataIntegrityViolationException e) {
+            // Outra restrição (tamanho, campo obrigatório): a linha é que está errada, não há conflito
+            return resultado(linha, StatusItem.INVALIDO, "Dados fora dos limites aceitos: " + linha.dto().getEmail());
+        } catch (RuntimeException e) {
+            return resultado(linha, StatusItem.ERRO, e.getMessage());
+        }
+    }
+
+    // Só chamado depois do commit: o e-mail entra no filtro e o primeiro login lê do primário
+    private ResultadoItemDTO criado(Linha linha, Usuario usuario) {
+        emailsCadastradosFiltro.inclui(usuario.getEmail());
+        leituraReplica.registraEscrita(usuario.getEmail());
+        return ResultadoItemDTO.builder()
+                .indice(linha.indice())
+                .chave(usuario.getEmail())
+                .id(usuario.getId())
+                .status(StatusItem.CRIADO)
+                .build();
+    }
+
+    private ResultadoItemDTO resultado(Linha linha, StatusItem status, String mensagem) {
+        return ResultadoItemDTO.builder()
+                .indice(linha.indice())
+                .chave(linha.dto() != null ? linha.dto().getEmail() : null)
+                .status(status)
+                .mensagem(mensagem)
+                .build();
+    }
+
+    private void escreve(List<ResultadoItemDTO> resultados, OutputStream saida) throws IOException {
+        for (ResultadoItemDTO resultado : resultados) {
+            saida.write(escritorResultado.writeValueAsBytes(resultado));
+            saida.write('\n');
+        }
+        saida.flush();
+    }
+
+    private record Linha(long indice, UsuarioDTO dto, String erro) {
+    }
+}
@@ -0,0 +1,391 @@
+package com.estudo_raul.java.business;
+
+import com.estudo_raul.java.business.cache.UsuarioPerfilCache;
+import com.estudo_raul.java.business.converter.UsuarioConverter;
+import com.estudo_raul.java.business.dtos.Cadastro;
+import com.estudo_raul.java.business.dtos.EnderecoDTO;
+import com.estudo_raul.java.business.dtos.ModoLote;
+import com.estudo_raul.java.business.dtos.ResultadoItemDTO;
+import com.estudo_raul.java.business.dtos.ResultadoLoteDTO;
+import com.estudo_raul.java.business.dtos.StatusItem;
+import com.estudo_raul.java.business.dtos.TelefoneDTO;
+import com.estudo_raul.java.infrastructure.banco.ShardUsuario;
+import com.estudo_raul.java.infrastructure.entity.Endereco;
+import com.estudo_raul.java.infrastructure.entity.Telefone;
+import com.estudo_raul.java.infrastructure.eventos.EventoUsuario;
+import com.estudo_raul.java.infrastructure.eventos.SaidaEventos;
+import com.estudo_raul.java.infrastructure.exceptions.ConflictException;
+import com.estudo_raul.java.infrastructure.exceptions.ResourceNotFoundException;
+import com.estudo_raul.java.infrastructure.repository.AtualizacaoParcialRepository;
+import com.estudo_raul.java.infrastructure.repository.EnderecoRepository;
+import com.estudo_raul.java.infrastructure.repository.TelefoneRepository;
+import com.estudo_raul.java.infrastructure.repository.UsuarioLoteRepository;
+import com.estudo_raul.java.infrastructure.repository.UsuarioRepository;
+import com.estudo_raul.java.infrastructure.security.JwtUtil;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import jakarta.validation.groups.Default;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Gravação de vários endereços ou telefones do usuário do token em uma chamada. O usuário
+ * é resolvido uma vez, os itens são validados um a um (os inválidos são relatados e não
+ * impedem os demais) e remoções, atualizações e inclusões são feitas com batches JDBC
+ * em uma única transação, junto com um evento de alteração por endereço ou telefone afetado
+ * e uma nova versão do perfil do usuário, se o lote mudou alguma coisa.
+ */
+@Service
+public class UsuarioLoteService {
+
+    private final UsuarioRepository usuarioRepository;
+    private final EnderecoRepository enderecoRepository;
+    private final TelefoneRepository telefoneRepository;
+    private final UsuarioLoteRepository usuarioLoteRepository;
+    private final AtualizacaoParcialRepository atualizacaoParcialRepository;
+    private final UsuarioConverter usuarioConverter;
+    private final JwtUtil jwtUtil;
+    private final UsuarioPerfilCache usuarioPerfilCache;
+    private final TransactionTemplate transactionTemplate;
+    private final ShardUsuario shardUsuario;
+    private final SaidaEventos saidaEventos;
+    private final Validator validator;
+    private final int tamanhoMaximo;
+
+    public UsuarioLoteService(UsuarioRepository usuarioRepository,
+                              EnderecoRepository enderecoRepository,
+                              TelefoneRepository telefoneRepository,
+                              UsuarioLoteRepository usuarioLoteRepository,
+                              AtualizacaoParcialRepository atualizacaoParcialRepository,
+                              UsuarioConverter usuarioConverter,
+                              JwtUtil jwtUtil,
+                              UsuarioPerfilCache usuarioPerfilCache,
+                              TransactionTemplate transactionTemplate,
+                              ShardUsuario shardUsuario,
+                              SaidaEventos saidaEventos,
+                              Validator validator,
+                              @Value("${usuario.lote.tamanho-maximo:1000}") int tamanhoMaximo) {
+        this.usuarioRepository = usuarioRepository;
+        this.enderecoRepository = enderecoRepository;
+        this.telefoneRepository = telefoneRepository;
+        this.usuarioLoteRepository = usuarioLoteRepository;
+        this.atualizacaoParcialRepository = atualizacaoParcialRepository;
+        this.usuarioConverter = usuarioConverter;
+        this.jwtUtil = jwtUtil;
+        this.usuarioPerfilCache = usuarioPerfilCache;
+        this.transactionTemplate = transactionTemplate;
+        this.shardUsuario = shardUsuario;
+        this.saidaEventos = saidaEventos;
+        this.validator = validator;
+        this.tamanhoMaximo = tamanhoMaximo;
+    }
+
+    /**
+     * Grava uma lista de endereços do usuário do token conforme o modo.
+     * * @param token O token de autorização (incluindo "Bearer ").
+     * @param enderecos Os endereços; no modo REMOVER_AUSENTES, os que têm id são atualizados só nos campos
+     * informados e, se trouxerem a versão lida, só se o endereço não mudou desde então (senão, CONFLITO no item).
+     * @param modo Como a lista se combina com os endereços já cadastrados.
+     * @return O resultado de cada item e quantos endereços foram removidos.
+     * @throws ResourceNotFoundException se o e-mail do token não for encontrado.
+     * @throws ConflictException se outra alteração concorrente impedir a gravação do lote.
+     */
+    public ResultadoLoteDTO gravaEnderecos(String token, List<EnderecoDTO> enderecos, ModoLote modo) {
+        String email = jwtUtil.extrairEmailToken(token.substring(7));
+        validaTamanho(enderecos);
+        ResultadoLoteDTO resultado = executa(email, () -> gravaEnderecosDoUsuario(email, enderecos, modo));
+        usuarioPerfilCache.invalida(email);
+        return resultado;
+    }
+
+    /**
+     * Grava uma lista de telefones do usuário do token conforme o modo.
+     * * @param token O token de autorização (incluindo "Bearer ").
+     * @param telefones Os telefones; no modo REMOVER_AUSENTES, os que têm id são atualizados como os endereços.
+     * @param modo Como a lista se combina com os telefones já cadastrados.
+     * @return O resultado de cada item e quantos telefones foram removidos.
+     * @throws ResourceNotFoundException se o e-mail do token não for encontrado.
+     * @throws ConflictException se outra alteração concorrente impedir a gravação do lote.
+     */
+    public ResultadoLoteDTO gravaTelefones(String token, List<TelefoneDTO> telefones, ModoLote modo) {
+        String email = jwtUtil.extrairEmailToken(token.substring(7));
+        validaTamanho(telefones);
+        ResultadoLoteDTO resultado = executa(email, () -> gravaTelefonesDoUsuario(email, telefones, modo));
+        usuarioPerfilCache.invalida(email);
+        return resultado;
+    }
+
+    private ResultadoLoteDTO gravaEnderecosDoUsuario(String email, List<EnderecoDTO> dtos, ModoLote modo) {
+        Long usuarioId = buscaUsuarioId(email);
+        Set<Long> cadastrados = modo == ModoLote.REMOVER_AUSENTES
+                ? new HashSet<>(enderecoRepository.findIdsByUsuarioId(usuarioId)) : Set.of();
+
+        ResultadoItemDTO[] resultados = new ResultadoItemDTO[dtos.size()];
+        Set<Long> manter = new HashSet<>();
+        List<Pendente<Endereco>> pendentes = new ArrayList<>();
+
+        for (int i = 0; i < dtos.size(); i++) {
+            EnderecoDTO dto = dtos.get(i);
+            String chave = dto != null ? chaveEndereco(dto) : null;
+            boolean atualizacao = modo == ModoLote.REMOVER_AUSENTES && dto != null && dto.getId() != null;
+            // Um item com id, mesmo inválido, mantém o endereço: um erro de validação não pode apagar dados
+            if (atualizacao && !manter.add(dto.getId())) {
+                resultados[i] = resultado(i, chave, dto.getId(), StatusItem.CONFLITO, "Id repetido no lote: " + dto.getId());
+                continue;
+            }
+            String erro = validaEndereco(dto, atualizacao);
+            if (erro == null && atualizacao && !cadastrados.contains(dto.getId())) {
+                erro = "Endereço não encontrado: " + dto.getId();
+            }
+            if (erro != null) {
+                resultados[i] = resultado(i, chave, dto != null ? dto.getId() : null, StatusItem.INVALIDO, erro);
+                continue;
+            }
+
+            if (atualizacao) {
+                Endereco endereco = Endereco.builder().id(dto.getId()).usuario_id(usuarioId).build();
+                pendentes.add(new Pendente<>(i, chave, endereco, usuarioConverter.paraColunasEndereco(dto), dto.getVersao()));
+            } else {
+                pendentes.add(new Pendente<>(i, chave, usuarioConverter.paraEnderecoEntity(dto, usuarioId), null, null));
+            }
+        }
+
+        // Remove antes de gravar; em SUBSTITUIR "manter" está vazio e todos saem
+        List<Long> removidos = modo == ModoLote.ADICIONAR ? List.of() : usuarioLoteRepository.removeEnderecos(usuarioId, manter);
+        List<Pendente<Endereco>> atualizados = atualiza("endereco", email, pendentes, resultados, Endereco::getId);
+        usuarioLoteRepository.insereEnderecos(entidades(pendentes, false));
+
+        List<EventoUsuario> eventos = new ArrayList<>(removidos.size() + pendentes.size());
+        removidos.forEach(id -> eventos.add(EventoUsuario.enderecoRemovido(usuarioId, email, id)));
+        for (Pendente<Endereco> pendente : atualizados) {
+            resultados[pendente.indice()] = gravado(pendente, pendente.entidade().getId());
+            if (!pendente.colunas().isEmpty()) {
+                eventos.add(EventoUsuario.enderecoAlterado(usuarioId, email, pendente.entidade().getId(), pendente.colunas()));
+            }
+        }
+        for (Pendente<Endereco> pendente : pendentes) {
+            if (!pendente.atualizacao()) {
+                resultados[pendente.indice()] = gravado(pendente, pendente.entidade().getId());
+                eventos.add(EventoUsuario.enderecoCriado(email, pendente.entidade()));
+            }
+        }
+        if (!eventos.isEmpty()) {
+            atualizacaoParcialRepository.incrementaVersaoUsuario(usuarioId);
+        }
+        saidaEventos.registra(eventos);
+        return new ResultadoLoteDTO(Arrays.asList(resultados), removidos.size());
+    }
+
+    private ResultadoLoteDTO gravaTelefonesDoUsuario(String email, List<TelefoneDTO> dtos, ModoLote modo) {
+        Long usuarioId = buscaUsuarioId(email);
+        Set<Long> cadastrados = modo == ModoLote.REMOVER_AUSENTES
+                ? new HashSet<>(telefoneRepository.findIdsByUsuarioId(usuarioId)) : Set.of();
+
+        ResultadoItemDTO[] resultados = new ResultadoItemDTO[dtos.size()];
+        Set<Long> manter = new HashSet<>();
+        Set<String> numerosDoLote = new HashSet<>();
+        List<Pendente<Telefone>> validos = new ArrayList<>();
+
+        for (int i = 0; i < dtos.size(); i++) {
+            TelefoneDTO dto = dtos.get(i);
+            String chave = dto != null ? dto.getNumero() : null;
+            boolean atualizacao = modo == ModoLote.REMOVER_AUSENTES && dto != null && dto.getId() != null;
+            if (atualizacao && !manter.add(dto.getId())) {
+                resultados[i] = resultado(i, chave, dto.getId(), StatusItem.CONFLITO, "Id repetido no lote: " + dto.getId());
+                continue;
+            }
+            String erro = validaTelefone(dto, atualizacao);
+            if (erro == null && atualizacao && !cadastrados.contains(dto.getId())) {
+                erro = "Telefone não encontrado: " + dto.getId();
+            }
+            if (erro != null) {
+                resultados[i] = resultado(i, chave, dto != null ? dto.getId() : null, StatusItem.INVALIDO, erro);
+                continue;
+            }
+            // Uma atualização sem número mantém o número atual e não entra na checagem de números
+            if (chave != null && !numerosDoLote.add(chave)) {
+                resultados[i] = resultado(i, chave, dto.getId(), StatusItem.CONFLITO, "Número repetido no lote: " + chave);
+                continue;
+            }
+
+            if (atualizacao) {
+                Telefone telefone = Telefone.builder().id(dto.getId()).numero(chave).usuario_id(usuarioId).build();
+                validos.add(new Pendente<>(i, chave, telefone, usuarioConverter.paraColunasTelefone(dto), dto.getVersao()));
+            } else {
+                validos.add(new Pendente<>(i, chave, usuarioConverter.paraTelefoneEntity(dto, usuarioId), null, null));
+            }
+        }
+
+        // O número é único na tabela: uma consulta pelos donos atuais de todos os números do lote
+        Map<String, Telefone> donos = new HashMap<>();
+        if (!numerosDoLote.isEmpty()) {
+            telefoneRepository.findByNumeroIn(numerosDoLote).forEach(telefone -> donos.put(telefone.getNumero(), telefone));
+        }
+        List<Pendente<Telefone>> pendentes = new ArrayList<>(validos.size());
+        for (Pendente<Telefone> pendente : validos) {
+            Telefone dono = pendente.chave() != null ? donos.get(pendente.chave()) : null;
+            if (dono == null || numeroLiberado(dono, pendente, usuarioId, modo, manter)) {
+                pendentes.add(pendente);
+            } else {
+                resultados[pendente.indice()] = resultado(pendente.indice(), pendente.chave(), pendente.entidade().getId(),
+                        StatusItem.CONFLITO, "Telefone já cadastrado: " + pendente.chave());
+            }
+        }
+
+        List<Long> removidos = modo == ModoLote.ADICIONAR ? List.of() : usuarioLoteRepository.removeTelefones(usuarioId, manter);
+        List<Pendente<Telefone>> atualizados = atualiza("telefone", email, pendentes, resultados, Telefone::getId);
+        usuarioLoteRepository.insereTelefones(entidades(pendentes, false));
+
+        List<EventoUsuario> eventos = new ArrayList<>(removidos.size() + pendentes.size());
+        removidos.forEach(id -> eventos.add(EventoUsuario.telefoneRemovido(usuarioId, email, id)));
+        for (Pendente<Telefone> pendente : atualizados) {
+            resultados[pendente.indice()] = gravado(pendente, pendente.entidade().getId());
+            if (!pendente.colunas().isEmpty()) {
+                eventos.add(EventoUsuario.telefoneAlterado(usuarioId, email, pendente.entidade().getId(), pendente.colunas()));
+            }
+        }
+        for (Pendente<Telefone> pendente : pendentes) {
+            if (!pendente.atualizacao()) {
+                resultados[pendente.indice()] = gravado(pendente, pendente.entidade().getId());
+                eventos.add(EventoUsuario.telefoneCriado(email, pendente.entidade()));
+            }
+        }
+        if (!eventos.isEmpty()) {
+            atualizacaoParcialRepository.incrementaVersaoUsuario(usuarioId);
+        }
+        saidaEventos.registra(eventos);
+        return new ResultadoLoteDTO(Arrays.asList(resultados), removidos.size());
+    }
+
+    // Um número já cadastrado pode ser usado se for do próprio item ou de um telefone do usuário que este lote remove
+    private boolean numeroLiberado(Telefone dono, Pendente<Telefone> pendente, Long usuarioId, ModoLote modo, Set<Long> manter) {
+        if (!dono.getUsuario_id().equals(usuarioId)) {
+            return false;
+        }
+        return switch (modo) {
+            case ADICIONAR -> false;
+            case SUBSTITUIR -> true;
+            case REMOVER_AUSENTES -> dono.getId().equals(pendente.entidade().getId()) || !manter.contains(dono.getId());
+        };
+    }
+
+    private ResultadoLoteDTO executa(String email, Supplier<ResultadoLoteDTO> gravacao) {
+        try {
+            return shardUsuario.executa(email, () -> transactionTemplate.execute(status -> gravacao.get()));
+        } catch (DuplicateKeyException e) {
+            // Só acontece se outra requisição gravar o mesmo número entre a checagem e o insert; nada do lote fica gravado
+            throw new ConflictException("Lote não gravado: conflito com outra alteração, tente novamente", e);
+        }
+    }
+
+    /**
+     * Aplica as atualizações do lote como as edições de um item: só as colunas informadas, e
+     * só se a versão enviada ainda for a atual. Um item sem colunas não gera versão nem evento.
+     * * @return As atualizações gravadas; as recusadas pela versão já saem como CONFLITO em resultados.
+     */
+    private <T> List<Pendente<T>> atualiza(String tabela, String email, List<Pendente<T>> pendentes,
+                                          ResultadoItemDTO[] resultados, Function<T, Long> id) {
+        List<Pendente<T>> atualizacoes = pendentes.stream().filter(Pendente::atualizacao).toList();
+        List<Pendente<T>> comColunas = atualizacoes.stream().filter(pendente -> !pendente.colunas().isEmpty()).toList();
+        int[] afetadas = atualizacaoParcialRepository.atualizaEmLote(tabela, comColunas.stream()
+                .map(pendente -> new AtualizacaoParcialRepository.AtualizacaoLinha(id.apply(pendente.entidade()), email,
+                        pendente.colunas(), pendente.versao()))
+                .toList());
+
+        List<Pendente<T>> gravadas = new ArrayList<>(atualizacoes.size());
+        atualizacoes.stream().filter(pendente -> pendente.colunas().isEmpty()).forEach(gravadas::add);
+        for (int i = 0; i < comColunas.size(); i++) {
+            Pendente<T> pendente = comColunas.get(i);
+            if (afetadas[i] > 0) {
+                gravadas.add(pendente);
+            } else {
+                resultados[pendente.indice()] = resultado(pendente.indice(), pendente.chave(), id.apply(pendente.entidade()),
+                        StatusItem.CONFLITO, "Registro alterado por outra requisição; busque a versão atual e tente novamente");
+            }
+        }
+        return gravadas;
+    }
+
+    private Long buscaUsuarioId(String email) {
+        return usuarioRepository.findIdByEmail(email).orElseThrow(() ->
+                new ResourceNotFoundException("Email não localizado: " + email));
+    }
+
+    private void validaTamanho(List<?> itens) {
+        if (itens.size() > tamanhoMaximo) {
+            throw new IllegalArgumentException("Lote com " + itens.size() + " itens; o máximo é " + tamanhoMaximo);
+        }
+    }
+
+    // Regras do DTO, as mesmas dos endpoints de um item: de inclusão (Cadastro) para itens novos e só os tamanhos
+    // para atualizações parciais; o lote só confere à mão o que é dele (ids, números repetidos)
+    private String validaEndereco(EnderecoDTO dto, boolean atualizacao) {
+        if (dto == null) {
+            return "Endereço vazio";
+        }
+        String erro = valida(dto, atualizacao);
+        return erro != null ? erro : usuarioConverter.validaCep(dto.getCep());
+    }
+
+    private String validaTelefone(TelefoneDTO dto, boolean atualizacao) {
+        if (dto == null) {
+            return "Número obrigatório";
+        }
+        return valida(dto, atualizacao);
+    }
+
+    private String valida(Object dto, boolean atualizacao) {
+        return validator.validate(dto, atualizacao ? Default.class : Cadastro.class).stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .findFirst()
+                .orElse(null);
+    }
+
+    private String chaveEndereco(EnderecoDTO dto) {
+        return dto.getRua() != null && dto.getNumero() != null ? dto.getRua() + ", " + dto.getNumero() : dto.getRua();
+    }
+
+    private <T> List<T> entidades(List<Pendente<T>> pendentes, boolean atualizacao) {
+        return pendentes.stream()
+                .filter(pendente -> pendente.atualizacao() == atualizacao)
+                .map(Pendente::entidade)
+                .toList();
+    }
+
+    private ResultadoItemDTO gravado(Pendente<?> pendente, Long id) {
+        return resultado(pendente.indice(), pendente.chave(), id,
+                pendente.atualizacao() ? StatusItem.ATUALIZADO : StatusItem.CRIADO, null);
+    }
+
+    private ResultadoItemDTO resultado(int indice, String chave, Long id, StatusItem status, String mensagem) {
+        return ResultadoItemDTO.builder()
+                .indice(indice)
+                .chave(chave)
+                .id(id)
+                .status(status)
+                .mensagem(mensagem)
+                .build();
+    }
+
+    // Item válido aguardando gravação, com a posição na lista recebida; uma atualização traz as colunas
+    // informadas e a versão lida (ou null para não conferir), uma inclusão traz colunas null
+    private record Pendente<T>(int indice, String chave, T entidade, Map<String, Object> colunas, Long versao) {
+
+        boolean atualizacao() {
+            return colunas != null;
+        }
+    }
+}
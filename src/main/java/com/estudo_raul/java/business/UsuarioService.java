@@ -1,5 +1,7 @@
 package com.estudo_raul.java.business;
 
+import com.estudo_raul.java.business.cache.EmailsCadastradosFiltro;
+import com.estudo_raul.java.business.cache.UsuarioPerfilCache;
 import com.estudo_raul.java.business.converter.UsuarioConverter;
 import com.estudo_raul.java.business.dtos.EnderecoDTO;
 import com.estudo_raul.java.business.dtos.TelefoneDTO;
@@ -7,19 +9,35 @@ import com.estudo_raul.java.business.dtos.UsuarioDTO;
 import com.estudo_raul.java.infrastructure.entity.Endereco;
 import com.estudo_raul.java.infrastructure.entity.Telefone;
 import com.estudo_raul.java.infrastructure.entity.Usuario;
+import com.estudo_raul.java.infrastructure.banco.LeituraReplica;
+import com.estudo_raul.java.infrastructure.banco.ReorganizacaoShards;
+import com.estudo_raul.java.infrastructure.banco.ShardUsuario;
+import com.estudo_raul.java.infrastructure.eventos.EventoUsuario;
+import com.estudo_raul.java.infrastructure.eventos.SaidaEventos;
 import com.estudo_raul.java.infrastructure.exceptions.ConflictException;
 import com.estudo_raul.java.infrastructure.exceptions.ResourceNotFoundException;
+import com.estudo_raul.java.infrastructure.repository.AtualizacaoParcialRepository;
 import com.estudo_raul.java.infrastructure.repository.EnderecoRepository;
 import com.estudo_raul.java.infrastructure.repository.TelefoneRepository;
+import com.estudo_raul.java.infrastructure.repository.UsuarioLoteRepository;
 import com.estudo_raul.java.infrastructure.repository.UsuarioRepository;
 import com.estudo_raul.java.infrastructure.security.JwtUtil;
+import com.estudo_raul.java.infrastructure.security.RevogacaoTokenService;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 
 @Service
 @RequiredArgsConstructor
+@Timed("usuario.service") // Um timer por método público, com as tags class e method
 public class UsuarioService {
 
     private final UsuarioRepository usuarioRepository;
@@ -28,26 +46,70 @@ public class UsuarioService {
     private final JwtUtil jwtUtil;
     private final EnderecoRepository enderecoRepository;
     private final TelefoneRepository telefoneRepository;
+    private final RevogacaoTokenService revogacaoTokenService;
+    private final UsuarioPerfilCache usuarioPerfilCache;
+    private final AtualizacaoParcialRepository atualizacaoParcialRepository;
+    private final EmailsCadastradosFiltro emailsCadastradosFiltro;
+    private final UsuarioLoteRepository usuarioLoteRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final EscritaAdiadaService escritaAdiadaService;
+    private final LeituraReplica leituraReplica;
+    private final ShardUsuario shardUsuario;
+    private final ReorganizacaoShards reorganizacaoShards;
+    private final SaidaEventos saidaEventos;
 
 
     /**
-     * Salva um novo usuário após verificar a existência do e-mail e codificar a senha.
+     * Salva um novo usuário com endereços e telefones. O conflito de e-mail ou de telefone
+     * é decidido pelas restrições únicas no próprio insert, então cadastros simultâneos do
+     * mesmo e-mail resultam em um sucesso e ConflictException para os demais.
      * * @param usuarioDTO O DTO contendo os dados do novo usuário.
      * @return O UsuarioDTO do usuário salvo.
-     * @throws ConflictException se o e-mail já estiver cadastrado.
+     * @throws ConflictException se o e-mail ou um dos telefones já estiver cadastrado.
      */
     public UsuarioDTO salvaUsuario(UsuarioDTO usuarioDTO) {
-        // Verifica se o email já existe. Se existir, lança ConflictException.
+        // Recusa antes do hash da senha os e-mails que o filtro não descarta e o banco confirma;
+        // e-mails novos passam direto, sem consulta
         emailExiste(usuarioDTO.getEmail());
 
         // Codifica a senha antes de converter para entidade
         usuarioDTO.setSenha(passwordEncoder.encode(usuarioDTO.getSenha()));
+        usuarioDTO.setEnderecos(usuarioDTO.getEnderecos() != null ? usuarioDTO.getEnderecos() : List.of());
+        usuarioDTO.setTelefones(usuarioDTO.getTelefones() != null ? usuarioDTO.getTelefones() : List.of());
 
-        // Converte DTO para Entidade
+        // Converte DTO para Entidade e grava tudo em uma transação
         Usuario usuario = usuarioConverter.paraUsuario(usuarioDTO);
+        shardUsuario.executa(usuario.getEmail(), () -> transactionTemplate.execute(status -> insereUsuarioComFilhos(usuario)));
+
+        UsuarioDTO salvo = usuarioConverter.paraUsuarioDTO(usuario);
+        emailsCadastradosFiltro.inclui(salvo.getEmail());
+        usuarioPerfilCache.invalida(salvo.getEmail());
+        return salvo;
+    }
+
+    // Inserts com "on conflict do nothing": um conflito volta como zero linhas, sem exceção do
+    // driver; a ConflictException desfaz o que já foi gravado na transação, inclusive os eventos
+    private Usuario insereUsuarioComFilhos(Usuario usuario) {
+        if (!usuarioLoteRepository.insereUsuarioSeEmailLivre(usuario)) {
+            throw new ConflictException("Email já cadastrado: " + usuario.getEmail());
+        }
+        usuario.setVersao(0L);
+        for (Endereco endereco : usuario.getEnderecos()) {
+            endereco.setUsuario_id(usuario.getId());
+            endereco.setVersao(0L);
+        }
+        for (Telefone telefone : usuario.getTelefones()) {
+            telefone.setUsuario_id(usuario.getId());
+            telefone.setVersao(0L);
+        }
+        usuarioLoteRepository.insereEnderecos(usuario.getEnderecos());
 
-        // Salva a Entidade e converte o retorno para DTO
-        return usuarioConverter.paraUsuarioDTO(usuarioRepository.save(usuario));
+        List<String> telefonesEmUso = usuarioLoteRepository.insereTelefonesSeNumeroLivre(usuario.getTelefones());
+        if (!telefonesEmUso.isEmpty()) {
+            throw new ConflictException("Telefone já cadastrado: " + String.join(", ", telefonesEmUso));
+        }
+        saidaEventos.registra(EventoUsuario.cadastro(usuario));
+        return usuario;
     }
 
     /**
@@ -63,29 +125,82 @@ public class UsuarioService {
     }
 
     /**
-     * Consulta o repositório para verificar a existência de um e-mail.
+     * Verifica a existência de um e-mail, consultando o repositório só quando o filtro
+     * de e-mails cadastrados não descarta o e-mail.
      * * @param email O e-mail a ser consultado.
      * @return True se o e-mail existe, false caso contrário.
      */
     public boolean verificaEmailExistente(String email){
-        return usuarioRepository.existsByEmail(email);
+        if (!emailsCadastradosFiltro.podeExistir(email)) {
+            return false;
+        }
+        // Uma réplica atrasada pode não ver um cadastro recente; o insert com "on conflict" garante a unicidade
+        boolean existe = shardUsuario.executa(email, () -> leituraReplica.executa(email, () -> usuarioRepository.existsByEmail(email)));
+        if (!existe) {
+            emailsCadastradosFiltro.registraFalsoPositivo();
+        }
+        return existe;
+    }
+
+    /**
+     * Busca o perfil do usuário, passando antes pelo cache de perfis. Alterações de
+     * endereço e telefone aceitas em modo de escrita adiada já aparecem no perfil.
+     * * @param email O e-mail do usuário.
+     * @return O UsuarioDTO com endereços e telefones.
+     * @throws ResourceNotFoundException se o e-mail não for encontrado.
+     */
+    public UsuarioDTO buscaUsuarioPorEmail(String email){
+        // Falta no cache: carrega do shard do usuário, de uma réplica ou do primário se o usuário escreveu há pouco
+        UsuarioDTO perfil = usuarioPerfilCache.busca(email, chave -> shardUsuario.executa(chave,
+                () -> leituraReplica.executa(chave, () -> carregaUsuarioCompleto(chave))));
+        return escritaAdiadaService.aplicaPendentes(email, perfil);
     }
 
-    public Usuario buscaUsuarioPorEmail(String email){
-        return usuarioRepository.findByEmail(email).orElseThrow(()
+    /**
+     * Versão atual do perfil, lida só da tabela usuario, para responder um GET condicional sem
+     * carregar endereços e telefones. Vem sempre do primário: uma réplica atrasada devolveria a
+     * versão anterior e o cliente receberia 304 para um perfil que já mudou. Um perfil em cache
+     * mais antigo que essa versão (alterado por outra instância) é descartado, para a próxima
+     * leitura completa já trazer o atual.
+     * * @param email O e-mail do usuário.
+     * @return O id e a versão do usuário, com os demais campos nulos, ou vazio se o e-mail não existir.
+     */
+    public Optional<UsuarioDTO> buscaVersaoPerfil(String email){
+        return shardUsuario.executa(email, () -> usuarioRepository.findVersaoByEmail(email))
+                .map(versao -> {
+                    usuarioPerfilCache.descartaAnterior(email, versao.getId(), versao.getVersao());
+                    return UsuarioDTO.builder().id(versao.getId()).email(email).versao(versao.getVersao()).build();
+                });
+    }
+
+    // Carrega o usuário com endereços e telefones em duas consultas, sem N+1 na conversão para DTO
+    private Usuario carregaUsuarioCompleto(String email){
+        return usuarioRepository.buscaCompletoPorEmail(email).orElseThrow(()
                 -> new ResourceNotFoundException("Email não encontrado " + email));
     }
 
     public void deletaUsuarioPorEmail(String email){
-        usuarioRepository.deleteByEmail(email);
+        shardUsuario.executa(email, () -> transactionTemplate.execute(status -> {
+            usuarioRepository.findIdByEmail(email).ifPresent(id -> {
+                usuarioRepository.deleteByEmail(email);
+                saidaEventos.registra(EventoUsuario.usuarioExcluido(id, email));
+            });
+            return null;
+        }));
+        usuarioPerfilCache.invalida(email);
+
+        // Tokens já emitidos para o usuário removido deixam de ser aceitos (tabela global, fora do escopo do shard)
+        revogacaoTokenService.revoga(email);
     }
 
     /**
-     * Atualiza os dados principais do usuário com base no token JWT.
+     * Atualiza os dados principais do usuário com base no token JWT, em um único UPDATE
+     * apenas com os campos informados.
      * * @param token O token de autorização (incluindo "Bearer ").
-     * @param dto O DTO com os dados que podem ser atualizados.
-     * @return O UsuarioDTO com os dados atualizados.
+     * @param dto O DTO com os dados que podem ser atualizados e, opcionalmente, a versão lida.
+     * @return O UsuarioDTO com os dados da tabela usuario já atualizados (sem endereços e telefones).
      * @throws ResourceNotFoundException se o e-mail do token não for encontrado.
+     * @throws ConflictException se a versão informada estiver desatualizada ou o novo e-mail já estiver em uso.
      */
     public UsuarioDTO atualizaDadosUsuario(String token, UsuarioDTO dto){
         // Buscando o email do usuário através do token (removendo "Bearer ")
@@ -94,69 +209,142 @@ public class UsuarioService {
         // Criptografia de senha: só codifica se a senha foi fornecida no DTO
         dto.setSenha(dto.getSenha() != null ? passwordEncoder.encode(dto.getSenha()) : null);
 
-        // Buscamos os dados do usuário no banco de dados
-        Usuario usuarioEntity = usuarioRepository.findByEmail(email).orElseThrow(()->
-                new ResourceNotFoundException("Email não localizado: " + email));
+        // Atualiza só as colunas enviadas e recebe a linha atualizada no mesmo comando; um e-mail
+        // novo de outro shard leva o usuário, com endereços e telefones, para o shard do novo e-mail
+        Map<String, Object> colunas = usuarioConverter.paraColunasUsuario(dto);
+        boolean mudaDeShard = dto.getEmail() != null && !email.equals(dto.getEmail())
+                && shardUsuario.shardDe(dto.getEmail()) != shardUsuario.shardDe(email);
+        Usuario usuario;
+        try {
+            usuario = (mudaDeShard
+                    ? reorganizacaoShards.moveComAlteracao(email, colunas, dto.getVersao())
+                    : shardUsuario.executa(email, () -> transactionTemplate.execute(status ->
+                            atualizacaoParcialRepository.atualizaUsuario(email, colunas, dto.getVersao())
+                                    .map(alterado -> {
+                                        saidaEventos.registra(EventoUsuario.usuarioAlterado(alterado.getId(), alterado.getEmail(), colunas));
+                                        return alterado;
+                                    }))))
+                    .orElseThrow(() -> falhaAtualizacao(dto.getVersao() != null
+                                    && shardUsuario.executa(email, () -> usuarioRepository.existsByEmail(email)),
+                            "Email não encontrado " + email));
+        } catch (DuplicateKeyException e) {
+            throw new ConflictException("Email já cadastrado: " + dto.getEmail(), e);
+        }
+
+        UsuarioDTO atualizado = usuarioConverter.paraDadosUsuarioDTO(usuario);
+        usuarioPerfilCache.invalida(email);
+        usuarioPerfilCache.invalida(atualizado.getEmail());
 
-        // Mescla os dados que recebemos na requisição DTO com os dados do banco de dados (Entidade)
-        Usuario usuario = usuarioConverter.updateUsuario(dto, usuarioEntity);
+        // O e-mail antigo fica no filtro até a próxima reconstrução
+        if (!email.equals(atualizado.getEmail())) {
+            emailsCadastradosFiltro.inclui(atualizado.getEmail());
+        }
 
-        // Salva a entidade mesclada e converte o retorno para UsuarioDTO
-        return usuarioConverter.paraUsuarioDTO(usuarioRepository.save(usuario));
+        // Troca de senha ou de e-mail invalida os tokens emitidos para o e-mail antigo
+        if (dto.getSenha() != null || !email.equals(atualizado.getEmail())) {
+            revogacaoTokenService.revoga(email);
+        }
+        return atualizado;
     }
 
     /**
-     * Atualiza os dados de um Endereço específico.
-     * * @param idEndereco ID do endereço a ser atualizado.
-     * @param enderecoDTO DTO com os novos dados.
+     * Atualiza os campos informados de um Endereço do usuário do token.
+     * * @param token O token de autorização (incluindo "Bearer ").
+     * @param idEndereco ID do endereço a ser atualizado.
+     * @param enderecoDTO DTO com os novos dados e, opcionalmente, a versão lida.
      * @return EnderecoDTO com os dados atualizados.
-     * @throws ResourceNotFoundException se o ID do endereço não for encontrado.
+     * @throws ResourceNotFoundException se o endereço não existir ou não pertencer ao usuário.
+     * @throws ConflictException se a versão informada estiver desatualizada.
      */
-    public EnderecoDTO atualizaEndereco(Long idEndereco, EnderecoDTO enderecoDTO){
-        // Busca a entidade Endereco ou lança exceção
-        Endereco entity = enderecoRepository.findById(idEndereco).orElseThrow(() ->
-                new ResourceNotFoundException("Id de endereço não encontrado: " + idEndereco));
+    public EnderecoDTO atualizaEndereco(String token, Long idEndereco, EnderecoDTO enderecoDTO){
+        String email = jwtUtil.extrairEmailToken(token.substring(7));
 
-        // Mescla os dados do DTO na Entidade existente
-        Endereco endereco = usuarioConverter.updateEndereco(enderecoDTO, entity);
+        // UPDATE ... WHERE id = ? AND usuario_id = (dono do token), com a linha atualizada de volta
+        Map<String, Object> colunas = usuarioConverter.paraColunasEndereco(enderecoDTO);
+        Endereco endereco = shardUsuario.executa(email, () -> transactionTemplate.execute(status -> {
+            Endereco alterado = atualizacaoParcialRepository.atualizaEndereco(idEndereco, email, colunas, enderecoDTO.getVersao())
+                    .orElseThrow(() -> falhaAtualizacao(
+                            enderecoDTO.getVersao() != null && atualizacaoParcialRepository.enderecoExiste(idEndereco, email),
+                            "Id de endereço não encontrado: " + idEndereco));
+            if (!colunas.isEmpty()) {
+                atualizacaoParcialRepository.incrementaVersaoUsuario(alterado.getUsuario_id());
+            }
+            saidaEventos.registra(EventoUsuario.enderecoAlterado(alterado.getUsuario_id(), email, alterado.getId(), colunas));
+            return alterado;
+        }));
 
-        // Salva e converte o resultado para DTO
-        return usuarioConverter.paraEnderecoDTO(enderecoRepository.save(endereco));
+        usuarioPerfilCache.invalida(email);
+        return usuarioConverter.paraEnderecoDTO(endereco);
     }
 
     /**
-     * Atualiza os dados de um Telefone específico.
-     * * @param idTelefone ID do telefone a ser atualizado.
-     * @param dto DTO com os novos dados.
+     * Atualiza os campos informados de um Telefone do usuário do token.
+     * * @param token O token de autorização (incluindo "Bearer ").
+     * @param idTelefone ID do telefone a ser atualizado.
+     * @param dto DTO com os novos dados e, opcionalmente, a versão lida.
      * @return TelefoneDTO com os dados atualizados.
-     * @throws ResourceNotFoundException se o ID do telefone não for encontrado.
+     * @throws ResourceNotFoundException se o telefone não existir ou não pertencer ao usuário.
+     * @throws ConflictException se a versão informada estiver desatualizada ou o número já estiver em uso.
      */
-    public TelefoneDTO atualizaTelefone (Long idTelefone, TelefoneDTO dto){
-        // Busca a entidade Telefone ou lança exceção
-        Telefone entity = telefoneRepository.findById(idTelefone).orElseThrow(() ->
-                new ResourceNotFoundException("Id de telefone não econtrado: " + idTelefone));
+    public TelefoneDTO atualizaTelefone (String token, Long idTelefone, TelefoneDTO dto){
+        String email = jwtUtil.extrairEmailToken(token.substring(7));
 
-        // Mescla os dados do DTO na Entidade existente
-        Telefone telefone = usuarioConverter.updateTelefone(dto, entity);
+        Map<String, Object> colunas = usuarioConverter.paraColunasTelefone(dto);
+        Telefone telefone;
+        try {
+            telefone = shardUsuario.executa(email, () -> transactionTemplate.execute(status -> {
+                Telefone alterado = atualizacaoParcialRepository.atualizaTelefone(idTelefone, email, colunas, dto.getVersao())
+                        .orElseThrow(() -> falhaAtualizacao(
+                                dto.getVersao() != null && atualizacaoParcialRepository.telefoneExiste(idTelefone, email),
+                                "Id de telefone não econtrado: " + idTelefone));
+                if (!colunas.isEmpty()) {
+                    atualizacaoParcialRepository.incrementaVersaoUsuario(alterado.getUsuario_id());
+                }
+                saidaEventos.registra(EventoUsuario.telefoneAlterado(alterado.getUsuario_id(), email, alterado.getId(), colunas));
+                return alterado;
+            }));
+        } catch (DuplicateKeyException e) {
+            throw new ConflictException("Telefone já cadastrado: " + dto.getNumero(), e);
+        }
 
-        // Salva e converte o resultado para DTO
-        return usuarioConverter.paraTelefoneDTO(telefoneRepository.save(telefone));
+        usuarioPerfilCache.invalida(email);
+        return usuarioConverter.paraTelefoneDTO(telefone);
+    }
+
+    // Nenhuma linha atualizada: ou o registro não existe (ou é de outro usuário) ou a versão enviada ficou para trás
+    private RuntimeException falhaAtualizacao(boolean existe, String mensagemNaoEncontrado){
+        return existe
+                ? new ConflictException("Registro alterado por outra requisição; busque a versão atual e tente novamente")
+                : new ResourceNotFoundException(mensagemNaoEncontrado);
     }
 
     public EnderecoDTO cadastraEndereco(String token, EnderecoDTO dto){
         String email = jwtUtil.extrairEmailToken(token.substring(7));
-        Usuario usuario = usuarioRepository.findByEmail(email).orElseThrow(()->
-                new ResourceNotFoundException("Email não localizado: " + email));
+        EnderecoDTO salvo = shardUsuario.executa(email, () -> transactionTemplate.execute(status -> {
+            Usuario usuario = usuarioRepository.findByEmail(email).orElseThrow(()->
+                    new ResourceNotFoundException("Email não localizado: " + email));
 
-        Endereco endereco = usuarioConverter.paraEnderecoEntity(dto, usuario.getId());
-        return usuarioConverter.paraEnderecoDTO(enderecoRepository.save(endereco));
+            Endereco endereco = enderecoRepository.save(usuarioConverter.paraEnderecoEntity(dto, usuario.getId()));
+            atualizacaoParcialRepository.incrementaVersaoUsuario(usuario.getId());
+            saidaEventos.registra(EventoUsuario.enderecoCriado(email, endereco));
+            return usuarioConverter.paraEnderecoDTO(endereco);
+        }));
+        usuarioPerfilCache.invalida(email);
+        return salvo;
     }
 
     public TelefoneDTO cadastraTelefone(String token, TelefoneDTO dto){
         String email = jwtUtil.extrairEmailToken(token.substring(7));
-        Usuario usuario = usuarioRepository.findByEmail(email).orElseThrow(() ->
-                new ResourceNotFoundException("Email não localizado " + email));
+        TelefoneDTO salvo = shardUsuario.executa(email, () -> transactionTemplate.execute(status -> {
+            Usuario usuario = usuarioRepository.findByEmail(email).orElseThrow(() ->
+                    new ResourceNotFoundException("Email não localizado " + email));
 
-        Telefone telefone = usuarioConverter.paraTelefoneEntity(dto, usuario.getId());
-        return usuarioConverter.paraTelefoneDTO(telefoneRepository.save(telefone));
-    }
\ No newline at end of file
+            Telefone telefone = telefoneRepository.save(usuarioConverter.paraTelefoneEntity(dto, usuario.getId()));
+            atualizacaoParcialRepository.incrementaVersaoUsuario(usuario.getId());
+            saidaEventos.registra(EventoUsuario.telefoneCriado(email, telefone));
+            return usuarioConverter.paraTelefoneDTO(telefone);
+        }));
+        usuarioPerfilCache.invalida(email);
+        return salvo;
+    }
+}
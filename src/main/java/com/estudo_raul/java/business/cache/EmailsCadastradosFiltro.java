@@ -0,0 +1,185 @@
+package com.estudo_raul.java.business.cache;
+
+import com.estudo_raul.java.infrastructure.banco.ShardUsuario;
+import com.estudo_raul.java.infrastructure.repository.UsuarioRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Filtro de Bloom com todos os e-mails cadastrados, consultado antes do existsByEmail
+ * no cadastro: quando o filtro diz que o e-mail nunca foi visto, a consulta é dispensada.
+ * A restrição única de usuario.email continua sendo a garantia; o filtro só evita idas
+ * ao banco, e um e-mail gravado por outra instância aparece como conflito no insert.
+ *
+ * E-mails removidos ou trocados continuam no filtro (só custam uma consulta) até a
+ * próxima reconstrução, que relê a tabela usuario em segundo plano e troca o filtro inteiro.
+ */
+@Slf4j
+@Component
+public class EmailsCadastradosFiltro implements MeterBinder {
+
+    private final UsuarioRepository usuarioRepository;
+    private final ShardUsuario shardUsuario;
+    private final TransactionTemplate transacaoLeitura;
+    private final long capacidadeMinima;
+    private final double taxaFalsoPositivo;
+
+    // Null até a primeira carga terminar; enquanto isso toda verificação vai ao banco
+    private volatile FiltroBloom filtro;
+    // Filtro sendo montado pela reconstrução; inclusões feitas durante a carga vão para os dois
+    private volatile FiltroBloom emConstrucao;
+
+    private final LongAdder consultasEvitadas = new LongAdder();
+    private final LongAdder falsosPositivos = new LongAdder();
+    private volatile long duracaoUltimaReconstrucaoMs;
+    private volatile Instant ultimaReconstrucao;
+
+    public EmailsCadastradosFiltro(UsuarioRepository usuarioRepository,
+                                   ShardUsuario shardUsuario,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${usuario.filtro-email.capacidade:1000000}") long capacidadeMinima,
+                                   @Value("${usuario.filtro-email.taxa-falso-positivo:0.01}") double taxaFalsoPositivo) {
+        this.usuarioRepository = usuarioRepository;
+        this.shardUsuario = shardUsuario;
+        this.transacaoLeitura = new TransactionTemplate(transactionManager);
+        this.transacaoLeitura.setReadOnly(true);
+        this.capacidadeMinima = capacidadeMinima;
+        this.taxaFalsoPositivo = taxaFalsoPositivo;
+    }
+
+    /**
+     * Indica se o e-mail pode estar cadastrado. False é definitivo; true exige a consulta ao banco.
+     * * @param email O e-mail a verificar.
+     * @return False apenas se o e-mail com certeza não está na tabela usuario.
+     */
+    public boolean podeExistir(String email) {
+        FiltroBloom atual = filtro;
+        if (atual == null || atual.podeConter(email)) {
+            return true;
+        }
+        consultasEvitadas.increment();
+        return false;
+    }
+
+    // Chamado quando o filtro disse "talvez" e o banco respondeu que o e-mail não existe
+    public void registraFalsoPositivo() {
+        if (filtro != null) {
+            falsosPositivos.increment();
+        }
+    }
+
+    // Deve ser chamado depois que o e-mail foi gravado (cadastro, importação ou troca de e-mail).
+    // Lê o filtro em construção antes do atual: a reconstrução publica o novo em "filtro" antes de
+    // limpar "emConstrucao", então uma troca entre as duas leituras ainda deixa o e-mail no novo
+    public void inclui(String email) {
+        FiltroBloom novo = emConstrucao;
+        FiltroBloom atual = filtro;
+        if (novo != null) {
+            novo.inclui(email);
+        }
+        if (atual != null && atual != novo) {
+            atual.inclui(email);
+        }
+    }
+
+    /**
+     * Relê todos os e-mails da tabela usuario em um filtro novo e troca o atual. Roda logo
+     * após a inicialização e depois periodicamente, para descartar e-mails removidos e
+     * redimensionar o filtro conforme a tabela cresce.
+     */
+    @Scheduled(fixedDelayString = "${usuario.filtro-email.intervalo-reconstrucao-ms:21600000}")
+    public void reconstroi() {
+        long inicio = System.nanoTime();
+        long total = shardUsuario.emTodos(shard -> usuarioRepository.count()).stream().mapToLong(Long::longValue).sum();
+        long capacidade = Math.max(capacidadeMinima, total * 2);
+        FiltroBloom novo = new FiltroBloom(capacidade, taxaFalsoPositivo);
+
+        // Publicado antes da leitura: um e-mail gravado depois que a consulta começou
+        // chega ao filtro novo por inclui(), mesmo que a consulta não o veja
+        emConstrucao = novo;
+        try {
+            // Um filtro só para todos os shards, lidos um de cada vez
+            shardUsuario.emTodos(shard -> transacaoLeitura.execute(status -> {
+                try (Stream<String> emails = usuarioRepository.streamTodosEmails()) {
+                    emails.forEach(novo::inclui);
+                }
+                return null;
+            }));
+            filtro = novo;
+        } catch (RuntimeException e) {
+            log.warn("Falha ao reconstruir o filtro de e-mails; mantendo o anterior", e);
+            return;
+        } finally {
+            emConstrucao = null;
+        }
+
+        duracaoUltimaReconstrucaoMs = (System.nanoTime() - inicio) / 1_000_000;
+        ultimaReconstrucao = Instant.now();
+        log.info("Filtro de e-mails reconstruído com {} e-mails em {} ms", novo.inclusoes(), duracaoUltimaReconstrucaoMs);
+    }
+
+    // Taxa estimada pela ocupação dos bits; -1 antes da primeira carga
+    public double taxaFalsoPositivoEstimada() {
+        FiltroBloom atual = filtro;
+        return atual != null ? atual.taxaFalsoPositivoEstimada() : -1;
+    }
+
+    // Falsos positivos / (falsos positivos + consultas evitadas), entre e-mails que não estavam cadastrados
+    public double taxaFalsoPositivoObservada() {
+        long fp = falsosPositivos.sum();
+        long total = fp + consultasEvitadas.sum();
+        return total == 0 ? 0 : (double) fp / total;
+    }
+
+    public long duracaoUltimaReconstrucaoMs() {
+        return duracaoUltimaReconstrucaoMs;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("usuario.filtro.email.falso.positivo.estimado", this, EmailsCadastradosFiltro::taxaFalsoPositivoEstimada)
+                .description("Taxa de falso positivo estimada pela ocupação dos bits do filtro")
+                .register(registry);
+        Gauge.builder("usuario.filtro.email.falso.positivo.observado", this, EmailsCadastradosFiltro::taxaFalsoPositivoObservada)
+                .description("Fração dos e-mails novos em que o filtro não dispensou a consulta")
+                .register(registry);
+        Gauge.builder("usuario.filtro.email.reconstrucao", this, EmailsCadastradosFiltro::duracaoUltimaReconstrucaoMs)
+                .baseUnit("milliseconds")
+                .description("Duração da última reconstrução do filtro")
+                .register(registry);
+        FunctionCounter.builder("usuario.filtro.email.consultas.evitadas", consultasEvitadas, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("usuario.filtro.email.falsos.positivos", falsosPositivos, LongAdder::sum)
+                .register(registry);
+    }
+
+    public Map<String, Object> estatisticas() {
+        FiltroBloom atual = filtro;
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("carregado", atual != null);
+        resultado.put("emails", atual != null ? atual.inclusoes() : 0);
+        resultado.put("bits", atual != null ? atual.totalBits() : 0);
+        resultado.put("funcoesHash", atual != null ? atual.funcoesHash() : 0);
+        resultado.put("taxaFalsoPositivoEstimada", taxaFalsoPositivoEstimada());
+        resultado.put("taxaFalsoPositivoObservada", taxaFalsoPositivoObservada());
+        resultado.put("consultasEvitadas", consultasEvitadas.sum());
+        resultado.put("falsosPositivos", falsosPositivos.sum());
+        resultado.put("duracaoUltimaReconstrucaoMs", duracaoUltimaReconstrucaoMs());
+        resultado.put("ultimaReconstrucao", ultimaReconstrucao);
+        return resultado;
+    }
+}
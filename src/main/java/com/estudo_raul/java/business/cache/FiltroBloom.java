@@ -0,0 +1,117 @@
+package com.estudo_raul.java.business.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Filtro de Bloom de tamanho fixo e seguro para uso concorrente sem locks: os bits ficam
+ * em um AtomicLongArray e cada inclusão liga os seus bits com compareAndSet. Responde
+ * "com certeza não contém" ou "talvez contenha"; não aceita remoções.
+ */
+public class FiltroBloom {
+
+    private final AtomicLongArray palavras;
+    private final long totalBits;
+    private final int funcoesHash;
+    private final LongAdder inclusoes = new LongAdder();
+
+    /**
+     * Dimensiona o filtro para a capacidade e a taxa de falso positivo desejadas.
+     * * @param capacidade Quantidade de elementos prevista.
+     * @param taxaFalsoPositivo Taxa de falso positivo com a capacidade cheia (entre 0 e 1).
+     */
+    public FiltroBloom(long capacidade, double taxaFalsoPositivo) {
+        if (capacidade <= 0 || taxaFalsoPositivo <= 0 || taxaFalsoPositivo >= 1) {
+            throw new IllegalArgumentException("Capacidade deve ser positiva e a taxa de falso positivo entre 0 e 1");
+        }
+        // m = -n ln(p) / ln(2)^2 e k = (m / n) ln(2), arredondando m para palavras de 64 bits
+        long bits = (long) Math.ceil(-capacidade * Math.log(taxaFalsoPositivo) / (Math.log(2) * Math.log(2)));
+        int quantidadePalavras = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) / 64));
+        this.palavras = new AtomicLongArray(quantidadePalavras);
+        this.totalBits = (long) quantidadePalavras * 64;
+        this.funcoesHash = Math.max(1, (int) Math.round((double) totalBits / capacidade * Math.log(2)));
+    }
+
+    public void inclui(String valor) {
+        long hash = hash(valor);
+        long h1 = misturador(hash);
+        long h2 = misturador(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < funcoesHash; i++) {
+            ligaBit(Math.floorMod(h1 + i * h2, totalBits));
+        }
+        inclusoes.increment();
+    }
+
+    // False significa que o valor com certeza nunca foi incluído
+    public boolean podeConter(String valor) {
+        long hash = hash(valor);
+        long h1 = misturador(hash);
+        long h2 = misturador(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < funcoesHash; i++) {
+            long bit = Math.floorMod(h1 + i * h2, totalBits);
+            if ((palavras.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Probabilidade de falso positivo com os bits ligados agora: (fração de bits ligados)^k
+    public double taxaFalsoPositivoEstimada() {
+        return Math.pow((double) bitsLigados() / totalBits, funcoesHash);
+    }
+
+    public long bitsLigados() {
+        long ligados = 0;
+        for (int i = 0; i < palavras.length(); i++) {
+            ligados += Long.bitCount(palavras.get(i));
+        }
+        return ligados;
+    }
+
+    // Chamadas a inclui(), contando repetições do mesmo valor
+    public long inclusoes() {
+        return inclusoes.sum();
+    }
+
+    public long totalBits() {
+        return totalBits;
+    }
+
+    public int funcoesHash() {
+        return funcoesHash;
+    }
+
+    private void ligaBit(long bit) {
+        int indice = (int) (bit >>> 6);
+        long mascara = 1L << bit;
+        long atual;
+        do {
+            atual = palavras.get(indice);
+            if ((atual & mascara) != 0) {
+                return;
+            }
+        } while (!palavras.compareAndSet(indice, atual, atual | mascara));
+    }
+
+    // FNV-1a de 64 bits sobre os bytes UTF-8
+    private static long hash(String valor) {
+        long hash = 0xCBF29CE484222325L;
+        for (byte b : valor.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    // Finalizador do MurmurHash3, para espalhar os bits antes do hash duplo
+    private static long misturador(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB93FE53A2E2FL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,95 @@
+package com.estudo_raul.java.business.cache;
+
+import com.estudo_raul.java.business.converter.UsuarioConverter;
+import com.estudo_raul.java.business.dtos.UsuarioDTO;
+import com.estudo_raul.java.infrastructure.banco.LeituraReplica;
+import com.estudo_raul.java.infrastructure.entity.Usuario;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Cache de leitura dos perfis de usuário, indexado por e-mail. Guarda o perfil já
+ * convertido para DTO (com endereços e telefones carregados), pronto para serializar.
+ * Toda escrita em UsuarioService deve invalidar a entrada correspondente pelo e-mail; a
+ * invalidação também deixa as leituras seguintes do usuário no primário (LeituraReplica).
+ * Uma invalidação que chega durante a carga do mesmo e-mail espera a carga terminar e
+ * remove o que ela guardou, então um perfil lido antes do commit não fica no cache.
+ */
+@Component
+public class UsuarioPerfilCache {
+
+    private final UsuarioConverter usuarioConverter;
+    private final LeituraReplica leituraReplica;
+    private final Cache<String, Entrada> perfis;
+
+    public UsuarioPerfilCache(UsuarioConverter usuarioConverter,
+                              LeituraReplica leituraReplica,
+                              @Value("${usuario.cache.perfil.tamanho-maximo:10000}") long tamanhoMaximo,
+                              @Value("${usuario.cache.perfil.ttl:10m}") Duration ttl) {
+        this.usuarioConverter = usuarioConverter;
+        this.leituraReplica = leituraReplica;
+        this.perfis = Caffeine.newBuilder()
+                .maximumSize(tamanhoMaximo)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Retorna o perfil do cache ou carrega do banco e guarda. O DTO devolvido é
+     * compartilhado entre requisições e não deve ser alterado.
+     * * @param email O e-mail do usuário.
+     * @param carregador Função que busca a entidade no banco; exceções não são guardadas no cache.
+     * @return O perfil do usuário.
+     */
+    public UsuarioDTO busca(String email, Function<String, Usuario> carregador) {
+        return perfis.get(email, chave -> {
+            Usuario usuario = carregador.apply(chave);
+            return new Entrada(usuario.getId(), usuarioConverter.paraUsuarioDTO(usuario));
+        }).perfil();
+    }
+
+    public void invalida(String email) {
+        leituraReplica.registraEscrita(email);
+        perfis.invalidate(email);
+    }
+
+    /**
+     * Descarta o perfil guardado se o banco já tem uma versão mais nova (escrita feita por outra
+     * instância) ou se o e-mail passou a ser de outro usuário. Não conta como escrita para a
+     * LeituraReplica, ao contrário de invalida().
+     * * @param email O e-mail do usuário.
+     * @param usuarioId O id atual do dono do e-mail.
+     * @param versao A versão atual do perfil no banco.
+     */
+    public void descartaAnterior(String email, Long usuarioId, Long versao) {
+        // asMap() não conta acerto nem falha nas estatísticas
+        Entrada entrada = perfis.asMap().get(email);
+        if (entrada != null && (!entrada.usuarioId().equals(usuarioId) || entrada.perfil().getVersao() < versao)) {
+            perfis.asMap().remove(email, entrada);
+        }
+    }
+
+    // Contadores de acertos, falhas e remoções do cache
+    public Map<String, Object> estatisticas() {
+        CacheStats stats = perfis.stats();
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("tamanho", perfis.estimatedSize());
+        resultado.put("acertos", stats.hitCount());
+        resultado.put("falhas", stats.missCount());
+        resultado.put("remocoes", stats.evictionCount());
+        resultado.put("taxaAcerto", stats.hitRate());
+        return resultado;
+    }
+
+    private record Entrada(Long usuarioId, UsuarioDTO perfil) {
+    }
+}
@@ -3,16 +3,26 @@ package com.estudo_raul.java.business.converter;
 import com.estudo_raul.java.business.dtos.EnderecoDTO;
 import com.estudo_raul.java.business.dtos.TelefoneDTO;
 import com.estudo_raul.java.business.dtos.UsuarioDTO;
+import com.estudo_raul.java.infrastructure.cep.ArquivoCep;
+import com.estudo_raul.java.infrastructure.cep.IndiceCep;
 import com.estudo_raul.java.infrastructure.entity.Endereco;
 import com.estudo_raul.java.infrastructure.entity.Telefone;
 import com.estudo_raul.java.infrastructure.entity.Usuario;
 import org.springframework.stereotype.Component;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Component
 public class UsuarioConverter {
 
+    private final IndiceCep indiceCep;
+
+    public UsuarioConverter(IndiceCep indiceCep) {
+        this.indiceCep = indiceCep;
+    }
+
     //Usuario Entity
     public Usuario paraUsuario (UsuarioDTO usuarioDTO){
         return Usuario.builder()
@@ -29,14 +39,14 @@ public class UsuarioConverter {
     }
 
    public Endereco paraEndereco(EnderecoDTO enderecoDTO){
-        return Endereco.builder()
+        return completaPeloCep(Endereco.builder()
                 .rua(enderecoDTO.getRua())
                 .numero(enderecoDTO.getNumero())
                 .cidade(enderecoDTO.getCidade())
                 .complemento(enderecoDTO.getComplemento())
                 .cep(enderecoDTO.getCep())
                 .estado(enderecoDTO.getEstado())
-                .build();
+                .build());
    }
 
    public List<Telefone> paraListaTelefone(List<TelefoneDTO> telefoneDTOS){
@@ -54,11 +64,23 @@ public class UsuarioConverter {
     //Inicio Usuario DTO
     public UsuarioDTO paraUsuarioDTO (Usuario usuario){
         return UsuarioDTO.builder()
+                .id(usuario.getId())
                 .nome(usuario.getNome())
                 .email(usuario.getEmail())
                 .senha(usuario.getSenha())
                 .enderecos(paraListaEnderecoDTO(usuario.getEnderecos()))
                 .telefones(paraListaTelefoneDTO(usuario.getTelefones()))
+                .versao(usuario.getVersao())
+                .build();
+    }
+
+    // Só os dados da própria tabela usuario, como devolvidos por uma atualização parcial
+    public UsuarioDTO paraDadosUsuarioDTO (Usuario usuario){
+        return UsuarioDTO.builder()
+                .id(usuario.getId())
+                .nome(usuario.getNome())
+                .email(usuario.getEmail())
+                .versao(usuario.getVersao())
                 .build();
     }
 
@@ -75,6 +97,7 @@ public class UsuarioConverter {
                 .complemento(endereco.getComplemento())
                 .cep(endereco.getCep())
                 .estado(endereco.getEstado())
+                .versao(endereco.getVersao())
                 .build();
     }
 
@@ -87,6 +110,7 @@ public class UsuarioConverter {
                 .id(telefone.getId())
                 .numero(telefone.getNumero())
                 .ddd(telefone.getDdd())
+                .versao(telefone.getVersao())
                 .build();
     }
 
@@ -98,6 +122,7 @@ public class UsuarioConverter {
                 .email(usuarioDTO.getEmail() != null ? usuarioDTO.getEmail() : entity.getEmail())
                 .enderecos(entity.getEnderecos())
                 .telefones(entity.getTelefones())
+                .versao(entity.getVersao())
                 .build();
     }
 
@@ -110,6 +135,8 @@ public class UsuarioConverter {
                 .cep(dto.getCep() != null ? dto.getCep() : entity.getCep())
                 .complemento(dto.getComplemento() != null ? dto.getComplemento() : entity.getComplemento())
                 .estado(dto.getEstado() != null ? dto.getEstado() : entity.getEstado())
+                .usuario_id(entity.getUsuario_id())
+                .versao(entity.getVersao())
                 .build();
     }
 
@@ -118,11 +145,14 @@ public class UsuarioConverter {
                 .id(entity.getId())
                 .numero(dto.getNumero() != null ? dto.getNumero() : entity.getNumero())
                 .ddd(dto.getDdd() != null ? dto.getDdd() : entity.getDdd())
+                .tipo(entity.getTipo())
+                .usuario_id(entity.getUsuario_id())
+                .versao(entity.getVersao())
                 .build();
     }
 
     public Endereco paraEnderecoEntity (EnderecoDTO dto, Long idUsuario){
-        return Endereco.builder()
+        return completaPeloCep(Endereco.builder()
                 .rua(dto.getRua())
                 .cidade(dto.getCidade())
                 .cep(dto.getCep())
@@ -130,7 +160,29 @@ public class UsuarioConverter {
                 .estado(dto.getEstado())
                 .numero(dto.getNumero())
                 .usuario_id(idUsuario)
-                .build();
+                .build());
+    }
+
+    // CEP formatado, cidade e estado do índice local de CEPs; a rua só quando não veio. CEP fora do índice fica como veio
+    private Endereco completaPeloCep(Endereco endereco){
+        ArquivoCep arquivo = indiceCep.atual();
+        int posicao = indiceCep.posicao(arquivo, endereco.getCep());
+        if (posicao < 0) {
+            return endereco;
+        }
+        endereco.setCep(ArquivoCep.formata(arquivo.cep(posicao)));
+        endereco.setCidade(arquivo.cidade(posicao));
+        endereco.setEstado(arquivo.estado(posicao));
+        String rua = arquivo.rua(posicao);
+        if (rua != null && (endereco.getRua() == null || endereco.getRua().isBlank())) {
+            endereco.setRua(rua);
+        }
+        return endereco;
+    }
+
+    // Erro de CEP para validar itens de lote antes da conversão, que lançaria a exceção; null se aceito
+    public String validaCep(String cep){
+        return indiceCep.valida(cep);
     }
 
     public Telefone paraTelefoneEntity (TelefoneDTO dto, Long idUsuario){
@@ -140,4 +192,72 @@ public class UsuarioConverter {
                 .usuario_id(idUsuario)
                 .build();
     }
+
+    // Colunas alteradas por uma atualização parcial: só os campos não nulos do DTO
+    public Map<String, Object> paraColunasUsuario(UsuarioDTO dto){
+        Map<String, Object> colunas = new LinkedHashMap<>();
+        colocaSeInformado(colunas, "nome", dto.getNome());
+        colocaSeInformado(colunas, "email", dto.getEmail());
+        colocaSeInformado(colunas, "senha", dto.getSenha());
+        return colunas;
+    }
+
+    public Map<String, Object> paraColunasEndereco(EnderecoDTO dto){
+        Map<String, Object> colunas = new LinkedHashMap<>();
+        colocaSeInformado(colunas, "rua", dto.getRua());
+        colocaSeInformado(colunas, "numero", dto.getNumero());
+        colocaSeInformado(colunas, "complemento", dto.getComplemento());
+        colocaSeInformado(colunas, "cidade", dto.getCidade());
+        colocaSeInformado(colunas, "cep", dto.getCep());
+        colocaSeInformado(colunas, "estado", dto.getEstado());
+
+        // Um CEP novo traz a cidade e o estado dele, e a rua se a alteração não informou outra
+        ArquivoCep arquivo = indiceCep.atual();
+        int posicao = indiceCep.posicao(arquivo, dto.getCep());
+        if (posicao >= 0) {
+            colunas.put("cep", ArquivoCep.formata(arquivo.cep(posicao)));
+            colunas.put("cidade", arquivo.cidade(posicao));
+            colunas.put("estado", arquivo.estado(posicao));
+            if (dto.getRua() == null) {
+                colocaSeInformado(colunas, "rua", arquivo.rua(posicao));
+            }
+        }
+        return colunas;
+    }
+
+    public Map<String, Object> paraColunasTelefone(TelefoneDTO dto){
+        Map<String, Object> colunas = new LinkedHashMap<>();
+        colocaSeInformado(colunas, "numero", dto.getNumero());
+        colocaSeInformado(colunas, "ddd", dto.getDdd());
+        return colunas;
+    }
+
+    // Cópia do DTO com as colunas de uma atualização parcial aplicadas (inverso de paraColunasEndereco)
+    public EnderecoDTO aplicaColunasEndereco(EnderecoDTO dto, Map<String, Object> colunas){
+        return EnderecoDTO.builder()
+                .id(dto.getId())
+                .rua((String) colunas.getOrDefault("rua", dto.getRua()))
+                .numero((String) colunas.getOrDefault("numero", dto.getNumero()))
+                .complemento((String) colunas.getOrDefault("complemento", dto.getComplemento()))
+                .cidade((String) colunas.getOrDefault("cidade", dto.getCidade()))
+                .cep((String) colunas.getOrDefault("cep", dto.getCep()))
+                .estado((String) colunas.getOrDefault("estado", dto.getEstado()))
+                .versao(dto.getVersao())
+                .build();
+    }
+
+    public TelefoneDTO aplicaColunasTelefone(TelefoneDTO dto, Map<String, Object> colunas){
+        return TelefoneDTO.builder()
+                .id(dto.getId())
+                .numero((String) colunas.getOrDefault("numero", dto.getNumero()))
+                .ddd((String) colunas.getOrDefault("ddd", dto.getDdd()))
+                .versao(dto.getVersao())
+                .build();
+    }
+
+    private void colocaSeInformado(Map<String, Object> colunas, String coluna, Object valor){
+        if (valor != null) {
+            colunas.put(coluna, valor);
+        }
+    }
 }
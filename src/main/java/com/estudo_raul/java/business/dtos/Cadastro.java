@@ -0,0 +1,8 @@
+package com.estudo_raul.java.business.dtos;
+
+import jakarta.validation.groups.Default;
+
+// Grupo de validação da inclusão de endereços e telefones: os limites de tamanho (Default) mais os campos
+// obrigatórios, que uma atualização parcial pode omitir
+public interface Cadastro extends Default {
+}
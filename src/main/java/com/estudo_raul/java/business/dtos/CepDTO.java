@@ -0,0 +1,17 @@
+package com.estudo_raul.java.business.dtos;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class CepDTO {
+
+    private String cep;
+    // Vazia nos CEPs gerais de cidade
+    private String rua;
+    private String cidade;
+    private String estado;
+}
@@ -1,6 +1,8 @@
 package com.estudo_raul.java.business.dtos;
 
-import jakarta.persistence.Column;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Size;
 import lombok.*;
 
 @Getter
@@ -11,11 +13,26 @@ import lombok.*;
 public class EnderecoDTO {
 
     private Long id;
+    // Mesmos limites das colunas da tabela endereco: acima deles a requisição é recusada com 400
+    @Size(max = 255, message = "Rua com mais de 255 caracteres")
     private String rua;
+    @Size(max = 255, message = "Número com mais de 255 caracteres")
     private String numero;
+    @Size(max = 255, message = "Complemento com mais de 255 caracteres")
     private String complemento;
+    @Size(max = 255, message = "Cidade com mais de 255 caracteres")
     private String cidade;
+    @Size(max = 9, message = "CEP com mais de 9 caracteres")
     private String cep;
+    @Size(max = 2, message = "Estado com mais de 2 caracteres")
     private String estado;
+    // Versão lida; enviada de volta na atualização, recusa a alteração se o registro mudou nesse meio tempo
+    private Long versao;
 
+    // Um endereço novo precisa de ao menos rua, número, cidade ou CEP; na atualização parcial todos podem faltar
+    @JsonIgnore
+    @AssertTrue(groups = Cadastro.class, message = "Endereço vazio")
+    public boolean isPreenchido() {
+        return rua != null || numero != null || cidade != null || cep != null;
+    }
 }
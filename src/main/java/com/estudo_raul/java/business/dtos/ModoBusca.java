@@ -0,0 +1,9 @@
+package com.estudo_raul.java.business.dtos;
+
+// Como o nome informado na busca de usuários é comparado
+public enum ModoBusca {
+    // Nomes que começam com o texto, sem diferenciar maiúsculas
+    PREFIXO,
+    // Nomes parecidos com o texto (trigramas no PostgreSQL; nos demais bancos, nomes que contêm o texto)
+    APROXIMADO
+}
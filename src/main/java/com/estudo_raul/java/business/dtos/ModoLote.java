@@ -0,0 +1,11 @@
+package com.estudo_raul.java.business.dtos;
+
+// Como uma lista de endereços ou telefones enviada em lote se combina com os já cadastrados
+public enum ModoLote {
+    // Só inclui os itens da lista; os já cadastrados não mudam
+    ADICIONAR,
+    // Remove todos os cadastrados e grava a lista como nova
+    SUBSTITUIR,
+    // Sincroniza: itens com id são atualizados, sem id são incluídos e os cadastrados fora da lista são removidos
+    REMOVER_AUSENTES
+}
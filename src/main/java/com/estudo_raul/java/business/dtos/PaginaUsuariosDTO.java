@@ -0,0 +1,17 @@
+package com.estudo_raul.java.business.dtos;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class PaginaUsuariosDTO {
+
+    private List<UsuarioResumoDTO> itens;
+    // Enviado como aposId para buscar a página seguinte; null na última página
+    private Long proximoId;
+}
@@ -0,0 +1,17 @@
+package com.estudo_raul.java.business.dtos;
+
+import lombok.*;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ResultadoItemDTO {
+
+    private long indice;
+    private String chave;
+    private Long id;
+    private StatusItem status;
+    private String mensagem;
+}
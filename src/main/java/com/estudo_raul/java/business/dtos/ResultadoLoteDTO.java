@@ -0,0 +1,17 @@
+package com.estudo_raul.java.business.dtos;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ResultadoLoteDTO {
+
+    // Um resultado por item enviado, na ordem da lista
+    private List<ResultadoItemDTO> itens;
+    private int removidos;
+}
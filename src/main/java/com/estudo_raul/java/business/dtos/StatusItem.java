@@ -0,0 +1,10 @@
+package com.estudo_raul.java.business.dtos;
+
+// Resultado do processamento de cada item em operações em lote
+public enum StatusItem {
+    CRIADO,
+    ATUALIZADO,
+    CONFLITO,
+    INVALIDO,
+    ERRO
+}
@@ -1,5 +1,7 @@
 package com.estudo_raul.java.business.dtos;
 
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
 import lombok.*;
 
 @Getter
@@ -10,6 +12,12 @@ import lombok.*;
 public class TelefoneDTO {
 
     private Long id;
+    // Mesmos limites das colunas da tabela telefone
+    @NotBlank(groups = Cadastro.class, message = "Número obrigatório")
+    @Size(max = 10, message = "Número com mais de 10 caracteres")
     private String numero;
+    @Size(max = 3, message = "DDD com mais de 3 caracteres")
     private String ddd;
+    // Versão lida; enviada de volta na atualização, recusa a alteração se o registro mudou nesse meio tempo
+    private Long versao;
 }
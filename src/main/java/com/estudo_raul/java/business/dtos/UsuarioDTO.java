@@ -1,5 +1,8 @@
 package com.estudo_raul.java.business.dtos;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Size;
 import lombok.*;
 
 import java.util.List;
@@ -11,9 +14,18 @@ import java.util.List;
 @Builder
 public class UsuarioDTO {
 
+    private Long id;
+    // Mesmos limites das colunas da tabela usuario
+    @Size(max = 20, message = "Nome com mais de 20 caracteres")
     private String nome;
+    @Size(max = 30, message = "Email com mais de 30 caracteres")
     private String email;
+    // Só de entrada (cadastro, login, troca de senha): o hash nunca sai nas respostas
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     private String senha;
-    private List<EnderecoDTO> enderecos;
-    private List<TelefoneDTO> telefones;
+    private List<@Valid EnderecoDTO> enderecos;
+    private List<@Valid TelefoneDTO> telefones;
+    // Versão do perfil lida; enviada de volta na atualização, recusa a alteração se o usuário, um endereço
+    // ou um telefone mudou nesse meio tempo
+    private Long versao;
 }
@@ -0,0 +1,16 @@
+package com.estudo_raul.java.business.dtos;
+
+import lombok.*;
+
+// Usuário encontrado na busca: só o suficiente para identificá-lo e abrir o perfil pelo e-mail
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class UsuarioResumoDTO {
+
+    private Long id;
+    private String nome;
+    private String email;
+}
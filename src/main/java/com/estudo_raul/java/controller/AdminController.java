@@ -0,0 +1,96 @@
+package com.estudo_raul.java.controller;
+
+import com.estudo_raul.java.business.cache.EmailsCadastradosFiltro;
+import com.estudo_raul.java.business.cache.UsuarioPerfilCache;
+import com.estudo_raul.java.infrastructure.banco.ReorganizacaoShards;
+import com.estudo_raul.java.infrastructure.cep.IndiceCep;
+import com.estudo_raul.java.infrastructure.eventos.RelayEventos;
+import com.estudo_raul.java.infrastructure.monitoramento.PerfilRequisicao;
+import com.estudo_raul.java.infrastructure.monitoramento.PioresRequisicoes;
+import com.estudo_raul.java.infrastructure.security.PasswordEncoderLimitado;
+import com.estudo_raul.java.infrastructure.security.RehashSenhaService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+@RestController
+@RequestMapping("/admin")
+@RequiredArgsConstructor
+public class AdminController {
+
+    private final UsuarioPerfilCache usuarioPerfilCache;
+    private final PasswordEncoderLimitado passwordEncoder;
+    private final RehashSenhaService rehashSenhaService;
+    private final PioresRequisicoes pioresRequisicoes;
+    private final EmailsCadastradosFiltro emailsCadastradosFiltro;
+    private final ReorganizacaoShards reorganizacaoShards;
+    private final RelayEventos relayEventos;
+    private final IndiceCep indiceCep;
+
+    @GetMapping("/cache/perfis")
+    public ResponseEntity<Map<String, Object>> estatisticasCachePerfis(){
+        return ResponseEntity.ok(usuarioPerfilCache.estatisticas());
+    }
+
+    @GetMapping("/filtro-emails")
+    public ResponseEntity<Map<String, Object>> estatisticasFiltroEmails(){
+        return ResponseEntity.ok(emailsCadastradosFiltro.estatisticas());
+    }
+
+    @GetMapping("/shards")
+    public ResponseEntity<Map<String, Object>> situacaoShards(){
+        return ResponseEntity.ok(reorganizacaoShards.situacao());
+    }
+
+    // Cresce o anel para "total" shards; a movimentação segue em segundo plano, acompanhada em GET /admin/shards
+    @PostMapping("/shards/reorganizacao")
+    public ResponseEntity<Map<String, Object>> reorganizaShards(@RequestParam int total){
+        return ResponseEntity.accepted().body(reorganizacaoShards.inicia(total));
+    }
+
+    // Tabela de saída e relay de eventos: pendentes, atraso do mais antigo, entregues e última falha
+    @GetMapping("/eventos")
+    public ResponseEntity<Map<String, Object>> situacaoEventos(){
+        return ResponseEntity.ok(relayEventos.situacao());
+    }
+
+    @GetMapping("/cep")
+    public ResponseEntity<Map<String, Object>> situacaoCep(){
+        return ResponseEntity.ok(indiceCep.situacao());
+    }
+
+    // Refaz o índice de CEP a partir do dataset agora, sem esperar a verificação periódica
+    @PostMapping("/cep/recarga")
+    public ResponseEntity<Map<String, Object>> recarregaCep(){
+        return ResponseEntity.ok(indiceCep.recarrega());
+    }
+
+    @GetMapping("/hash-senha")
+    public ResponseEntity<Map<String, Object>> estatisticasHashSenha(){
+        Map<String, Object> estatisticas = new LinkedHashMap<>(passwordEncoder.estatisticas());
+        estatisticas.put("rehashPendentes", rehashSenhaService.pendentes());
+        return ResponseEntity.ok(estatisticas);
+    }
+
+    // Requisições mais lentas de cada endpoint, perfiladas com monitoramento.profiler.habilitado=true
+    @GetMapping("/perfis-requisicao")
+    public ResponseEntity<Map<String, List<PerfilRequisicao>>> perfisRequisicao(){
+        return ResponseEntity.ok(pioresRequisicoes.lista());
+    }
+
+    @DeleteMapping("/perfis-requisicao")
+    public ResponseEntity<Void> limpaPerfisRequisicao(){
+        pioresRequisicoes.limpa();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,34 @@
+package com.estudo_raul.java.controller;
+
+import com.estudo_raul.java.business.CepService;
+import com.estudo_raul.java.business.dtos.CepDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+
+@RestController
+@RequestMapping("/cep")
+@RequiredArgsConstructor
+public class CepController {
+
+    private final CepService cepService;
+
+    // Autocompletar do formulário de endereço: CEPs que começam com os dígitos digitados até agora
+    @GetMapping
+    public ResponseEntity<List<CepDTO>> autocompletaCep(@RequestParam("prefixo") String prefixo,
+                                                        @RequestParam(value = "limite", defaultValue = "10") int limite){
+        return ResponseEntity.ok(cepService.autocompleta(prefixo, limite));
+    }
+
+    @GetMapping("/{cep}")
+    public ResponseEntity<CepDTO> buscaCep(@PathVariable String cep){
+        return ResponseEntity.ok(cepService.busca(cep));
+    }
+}
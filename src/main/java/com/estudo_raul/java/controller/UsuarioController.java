@@ -1,18 +1,42 @@
 package com.estudo_raul.java.controller;
 
+import com.estudo_raul.java.business.EscritaAdiadaService;
+import com.estudo_raul.java.business.UsuarioBuscaService;
+import com.estudo_raul.java.business.UsuarioExportacaoService;
+import com.estudo_raul.java.business.UsuarioImportacaoService;
+import com.estudo_raul.java.business.UsuarioLoteService;
 import com.estudo_raul.java.business.UsuarioService;
+import com.estudo_raul.java.business.dtos.Cadastro;
 import com.estudo_raul.java.business.dtos.EnderecoDTO;
+import com.estudo_raul.java.business.dtos.ModoBusca;
+import com.estudo_raul.java.business.dtos.ModoLote;
+import com.estudo_raul.java.business.dtos.PaginaUsuariosDTO;
+import com.estudo_raul.java.business.dtos.ResultadoLoteDTO;
 import com.estudo_raul.java.business.dtos.TelefoneDTO;
 import com.estudo_raul.java.business.dtos.UsuarioDTO;
-import com.estudo_raul.java.infrastructure.entity.Usuario;
 import com.estudo_raul.java.infrastructure.security.JwtUtil;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ETag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
 
 @RestController
 @RequestMapping("/usuario")
@@ -20,6 +44,11 @@ import org.springframework.web.bind.annotation.*;
 public class UsuarioController {
 
     private final UsuarioService usuarioService;
+    private final UsuarioImportacaoService usuarioImportacaoService;
+    private final UsuarioExportacaoService usuarioExportacaoService;
+    private final UsuarioBuscaService usuarioBuscaService;
+    private final UsuarioLoteService usuarioLoteService;
+    private final EscritaAdiadaService escritaAdiadaService;
     private final AuthenticationManager authenticationManager;
     private final JwtUtil jwtUtil;
 
@@ -40,9 +69,34 @@ public class UsuarioController {
         return "Bearer " + jwtUtil.generateToken(authentication.getName());
     }
 
-    @GetMapping
-    public ResponseEntity<Usuario> buscausuarioPorEmail (@RequestParam("email") String email){
-        return ResponseEntity.ok(usuarioService.buscaUsuarioPorEmail(email));
+    // Perfil em JSON ou em CBOR, mais compacto, para os clientes que pedem application/cbor (os apps
+    // móveis, que consultam o perfil o tempo todo); If-None-Match com o ETag da versão atual devolve 304
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<UsuarioDTO> buscausuarioPorEmail (@RequestParam("email") String email,
+                                                            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch){
+        return perfil(email, ifNoneMatch, formatoPerfil(accept));
+    }
+
+    // Busca paginada por nome (prefixo ou aproximado), cidade/estado e telefone; aposId vem do proximoId da página anterior
+    @GetMapping("/busca")
+    public ResponseEntity<PaginaUsuariosDTO> buscaUsuarios(@RequestParam(value = "nome", required = false) String nome,
+                                                           @RequestParam(value = "modo", defaultValue = "PREFIXO") ModoBusca modo,
+                                                           @RequestParam(value = "cidade", required = false) String cidade,
+                                                           @RequestParam(value = "estado", required = false) String estado,
+                                                           @RequestParam(value = "ddd", required = false) String ddd,
+                                                           @RequestParam(value = "numero", required = false) String numero,
+                                                           @RequestParam(value = "aposId", required = false) Long aposId,
+                                                           @RequestParam(value = "limite", required = false) Integer limite) {
+        return ResponseEntity.ok(usuarioBuscaService.busca(nome, modo, cidade, estado, ddd, numero, aposId, limite));
+    }
+
+    // Exporta todos os usuários em NDJSON, paginando por id; aPartirDeId permite retomar de onde parou
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportaUsuarios(@RequestParam(value = "aPartirDeId", defaultValue = "0") Long aPartirDeId,
+                                HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        usuarioExportacaoService.exporta(aPartirDeId, response.getOutputStream());
     }
 
     @DeleteMapping("/{email}")
@@ -52,37 +106,113 @@ public class UsuarioController {
     }
 
     @PostMapping
-    public ResponseEntity <UsuarioDTO> salvaUsuario(@RequestBody UsuarioDTO usuarioDTO){
+    public ResponseEntity <UsuarioDTO> salvaUsuario(@RequestBody @Validated(Cadastro.class) UsuarioDTO usuarioDTO){
         return ResponseEntity.ok(usuarioService.salvaUsuario(usuarioDTO));
     }
 
+    // Recebe um UsuarioDTO por linha (NDJSON) e devolve, também em NDJSON, o resultado de cada linha
+    @PostMapping(value = "/importacao", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public void importaUsuarios(InputStream corpo, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        usuarioImportacaoService.importa(corpo, response.getOutputStream());
+    }
+
     @PutMapping
-    public ResponseEntity<UsuarioDTO> atualizaDadoUsuario(@RequestBody UsuarioDTO dto,
+    public ResponseEntity<UsuarioDTO> atualizaDadoUsuario(@RequestBody @Valid UsuarioDTO dto,
                                                              @RequestHeader("Authorization") String token){
         return ResponseEntity.ok(usuarioService.atualizaDadosUsuario(token, dto));
     }
 
     @PutMapping("/telefone")
-    public ResponseEntity<TelefoneDTO> atualizaTelefone(@RequestBody TelefoneDTO dto,
-                                                             @RequestParam("id") Long id){
-        return ResponseEntity.ok(usuarioService.atualizaTelefone(id, dto));
+    public ResponseEntity<TelefoneDTO> atualizaTelefone(@RequestBody @Valid TelefoneDTO dto,
+                                                             @RequestParam("id") Long id,
+                                                             @RequestHeader("Authorization") String token){
+        // Com a escrita adiada, a alteração só é garantida no diário local: 202 em vez de 200
+        if (escritaAdiadaService.isHabilitada()) {
+            return ResponseEntity.accepted().body(escritaAdiadaService.agendaTelefone(token, id, dto));
+        }
+        return ResponseEntity.ok(usuarioService.atualizaTelefone(token, id, dto));
     }
 
     @PutMapping("/endereco")
-    public ResponseEntity<EnderecoDTO> atualizaEndereco(@RequestBody EnderecoDTO dto,
-                                                             @RequestParam("id") Long id){
-        return ResponseEntity.ok(usuarioService.atualizaEndereco(id, dto));
+    public ResponseEntity<EnderecoDTO> atualizaEndereco(@RequestBody @Valid EnderecoDTO dto,
+                                                             @RequestParam("id") Long id,
+                                                             @RequestHeader("Authorization") String token){
+        if (escritaAdiadaService.isHabilitada()) {
+            return ResponseEntity.accepted().body(escritaAdiadaService.agendaEndereco(token, id, dto));
+        }
+        return ResponseEntity.ok(usuarioService.atualizaEndereco(token, id, dto));
     }
 
     @PostMapping("/endereco")
-    public ResponseEntity<EnderecoDTO> cadastraEndereco(@RequestBody EnderecoDTO dto,
+    public ResponseEntity<EnderecoDTO> cadastraEndereco(@RequestBody @Validated(Cadastro.class) EnderecoDTO dto,
                                                          @RequestHeader("Authorization") String token){
         return ResponseEntity.ok(usuarioService.cadastraEndereco(token, dto));
     }
 
     @PostMapping("/telefone")
-    public ResponseEntity<TelefoneDTO> cadastraTelefone(@RequestBody TelefoneDTO dto,
+    public ResponseEntity<TelefoneDTO> cadastraTelefone(@RequestBody @Validated(Cadastro.class) TelefoneDTO dto,
                                                          @RequestHeader("Authorization") String token) {
         return ResponseEntity.ok(usuarioService.cadastraTelefone(token, dto));
     }
-}
\ No newline at end of file
+
+    // Grava vários endereços de uma vez; o modo define se a lista adiciona, substitui ou sincroniza os cadastrados
+    @PostMapping("/endereco/lote")
+    public ResponseEntity<ResultadoLoteDTO> gravaEnderecos(@RequestBody List<EnderecoDTO> dtos,
+                                                           @RequestParam(value = "modo", defaultValue = "ADICIONAR") ModoLote modo,
+                                                           @RequestHeader("Authorization") String token) {
+        return ResponseEntity.ok(usuarioLoteService.gravaEnderecos(token, dtos, modo));
+    }
+
+    @PostMapping("/telefone/lote")
+    public ResponseEntity<ResultadoLoteDTO> gravaTelefones(@RequestBody List<TelefoneDTO> dtos,
+                                                           @RequestParam(value = "modo", defaultValue = "ADICIONAR") ModoLote modo,
+                                                           @RequestHeader("Authorization") String token) {
+        return ResponseEntity.ok(usuarioLoteService.gravaTelefones(token, dtos, modo));
+    }
+
+    // Com a escrita adiada o perfil inclui alterações que ainda não geraram versão no banco: vai sem ETag
+    private ResponseEntity<UsuarioDTO> perfil(String email, String ifNoneMatch, MediaType formato) {
+        if (ifNoneMatch != null && !escritaAdiadaService.isHabilitada()) {
+            // Só id e versão: endereços e telefones não são carregados se o cliente já tem a versão atual
+            Optional<ETag> atual = usuarioService.buscaVersaoPerfil(email).map(versao -> etag(versao, formato));
+            if (atual.isPresent() && ETag.parse(ifNoneMatch).stream()
+                    .anyMatch(recebido -> recebido.isWildcard() || recebido.compare(atual.get(), false))) {
+                return cabecalhosPerfil(ResponseEntity.status(HttpStatus.NOT_MODIFIED), atual.get()).build();
+            }
+        }
+        UsuarioDTO perfil = usuarioService.buscaUsuarioPorEmail(email);
+        return cabecalhosPerfil(ResponseEntity.ok(), escritaAdiadaService.isHabilitada() ? null : etag(perfil, formato))
+                .contentType(formato)
+                .body(perfil);
+    }
+
+    // JSON, a não ser que o cliente prefira CBOR; */* e a falta de Accept ficam com JSON
+    private static MediaType formatoPerfil(String accept) {
+        if (accept != null) {
+            List<MediaType> aceitos = new ArrayList<>(MediaType.parseMediaTypes(accept));
+            aceitos.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed());
+            for (MediaType aceito : aceitos) {
+                if (aceito.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                    return MediaType.APPLICATION_JSON;
+                }
+                if (aceito.isCompatibleWith(MediaType.APPLICATION_CBOR)) {
+                    return MediaType.APPLICATION_CBOR;
+                }
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    // ETag forte, um por formato: id (um e-mail recadastrado começa de novo na versão 0) e versão do perfil
+    private static ETag etag(UsuarioDTO versao, MediaType formato) {
+        String sufixo = MediaType.APPLICATION_CBOR.equals(formato) ? ".cbor" : "";
+        return new ETag(versao.getId() + "." + versao.getVersao() + sufixo, false);
+    }
+
+    // O perfil é do usuário, não de um cache compartilhado, e deve ser revalidado a cada uso
+    private static ResponseEntity.BodyBuilder cabecalhosPerfil(ResponseEntity.BodyBuilder resposta, ETag etag) {
+        resposta.cacheControl(CacheControl.noCache().cachePrivate()).varyBy(HttpHeaders.ACCEPT);
+        return etag != null ? resposta.eTag(etag.formattedTag()) : resposta;
+    }
+}
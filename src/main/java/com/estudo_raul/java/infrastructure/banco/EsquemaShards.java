@@ -0,0 +1,116 @@
+package com.estudo_raul.java.infrastructure.banco;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.boot.Metadata;
+import org.hibernate.boot.spi.BootstrapContext;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.schema.spi.SchemaManagementToolCoordinator;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prepara os shards quando a SessionFactory fica pronta. O ddl-auto do Spring só alcança a
+ * conexão padrão (shard 0), então as tabelas mapeadas são atualizadas aqui nos demais. Em
+ * cada shard cria a tabela shard_topologia (e no shard 0 a shard_movimento, das mudanças de
+ * shard em andamento) e, na primeira vez, faz as colunas id de usuario, endereco e telefone
+ * gerarem valores com passo MAXIMO_SHARDS e deslocamento igual ao índice do shard. O índice
+ * gravado também barra uma lista banco.shards.urls fora de ordem.
+ */
+@Slf4j
+class EsquemaShards implements Integrator, SessionFactoryObserver {
+
+    private static final List<String> TABELAS_PARTICIONADAS = List.of("usuario", "endereco", "telefone");
+
+    private final RoteamentoShardDataSource roteamento;
+    private final boolean atualizaEsquema;
+    private final int ativosIniciais;
+    private Metadata metadata;
+
+    EsquemaShards(RoteamentoShardDataSource roteamento, boolean atualizaEsquema, int ativosIniciais) {
+        this.roteamento = roteamento;
+        this.atualizaEsquema = atualizaEsquema;
+        this.ativosIniciais = ativosIniciais;
+    }
+
+    @Override
+    public void integrate(Metadata metadata, BootstrapContext bootstrapContext, SessionFactoryImplementor sessionFactory) {
+        this.metadata = metadata;
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+    }
+
+    // Chamado depois do ddl-auto do shard 0
+    @Override
+    public void sessionFactoryCreated(SessionFactory factory) {
+        SessionFactoryImplementor sessionFactory = (SessionFactoryImplementor) factory;
+        // Nos demais shards é sempre "update": create apagaria dados de shards já em uso
+        Map<String, Object> configuracao = new HashMap<>(sessionFactory.getServiceRegistry()
+                .requireService(ConfigurationService.class).getSettings());
+        configuracao.put(AvailableSettings.HBM2DDL_AUTO, "update");
+
+        for (int shard = 0; shard < roteamento.quantidade(); shard++) {
+            if (atualizaEsquema && shard != ShardUsuario.GLOBAL) {
+                ShardUsuario.noShard(shard, () -> SchemaManagementToolCoordinator.process(
+                        metadata, sessionFactory.getServiceRegistry(), configuracao, acao -> { }));
+            }
+            try {
+                preparaShard(shard);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Falha ao preparar o shard " + shard, e);
+            }
+        }
+    }
+
+    private void preparaShard(int shard) throws SQLException {
+        try (Connection conexao = roteamento.shard(shard).getConnection();
+             Statement comando = conexao.createStatement()) {
+            comando.execute("create table if not exists shard_topologia (id integer primary key, "
+                    + "indice integer not null, ativos integer not null, destino integer not null)");
+            if (shard == ShardUsuario.GLOBAL) {
+                // Mudanças de shard em andamento, concluídas ou desfeitas na subida se o processo cair no meio
+                comando.execute("create table if not exists shard_movimento (usuario_id bigint primary key, "
+                        + "origem integer not null, destino integer not null, troca_email boolean not null)");
+            }
+            try (ResultSet resultado = comando.executeQuery("select indice from shard_topologia where id = 1")) {
+                if (resultado.next()) {
+                    if (resultado.getInt(1) != shard) {
+                        throw new IllegalStateException("O banco na posição " + shard + " de banco.shards.urls é o shard "
+                                + resultado.getInt(1) + "; a ordem da lista não pode mudar");
+                    }
+                    return;
+                }
+            }
+
+            // Primeira subida deste shard: ids com passo fixo, continuando acima dos já existentes
+            conexao.setAutoCommit(false);
+            for (String tabela : TABELAS_PARTICIONADAS) {
+                long maximo;
+                try (ResultSet resultado = comando.executeQuery("select coalesce(max(id), 0) from " + tabela)) {
+                    resultado.next();
+                    maximo = resultado.getLong(1);
+                }
+                long inicio = (maximo / ShardUsuario.MAXIMO_SHARDS + 1) * ShardUsuario.MAXIMO_SHARDS + shard + 1;
+                comando.execute("alter table " + tabela + " alter column id set increment by " + ShardUsuario.MAXIMO_SHARDS);
+                comando.execute("alter table " + tabela + " alter column id restart with " + inicio);
+            }
+            comando.execute("insert into shard_topologia (id, indice, ativos, destino) values (1, " + shard + ", "
+                    + ativosIniciais + ", 0)");
+            conexao.commit();
+            log.info("Shard {} preparado: ids com passo {} e deslocamento {}", shard, ShardUsuario.MAXIMO_SHARDS, shard + 1);
+        }
+    }
+}
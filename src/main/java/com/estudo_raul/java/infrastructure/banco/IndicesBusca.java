@@ -0,0 +1,127 @@
+package com.estudo_raul.java.infrastructure.banco;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Índices da busca de usuários que o ddl-auto não sabe criar: no PostgreSQL, trigramas (pg_trgm)
+ * em lower(nome), para prefixo e busca aproximada, e índices de expressão em cidade/estado e nas
+ * colunas usuario_id de endereco e telefone. São criados com CREATE INDEX CONCURRENTLY, em
+ * segundo plano e em cada shard configurado, sem travar as escritas de tabelas grandes; um
+ * índice que ficou inválido por uma criação interrompida é recriado. Em outros bancos não faz
+ * nada e a busca usa LIKE.
+ */
+@Slf4j
+@Component
+public class IndicesBusca {
+
+    private static final List<Indice> INDICES = List.of(
+            new Indice("usuario_nome_trgm_idx", "usuario using gin (lower(nome) gin_trgm_ops)", true),
+            new Indice("endereco_cidade_estado_idx", "endereco (lower(cidade), upper(estado), usuario_id)", false),
+            new Indice("endereco_usuario_idx", "endereco (usuario_id)", false),
+            new Indice("telefone_usuario_idx", "telefone (usuario_id)", false));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ShardUsuario shardUsuario;
+    private final boolean criaIndices;
+    // Só com pg_trgm em todos os shards a busca aproximada usa o operador %
+    private volatile boolean trigramas;
+
+    public IndicesBusca(JdbcTemplate jdbcTemplate,
+                        ShardUsuario shardUsuario,
+                        @Value("${usuario.busca.cria-indices:true}") boolean criaIndices) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardUsuario = shardUsuario;
+        this.criaIndices = criaIndices;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void inicia() {
+        if (!postgres()) {
+            return;
+        }
+        Thread.ofPlatform().name("indices-busca").daemon().start(this::preparaShards);
+    }
+
+    public boolean isTrigramas() {
+        return trigramas;
+    }
+
+    // Primeiro a extensão em todos os shards, que é rápida e libera a busca aproximada; depois os índices
+    private void preparaShards() {
+        boolean todosComTrigramas = true;
+        for (int shard = 0; shard < shardUsuario.configurados(); shard++) {
+            int indice = shard;
+            try {
+                todosComTrigramas &= shardUsuario.executaNoShard(indice, () -> habilitaTrigramas(indice));
+            } catch (RuntimeException e) {
+                todosComTrigramas = false;
+                log.warn("Falha ao verificar pg_trgm no shard {}", indice, e);
+            }
+        }
+        trigramas = todosComTrigramas;
+        if (!criaIndices) {
+            return;
+        }
+
+        for (int shard = 0; shard < shardUsuario.configurados(); shard++) {
+            int indice = shard;
+            try {
+                shardUsuario.executaNoShard(indice, () -> {
+                    INDICES.stream()
+                            .filter(definicao -> trigramas || !definicao.trigramas())
+                            .forEach(definicao -> cria(indice, definicao));
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                log.warn("Falha ao criar os índices de busca do shard {}", indice, e);
+            }
+        }
+    }
+
+    // A extensão exige permissão de criação no banco; sem ela, a busca aproximada vira "contém"
+    private boolean habilitaTrigramas(int shard) {
+        try {
+            jdbcTemplate.execute("create extension if not exists pg_trgm");
+        } catch (RuntimeException e) {
+            log.warn("pg_trgm indisponível no shard {}: {}", shard, e.getMessage());
+        }
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "select exists (select 1 from pg_extension where extname = 'pg_trgm')", Boolean.class));
+    }
+
+    private void cria(int shard, Indice indice) {
+        List<Boolean> valido = jdbcTemplate.queryForList("select i.indisvalid from pg_class c join pg_index i on i.indexrelid = c.oid "
+                + "where c.relname = ?", Boolean.class, indice.nome());
+        if (!valido.isEmpty() && valido.get(0)) {
+            return;
+        }
+        if (!valido.isEmpty()) {
+            jdbcTemplate.execute("drop index concurrently if exists " + indice.nome());
+        }
+        long inicio = System.nanoTime();
+        jdbcTemplate.execute("create index concurrently if not exists " + indice.nome() + " on " + indice.definicao());
+        log.info("Índice {} criado no shard {} em {} ms", indice.nome(), shard, (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    private boolean postgres() {
+        try {
+            String produto = JdbcUtils.extractDatabaseMetaData(jdbcTemplate.getDataSource(),
+                    metaData -> metaData.getDatabaseProductName());
+            return "PostgreSQL".equals(produto);
+        } catch (Exception e) {
+            log.warn("Não foi possível identificar o banco; índices de busca não criados", e);
+            return false;
+        }
+    }
+
+    private record Indice(String nome, String definicao, boolean trigramas) {
+    }
+}
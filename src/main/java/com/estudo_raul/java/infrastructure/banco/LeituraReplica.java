@@ -0,0 +1,67 @@
+package com.estudo_raul.java.infrastructure.banco;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Marca os trechos de leitura que podem ir para uma réplica. Só o que roda dentro de
+ * executa() é roteado pelo RoteamentoDataSource; todo o resto, e qualquer leitura de um
+ * e-mail alterado há menos de janela-primario nesta instância, continua no primário.
+ * Com banco.replicas.habilitadas=false executa() apenas chama a leitura.
+ */
+@Component
+public class LeituraReplica {
+
+    private static final ThreadLocal<Boolean> EM_LEITURA_REPLICA = new ThreadLocal<>();
+
+    private final boolean habilitada;
+    // E-mails com escrita recente: leem do primário até expirar, para verem a própria alteração
+    private final Cache<String, Boolean> fixadosNoPrimario;
+
+    public LeituraReplica(@Value("${banco.replicas.habilitadas:false}") boolean habilitada,
+                          @Value("${banco.replicas.janela-primario:5s}") Duration janelaPrimario,
+                          @Value("${banco.replicas.maximo-fixados:100000}") long maximoFixados) {
+        this.habilitada = habilitada;
+        this.fixadosNoPrimario = Caffeine.newBuilder()
+                .expireAfterWrite(janelaPrimario)
+                .maximumSize(maximoFixados)
+                .build();
+    }
+
+    /**
+     * Executa a leitura em uma réplica, salvo se o e-mail estiver na janela do primário.
+     * A leitura deve abrir a própria transação (repositórios Spring Data já fazem isso);
+     * uma transação já em andamento continua na conexão que já tem.
+     * * @param email O e-mail do usuário lido.
+     * @param leitura A consulta, sem escritas.
+     * @return O resultado da leitura.
+     */
+    public <T> T executa(String email, Supplier<T> leitura) {
+        if (!habilitada || Boolean.TRUE.equals(EM_LEITURA_REPLICA.get())
+                || (email != null && fixadosNoPrimario.getIfPresent(email) != null)) {
+            return leitura.get();
+        }
+        EM_LEITURA_REPLICA.set(Boolean.TRUE);
+        try {
+            return leitura.get();
+        } finally {
+            EM_LEITURA_REPLICA.remove();
+        }
+    }
+
+    // Chamado em toda escrita de um usuário; as leituras seguintes dele ficam no primário por janela-primario
+    public void registraEscrita(String email) {
+        if (habilitada && email != null) {
+            fixadosNoPrimario.put(email, Boolean.TRUE);
+        }
+    }
+
+    static boolean emLeituraReplica() {
+        return Boolean.TRUE.equals(EM_LEITURA_REPLICA.get());
+    }
+}
@@ -0,0 +1,440 @@
+package com.estudo_raul.java.infrastructure.banco;
+
+import com.estudo_raul.java.infrastructure.entity.Usuario;
+import com.estudo_raul.java.infrastructure.eventos.EventoUsuario;
+import com.estudo_raul.java.infrastructure.eventos.RelayEventos;
+import com.estudo_raul.java.infrastructure.eventos.SaidaEventos;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Collectors;
+
+/**
+ * Move usuários entre shards, com endereços e telefones, mantendo os ids. Usado na troca de
+ * e-mail para um e-mail de outro shard e na reorganização online: ao crescer o anel de N para
+ * M shards, uma tarefa em segundo plano percorre os shards antigos e move cada usuário cuja
+ * posição mudou, um de cada vez e com as operações dele bloqueadas só durante a cópia. Até o
+ * fim, ShardUsuario procura esses usuários primeiro no shard novo. O destino fica gravado no
+ * shard 0, então uma reorganização interrompida continua na próxima subida; cada mudança de
+ * shard também é marcada lá (shard_movimento) até a original ser removida, e a subida resolve
+ * as que ficaram pela metade. Antes de mover, os eventos do usuário ainda na tabela de saída
+ * do shard antigo são entregues, para não chegarem depois dos eventos gravados no shard novo.
+ */
+@Slf4j
+@Component
+public class ReorganizacaoShards implements MeterBinder {
+
+    private final ShardUsuario shardUsuario;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RelayEventos relayEventos;
+    private final SaidaEventos saidaEventos;
+    private final int tamanhoPagina;
+
+    private final LongAdder movidos = new LongAdder();
+    private final LongAdder falhas = new LongAdder();
+    private final AtomicInteger shardEmVarredura = new AtomicInteger(-1);
+    private final AtomicLong ultimoIdVarrido = new AtomicLong();
+    private volatile Thread execucao;
+    private volatile String ultimaFalha;
+
+    public ReorganizacaoShards(ShardUsuario shardUsuario,
+                               NamedParameterJdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               RelayEventos relayEventos,
+                               SaidaEventos saidaEventos,
+                               @Value("${banco.shards.reorganizacao.tamanho-pagina:500}") int tamanhoPagina) {
+        this.shardUsuario = shardUsuario;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.relayEventos = relayEventos;
+        this.saidaEventos = saidaEventos;
+        this.tamanhoPagina = tamanhoPagina;
+    }
+
+    // Uma queda entre a cópia no shard novo e a remoção da original deixa o usuário nos dois
+    @PostConstruct
+    void concluiMovimentosInterrompidos() {
+        if (!shardUsuario.isHabilitado()) {
+            return;
+        }
+        List<Movimento> pendentes = shardUsuario.executaNoShard(ShardUsuario.GLOBAL, () -> jdbcTemplate.query(
+                "select * from shard_movimento", ReorganizacaoShards::movimento));
+        for (Movimento movimento : pendentes) {
+            log.warn("Concluindo a mudança de shard interrompida do usuário {} ({} -> {})", movimento.usuarioId(),
+                    movimento.origem(), movimento.destino());
+            conclui(movimento);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void retoma() {
+        if (shardUsuario.isHabilitado() && shardUsuario.topologia().destino() > 0) {
+            log.info("Retomando a reorganização para {} shards", shardUsuario.topologia().destino());
+            iniciaExecucao();
+        }
+    }
+
+    /**
+     * Começa (ou retoma) a reorganização para um anel com mais shards.
+     * * @param total Quantidade de shards do anel novo; os novos já devem estar em banco.shards.urls.
+     * @return A situação da reorganização.
+     * @throws IllegalArgumentException se o total não for maior que o atual ou passar das URLs configuradas.
+     * @throws IllegalStateException se o particionamento estiver desligado ou houver outra reorganização para outro total.
+     */
+    public synchronized Map<String, Object> inicia(int total) {
+        if (!shardUsuario.isHabilitado()) {
+            throw new IllegalStateException("Particionamento desligado (banco.shards.habilitados=false)");
+        }
+        ShardUsuario.Topologia atual = shardUsuario.topologia();
+        if (atual.destino() > 0 && atual.destino() != total) {
+            throw new IllegalStateException("Reorganização para " + atual.destino() + " shards ainda não terminou");
+        }
+        if (total <= atual.ativos() || total > shardUsuario.configurados()) {
+            throw new IllegalArgumentException("Total de shards deve ficar entre " + (atual.ativos() + 1)
+                    + " e " + shardUsuario.configurados() + " (URLs em banco.shards.urls)");
+        }
+        if (atual.destino() == 0) {
+            gravaTopologia(new ShardUsuario.Topologia(atual.ativos(), total));
+        }
+        iniciaExecucao();
+        return situacao();
+    }
+
+    private synchronized void iniciaExecucao() {
+        if (execucao != null && execucao.isAlive()) {
+            return;
+        }
+        ultimaFalha = null;
+        execucao = Thread.ofPlatform().name("reorganizacao-shards").daemon().start(this::reorganiza);
+    }
+
+    private void reorganiza() {
+        ShardUsuario.Topologia topologia = shardUsuario.topologia();
+        long falhasAntes = falhas.sum();
+        try {
+            for (int origem = 0; origem < topologia.ativos(); origem++) {
+                varre(origem, topologia.destino());
+            }
+        } catch (RuntimeException e) {
+            registraFalha("Varredura interrompida: " + e.getMessage(), e);
+        } finally {
+            shardEmVarredura.set(-1);
+        }
+
+        // Um usuário que não pôde ser movido ficaria inalcançável no anel novo
+        if (falhas.sum() > falhasAntes) {
+            log.warn("Reorganização para {} shards incompleta; corrija as falhas e chame de novo", topologia.destino());
+            return;
+        }
+        gravaTopologia(new ShardUsuario.Topologia(topologia.destino(), 0));
+        log.info("Reorganização concluída: {} shards ativos", topologia.destino());
+    }
+
+    private void varre(int origem, int destino) {
+        shardEmVarredura.set(origem);
+        long ultimoId = 0;
+        while (true) {
+            long inicio = ultimoId;
+            List<Map<String, Object>> pagina = shardUsuario.executaNoShard(origem, () -> jdbcTemplate.queryForList(
+                    "select id, email from usuario where id > :inicio order by id limit :limite",
+                    new MapSqlParameterSource("inicio", inicio).addValue("limite", tamanhoPagina)));
+            if (pagina.isEmpty()) {
+                return;
+            }
+            for (Map<String, Object> linha : pagina) {
+                String email = (String) linha.get("email");
+                int novo = ShardUsuario.posicao(email, destino);
+                if (novo != origem) {
+                    moveNaReorganizacao(email, origem, novo);
+                }
+            }
+            ultimoId = ((Number) pagina.get(pagina.size() - 1).get("id")).longValue();
+            ultimoIdVarrido.set(ultimoId);
+        }
+    }
+
+    private void moveNaReorganizacao(String email, int origem, int destino) {
+        Lock trava = shardUsuario.trava(email).writeLock();
+        trava.lock();
+        Movimento movimento = null;
+        try {
+            Copia copia = shardUsuario.executaNoShard(origem, () -> transactionTemplate.execute(status -> le(email)));
+            if (copia == null) {
+                return;
+            }
+            relayEventos.entregaPendentes(origem, copia.id());
+            movimento = new Movimento(copia.id(), origem, destino, false);
+            registraMovimento(movimento);
+            // Copiado antes de uma falha: o shard novo já vale, falta só remover a original
+            if (!existeUsuario(destino, copia.id())) {
+                shardUsuario.executaNoShard(destino, () -> transactionTemplate.execute(status -> insere(copia)));
+            }
+            shardUsuario.executaNoShard(origem, () -> transactionTemplate.execute(status -> remove(copia, false)));
+            encerraMovimento(movimento);
+            movidos.increment();
+        } catch (DataAccessException e) {
+            concluiDepoisDeFalha(movimento);
+            registraFalha("Usuário " + email + " não movido do shard " + origem + " para o " + destino + ": "
+                    + e.getMostSpecificCause().getMessage(), e);
+        } catch (IllegalStateException e) {
+            registraFalha("Usuário " + email + " não movido do shard " + origem + ": eventos pendentes não entregues", e);
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    /**
+     * Troca o e-mail de um usuário quando o novo pertence a outro shard: grava a cópia já alterada
+     * no shard do novo e-mail e só depois remove a original. O evento da alteração é gravado no
+     * shard antigo, na transação que remove a original, e entregue antes de liberar o usuário.
+     * Não pode ser chamado dentro de ShardUsuario.executa() para o mesmo e-mail.
+     * * @param email O e-mail atual.
+     * @param colunas As colunas alteradas, inclusive o novo e-mail.
+     * @param versaoEsperada A versão lida pelo cliente, ou null para não conferir.
+     * @return O usuário com os dados novos, ou vazio se não existir ou a versão não conferir.
+     * @throws org.springframework.dao.DuplicateKeyException se o e-mail ou um telefone já existir no shard novo.
+     * @throws IllegalStateException se os eventos pendentes do usuário não puderem ser entregues.
+     */
+    public Optional<Usuario> moveComAlteracao(String email, Map<String, Object> colunas, Long versaoEsperada) {
+        String novoEmail = (String) colunas.get("email");
+        Lock trava = shardUsuario.trava(email).writeLock();
+        trava.lock();
+        try {
+            int origem = shardUsuario.shardDe(email);
+            int destino = shardUsuario.shardDe(novoEmail);
+            Copia copia = shardUsuario.executaNoShard(origem, () -> transactionTemplate.execute(status -> le(email)));
+            if (copia == null || (versaoEsperada != null && !versaoEsperada.equals(copia.versao()))) {
+                return Optional.empty();
+            }
+            relayEventos.entregaPendentes(origem, copia.id());
+            Map<String, Object> usuario = new LinkedHashMap<>(copia.usuario());
+            usuario.putAll(colunas);
+            usuario.put("versao", copia.versao() + 1);
+            Copia alterada = new Copia(usuario, copia.enderecos(), copia.telefones());
+
+            Movimento movimento = new Movimento(copia.id(), origem, destino, true);
+            registraMovimento(movimento);
+            EventoUsuario evento = EventoUsuario.usuarioAlterado(copia.id(), novoEmail, colunas);
+            boolean removida;
+            try {
+                shardUsuario.executaNoShard(destino, () -> transactionTemplate.execute(status -> insere(alterada)));
+                removida = Boolean.TRUE.equals(shardUsuario.executaNoShard(origem,
+                        () -> transactionTemplate.execute(status -> {
+                            boolean removeu = remove(copia, true);
+                            if (removeu) {
+                                saidaEventos.registra(evento);
+                            }
+                            return removeu;
+                        })));
+            } catch (RuntimeException e) {
+                concluiDepoisDeFalha(movimento);
+                throw e;
+            }
+            // Sem a remoção, a original foi alterada por um caminho sem trava nesse meio tempo e
+            // conclui() desfaz a cópia
+            conclui(movimento);
+            if (!removida) {
+                return Optional.empty();
+            }
+            try {
+                relayEventos.entregaPendentes(origem, copia.id());
+            } catch (RuntimeException e) {
+                // A troca já foi confirmada; o relay entrega o evento depois, talvez fora de ordem com os do shard novo
+                log.warn("Evento da troca de e-mail de {} não entregue antes da mudança de shard", email, e);
+            }
+            return Optional.of(Usuario.builder()
+                    .id(copia.id())
+                    .nome((String) usuario.get("nome"))
+                    .email(novoEmail)
+                    .versao(copia.versao() + 1)
+                    .build());
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    // Linhas completas, com todas as colunas, para a cópia não depender da lista de colunas do mapeamento
+    private Copia le(String email) {
+        List<Map<String, Object>> usuarios = jdbcTemplate.queryForList("select * from usuario where email = :email",
+                Map.of("email", email));
+        if (usuarios.isEmpty()) {
+            return null;
+        }
+        Map<String, Object> usuario = usuarios.get(0);
+        Map<String, Object> dono = Map.of("id", usuario.get("id"));
+        return new Copia(usuario,
+                jdbcTemplate.queryForList("select * from endereco where usuario_id = :id", dono),
+                jdbcTemplate.queryForList("select * from telefone where usuario_id = :id", dono));
+    }
+
+    private Void insere(Copia copia) {
+        insereLinha("usuario", copia.usuario());
+        copia.enderecos().forEach(endereco -> insereLinha("endereco", endereco));
+        copia.telefones().forEach(telefone -> insereLinha("telefone", telefone));
+        return null;
+    }
+
+    private void insereLinha(String tabela, Map<String, Object> linha) {
+        String colunas = String.join(", ", linha.keySet());
+        String valores = linha.keySet().stream().map(coluna -> ":" + coluna).collect(Collectors.joining(", "));
+        jdbcTemplate.update("insert into " + tabela + " (" + colunas + ") values (" + valores + ")",
+                new MapSqlParameterSource(linha));
+    }
+
+    private boolean remove(Copia copia, boolean confereVersao) {
+        MapSqlParameterSource parametros = new MapSqlParameterSource("id", copia.id()).addValue("versao", copia.versao());
+        if (confereVersao && jdbcTemplate.queryForObject("select count(*) from usuario where id = :id and versao = :versao",
+                parametros, Integer.class) == 0) {
+            return false;
+        }
+        removeId(copia.id());
+        return true;
+    }
+
+    // Filhos antes do usuário, por causa das chaves estrangeiras
+    private Void removeId(Long id) {
+        MapSqlParameterSource parametros = new MapSqlParameterSource("id", id);
+        jdbcTemplate.update("delete from endereco where usuario_id = :id", parametros);
+        jdbcTemplate.update("delete from telefone where usuario_id = :id", parametros);
+        jdbcTemplate.update("delete from usuario where id = :id", parametros);
+        return null;
+    }
+
+    private boolean existeUsuario(int shard, Long id) {
+        return Boolean.TRUE.equals(shardUsuario.executaNoShard(shard, () -> jdbcTemplate.queryForObject(
+                "select count(*) > 0 from usuario where id = :id", Map.of("id", id), Boolean.class)));
+    }
+
+    // Gravado no shard 0 antes da cópia; uma marca que sobrou de uma falha anterior é resolvida antes
+    private void registraMovimento(Movimento movimento) {
+        List<Movimento> anterior = shardUsuario.executaNoShard(ShardUsuario.GLOBAL, () -> jdbcTemplate.query(
+                "select * from shard_movimento where usuario_id = :id", Map.of("id", movimento.usuarioId()), ReorganizacaoShards::movimento));
+        anterior.forEach(this::conclui);
+        shardUsuario.executaNoShard(ShardUsuario.GLOBAL, () -> jdbcTemplate.update(
+                "insert into shard_movimento (usuario_id, origem, destino, troca_email) values (:id, :origem, :destino, :troca)",
+                new MapSqlParameterSource("id", movimento.usuarioId())
+                        .addValue("origem", movimento.origem())
+                        .addValue("destino", movimento.destino())
+                        .addValue("troca", movimento.trocaEmail())));
+    }
+
+    private void encerraMovimento(Movimento movimento) {
+        shardUsuario.executaNoShard(ShardUsuario.GLOBAL, () -> jdbcTemplate.update(
+                "delete from shard_movimento where usuario_id = :id", Map.of("id", movimento.usuarioId())));
+    }
+
+    /**
+     * Deixa o usuário em um shard só, pelo que está gravado nos dois. A troca de e-mail só vale
+     * depois que a original é removida, então com as duas cópias vale a original; a cópia da
+     * reorganização vale assim que gravada no shard novo, então vale a cópia.
+     * * @param movimento A mudança marcada em shard_movimento.
+     */
+    private void conclui(Movimento movimento) {
+        if (existeUsuario(movimento.origem(), movimento.usuarioId())
+                && existeUsuario(movimento.destino(), movimento.usuarioId())) {
+            int descartado = movimento.trocaEmail() ? movimento.destino() : movimento.origem();
+            shardUsuario.executaNoShard(descartado, () -> transactionTemplate.execute(status -> removeId(movimento.usuarioId())));
+            log.info("Usuário {} estava nos shards {} e {}; removida a cópia do shard {}", movimento.usuarioId(),
+                    movimento.origem(), movimento.destino(), descartado);
+        }
+        encerraMovimento(movimento);
+    }
+
+    // Falhou no meio: tenta deixar o usuário em um shard só agora; se nem isso der, a marca fica para a próxima subida
+    private void concluiDepoisDeFalha(Movimento movimento) {
+        if (movimento == null) {
+            return;
+        }
+        try {
+            conclui(movimento);
+        } catch (RuntimeException e) {
+            log.warn("Mudança de shard do usuário {} fica pendente até a próxima subida", movimento.usuarioId(), e);
+        }
+    }
+
+    private static Movimento movimento(ResultSet linha, int numero) throws SQLException {
+        return new Movimento(linha.getLong("usuario_id"), linha.getInt("origem"), linha.getInt("destino"),
+                linha.getBoolean("troca_email"));
+    }
+
+    private void gravaTopologia(ShardUsuario.Topologia nova) {
+        shardUsuario.executaNoShard(ShardUsuario.GLOBAL, () -> jdbcTemplate.update(
+                "update shard_topologia set ativos = :ativos, destino = :destino where id = 1",
+                new MapSqlParameterSource("ativos", nova.ativos()).addValue("destino", nova.destino())));
+        shardUsuario.defineTopologia(nova);
+    }
+
+    private void registraFalha(String mensagem, Exception e) {
+        falhas.increment();
+        ultimaFalha = mensagem;
+        log.warn(mensagem, e);
+    }
+
+    public Map<String, Object> situacao() {
+        ShardUsuario.Topologia topologia = shardUsuario.topologia();
+        Map<String, Object> situacao = new LinkedHashMap<>();
+        situacao.put("habilitado", shardUsuario.isHabilitado());
+        situacao.put("ativos", topologia.ativos());
+        situacao.put("destino", topologia.destino());
+        situacao.put("configurados", shardUsuario.configurados());
+        situacao.put("emExecucao", execucao != null && execucao.isAlive());
+        situacao.put("shardEmVarredura", shardEmVarredura.get());
+        situacao.put("ultimoIdVarrido", ultimoIdVarrido.get());
+        situacao.put("movidos", movidos.sum());
+        situacao.put("falhas", falhas.sum());
+        situacao.put("ultimaFalha", ultimaFalha);
+        return situacao;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("banco.shards.ativos", shardUsuario, shard -> shard.topologia().ativos())
+                .description("Shards no anel de particionamento")
+                .register(registry);
+        FunctionCounter.builder("banco.shards.reorganizacao.movidos", movidos, LongAdder::sum)
+                .description("Usuários movidos de shard na reorganização")
+                .register(registry);
+        FunctionCounter.builder("banco.shards.reorganizacao.falhas", falhas, LongAdder::sum)
+                .description("Usuários que a reorganização não conseguiu mover")
+                .register(registry);
+    }
+
+    // Uma mudança de shard em andamento; trocaEmail distingue a troca de e-mail da reorganização
+    private record Movimento(Long usuarioId, int origem, int destino, boolean trocaEmail) {
+    }
+
+    private record Copia(Map<String, Object> usuario, List<Map<String, Object>> enderecos, List<Map<String, Object>> telefones) {
+
+        Long id() {
+            return ((Number) usuario.get("id")).longValue();
+        }
+
+        Long versao() {
+            return ((Number) usuario.get("versao")).longValue();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.estudo_raul.java.infrastructure.banco;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Réplicas de leitura (banco.replicas.habilitadas=true): substitui o DataSource do Spring
+ * Boot por um RoteamentoDataSource com o pool do primário (spring.datasource.*) e um pool
+ * somente leitura por URL de banco.replicas.urls. Os pools não são beans, para o
+ * monitoramento JDBC envolver só o DataSource roteado e não contar cada comando duas vezes.
+ */
+@Configuration
+@ConditionalOnProperty(name = "banco.replicas.habilitadas", havingValue = "true")
+public class ReplicasConfig {
+
+    private final RoteamentoDataSource roteamento;
+
+    public ReplicasConfig(DataSourceProperties propriedades, Environment environment, MeterRegistry meterRegistry,
+                          @Value("${banco.replicas.urls}") List<String> urls,
+                          @Value("${banco.replicas.usuario:${spring.datasource.username:}}") String usuario,
+                          @Value("${banco.replicas.senha:${spring.datasource.password:}}") String senha,
+                          @Value("${banco.replicas.tamanho-pool:10}") int tamanhoPool,
+                          @Value("${banco.replicas.consulta-atraso}") String consultaAtraso,
+                          @Value("${banco.replicas.atraso-maximo:2s}") Duration atrasoMaximo) {
+        MicrometerMetricsTrackerFactory metricas = new MicrometerMetricsTrackerFactory(meterRegistry);
+
+        HikariDataSource primario = propriedades.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primario));
+        primario.setPoolName(RoteamentoDataSource.PRIMARIO);
+        primario.setMetricsTrackerFactory(metricas);
+
+        Map<String, HikariDataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + i);
+            replica.setJdbcUrl(urls.get(i).trim());
+            replica.setUsername(usuario);
+            replica.setPassword(senha);
+            replica.setMaximumPoolSize(tamanhoPool);
+            replica.setReadOnly(true);
+            // Uma réplica fora do ar não impede a subida; só fica fora do rodízio
+            replica.setInitializationFailTimeout(-1);
+            replica.setMetricsTrackerFactory(metricas);
+            replicas.put(replica.getPoolName(), replica);
+        }
+
+        this.roteamento = new RoteamentoDataSource(primario, replicas, consultaAtraso, atrasoMaximo, meterRegistry);
+        this.roteamento.afterPropertiesSet();
+        // Primeira medição antes de atender requisições; até lá as leituras ficam no primário
+        this.roteamento.verificaAtrasos();
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource() {
+        return roteamento;
+    }
+
+    // Com OSIV o EntityManager vive a requisição inteira; segurar a conexão até o fim manteria
+    // uma escrita na conexão da réplica obtida por uma leitura anterior da mesma requisição
+    @Bean
+    public HibernatePropertiesCustomizer conexaoPorTransacao() {
+        return propriedades -> propriedades.put("hibernate.connection.handling_mode",
+                "DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION");
+    }
+
+    @Scheduled(fixedDelayString = "${banco.replicas.intervalo-verificacao-ms:1000}")
+    public void verificaAtrasos() {
+        roteamento.verificaAtrasos();
+    }
+
+    @PreDestroy
+    void fechaPools() {
+        roteamento.fecha();
+    }
+}
@@ -0,0 +1,119 @@
+package com.estudo_raul.java.infrastructure.banco;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DataSource que entrega conexões do primário, exceto dentro de LeituraReplica.executa(),
+ * quando escolhe em rodízio uma réplica saudável. Uma réplica deixa de receber leituras
+ * quando o atraso medido passa de atraso-maximo ou quando a verificação falha, e volta
+ * na primeira verificação boa; sem nenhuma saudável a leitura vai para o primário.
+ */
+@Slf4j
+public class RoteamentoDataSource extends AbstractRoutingDataSource {
+
+    static final String PRIMARIO = "primario";
+
+    private final HikariDataSource primario;
+    private final Map<String, HikariDataSource> replicas;
+    private final String consultaAtraso;
+    private final Duration atrasoMaximo;
+
+    // Réplica -> último atraso medido em milissegundos (-1 se a verificação falhou)
+    private final Map<String, Long> atrasos = new ConcurrentHashMap<>();
+    private volatile List<String> saudaveis = List.of();
+    private final AtomicInteger proxima = new AtomicInteger();
+    private final Counter leiturasNoPrimario;
+
+    public RoteamentoDataSource(HikariDataSource primario, Map<String, HikariDataSource> replicas,
+                                String consultaAtraso, Duration atrasoMaximo, MeterRegistry registry) {
+        this.primario = primario;
+        this.replicas = new LinkedHashMap<>(replicas);
+        this.consultaAtraso = consultaAtraso;
+        this.atrasoMaximo = atrasoMaximo;
+
+        Map<Object, Object> destinos = new HashMap<>(replicas);
+        destinos.put(PRIMARIO, primario);
+        setTargetDataSources(destinos);
+        setDefaultTargetDataSource(primario);
+        // Sem fallback silencioso: uma chave desconhecida é erro de configuração
+        setLenientFallback(false);
+
+        this.leiturasNoPrimario = Counter.builder("banco.replicas.leituras.primario")
+                .description("Leituras marcadas para réplica que foram ao primário por falta de réplica saudável")
+                .register(registry);
+        replicas.keySet().forEach(nome -> Gauge.builder("banco.replicas.atraso", atrasos, mapa -> mapa.getOrDefault(nome, -1L))
+                .tag("replica", nome)
+                .baseUnit("milliseconds")
+                .register(registry));
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!LeituraReplica.emLeituraReplica()) {
+            return PRIMARIO;
+        }
+        List<String> disponiveis = saudaveis;
+        if (disponiveis.isEmpty()) {
+            leiturasNoPrimario.increment();
+            return PRIMARIO;
+        }
+        return disponiveis.get(Math.floorMod(proxima.getAndIncrement(), disponiveis.size()));
+    }
+
+    /**
+     * Mede o atraso de cada réplica com consulta-atraso (segundos; nulo conta como zero, o
+     * caso de uma instância que não é standby) e refaz a lista de réplicas saudáveis.
+     */
+    public void verificaAtrasos() {
+        List<String> novas = new ArrayList<>();
+        replicas.forEach((nome, replica) -> {
+            long atrasoMs = mede(nome, replica);
+            atrasos.put(nome, atrasoMs);
+            boolean saudavel = atrasoMs >= 0 && atrasoMs <= atrasoMaximo.toMillis();
+            if (saudavel) {
+                novas.add(nome);
+            }
+            if (saudavel != saudaveis.contains(nome)) {
+                log.info("Réplica {} {} (atraso {} ms)", nome, saudavel ? "voltou a receber leituras" : "fora do rodízio", atrasoMs);
+            }
+        });
+        saudaveis = List.copyOf(novas);
+    }
+
+    private long mede(String nome, HikariDataSource replica) {
+        try (Connection conexao = replica.getConnection();
+             Statement comando = conexao.createStatement();
+             ResultSet resultado = comando.executeQuery(consultaAtraso)) {
+            if (!resultado.next()) {
+                return 0;
+            }
+            double segundos = resultado.getDouble(1);
+            return resultado.wasNull() ? 0 : Math.round(segundos * 1000);
+        } catch (Exception e) {
+            log.debug("Falha ao medir o atraso da réplica {}", nome, e);
+            return -1;
+        }
+    }
+
+    public void fecha() {
+        replicas.values().forEach(HikariDataSource::close);
+        primario.close();
+    }
+}
@@ -0,0 +1,60 @@
+package com.estudo_raul.java.infrastructure.banco;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DataSource que entrega conexões do shard fixado por ShardUsuario no momento em que a
+ * conexão é pedida; fora de um escopo de shard, do shard 0 (tabelas globais).
+ */
+public class RoteamentoShardDataSource extends AbstractRoutingDataSource {
+
+    private final List<HikariDataSource> shards;
+    private final Counter[] conexoes;
+
+    public RoteamentoShardDataSource(List<HikariDataSource> shards, MeterRegistry registry) {
+        this.shards = List.copyOf(shards);
+
+        Map<Object, Object> destinos = new HashMap<>();
+        this.conexoes = new Counter[shards.size()];
+        for (int i = 0; i < shards.size(); i++) {
+            destinos.put(i, shards.get(i));
+            conexoes[i] = Counter.builder("banco.shards.conexoes")
+                    .description("Conexões entregues por shard")
+                    .tag("shard", String.valueOf(i))
+                    .register(registry);
+        }
+        setTargetDataSources(destinos);
+        setDefaultTargetDataSource(shards.get(ShardUsuario.GLOBAL));
+        // Um índice sem shard configurado é erro de configuração, não motivo para gravar no shard 0
+        setLenientFallback(false);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer shard = ShardUsuario.shardAtual();
+        int indice = shard != null ? shard : ShardUsuario.GLOBAL;
+        if (indice < conexoes.length) {
+            conexoes[indice].increment();
+        }
+        return indice;
+    }
+
+    public HikariDataSource shard(int indice) {
+        return shards.get(indice);
+    }
+
+    public int quantidade() {
+        return shards.size();
+    }
+
+    public void fecha() {
+        shards.forEach(HikariDataSource::close);
+    }
+}
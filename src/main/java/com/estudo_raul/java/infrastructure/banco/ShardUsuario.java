@@ -0,0 +1,345 @@
+package com.estudo_raul.java.infrastructure.banco;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Particionamento de usuario, endereco e telefone por hash do e-mail (banco.shards.habilitados=true).
+ * Cada usuário mora inteiro em um shard, com endereços e telefones junto. As operações de um
+ * usuário rodam dentro de executa(email, ...), que fixa o shard para o RoteamentoShardDataSource;
+ * fora de qualquer escopo as conexões vão para o shard 0, onde ficam as tabelas globais
+ * (revogação de tokens e topologia). A posição no anel usa jump consistent hash: ao crescer de
+ * N para M shards só os usuários que vão para os shards novos mudam de lugar (ReorganizacaoShards).
+ * O e-mail continua único, porque cada e-mail tem um só shard; o número de telefone passa a ser
+ * único dentro de cada shard. Com banco.shards.habilitados=false há um único shard e executa() apenas chama a operação.
+ */
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory") // A tabela de topologia é preparada junto com o esquema
+public class ShardUsuario {
+
+    public static final int GLOBAL = 0;
+    // Teto de shards: os ids são gerados com esse passo e deslocamento igual ao índice do shard,
+    // para continuarem únicos entre shards e quando um usuário muda de shard
+    public static final int MAXIMO_SHARDS = 64;
+    private static final int TRAVAS = 1024;
+
+    private static final ThreadLocal<Escopo> ESCOPO = new ThreadLocal<>();
+
+    private final boolean habilitado;
+    private final int configurados;
+    private final DataSource dataSource;
+    // Operações de um usuário seguram a leitura; a mudança de shard do usuário segura a escrita
+    private final ReadWriteLock[] travas = new ReadWriteLock[TRAVAS];
+
+    private volatile Topologia topologia;
+
+    public ShardUsuario(@Value("${banco.shards.habilitados:false}") boolean habilitado,
+                        @Value("${banco.shards.urls:}") List<String> urls,
+                        DataSource dataSource) {
+        this.habilitado = habilitado;
+        this.configurados = habilitado ? urls.size() : 1;
+        this.dataSource = dataSource;
+        this.topologia = new Topologia(configurados, 0);
+        for (int i = 0; i < TRAVAS; i++) {
+            travas[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    @PostConstruct
+    void carregaTopologia() {
+        if (!habilitado) {
+            return;
+        }
+        Topologia gravada = executaNoShard(GLOBAL, () -> leTopologia());
+        if (Math.max(gravada.ativos(), gravada.destino()) > configurados) {
+            throw new IllegalStateException("O shard 0 registra " + Math.max(gravada.ativos(), gravada.destino())
+                    + " shards, mas banco.shards.urls tem " + configurados);
+        }
+        topologia = gravada;
+        log.info("Usuários particionados em {} shards{}", gravada.ativos(),
+                gravada.destino() > 0 ? " (reorganização para " + gravada.destino() + " pendente)" : "");
+    }
+
+    /**
+     * Executa uma operação sobre os dados de um usuário no shard dele. A operação deve abrir
+     * as próprias transações; chamadas aninhadas para o mesmo e-mail reaproveitam o escopo.
+     * * @param email O e-mail do usuário.
+     * @param operacao O acesso ao banco.
+     * @return O resultado da operação.
+     * @throws IllegalStateException se chamada dentro de uma transação de outro shard.
+     */
+    public <T> T executa(String email, Supplier<T> operacao) {
+        if (!habilitado) {
+            return operacao.get();
+        }
+        Escopo atual = ESCOPO.get();
+        if (atual != null && Objects.equals(atual.email(), email)) {
+            return operacao.get();
+        }
+        ReadWriteLock trava = trava(email);
+        trava.readLock().lock();
+        try {
+            return noEscopo(new Escopo(email, shardDe(email)), operacao);
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * Executa uma operação em um shard específico, para as varreduras que passam por todos
+     * os shards e para operações em lote já agrupadas por shard.
+     * * @param shard O índice do shard.
+     * @param operacao O acesso ao banco.
+     * @return O resultado da operação.
+     */
+    public <T> T executaNoShard(int shard, Supplier<T> operacao) {
+        if (!habilitado) {
+            return operacao.get();
+        }
+        return noEscopo(new Escopo(null, shard), operacao);
+    }
+
+    /**
+     * Executa a operação em cada shard com dados, um de cada vez, e junta os resultados.
+     * * @param operacao Recebe o índice do shard.
+     * @return Os resultados em ordem de shard.
+     */
+    public <T> List<T> emTodos(IntFunction<T> operacao) {
+        int shards = quantidade();
+        List<T> resultados = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            int indice = shard;
+            resultados.add(executaNoShard(indice, () -> operacao.apply(indice)));
+        }
+        return resultados;
+    }
+
+    /**
+     * Como emTodos, mas com uma virtual thread por shard, para as leituras em que somar a
+     * latência de cada shard pesa na resposta (busca). Cada shard usa uma conexão do próprio pool.
+     * * @param operacao Recebe o índice do shard.
+     * @return Os resultados em ordem de shard.
+     */
+    public <T> List<T> emTodosEmParalelo(IntFunction<T> operacao) {
+        int shards = quantidade();
+        if (shards == 1) {
+            return emTodos(operacao);
+        }
+        List<Future<T>> tarefas = new ArrayList<>(shards);
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int shard = 0; shard < shards; shard++) {
+                int indice = shard;
+                tarefas.add(threads.submit(() -> executaNoShard(indice, () -> operacao.apply(indice))));
+            }
+            List<T> resultados = new ArrayList<>(shards);
+            for (Future<T> tarefa : tarefas) {
+                resultados.add(tarefa.get());
+            }
+            return resultados;
+        } catch (InterruptedException e) {
+            tarefas.forEach(tarefa -> tarefa.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrompido aguardando os shards", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // Agrupa itens de vários usuários pelo shard do e-mail de cada um, em ordem de shard
+    public <K> Map<Integer, List<K>> agrupa(Collection<K> itens, Function<K, String> email) {
+        Map<Integer, List<K>> grupos = new TreeMap<>();
+        for (K item : itens) {
+            grupos.computeIfAbsent(shardDe(email.apply(item)), shard -> new ArrayList<>()).add(item);
+        }
+        return grupos;
+    }
+
+    /**
+     * Shard onde o usuário está agora. Durante uma reorganização, um e-mail cuja posição muda
+     * fica no shard antigo só enquanto ainda está lá; já movido, ou ainda não cadastrado (um
+     * cadastro ou troca de e-mail no meio da reorganização), vai para o shard novo, que a
+     * varredura não precisa alcançar. Isso custa até duas consultas só para esses e-mails.
+     * * @param email O e-mail do usuário (inclusive de um usuário ainda não cadastrado).
+     * @return O índice do shard.
+     */
+    public int shardDe(String email) {
+        if (!habilitado) {
+            return GLOBAL;
+        }
+        Topologia atual = topologia;
+        int shard = posicao(email, atual.ativos());
+        if (atual.destino() == 0) {
+            return shard;
+        }
+        int futuro = posicao(email, atual.destino());
+        if (futuro == shard || existe(futuro, email)) {
+            return futuro;
+        }
+        return existe(shard, email) ? shard : futuro;
+    }
+
+    // Shards com dados: os ativos mais os novos de uma reorganização em andamento
+    public int quantidade() {
+        Topologia atual = topologia;
+        return Math.max(atual.ativos(), atual.destino());
+    }
+
+    public boolean isHabilitado() {
+        return habilitado;
+    }
+
+    public int configurados() {
+        return configurados;
+    }
+
+    public Topologia topologia() {
+        return topologia;
+    }
+
+    ReadWriteLock trava(String email) {
+        return travas[Math.floorMod(Objects.hashCode(email), TRAVAS)];
+    }
+
+    // Gravada pela ReorganizacaoShards depois de persistida no shard 0
+    void defineTopologia(Topologia nova) {
+        topologia = nova;
+    }
+
+    /**
+     * Posição do e-mail em um anel de N shards (jump consistent hash de Lamping e Veach).
+     * * @param email O e-mail do usuário.
+     * @param shards Quantidade de shards do anel.
+     * @return Índice entre 0 e shards - 1.
+     */
+    public static int posicao(String email, int shards) {
+        long chave = hash(email);
+        long balde = -1;
+        long proximo = 0;
+        while (proximo < shards) {
+            balde = proximo;
+            chave = chave * 2862933555777941757L + 1;
+            proximo = (long) ((balde + 1) * ((double) (1L << 31) / (double) ((chave >>> 33) + 1)));
+        }
+        return (int) balde;
+    }
+
+    // FNV-1a de 64 bits com a mistura final do MurmurHash3, estável entre JVMs e versões
+    private static long hash(String email) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : email.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    private <T> T noEscopo(Escopo escopo, Supplier<T> operacao) {
+        Escopo anterior = ESCOPO.get();
+        int shardAnterior = anterior != null ? anterior.shard() : GLOBAL;
+        // A transação já tem conexão de um shard; trocar de shard no meio dela gravaria no lugar errado
+        if (shardAnterior != escopo.shard() && TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Acesso ao shard " + escopo.shard() + " dentro de uma transação do shard " + shardAnterior);
+        }
+        return comEscopo(escopo, operacao);
+    }
+
+    private static <T> T comEscopo(Escopo escopo, Supplier<T> operacao) {
+        Escopo anterior = ESCOPO.get();
+        ESCOPO.set(escopo);
+        try {
+            return operacao.get();
+        } finally {
+            if (anterior == null) {
+                ESCOPO.remove();
+            } else {
+                ESCOPO.set(anterior);
+            }
+        }
+    }
+
+    // Conexão própria, fora da transação corrente: a consulta é em outro shard
+    private boolean existe(int shard, String email) {
+        return comEscopo(new Escopo(null, shard), () -> {
+            try (Connection conexao = dataSource.getConnection();
+                 PreparedStatement comando = conexao.prepareStatement("select 1 from usuario where email = ?")) {
+                comando.setString(1, email);
+                try (ResultSet resultado = comando.executeQuery()) {
+                    return resultado.next();
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("Falha ao localizar " + email + " no shard " + shard, e);
+            }
+        });
+    }
+
+    private Topologia leTopologia() {
+        try (Connection conexao = dataSource.getConnection();
+             PreparedStatement comando = conexao.prepareStatement("select ativos, destino from shard_topologia where id = 1");
+             ResultSet resultado = comando.executeQuery()) {
+            if (!resultado.next()) {
+                throw new IllegalStateException("Tabela shard_topologia vazia no shard 0");
+            }
+            return new Topologia(resultado.getInt(1), resultado.getInt(2));
+        } catch (SQLException e) {
+            throw new IllegalStateException("Falha ao ler a topologia dos shards", e);
+        }
+    }
+
+    // Shard da conexão pedida agora; null fora de qualquer escopo
+    static Integer shardAtual() {
+        Escopo escopo = ESCOPO.get();
+        return escopo != null ? escopo.shard() : null;
+    }
+
+    // Usado na preparação do esquema, antes de haver requisições
+    static void noShard(int shard, Runnable operacao) {
+        comEscopo(new Escopo(null, shard), () -> {
+            operacao.run();
+            return null;
+        });
+    }
+
+    /**
+     * Shards no anel (ativos) e, durante uma reorganização, o tamanho do anel novo (destino).
+     * destino = 0 quando não há reorganização.
+     */
+    public record Topologia(int ativos, int destino) {
+    }
+
+    private record Escopo(String email, int shard) {
+    }
+}
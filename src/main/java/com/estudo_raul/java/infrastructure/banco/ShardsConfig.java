@@ -0,0 +1,93 @@
+package com.estudo_raul.java.infrastructure.banco;
+
+import com.estudo_raul.java.infrastructure.config.IntegradoresHibernate;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Particionamento por e-mail (banco.shards.habilitados=true): substitui o DataSource do
+ * Spring Boot por um RoteamentoShardDataSource com um pool por URL de banco.shards.urls.
+ * A ordem da lista é a numeração dos shards e não pode mudar; novos shards entram no fim.
+ * Como nas réplicas, os pools não são beans, para o monitoramento JDBC envolver só o
+ * DataSource roteado.
+ */
+@Configuration
+@ConditionalOnProperty(name = "banco.shards.habilitados", havingValue = "true")
+public class ShardsConfig {
+
+    private static final Set<String> DDL_QUE_ATUALIZA = Set.of("update", "create", "create-drop");
+
+    private final RoteamentoShardDataSource roteamento;
+    private final EsquemaShards esquemaShards;
+
+    public ShardsConfig(MeterRegistry meterRegistry,
+                        @Value("${banco.replicas.habilitadas:false}") boolean replicasHabilitadas,
+                        @Value("${banco.shards.urls}") List<String> urls,
+                        @Value("${banco.shards.ativos:0}") int ativos,
+                        @Value("${banco.shards.usuario:${spring.datasource.username:}}") String usuario,
+                        @Value("${banco.shards.senha:${spring.datasource.password:}}") String senha,
+                        @Value("${banco.shards.tamanho-pool:10}") int tamanhoPool,
+                        @Value("${spring.jpa.hibernate.ddl-auto:none}") String ddlAuto) {
+        // As duas configurações trocam o DataSource principal; réplicas por shard ficam para outra etapa
+        if (replicasHabilitadas) {
+            throw new IllegalStateException("banco.shards.habilitados e banco.replicas.habilitadas não podem ser usados juntos");
+        }
+        if (urls.isEmpty() || urls.size() > ShardUsuario.MAXIMO_SHARDS) {
+            throw new IllegalStateException("banco.shards.urls deve ter de 1 a " + ShardUsuario.MAXIMO_SHARDS + " URLs");
+        }
+        MicrometerMetricsTrackerFactory metricas = new MicrometerMetricsTrackerFactory(meterRegistry);
+
+        List<HikariDataSource> shards = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource shard = new HikariDataSource();
+            shard.setPoolName("shard-" + i);
+            shard.setJdbcUrl(urls.get(i).trim());
+            shard.setUsername(usuario);
+            shard.setPassword(senha);
+            shard.setMaximumPoolSize(tamanhoPool);
+            shard.setMetricsTrackerFactory(metricas);
+            shards.add(shard);
+        }
+
+        this.roteamento = new RoteamentoShardDataSource(shards, meterRegistry);
+        this.roteamento.afterPropertiesSet();
+        // banco.shards.ativos só vale na primeira subida; depois vale a topologia gravada no shard 0
+        int ativosIniciais = ativos > 0 ? Math.min(ativos, urls.size()) : urls.size();
+        this.esquemaShards = new EsquemaShards(roteamento, DDL_QUE_ATUALIZA.contains(ddlAuto), ativosIniciais);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource() {
+        return roteamento;
+    }
+
+    // Cada transação pede a conexão de novo ao roteamento; com OSIV, segurar a conexão a
+    // requisição inteira levaria as operações de um usuário para o shard de outro
+    @Bean
+    public HibernatePropertiesCustomizer conexaoPorTransacaoShards() {
+        return propriedades -> {
+            propriedades.put("hibernate.connection.handling_mode", "DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION");
+            propriedades.put("hibernate.session_factory_observer", esquemaShards);
+            IntegradoresHibernate.acrescenta(propriedades, esquemaShards);
+        };
+    }
+
+    @PreDestroy
+    void fechaPools() {
+        roteamento.fecha();
+    }
+}
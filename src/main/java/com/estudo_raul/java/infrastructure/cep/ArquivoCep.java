@@ -0,0 +1,180 @@
+package com.estudo_raul.java.infrastructure.cep;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Índice de CEPs em um arquivo binário mapeado em memória, só de leitura. Layout (big-endian):
+ * cabeçalho de 32 bytes; registros de 12 bytes em ordem de CEP (int cep, int posição da rua na
+ * área de ruas ou -1, int cidade); tabela de cidades (UF em 2 bytes ASCII, tamanho em 2 bytes e
+ * nome em UTF-8); área de ruas (tamanho em 2 bytes e nome em UTF-8, cada rua uma vez só).
+ *
+ * As cidades, poucas e muito repetidas, são lidas para a memória ao abrir. A busca por CEP é
+ * binária direto no mapeamento e, como cidade e estado vêm dessas tabelas, não aloca nada; só
+ * a rua é decodificada a cada leitura. O mapeamento fica fora do heap e continua válido depois
+ * que o arquivo é substituído, então uma instância em uso nunca muda.
+ */
+public final class ArquivoCep {
+
+    static final long MAGICO = 0x4345504944583031L; // "CEPIDX01"
+    static final int CABECALHO = 32;
+    static final int TAMANHO_REGISTRO = 12;
+
+    static final ArquivoCep VAZIO = new ArquivoCep(ByteBuffer.allocate(0), 0, 0, new String[0], new String[0]);
+
+    private final ByteBuffer mapa;
+    private final int registros;
+    private final int inicioRuas;
+    private final String[] cidades;
+    private final String[] estados;
+
+    private ArquivoCep(ByteBuffer mapa, int registros, int inicioRuas, String[] cidades, String[] estados) {
+        this.mapa = mapa;
+        this.registros = registros;
+        this.inicioRuas = inicioRuas;
+        this.cidades = cidades;
+        this.estados = estados;
+    }
+
+    /**
+     * Mapeia um arquivo gerado pelo GeradorArquivoCep.
+     * * @param arquivo O arquivo binário.
+     * @return O índice pronto para consultas.
+     * @throws IOException se o arquivo não puder ser lido ou não for um índice de CEP válido.
+     */
+    static ArquivoCep abre(Path arquivo) throws IOException {
+        ByteBuffer mapa;
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            if (canal.size() < CABECALHO || canal.size() > Integer.MAX_VALUE) {
+                throw new IOException("Tamanho inválido para um índice de CEP: " + arquivo);
+            }
+            mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+        }
+        if (mapa.getLong(0) != MAGICO) {
+            throw new IOException("Não é um índice de CEP: " + arquivo);
+        }
+        int registros = mapa.getInt(8);
+        int quantidadeCidades = mapa.getInt(12);
+        int inicioCidades = mapa.getInt(16);
+        int inicioRuas = mapa.getInt(20);
+        if (registros < 0 || inicioCidades != CABECALHO + (long) registros * TAMANHO_REGISTRO
+                || inicioRuas < inicioCidades || inicioRuas > mapa.capacity()) {
+            throw new IOException("Cabeçalho inconsistente no índice de CEP: " + arquivo);
+        }
+
+        String[] cidades = new String[quantidadeCidades];
+        String[] estados = new String[quantidadeCidades];
+        // Uma instância por UF, como as cidades: a consulta devolve sempre as mesmas strings
+        Map<String, String> ufs = new HashMap<>();
+        int posicao = inicioCidades;
+        for (int i = 0; i < quantidadeCidades; i++) {
+            String uf = new String(new byte[]{mapa.get(posicao), mapa.get(posicao + 1)}, StandardCharsets.US_ASCII);
+            estados[i] = ufs.computeIfAbsent(uf, u -> u);
+            cidades[i] = texto(mapa, posicao + 2);
+            posicao += 4 + (mapa.getShort(posicao + 2) & 0xFFFF);
+        }
+        if (posicao != inicioRuas) {
+            throw new IOException("Tabela de cidades inconsistente no índice de CEP: " + arquivo);
+        }
+        return new ArquivoCep(mapa, registros, inicioRuas, cidades, estados);
+    }
+
+    public int quantidade() {
+        return registros;
+    }
+
+    /**
+     * Busca binária pelo CEP.
+     * * @param cep Os 8 dígitos do CEP como inteiro (ver numero()).
+     * @return A posição do registro, ou -1 se o CEP não está no índice.
+     */
+    public int posicao(int cep) {
+        int posicao = primeiraAPartirDe(cep);
+        return posicao < registros && cep(posicao) == cep ? posicao : -1;
+    }
+
+    // Posição do primeiro CEP maior ou igual ao informado; quantidade() se não houver
+    public int primeiraAPartirDe(int cep) {
+        int inicio = 0;
+        int fim = registros;
+        while (inicio < fim) {
+            int meio = (inicio + fim) >>> 1;
+            if (cep(meio) < cep) {
+                inicio = meio + 1;
+            } else {
+                fim = meio;
+            }
+        }
+        return inicio;
+    }
+
+    public int cep(int posicao) {
+        return mapa.getInt(CABECALHO + posicao * TAMANHO_REGISTRO);
+    }
+
+    public String cidade(int posicao) {
+        return cidades[mapa.getInt(CABECALHO + posicao * TAMANHO_REGISTRO + 8)];
+    }
+
+    public String estado(int posicao) {
+        return estados[mapa.getInt(CABECALHO + posicao * TAMANHO_REGISTRO + 8)];
+    }
+
+    // Logradouro do CEP, ou null para CEPs gerais de cidade, que não têm rua
+    public String rua(int posicao) {
+        int rua = mapa.getInt(CABECALHO + posicao * TAMANHO_REGISTRO + 4);
+        return rua < 0 ? null : texto(mapa, inicioRuas + rua);
+    }
+
+    /**
+     * Converte o CEP digitado para inteiro sem alocar: aceita 8 dígitos com hífen, ponto ou espaços.
+     * * @param cep O CEP como veio na requisição.
+     * @return Os 8 dígitos como inteiro, ou -1 se não for um CEP.
+     */
+    public static int numero(CharSequence cep) {
+        if (cep == null) {
+            return -1;
+        }
+        int numero = 0;
+        int digitos = 0;
+        for (int i = 0; i < cep.length(); i++) {
+            char c = cep.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (++digitos > 8) {
+                    return -1;
+                }
+                numero = numero * 10 + (c - '0');
+            } else if (c != '-' && c != '.' && c != ' ') {
+                return -1;
+            }
+        }
+        return digitos == 8 ? numero : -1;
+    }
+
+    // Formato gravado no banco: 01001-000
+    public static String formata(int cep) {
+        char[] texto = new char[9];
+        for (int i = 8; i >= 0; i--) {
+            if (i == 5) {
+                texto[i] = '-';
+                continue;
+            }
+            texto[i] = (char) ('0' + cep % 10);
+            cep /= 10;
+        }
+        return new String(texto);
+    }
+
+    // Texto com o tamanho em 2 bytes na frente
+    private static String texto(ByteBuffer mapa, int posicao) {
+        byte[] bytes = new byte[mapa.getShort(posicao) & 0xFFFF];
+        mapa.get(posicao + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
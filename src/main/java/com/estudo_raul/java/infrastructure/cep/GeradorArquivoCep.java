@@ -0,0 +1,161 @@
+package com.estudo_raul.java.infrastructure.cep;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Gera o arquivo binário do ArquivoCep a partir do dataset em texto UTF-8, uma linha por CEP:
+ * cep;rua;cidade;uf. A rua pode vir vazia (CEP geral da cidade); um cabeçalho, linhas inválidas
+ * e CEPs repetidos (vale a primeira linha) são ignorados. O arquivo é escrito ao lado do destino
+ * e movido por cima dele no fim, então quem já mapeou o anterior não vê um arquivo pela metade.
+ */
+@Slf4j
+final class GeradorArquivoCep {
+
+    private static final int MAXIMO_TEXTO = 0xFFFF;
+
+    private GeradorArquivoCep() {
+    }
+
+    /**
+     * Lê o dataset e grava o índice.
+     * * @param dataset O arquivo de texto com os CEPs.
+     * @param destino Onde o arquivo binário é gravado.
+     * @return Quantidade de CEPs gravados.
+     * @throws IOException se a leitura ou a escrita falharem.
+     */
+    static int gera(Path dataset, Path destino) throws IOException {
+        // Por linha aceita: CEP, posição da rua e índice da cidade
+        int[] ceps = new int[1024];
+        int[] posicoesRua = new int[1024];
+        int[] indicesCidade = new int[1024];
+        int aceitas = 0;
+        Map<String, Integer> cidades = new HashMap<>();
+        List<byte[]> cidadesEmOrdem = new ArrayList<>();
+        Map<String, Integer> ruas = new HashMap<>();
+        List<byte[]> ruasEmOrdem = new ArrayList<>();
+        int tamanhoRuas = 0;
+        int ignoradas = 0;
+
+        try (BufferedReader leitor = Files.newBufferedReader(dataset, StandardCharsets.UTF_8)) {
+            String linha;
+            while ((linha = leitor.readLine()) != null) {
+                String[] campos = linha.split(";", -1);
+                int cep = campos.length == 4 ? ArquivoCep.numero(campos[0].trim()) : -1;
+                String rua = campos.length == 4 ? campos[1].trim() : "";
+                String cidade = campos.length == 4 ? campos[2].trim() : "";
+                String uf = campos.length == 4 ? campos[3].trim().toUpperCase(Locale.ROOT) : "";
+                byte[] bytesRua = rua.getBytes(StandardCharsets.UTF_8);
+                byte[] bytesCidade = cidade.getBytes(StandardCharsets.UTF_8);
+                if (cep < 0 || cidade.isEmpty() || !uf.matches("[A-Z]{2}")
+                        || bytesRua.length > MAXIMO_TEXTO || bytesCidade.length > MAXIMO_TEXTO) {
+                    if (!linha.isBlank()) {
+                        ignoradas++;
+                    }
+                    continue;
+                }
+
+                Integer indiceCidade = cidades.get(uf + ';' + cidade);
+                if (indiceCidade == null) {
+                    indiceCidade = cidadesEmOrdem.size();
+                    cidades.put(uf + ';' + cidade, indiceCidade);
+                    byte[] registro = new byte[4 + bytesCidade.length];
+                    registro[0] = (byte) uf.charAt(0);
+                    registro[1] = (byte) uf.charAt(1);
+                    registro[2] = (byte) (bytesCidade.length >>> 8);
+                    registro[3] = (byte) bytesCidade.length;
+                    System.arraycopy(bytesCidade, 0, registro, 4, bytesCidade.length);
+                    cidadesEmOrdem.add(registro);
+                }
+                int posicaoRua = -1;
+                if (!rua.isEmpty()) {
+                    Integer existente = ruas.get(rua);
+                    if (existente == null) {
+                        existente = tamanhoRuas;
+                        ruas.put(rua, existente);
+                        ruasEmOrdem.add(bytesRua);
+                        tamanhoRuas = Math.addExact(tamanhoRuas, 2 + bytesRua.length);
+                    }
+                    posicaoRua = existente;
+                }
+                if (aceitas == ceps.length) {
+                    ceps = Arrays.copyOf(ceps, aceitas * 2);
+                    posicoesRua = Arrays.copyOf(posicoesRua, aceitas * 2);
+                    indicesCidade = Arrays.copyOf(indicesCidade, aceitas * 2);
+                }
+                ceps[aceitas] = cep;
+                posicoesRua[aceitas] = posicaoRua;
+                indicesCidade[aceitas] = indiceCidade;
+                aceitas++;
+            }
+        }
+
+        // CEP nos bits altos e número da linha nos baixos: a ordenação deixa a primeira linha de cada CEP na frente
+        long[] ordem = new long[aceitas];
+        for (int i = 0; i < aceitas; i++) {
+            ordem[i] = (long) ceps[i] << 32 | i;
+        }
+        Arrays.sort(ordem);
+        int[] registros = new int[aceitas];
+        int quantidade = 0;
+        for (int i = 0; i < aceitas; i++) {
+            if (i == 0 || ordem[i] >>> 32 != ordem[i - 1] >>> 32) {
+                registros[quantidade++] = (int) ordem[i];
+            }
+        }
+        int repetidos = aceitas - quantidade;
+
+        int tamanhoCidades = cidadesEmOrdem.stream().mapToInt(registro -> registro.length).sum();
+        long inicioCidades = ArquivoCep.CABECALHO + (long) quantidade * ArquivoCep.TAMANHO_REGISTRO;
+        long inicioRuas = inicioCidades + tamanhoCidades;
+        if (inicioRuas + tamanhoRuas > Integer.MAX_VALUE) {
+            throw new IOException("Dataset de CEP grande demais para um único arquivo mapeado: " + dataset);
+        }
+
+        Path temporario = destino.resolveSibling(destino.getFileName() + ".tmp");
+        if (destino.getParent() != null) {
+            Files.createDirectories(destino.getParent());
+        }
+        try (DataOutputStream saida = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporario), 1 << 16))) {
+            saida.writeLong(ArquivoCep.MAGICO);
+            saida.writeInt(quantidade);
+            saida.writeInt(cidadesEmOrdem.size());
+            saida.writeInt((int) inicioCidades);
+            saida.writeInt((int) inicioRuas);
+            saida.write(new byte[ArquivoCep.CABECALHO - 24]);
+            for (int i = 0; i < quantidade; i++) {
+                int linha = registros[i];
+                saida.writeInt(ceps[linha]);
+                saida.writeInt(posicoesRua[linha]);
+                saida.writeInt(indicesCidade[linha]);
+            }
+            for (byte[] cidade : cidadesEmOrdem) {
+                saida.write(cidade);
+            }
+            for (byte[] rua : ruasEmOrdem) {
+                saida.writeShort(rua.length);
+                saida.write(rua);
+            }
+        }
+        Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        if (ignoradas > 0 || repetidos > 0) {
+            log.warn("Dataset de CEP {}: {} linhas inválidas e {} CEPs repetidos ignorados", dataset, ignoradas, repetidos);
+        }
+        return quantidade;
+    }
+}
@@ -0,0 +1,194 @@
+package com.estudo_raul.java.infrastructure.cep;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Consulta local de CEPs (cep.*), sem rede e sem banco. O dataset em texto (cep.dataset) é
+ * convertido pelo GeradorArquivoCep em um arquivo binário ordenado (cep.arquivo), que é mapeado
+ * em memória pelo ArquivoCep. A cada cep.verificacao-ms o arquivo é refeito se o dataset mudou,
+ * ou remapeado se outro processo trocou o binário; POST /admin/cep/recarga força o mesmo. As
+ * consultas em andamento terminam no índice antigo: a troca é só de uma referência volátil.
+ *
+ * Sem dataset nem arquivo o índice fica vazio e os endereços são gravados como vieram.
+ */
+@Slf4j
+@Component
+public class IndiceCep implements MeterBinder {
+
+    private final boolean habilitado;
+    private final Path dataset;
+    private final Path arquivo;
+    private final boolean recusaDesconhecido;
+
+    private volatile Carregado carregado = new Carregado(ArquivoCep.VAZIO, null, null);
+    private final LongAdder encontrados = new LongAdder();
+    private final LongAdder naoEncontrados = new LongAdder();
+    private volatile String ultimaFalha;
+
+    public IndiceCep(@Value("${cep.habilitado:true}") boolean habilitado,
+                     @Value("${cep.dataset:dados/cep.csv}") Path dataset,
+                     @Value("${cep.arquivo:dados/cep.idx}") Path arquivo,
+                     @Value("${cep.recusa-desconhecido:false}") boolean recusaDesconhecido) {
+        this.habilitado = habilitado;
+        this.dataset = dataset;
+        this.arquivo = arquivo;
+        this.recusaDesconhecido = recusaDesconhecido;
+    }
+
+    @PostConstruct
+    void inicia() {
+        if (!habilitado) {
+            return;
+        }
+        if (!Files.exists(dataset) && !Files.exists(arquivo)) {
+            log.warn("Nem {} nem {} existem; endereços serão gravados sem consulta de CEP", dataset, arquivo);
+            return;
+        }
+        verifica();
+    }
+
+    // Refaz o binário se o dataset é mais novo que ele; remapeia se o binário mudou desde a última carga
+    @Scheduled(fixedDelayString = "${cep.verificacao-ms:60000}")
+    public synchronized void verifica() {
+        if (!habilitado) {
+            return;
+        }
+        try {
+            FileTime modificacaoDataset = Files.exists(dataset) ? Files.getLastModifiedTime(dataset) : null;
+            FileTime modificacaoArquivo = Files.exists(arquivo) ? Files.getLastModifiedTime(arquivo) : null;
+            if (modificacaoDataset != null && (modificacaoArquivo == null || modificacaoDataset.compareTo(modificacaoArquivo) > 0)) {
+                gera();
+            } else if (modificacaoArquivo != null && !modificacaoArquivo.equals(carregado.modificacao())) {
+                mapeia();
+            }
+        } catch (IOException | RuntimeException e) {
+            ultimaFalha = e.getMessage();
+            log.warn("Falha ao atualizar o índice de CEP; o anterior continua em uso", e);
+        }
+    }
+
+    /**
+     * Refaz o binário a partir do dataset e passa a consultá-lo.
+     * * @return A situação do índice depois da recarga.
+     * @throws IllegalStateException se o índice estiver desabilitado.
+     * @throws UncheckedIOException se o dataset não puder ser lido ou o arquivo gravado.
+     */
+    public synchronized Map<String, Object> recarrega() {
+        if (!habilitado) {
+            throw new IllegalStateException("Índice de CEP desabilitado (cep.habilitado=false)");
+        }
+        try {
+            gera();
+        } catch (IOException e) {
+            ultimaFalha = e.getMessage();
+            throw new UncheckedIOException("Falha ao recarregar o índice de CEP: " + e.getMessage(), e);
+        }
+        return situacao();
+    }
+
+    // O índice em uso; consultas que leem mais de um campo devem usar a mesma instância
+    public ArquivoCep atual() {
+        return carregado.arquivo();
+    }
+
+    /**
+     * Posição do CEP no índice informado, contando a consulta nas métricas.
+     * * @param arquivo O índice obtido de atual().
+     * @param cep O CEP como veio na requisição.
+     * @return A posição, ou -1 se o CEP não veio, o índice está vazio ou o CEP não foi encontrado.
+     * @throws IllegalArgumentException com cep.recusa-desconhecido=true, se o CEP for inválido ou não estiver no índice.
+     */
+    public int posicao(ArquivoCep arquivo, String cep) {
+        if (cep == null || arquivo.quantidade() == 0) {
+            return -1;
+        }
+        int numero = ArquivoCep.numero(cep);
+        int posicao = numero < 0 ? -1 : arquivo.posicao(numero);
+        if (posicao >= 0) {
+            encontrados.increment();
+            return posicao;
+        }
+        naoEncontrados.increment();
+        if (recusaDesconhecido) {
+            throw new IllegalArgumentException((numero < 0 ? "CEP inválido: " : "CEP não encontrado: ") + cep);
+        }
+        return -1;
+    }
+
+    // Mensagem de erro para validar itens de um lote antes da conversão; null se o CEP é aceito
+    public String valida(String cep) {
+        ArquivoCep arquivo = atual();
+        if (!recusaDesconhecido || cep == null || arquivo.quantidade() == 0) {
+            return null;
+        }
+        int numero = ArquivoCep.numero(cep);
+        if (numero < 0) {
+            return "CEP inválido: " + cep;
+        }
+        return arquivo.posicao(numero) < 0 ? "CEP não encontrado: " + cep : null;
+    }
+
+    public Map<String, Object> situacao() {
+        Carregado atual = carregado;
+        Map<String, Object> situacao = new LinkedHashMap<>();
+        situacao.put("habilitado", habilitado);
+        situacao.put("dataset", dataset.toString());
+        situacao.put("arquivo", arquivo.toString());
+        situacao.put("ceps", atual.arquivo().quantidade());
+        situacao.put("carregadoEm", atual.carregadoEm());
+        situacao.put("recusaDesconhecido", recusaDesconhecido);
+        situacao.put("encontrados", encontrados.sum());
+        situacao.put("naoEncontrados", naoEncontrados.sum());
+        situacao.put("ultimaFalha", ultimaFalha);
+        return situacao;
+    }
+
+    private void gera() throws IOException {
+        long inicio = System.nanoTime();
+        int ceps = GeradorArquivoCep.gera(dataset, arquivo);
+        log.info("Índice de CEP gerado a partir de {}: {} CEPs em {} ms", dataset, ceps, (System.nanoTime() - inicio) / 1_000_000);
+        mapeia();
+    }
+
+    private void mapeia() throws IOException {
+        FileTime modificacao = Files.getLastModifiedTime(arquivo);
+        ArquivoCep novo = ArquivoCep.abre(arquivo);
+        carregado = new Carregado(novo, modificacao, Instant.now());
+        ultimaFalha = null;
+        log.info("Índice de CEP {} carregado com {} CEPs", arquivo, novo.quantidade());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("cep.indice.registros", this, indice -> indice.atual().quantidade())
+                .description("CEPs no índice local em uso")
+                .register(registry);
+        FunctionCounter.builder("cep.consultas", encontrados, LongAdder::sum)
+                .tag("resultado", "encontrado")
+                .register(registry);
+        FunctionCounter.builder("cep.consultas", naoEncontrados, LongAdder::sum)
+                .tag("resultado", "nao-encontrado")
+                .register(registry);
+    }
+
+    private record Carregado(ArquivoCep arquivo, FileTime modificacao, Instant carregadoEm) {
+    }
+}
@@ -0,0 +1,30 @@
+package com.estudo_raul.java.infrastructure.config;
+
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A propriedade hibernate.integrator_provider aceita um único provedor; cada
+ * HibernatePropertiesCustomizer que registra um integrador acrescenta o seu aos já presentes.
+ */
+public final class IntegradoresHibernate {
+
+    private static final String PROPRIEDADE = "hibernate.integrator_provider";
+
+    private IntegradoresHibernate() {
+    }
+
+    public static void acrescenta(Map<String, Object> propriedades, Integrator integrador) {
+        List<Integrator> integradores = new ArrayList<>();
+        if (propriedades.get(PROPRIEDADE) instanceof IntegratorProvider atual) {
+            integradores.addAll(atual.getIntegrators());
+        }
+        integradores.add(integrador);
+        List<Integrator> todos = List.copyOf(integradores);
+        propriedades.put(PROPRIEDADE, (IntegratorProvider) () -> todos);
+    }
+}
@@ -0,0 +1,57 @@
+package com.estudo_raul.java.infrastructure.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// Limita quantas requisições executam ao mesmo tempo; o excedente espera um pouco e depois recebe 503
+public class LimitadorAdmissaoFilter extends OncePerRequestFilter {
+
+    private final Semaphore permissoes;
+    private final long esperaMillis;
+
+    public LimitadorAdmissaoFilter(int permissoes, long esperaMillis) {
+        this.permissoes = new Semaphore(permissoes, true);
+        this.esperaMillis = esperaMillis;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean admitida;
+        try {
+            admitida = permissoes.tryAcquire(esperaMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            admitida = false;
+        }
+
+        if (!admitida) {
+            // Recusa barata: nada de autenticação, banco ou BCrypt para quem não conseguiu permissão
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader("Retry-After", "1");
+            return;
+        }
+
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            permissoes.release();
+        }
+    }
+
+    public int permissoesDisponiveis() {
+        return permissoes.availablePermits();
+    }
+
+    public int requisicoesAguardando() {
+        return permissoes.getQueueLength();
+    }
+}
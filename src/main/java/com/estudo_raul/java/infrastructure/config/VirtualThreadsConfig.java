@@ -0,0 +1,38 @@
+package com.estudo_raul.java.infrastructure.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.time.Duration;
+
+/**
+ * Configuração do modo com virtual threads (spring.threads.virtual.enabled=true).
+ * Nesse modo o Tomcat cria uma virtual thread por requisição, sem limite de maxThreads;
+ * o limitador abaixo impede que milhares delas fiquem empilhadas esperando conexão
+ * do Hikari, recusando o excesso com 503 antes de qualquer trabalho.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadsConfig {
+
+    @Bean
+    public LimitadorAdmissaoFilter limitadorAdmissaoFilter(
+            @Value("${spring.datasource.hikari.maximum-pool-size:10}") int tamanhoPool,
+            @Value("${usuario.virtual-threads.fator-permissoes:2}") int fatorPermissoes,
+            @Value("${usuario.virtual-threads.espera-permissao:2s}") Duration esperaPermissao) {
+        // Parte do tempo de cada requisição é fora do banco (BCrypt, serialização), por isso o fator sobre o pool
+        return new LimitadorAdmissaoFilter(tamanhoPool * fatorPermissoes, esperaPermissao.toMillis());
+    }
+
+    @Bean
+    public FilterRegistrationBean<LimitadorAdmissaoFilter> registroLimitadorAdmissao(LimitadorAdmissaoFilter filtro) {
+        FilterRegistrationBean<LimitadorAdmissaoFilter> registro = new FilterRegistrationBean<>(filtro);
+        // Antes da cadeia do Spring Security, para que requisições recusadas não custem nada
+        registro.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registro;
+    }
+}
@@ -37,4 +37,9 @@ public class Endereco {
     @Column(name = "usuario_id")
     private Long usuario_id;
 
+    // Incrementada a cada alteração; atualizações que informam a versão lida só valem se ela ainda for a atual
+    @Version
+    @Column(name = "versao", columnDefinition = "bigint default 0 not null")
+    private Long versao;
+
 }
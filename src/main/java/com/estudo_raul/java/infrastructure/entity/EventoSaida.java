@@ -0,0 +1,43 @@
+package com.estudo_raul.java.infrastructure.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.OffsetDateTime;
+
+// Tabela de saída (outbox) dos eventos de alteração de usuários; mapeada só para o ddl-auto
+// criá-la em cada shard, gravada e lida por JDBC (EventoSaidaRepository)
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "evento_usuario", indexes = @Index(name = "evento_usuario_usuario_idx", columnList = "usuario_id, id"))
+@Builder
+public class EventoSaida {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Sem chave estrangeira: o evento de exclusão sobrevive ao usuário
+    @Column(name = "usuario_id", nullable = false)
+    private Long usuarioId;
+
+    @Column(name = "email", length = 30)
+    private String email;
+
+    @Column(name = "tipo", length = 20, nullable = false)
+    private String tipo;
+
+    // Id do endereço ou telefone nos eventos desses registros
+    @Column(name = "entidade_id")
+    private Long entidadeId;
+
+    // Colunas alteradas em JSON
+    @Column(name = "dados", length = 2000)
+    private String dados;
+
+    @Column(name = "criado_em", nullable = false)
+    private OffsetDateTime criadoEm;
+}
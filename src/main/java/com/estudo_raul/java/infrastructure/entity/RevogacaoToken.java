@@ -0,0 +1,27 @@
+package com.estudo_raul.java.infrastructure.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "token_revogacao")
+@Builder
+public class RevogacaoToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "email", length = 30, unique = true)
+    private String email;
+
+    // Tokens desse e-mail emitidos até este instante deixam de ser aceitos
+    @Column(name = "revogado_em", nullable = false)
+    private Instant revogadoEm;
+}
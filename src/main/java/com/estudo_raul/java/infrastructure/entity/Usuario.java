@@ -27,6 +27,12 @@ public class Usuario implements UserDetails {
     @Column(name = "senha")
     private String senha;
 
+    // Incrementada a cada alteração do usuário e também dos endereços e telefones dele: é a versão do perfil
+    // (ETag do GET /usuario), e atualizações que informam a versão lida só valem se ela ainda for a atual
+    @Version
+    @Column(name = "versao", columnDefinition = "bigint default 0 not null")
+    private Long versao;
+
     @OneToMany(cascade = CascadeType.ALL)
     @JoinColumn(name = "usuario_id", referencedColumnName = "id")
     private List<Endereco> enderecos;
@@ -0,0 +1,300 @@
+package com.estudo_raul.java.infrastructure.escrita;
+
+import com.estudo_raul.java.infrastructure.exceptions.ServicoSobrecarregadoException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Diário de escrita em anel, em um arquivo mapeado em memória. Cada registro recebe uma
+ * sequência crescente e só é devolvido por anexa() depois de forçado para o disco; quem
+ * anexa enquanto outro força espera e é coberto pelo próximo force, em grupo. O cabeçalho
+ * guarda a última sequência já aplicada no banco (confirmada) e a posição do primeiro
+ * registro depois dela; na abertura, os registros seguintes são devolvidos por
+ * recuperados() para serem reaplicados. O espaço dos registros confirmados é reaproveitado:
+ * ao chegar ao fim do arquivo, a escrita volta ao começo se os pendentes deixarem lugar.
+ *
+ * Layout: cabeçalho [mágico int][início int][confirmada long], seguido de registros
+ * [tamanho int][crc32c int][sequência long][dados]. Um tamanho -1 manda a leitura de volta
+ * ao começo; um tamanho zero, um registro com CRC inválido (escrita interrompida) ou uma
+ * sequência fora de ordem (registro de uma volta anterior) marca o fim do diário.
+ */
+public class DiarioEscrita implements Closeable {
+
+    private static final int MAGICO = 0x44494152; // "DIAR"
+    private static final int TAMANHO_CABECALHO = 16;
+    private static final int POSICAO_INICIO = 4;
+    private static final int POSICAO_CONFIRMADA = 8;
+    private static final int CABECALHO_REGISTRO = 16;
+    // Marca de fim gravada depois de cada registro
+    private static final int MARCA_FIM = 4;
+    private static final int VOLTA = -1;
+
+    private final FileChannel canal;
+    private final MappedByteBuffer mapa;
+    private final List<Registro> recuperados;
+    // Posição de cada registro ainda não confirmado, em ordem de sequência
+    private final ArrayDeque<Pendente> pendentes = new ArrayDeque<>();
+    // Escrita no mapa e estado do anel; o force acontece fora dela
+    private final ReentrantLock trava = new ReentrantLock();
+    // Um force por vez
+    private final ReentrantLock travaDisco = new ReentrantLock();
+
+    private int posicao;
+    private long ultimaSequencia;
+    private long confirmada;
+    // Primeiro byte escrito desde o último force
+    private int inicioSujo;
+    private volatile long sequenciaNoDisco;
+
+    /**
+     * Abre (ou cria) o diário e lê os registros ainda não confirmados.
+     * * @param arquivo Caminho do arquivo do diário.
+     * @param tamanho Tamanho do arquivo em bytes; um arquivo existente maior é mantido.
+     * @throws IOException se o arquivo não puder ser aberto ou não for um diário.
+     */
+    public DiarioEscrita(Path arquivo, int tamanho) throws IOException {
+        if (arquivo.getParent() != null) {
+            Files.createDirectories(arquivo.getParent());
+        }
+        this.canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean novo = canal.size() == 0;
+        this.mapa = canal.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(tamanho, canal.size()));
+
+        if (novo) {
+            mapa.putInt(0, MAGICO);
+            mapa.putInt(POSICAO_INICIO, TAMANHO_CABECALHO);
+            mapa.putLong(POSICAO_CONFIRMADA, 0);
+            mapa.putInt(TAMANHO_CABECALHO, 0);
+            mapa.force();
+        } else if (mapa.getInt(0) != MAGICO) {
+            canal.close();
+            throw new IOException("Arquivo não é um diário de escrita: " + arquivo);
+        }
+        this.confirmada = mapa.getLong(POSICAO_CONFIRMADA);
+        this.ultimaSequencia = confirmada;
+        this.recuperados = le();
+        this.inicioSujo = posicao;
+        this.sequenciaNoDisco = ultimaSequencia;
+    }
+
+    // Percorre os registros a partir do início gravado no cabeçalho; os já confirmados antes do
+    // primeiro pendente (diários gravados antes do anel começam sempre no cabeçalho) são só pulados
+    private List<Registro> le() {
+        int inicio = mapa.getInt(POSICAO_INICIO);
+        int atual = inicio >= TAMANHO_CABECALHO && inicio < mapa.capacity() ? inicio : TAMANHO_CABECALHO;
+        List<Registro> lidos = new ArrayList<>();
+        boolean voltou = false;
+        while (true) {
+            if (atual + CABECALHO_REGISTRO > mapa.capacity() || mapa.getInt(atual) == VOLTA) {
+                if (voltou) {
+                    break;
+                }
+                voltou = true;
+                atual = TAMANHO_CABECALHO;
+                continue;
+            }
+            int tamanho = mapa.getInt(atual);
+            if (tamanho <= 0 || atual + CABECALHO_REGISTRO + tamanho > mapa.capacity()
+                    || mapa.getInt(atual + 4) != crc(atual, tamanho)) {
+                break;
+            }
+            long sequencia = mapa.getLong(atual + 8);
+            if (sequencia == ultimaSequencia + 1) {
+                byte[] dados = new byte[tamanho];
+                mapa.get(atual + CABECALHO_REGISTRO, dados);
+                lidos.add(new Registro(sequencia, dados));
+                pendentes.add(new Pendente(sequencia, atual));
+                ultimaSequencia = sequencia;
+            } else if (!lidos.isEmpty() || sequencia > confirmada) {
+                break;
+            }
+            atual += CABECALHO_REGISTRO + tamanho;
+        }
+        posicao = atual;
+        return lidos;
+    }
+
+    /**
+     * Acrescenta um registro e espera ele chegar ao disco.
+     * * @param dados O conteúdo do registro.
+     * @return A sequência atribuída ao registro.
+     * @throws ServicoSobrecarregadoException se o diário estiver cheio de registros ainda não aplicados.
+     */
+    public long anexa(byte[] dados) {
+        long sequencia;
+        trava.lock();
+        try {
+            sequencia = escreve(dados);
+        } finally {
+            trava.unlock();
+        }
+        forcaAte(sequencia);
+        return sequencia;
+    }
+
+    // Grava o registro no mapa, sem forçar; chamado sob a trava
+    private long escreve(byte[] dados) {
+        int total = CABECALHO_REGISTRO + dados.length;
+        // Os pendentes ocupam do primeiro deles até a posição atual, dando a volta se ele estiver adiante
+        int inicio = pendentes.isEmpty() ? -1 : pendentes.peekFirst().posicao();
+        boolean deuVolta = inicio > posicao;
+        int destino = posicao;
+        if (destino + total + MARCA_FIM > (deuVolta ? inicio : mapa.capacity())) {
+            int limiteNoComeco = inicio < 0 ? mapa.capacity() : inicio;
+            if (deuVolta || TAMANHO_CABECALHO + total + MARCA_FIM > limiteNoComeco) {
+                throw new ServicoSobrecarregadoException("Diário de escrita cheio; aguardando a gravação no banco");
+            }
+            if (posicao + 4 <= mapa.capacity()) {
+                mapa.putInt(posicao, VOLTA);
+            }
+            destino = TAMANHO_CABECALHO;
+        }
+
+        long sequencia = ultimaSequencia + 1;
+        mapa.putLong(destino + 8, sequencia);
+        mapa.put(destino + CABECALHO_REGISTRO, dados);
+        // Marca o fim logo depois do registro, para a leitura não seguir por registros antigos
+        int fim = destino + total;
+        mapa.putInt(fim, 0);
+        mapa.putInt(destino + 4, crc(destino, dados.length));
+        mapa.putInt(destino, dados.length);
+
+        pendentes.add(new Pendente(sequencia, destino));
+        posicao = fim;
+        ultimaSequencia = sequencia;
+        return sequencia;
+    }
+
+    // Força tudo o que foi escrito até agora, cobrindo também os registros de quem anexou enquanto
+    // o force anterior rodava
+    private void forcaAte(long sequencia) {
+        travaDisco.lock();
+        try {
+            if (sequenciaNoDisco >= sequencia) {
+                return;
+            }
+            int de;
+            int ate;
+            long ultima;
+            trava.lock();
+            try {
+                de = inicioSujo;
+                ate = posicao;
+                ultima = ultimaSequencia;
+            } finally {
+                trava.unlock();
+            }
+            int fim = Math.min(ate + MARCA_FIM, mapa.capacity());
+            if (de <= ate) {
+                mapa.force(de, fim - de);
+            } else {
+                mapa.force(de, mapa.capacity() - de);
+                mapa.force(TAMANHO_CABECALHO, fim - TAMANHO_CABECALHO);
+            }
+            trava.lock();
+            try {
+                inicioSujo = ate;
+            } finally {
+                trava.unlock();
+            }
+            sequenciaNoDisco = ultima;
+        } finally {
+            travaDisco.unlock();
+        }
+    }
+
+    /**
+     * Registra que todos os registros até a sequência informada já estão no banco; o espaço
+     * deles passa a ser reaproveitado pelos próximos registros.
+     * * @param sequencia A maior sequência já aplicada, sem lacunas antes dela.
+     */
+    public void confirmaAte(long sequencia) {
+        trava.lock();
+        try {
+            if (sequencia <= confirmada) {
+                return;
+            }
+            confirmada = Math.min(sequencia, ultimaSequencia);
+            while (!pendentes.isEmpty() && pendentes.peekFirst().sequencia() <= confirmada) {
+                pendentes.pollFirst();
+            }
+            mapa.putInt(POSICAO_INICIO, pendentes.isEmpty() ? posicao : pendentes.peekFirst().posicao());
+            mapa.putLong(POSICAO_CONFIRMADA, confirmada);
+            mapa.force(0, TAMANHO_CABECALHO);
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    // Registros não confirmados encontrados na abertura, em ordem de sequência
+    public List<Registro> recuperados() {
+        return recuperados;
+    }
+
+    public long ultimaSequencia() {
+        trava.lock();
+        try {
+            return ultimaSequencia;
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    public long confirmada() {
+        trava.lock();
+        try {
+            return confirmada;
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    // Bytes ocupados pelos registros ainda não confirmados
+    public int bytesUsados() {
+        trava.lock();
+        try {
+            if (pendentes.isEmpty()) {
+                return 0;
+            }
+            int inicio = pendentes.peekFirst().posicao();
+            return inicio <= posicao ? posicao - inicio : mapa.capacity() - inicio + posicao - TAMANHO_CABECALHO;
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    // CRC da sequência e dos dados do registro que começa na posição informada
+    private int crc(int inicio, int tamanho) {
+        CRC32C crc = new CRC32C();
+        crc.update(mapa.slice(inicio + 8, 8 + tamanho));
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public void close() throws IOException {
+        trava.lock();
+        try {
+            mapa.force();
+            canal.close();
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    public record Registro(long sequencia, byte[] dados) {
+    }
+
+    private record Pendente(long sequencia, int posicao) {
+    }
+}
@@ -0,0 +1,55 @@
+package com.estudo_raul.java.infrastructure.eventos;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Acrescenta os eventos a um arquivo NDJSON local, um por linha, forçando para o disco antes de confirmar
+public class ArquivoDestinoEventos implements DestinoEventos, Closeable {
+
+    private final ObjectMapper objectMapper;
+    private final FileChannel canal;
+    // ReentrantLock em vez de synchronized: uma thread virtual esperando o force não prende a thread portadora
+    private final ReentrantLock trava = new ReentrantLock();
+
+    public ArquivoDestinoEventos(Path arquivo, ObjectMapper objectMapper) throws IOException {
+        this.objectMapper = objectMapper;
+        if (arquivo.getParent() != null) {
+            Files.createDirectories(arquivo.getParent());
+        }
+        this.canal = FileChannel.open(arquivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public void entrega(List<EventoPublicado> eventos) throws IOException {
+        ByteArrayOutputStream linhas = new ByteArrayOutputStream(eventos.size() * 256);
+        for (EventoPublicado evento : eventos) {
+            objectMapper.writeValue(linhas, evento);
+            linhas.write('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(linhas.toByteArray());
+        trava.lock();
+        try {
+            while (buffer.hasRemaining()) {
+                canal.write(buffer);
+            }
+            canal.force(false);
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+}
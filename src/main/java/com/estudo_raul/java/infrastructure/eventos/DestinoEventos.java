@@ -0,0 +1,18 @@
+package com.estudo_raul.java.infrastructure.eventos;
+
+import java.util.List;
+
+/**
+ * Para onde o RelayEventos entrega os eventos da tabela de saída. A entrega só conta quando
+ * o método retorna: os eventos saem da tabela depois disso, na mesma transação que os
+ * travou, e uma exceção faz o lote inteiro ser entregue de novo no próximo ciclo.
+ */
+public interface DestinoEventos {
+
+    /**
+     * Entrega um lote de eventos de um shard, em ordem de gravação.
+     * * @param eventos Os eventos; os de um mesmo usuário estão na ordem em que foram gravados.
+     * @throws Exception se a entrega falhar; nada do lote é removido da tabela de saída.
+     */
+    void entrega(List<EventoPublicado> eventos) throws Exception;
+}
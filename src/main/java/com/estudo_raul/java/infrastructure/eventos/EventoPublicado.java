@@ -0,0 +1,14 @@
+package com.estudo_raul.java.infrastructure.eventos;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import java.time.OffsetDateTime;
+
+/**
+ * Evento lido da tabela de saída e entregue ao destino. O par (shard, id) identifica o evento;
+ * como a entrega é "pelo menos uma vez", o consumidor descarta os pares já vistos. Os
+ * eventos de um mesmo usuarioId chegam na ordem em que foram gravados.
+ */
+public record EventoPublicado(int shard, long id, long usuarioId, String email, TipoEvento tipo, Long entidadeId,
+                              @JsonRawValue String dados, OffsetDateTime criadoEm) {
+}
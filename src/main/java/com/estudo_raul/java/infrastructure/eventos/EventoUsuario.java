@@ -0,0 +1,107 @@
+package com.estudo_raul.java.infrastructure.eventos;
+
+import com.estudo_raul.java.infrastructure.entity.Endereco;
+import com.estudo_raul.java.infrastructure.entity.Telefone;
+import com.estudo_raul.java.infrastructure.entity.Usuario;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Alteração de um usuário, de um endereço ou de um telefone, a gravar na tabela de saída.
+ * Os dados trazem só as colunas alteradas (ou as informadas, na criação), nunca a senha.
+ * usuarioId pode ficar nulo quando só o e-mail do dono é conhecido; a gravação resolve pelo e-mail.
+ */
+public record EventoUsuario(Long usuarioId, String email, TipoEvento tipo, Long entidadeId, Map<String, Object> dados) {
+
+    // Cadastro com endereços e telefones já gravados (com ids): um evento do usuário e um por filho
+    public static List<EventoUsuario> cadastro(Usuario usuario) {
+        List<EventoUsuario> eventos = new ArrayList<>(1 + usuario.getEnderecos().size() + usuario.getTelefones().size());
+        eventos.add(usuarioCriado(usuario));
+        usuario.getEnderecos().forEach(endereco -> eventos.add(enderecoCriado(usuario.getEmail(), endereco)));
+        usuario.getTelefones().forEach(telefone -> eventos.add(telefoneCriado(usuario.getEmail(), telefone)));
+        return eventos;
+    }
+
+    public static EventoUsuario usuarioCriado(Usuario usuario) {
+        Map<String, Object> dados = new LinkedHashMap<>();
+        colocaSeInformado(dados, "nome", usuario.getNome());
+        colocaSeInformado(dados, "email", usuario.getEmail());
+        return new EventoUsuario(usuario.getId(), usuario.getEmail(), TipoEvento.USUARIO_CRIADO, null, dados);
+    }
+
+    // Troca só de senha não gera evento: devolve null
+    public static EventoUsuario usuarioAlterado(Long usuarioId, String email, Map<String, Object> colunas) {
+        Map<String, Object> dados = new LinkedHashMap<>(colunas);
+        dados.remove("senha");
+        return dados.isEmpty() ? null : new EventoUsuario(usuarioId, email, TipoEvento.USUARIO_ALTERADO, null, dados);
+    }
+
+    public static EventoUsuario usuarioExcluido(Long usuarioId, String email) {
+        return new EventoUsuario(usuarioId, email, TipoEvento.USUARIO_EXCLUIDO, null, Map.of());
+    }
+
+    public static EventoUsuario enderecoCriado(String email, Endereco endereco) {
+        Map<String, Object> dados = new LinkedHashMap<>();
+        colocaSeInformado(dados, "rua", endereco.getRua());
+        colocaSeInformado(dados, "numero", endereco.getNumero());
+        colocaSeInformado(dados, "complemento", endereco.getComplemento());
+        colocaSeInformado(dados, "cidade", endereco.getCidade());
+        colocaSeInformado(dados, "cep", endereco.getCep());
+        colocaSeInformado(dados, "estado", endereco.getEstado());
+        return new EventoUsuario(endereco.getUsuario_id(), email, TipoEvento.ENDERECO_CRIADO, endereco.getId(), dados);
+    }
+
+    // Atualização parcial; sem colunas alteradas não há evento e devolve null
+    public static EventoUsuario enderecoAlterado(Long usuarioId, String email, Long idEndereco, Map<String, Object> colunas) {
+        return colunas.isEmpty() ? null : new EventoUsuario(usuarioId, email, TipoEvento.ENDERECO_ALTERADO, idEndereco, colunas);
+    }
+
+    // Endereço regravado por inteiro: campos nulos foram apagados e entram como null
+    public static EventoUsuario enderecoAlterado(String email, Endereco endereco) {
+        Map<String, Object> dados = new LinkedHashMap<>();
+        dados.put("rua", endereco.getRua());
+        dados.put("numero", endereco.getNumero());
+        dados.put("complemento", endereco.getComplemento());
+        dados.put("cidade", endereco.getCidade());
+        dados.put("cep", endereco.getCep());
+        dados.put("estado", endereco.getEstado());
+        return new EventoUsuario(endereco.getUsuario_id(), email, TipoEvento.ENDERECO_ALTERADO, endereco.getId(), dados);
+    }
+
+    public static EventoUsuario enderecoRemovido(Long usuarioId, String email, Long idEndereco) {
+        return new EventoUsuario(usuarioId, email, TipoEvento.ENDERECO_REMOVIDO, idEndereco, Map.of());
+    }
+
+    public static EventoUsuario telefoneCriado(String email, Telefone telefone) {
+        Map<String, Object> dados = new LinkedHashMap<>();
+        colocaSeInformado(dados, "numero", telefone.getNumero());
+        colocaSeInformado(dados, "ddd", telefone.getDdd());
+        colocaSeInformado(dados, "tipo", telefone.getTipo());
+        return new EventoUsuario(telefone.getUsuario_id(), email, TipoEvento.TELEFONE_CRIADO, telefone.getId(), dados);
+    }
+
+    public static EventoUsuario telefoneAlterado(Long usuarioId, String email, Long idTelefone, Map<String, Object> colunas) {
+        return colunas.isEmpty() ? null : new EventoUsuario(usuarioId, email, TipoEvento.TELEFONE_ALTERADO, idTelefone, colunas);
+    }
+
+    // Telefone regravado: número e DDD, como na atualização em lote
+    public static EventoUsuario telefoneAlterado(String email, Telefone telefone) {
+        Map<String, Object> dados = new LinkedHashMap<>();
+        dados.put("numero", telefone.getNumero());
+        dados.put("ddd", telefone.getDdd());
+        return new EventoUsuario(telefone.getUsuario_id(), email, TipoEvento.TELEFONE_ALTERADO, telefone.getId(), dados);
+    }
+
+    public static EventoUsuario telefoneRemovido(Long usuarioId, String email, Long idTelefone) {
+        return new EventoUsuario(usuarioId, email, TipoEvento.TELEFONE_REMOVIDO, idTelefone, Map.of());
+    }
+
+    private static void colocaSeInformado(Map<String, Object> dados, String coluna, Object valor) {
+        if (valor != null) {
+            dados.put(coluna, valor);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.estudo_raul.java.infrastructure.eventos;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Escolhe o destino dos eventos de alteração por usuario.eventos.destino: "arquivo" (NDJSON
+ * local, o padrão) ou "memoria". Com qualquer outro valor nenhum dos dois é criado e a
+ * aplicação deve declarar o próprio bean DestinoEventos (um produtor de fila, por exemplo).
+ */
+@Configuration
+public class EventosConfig {
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "usuario.eventos.destino", havingValue = "arquivo", matchIfMissing = true)
+    public ArquivoDestinoEventos arquivoDestinoEventos(
+            @Value("${usuario.eventos.arquivo:dados/eventos-usuario.ndjson}") Path arquivo,
+            ObjectMapper objectMapper) throws IOException {
+        return new ArquivoDestinoEventos(arquivo, objectMapper);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "usuario.eventos.destino", havingValue = "memoria")
+    public MemoriaDestinoEventos memoriaDestinoEventos() {
+        return new MemoriaDestinoEventos();
+    }
+}
@@ -0,0 +1,24 @@
+package com.estudo_raul.java.infrastructure.eventos;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Guarda os eventos entregues em memória, no lugar de um destino real, para testes e para a suíte de carga
+public class MemoriaDestinoEventos implements DestinoEventos {
+
+    private final Queue<EventoPublicado> entregues = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public void entrega(List<EventoPublicado> eventos) {
+        entregues.addAll(eventos);
+    }
+
+    public List<EventoPublicado> entregues() {
+        return List.copyOf(entregues);
+    }
+
+    public void limpa() {
+        entregues.clear();
+    }
+}
@@ -0,0 +1,206 @@
+package com.estudo_raul.java.infrastructure.eventos;
+
+import com.estudo_raul.java.infrastructure.banco.ShardUsuario;
+import com.estudo_raul.java.infrastructure.repository.EventoSaidaRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Entrega os eventos da tabela de saída de cada shard ao DestinoEventos, em lotes. Cada lote
+ * é travado com FOR UPDATE SKIP LOCKED, entregue e removido na mesma transação, então várias
+ * instâncias dividem o trabalho e uma falha no meio faz o lote ser entregue de novo (pelo
+ * menos uma vez). Para manter a ordem por usuário entre instâncias, os eventos de um usuário
+ * com evento mais antigo travado por outra instância ficam para o ciclo seguinte.
+ */
+@Slf4j
+@Component
+public class RelayEventos implements MeterBinder {
+
+    private final ShardUsuario shardUsuario;
+    private final EventoSaidaRepository eventoSaidaRepository;
+    private final DestinoEventos destinoEventos;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean habilitados;
+    private final int tamanhoLote;
+    private final int lotesPorCiclo;
+
+    private final LongAdder entregues = new LongAdder();
+    private final LongAdder falhas = new LongAdder();
+    // Pendentes e evento mais antigo de cada shard, medidos ao fim de cada ciclo
+    private final Map<Integer, EventoSaidaRepository.Resumo> resumos = new ConcurrentHashMap<>();
+    // Criado quando o Spring registra as métricas
+    private volatile Timer atrasoEntrega;
+    private volatile String ultimaFalha;
+
+    public RelayEventos(ShardUsuario shardUsuario,
+                        EventoSaidaRepository eventoSaidaRepository,
+                        DestinoEventos destinoEventos,
+                        TransactionTemplate transactionTemplate,
+                        @Value("${usuario.eventos.habilitados:true}") boolean habilitados,
+                        @Value("${usuario.eventos.tamanho-lote:500}") int tamanhoLote,
+                        @Value("${usuario.eventos.lotes-por-ciclo:20}") int lotesPorCiclo) {
+        this.shardUsuario = shardUsuario;
+        this.eventoSaidaRepository = eventoSaidaRepository;
+        this.destinoEventos = destinoEventos;
+        this.transactionTemplate = transactionTemplate;
+        this.habilitados = habilitados;
+        this.tamanhoLote = tamanhoLote;
+        this.lotesPorCiclo = lotesPorCiclo;
+    }
+
+    // Esvazia a tabela de saída de cada shard, até lotes-por-ciclo lotes por vez
+    @Scheduled(fixedDelayString = "${usuario.eventos.intervalo-ms:500}")
+    public void publica() {
+        if (!habilitados) {
+            return;
+        }
+        shardUsuario.emTodos(shard -> {
+            drena(shard);
+            return null;
+        });
+    }
+
+    private void drena(int shard) {
+        try {
+            for (int i = 0; i < lotesPorCiclo; i++) {
+                Integer entreguesNoLote = transactionTemplate.execute(status -> entregaLote(shard));
+                if (entreguesNoLote == null || entreguesNoLote < tamanhoLote) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            registraFalha("Entrega de eventos do shard " + shard + " falhou; nova tentativa no próximo ciclo", e);
+        }
+        try {
+            resumos.put(shard, eventoSaidaRepository.resumo());
+        } catch (RuntimeException e) {
+            log.warn("Falha ao medir a tabela de saída do shard {}", shard, e);
+        }
+    }
+
+    private int entregaLote(int shard) {
+        List<EventoPublicado> lote = eventoSaidaRepository.travaLote(shard, tamanhoLote);
+        if (lote.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = lote.stream().map(EventoPublicado::id).toList();
+        Set<Long> esperando = eventoSaidaRepository.usuariosComEventosAnteriores(
+                lote.stream().map(EventoPublicado::usuarioId).distinct().toList(), ids, ids.get(ids.size() - 1));
+        List<EventoPublicado> entregar = esperando.isEmpty()
+                ? lote
+                : lote.stream().filter(evento -> !esperando.contains(evento.usuarioId())).toList();
+        if (entregar.isEmpty()) {
+            return 0;
+        }
+        entrega(entregar);
+        eventoSaidaRepository.remove(entregar.stream().map(EventoPublicado::id).toList());
+        return entregar.size();
+    }
+
+    /**
+     * Entrega agora todos os eventos de um usuário em um shard, esperando os que outro relay
+     * está entregando. Chamado antes de o usuário mudar de shard, para que os eventos do shard
+     * antigo não cheguem depois dos gravados no shard novo.
+     * * @param shard O shard onde o usuário está (ou estava).
+     * @param usuarioId O id do usuário.
+     * @throws IllegalStateException se o destino recusar os eventos.
+     */
+    public void entregaPendentes(int shard, long usuarioId) {
+        if (!habilitados) {
+            return;
+        }
+        shardUsuario.executaNoShard(shard, () -> transactionTemplate.execute(status -> {
+            List<EventoPublicado> eventos = eventoSaidaRepository.travaDoUsuario(shard, usuarioId);
+            if (!eventos.isEmpty()) {
+                entrega(eventos);
+                eventoSaidaRepository.remove(eventos.stream().map(EventoPublicado::id).toList());
+            }
+            return null;
+        }));
+    }
+
+    private void entrega(List<EventoPublicado> eventos) {
+        try {
+            destinoEventos.entrega(eventos);
+        } catch (Exception e) {
+            // Exceção não verificada para a transação desfazer a remoção
+            throw new IllegalStateException("Destino recusou " + eventos.size() + " eventos: " + e.getMessage(), e);
+        }
+        entregues.add(eventos.size());
+        Timer timer = atrasoEntrega;
+        if (timer != null) {
+            OffsetDateTime agora = OffsetDateTime.now();
+            eventos.forEach(evento -> timer.record(Duration.between(evento.criadoEm(), agora)));
+        }
+    }
+
+    private void registraFalha(String mensagem, Exception e) {
+        falhas.increment();
+        ultimaFalha = mensagem + ": " + e.getMessage();
+        log.warn(mensagem, e);
+    }
+
+    public long pendentes() {
+        return resumos.values().stream().mapToLong(EventoSaidaRepository.Resumo::pendentes).sum();
+    }
+
+    // Idade do evento mais antigo ainda não entregue, em segundos; 0 com a tabela vazia
+    public double atrasoSegundos() {
+        OffsetDateTime agora = OffsetDateTime.now();
+        return resumos.values().stream()
+                .map(EventoSaidaRepository.Resumo::maisAntigo)
+                .filter(Objects::nonNull)
+                .mapToDouble(instante -> Math.max(0, Duration.between(instante, agora).toMillis() / 1000.0))
+                .max()
+                .orElse(0);
+    }
+
+    public Map<String, Object> situacao() {
+        Map<String, Object> situacao = new LinkedHashMap<>();
+        situacao.put("habilitados", habilitados);
+        situacao.put("destino", destinoEventos.getClass().getSimpleName());
+        situacao.put("pendentes", pendentes());
+        situacao.put("atrasoSegundos", atrasoSegundos());
+        situacao.put("entregues", entregues.sum());
+        situacao.put("falhas", falhas.sum());
+        situacao.put("ultimaFalha", ultimaFalha);
+        return situacao;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        atrasoEntrega = Timer.builder("eventos.entrega.atraso")
+                .description("Tempo entre a gravação do evento na tabela de saída e a entrega ao destino")
+                .register(registry);
+        Gauge.builder("eventos.saida.pendentes", this, RelayEventos::pendentes)
+                .description("Eventos na tabela de saída ainda não entregues, em todos os shards")
+                .register(registry);
+        Gauge.builder("eventos.saida.atraso", this, RelayEventos::atrasoSegundos)
+                .description("Idade em segundos do evento mais antigo ainda não entregue")
+                .baseUnit("seconds")
+                .register(registry);
+        FunctionCounter.builder("eventos.entregues", entregues, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("eventos.falhas", falhas, LongAdder::sum)
+                .description("Ciclos do relay interrompidos por falha do banco ou do destino")
+                .register(registry);
+    }
+}
@@ -0,0 +1,52 @@
+package com.estudo_raul.java.infrastructure.eventos;
+
+import com.estudo_raul.java.infrastructure.repository.EventoSaidaRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Registra eventos de alteração na tabela de saída do shard corrente, dentro da transação
+ * que faz a alteração: o evento existe se e somente se a alteração foi confirmada. O
+ * RelayEventos entrega depois. Com usuario.eventos.habilitados=false nada é gravado.
+ */
+@Component
+public class SaidaEventos {
+
+    private final EventoSaidaRepository eventoSaidaRepository;
+    private final boolean habilitados;
+
+    public SaidaEventos(EventoSaidaRepository eventoSaidaRepository,
+                        @Value("${usuario.eventos.habilitados:true}") boolean habilitados) {
+        this.eventoSaidaRepository = eventoSaidaRepository;
+        this.habilitados = habilitados;
+    }
+
+    /**
+     * Grava os eventos na transação corrente; eventos nulos são ignorados.
+     * * @param eventos Os eventos, na ordem em que aconteceram.
+     * @throws IllegalStateException se não houver transação ativa.
+     */
+    public void registra(EventoUsuario... eventos) {
+        registra(Arrays.asList(eventos));
+    }
+
+    public void registra(List<EventoUsuario> eventos) {
+        if (!habilitados) {
+            return;
+        }
+        // Fora de uma transação o evento poderia ficar gravado sem a alteração, ou o contrário
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Eventos de alteração só podem ser gravados dentro da transação da alteração");
+        }
+        eventoSaidaRepository.insere(eventos.stream().filter(Objects::nonNull).toList());
+    }
+
+    public boolean isHabilitados() {
+        return habilitados;
+    }
+}
@@ -0,0 +1,13 @@
+package com.estudo_raul.java.infrastructure.eventos;
+
+public enum TipoEvento {
+    USUARIO_CRIADO,
+    USUARIO_ALTERADO,
+    USUARIO_EXCLUIDO,
+    ENDERECO_CRIADO,
+    ENDERECO_ALTERADO,
+    ENDERECO_REMOVIDO,
+    TELEFONE_CRIADO,
+    TELEFONE_ALTERADO,
+    TELEFONE_REMOVIDO
+}
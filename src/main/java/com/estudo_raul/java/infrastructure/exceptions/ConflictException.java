@@ -7,6 +7,6 @@ public class ConflictException extends RuntimeException{
     }
 
     public ConflictException(String mensagem, Throwable throwable){
-        super(mensagem);
+        super(mensagem, throwable);
     }
 }
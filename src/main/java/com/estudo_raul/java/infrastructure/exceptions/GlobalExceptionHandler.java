@@ -0,0 +1,60 @@
+package com.estudo_raul.java.infrastructure.exceptions;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.FieldError;
+import org.springframework.web.bind.MethodArgumentNotValidException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+@RestControllerAdvice
+public class GlobalExceptionHandler {
+
+    // Recusa rápida quando um recurso limitado (como o pool de hash de senhas) está saturado
+    @ExceptionHandler(ServicoSobrecarregadoException.class)
+    public ResponseEntity<String> handleServicoSobrecarregado(ServicoSobrecarregadoException ex){
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", "1")
+                .body(ex.getMessage());
+    }
+
+    @ExceptionHandler(ResourceNotFoundException.class)
+    public ResponseEntity<String> handleResourceNotFound(ResourceNotFoundException ex){
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage());
+    }
+
+    // E-mail ou telefone já em uso, ou versão desatualizada numa atualização
+    @ExceptionHandler(ConflictException.class)
+    public ResponseEntity<String> handleConflict(ConflictException ex){
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
+    }
+
+    // Requisição fora dos limites aceitos, como um lote maior que o máximo
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleIllegalArgument(IllegalArgumentException ex){
+        return ResponseEntity.badRequest().body(ex.getMessage());
+    }
+
+    // Campo acima do limite da coluna (@Size nos DTOs): recusado antes de chegar ao banco
+    @ExceptionHandler(MethodArgumentNotValidException.class)
+    public ResponseEntity<String> handleArgumentoInvalido(MethodArgumentNotValidException ex){
+        return ResponseEntity.badRequest().body(ex.getBindingResult().getFieldErrors().stream()
+                .map(FieldError::getDefaultMessage)
+                .findFirst()
+                .orElse("Requisição inválida"));
+    }
+
+    // Chave única já em uso (e-mail ou número de telefone) gravada por outra requisição
+    @ExceptionHandler(DuplicateKeyException.class)
+    public ResponseEntity<String> handleChaveDuplicada(DuplicateKeyException ex){
+        return ResponseEntity.status(HttpStatus.CONFLICT).body("Email ou telefone já cadastrado");
+    }
+
+    // Qualquer outra restrição do banco (tamanho de coluna, campo obrigatório) é erro nos dados enviados
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<String> handleIntegridade(DataIntegrityViolationException ex){
+        return ResponseEntity.badRequest().body("Dados fora dos limites aceitos");
+    }
+}
@@ -0,0 +1,12 @@
+package com.estudo_raul.java.infrastructure.exceptions;
+
+public class ServicoSobrecarregadoException extends RuntimeException{
+
+    public ServicoSobrecarregadoException(String mensagem){
+        super(mensagem);
+    }
+
+    public ServicoSobrecarregadoException(String mensagem, Throwable throwable){
+        super(mensagem, throwable);
+    }
+}
@@ -0,0 +1,20 @@
+package com.estudo_raul.java.infrastructure.monitoramento;
+
+// Partes em que o tempo de uma requisição é dividido; o nome vai para o Server-Timing e para a tag das métricas
+public enum FaseRequisicao {
+
+    AUTENTICACAO("auth"),
+    CONEXAO("pool"),
+    BANCO("db"),
+    HASH("hash");
+
+    private final String nome;
+
+    FaseRequisicao(String nome) {
+        this.nome = nome;
+    }
+
+    public String getNome() {
+        return nome;
+    }
+}
@@ -0,0 +1,61 @@
+package com.estudo_raul.java.infrastructure.monitoramento;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Instrumentação de desempenho: detalhamento do tempo de cada requisição por fase e
+ * DataSource envolvido pelo datasource-proxy, que mede conexões e comandos SQL.
+ * As métricas ficam em /actuator/prometheus.
+ */
+@Configuration
+public class MonitoramentoConfig {
+
+    @Bean
+    public MonitoramentoJdbcListener monitoramentoJdbcListener(MeterRegistry meterRegistry,
+            @Value("${monitoramento.sql.limite-lento:200ms}") Duration limiteLento,
+            @Value("${monitoramento.sql.amostragem-lentas:1.0}") double amostragemLentas) {
+        return new MonitoramentoJdbcListener(meterRegistry, limiteLento, amostragemLentas);
+    }
+
+    // Estático para ser criado antes dos demais beans; envolve o DataSource já configurado (Hikari)
+    @Bean
+    public static BeanPostProcessor dataSourceMonitorado(ObjectProvider<MonitoramentoJdbcListener> listener,
+            @Value("${monitoramento.profiler.habilitado:false}") boolean profilerHabilitado) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource) {
+                    MonitoramentoJdbcListener ouvinte = listener.getObject();
+                    ProxyDataSourceBuilder builder = ProxyDataSourceBuilder.create(beanName, dataSource)
+                            .listener(ouvinte)
+                            .methodListener(ouvinte);
+                    // Contar linhas exige interceptar cada ResultSet.next(), então só no modo de diagnóstico
+                    if (profilerHabilitado) {
+                        builder.proxyResultSet();
+                    }
+                    return builder.build();
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public FilterRegistrationBean<TemposRequisicaoFilter> registroTemposRequisicao(MeterRegistry meterRegistry) {
+        FilterRegistrationBean<TemposRequisicaoFilter> registro = new FilterRegistrationBean<>(new TemposRequisicaoFilter(meterRegistry));
+        // Antes do limitador de admissão e do Spring Security, para o detalhamento cobrir a autenticação
+        registro.setOrder(Ordered.HIGHEST_PRECEDENCE + 5);
+        return registro;
+    }
+}
@@ -0,0 +1,120 @@
+package com.estudo_raul.java.infrastructure.monitoramento;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.listener.MethodExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ouve o DataSource instrumentado: mede a espera por conexão e cada comando SQL, soma os
+ * tempos na requisição atual, publica um timer por tipo de comando e registra no log uma
+ * amostra dos comandos acima do limite de lentidão (substitui o spring.jpa.show-sql).
+ * Com o profiler ligado, também alimenta o PerfilRequisicao com comandos e linhas lidas.
+ */
+@Slf4j
+public class MonitoramentoJdbcListener implements QueryExecutionListener, MethodExecutionListener {
+
+    private static final String INICIO = "inicioNanos";
+    private static final int TAMANHO_MAXIMO_SQL_LOG = 500;
+
+    private final MeterRegistry meterRegistry;
+    private final long limiteLentoNanos;
+    private final double amostragemLentas;
+    private final Counter lentas;
+
+    public MonitoramentoJdbcListener(MeterRegistry meterRegistry, Duration limiteLento, double amostragemLentas) {
+        this.meterRegistry = meterRegistry;
+        this.limiteLentoNanos = limiteLento.toNanos();
+        this.amostragemLentas = amostragemLentas;
+        this.lentas = Counter.builder("sql.lentas")
+                .description("Comandos SQL acima do limite de lentidão, registrados ou não no log")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void beforeMethod(MethodExecutionContext contexto) {
+        if (isPedidoConexao(contexto)) {
+            contexto.addCustomValue(INICIO, System.nanoTime());
+        }
+    }
+
+    @Override
+    public void afterMethod(MethodExecutionContext contexto) {
+        // ResultSets só passam por aqui quando o profiler está ligado (proxyResultSet)
+        if (contexto.getTarget() instanceof ResultSet && "next".equals(contexto.getMethod().getName())) {
+            if (Boolean.TRUE.equals(contexto.getResult())) {
+                PerfilRequisicao.registraLinha();
+            }
+        } else if (isPedidoConexao(contexto)) {
+            // O pool já publica hikaricp.connections.acquire; aqui a espera entra no detalhamento da requisição
+            TemposRequisicao.registra(FaseRequisicao.CONEXAO, System.nanoTime() - contexto.getCustomValue(INICIO, Long.class));
+        }
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execucao, List<QueryInfo> comandos) {
+        execucao.addCustomValue(INICIO, System.nanoTime());
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execucao, List<QueryInfo> comandos) {
+        long nanos = System.nanoTime() - execucao.getCustomValue(INICIO, Long.class);
+        TemposRequisicao.registra(FaseRequisicao.BANCO, nanos);
+
+        String sql = comandos.isEmpty() ? "" : comandos.get(0).getQuery();
+        PerfilRequisicao.registraComando(sql, nanos, execucao.isBatch());
+        Timer.builder("sql.execucao")
+                .description("Tempo de execução dos comandos SQL, por tipo")
+                .tag("operacao", operacao(sql))
+                .tag("lote", String.valueOf(execucao.isBatch()))
+                .tag("sucesso", String.valueOf(execucao.isSuccess()))
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+
+        if (nanos >= limiteLentoNanos) {
+            lentas.increment();
+            // Só uma fração vai para o log, para uma rajada de comandos lentos não virar uma rajada de log
+            if (ThreadLocalRandom.current().nextDouble() < amostragemLentas) {
+                log.warn("SQL lento: {} ms{} - {}", nanos / 1_000_000,
+                        execucao.isBatch() ? " (lote de " + execucao.getBatchSize() + ")" : "", resume(sql));
+            }
+        }
+    }
+
+    private boolean isPedidoConexao(MethodExecutionContext contexto) {
+        return contexto.getTarget() instanceof DataSource && "getConnection".equals(contexto.getMethod().getName());
+    }
+
+    private String operacao(String sql) {
+        String inicio = sql.stripLeading();
+        int fim = 0;
+        while (fim < inicio.length() && Character.isLetter(inicio.charAt(fim))) {
+            fim++;
+        }
+        return switch (inicio.substring(0, fim).toLowerCase(Locale.ROOT)) {
+            case "select", "with" -> "select";
+            case "insert" -> "insert";
+            case "update" -> "update";
+            case "delete" -> "delete";
+            default -> "outra";
+        };
+    }
+
+    // Só o texto do comando, sem os parâmetros, que podem conter e-mails e hashes de senha
+    private String resume(String sql) {
+        return sql.length() > TAMANHO_MAXIMO_SQL_LOG ? sql.substring(0, TAMANHO_MAXIMO_SQL_LOG) + "..." : sql;
+    }
+}
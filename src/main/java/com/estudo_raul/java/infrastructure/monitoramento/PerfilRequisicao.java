@@ -0,0 +1,117 @@
+package com.estudo_raul.java.infrastructure.monitoramento;
+
+import com.sun.management.ThreadMXBean;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Perfil detalhado de uma requisição amostrada: cada comando SQL com tempo e linhas lidas,
+ * entidades carregadas pelo Hibernate e bytes alocados pela thread da requisição.
+ * Fica em um ThreadLocal enquanto a requisição executa; fora da amostra, atual() é null
+ * e os pontos de coleta não fazem nada.
+ */
+@Getter
+public class PerfilRequisicao {
+
+    private static final ThreadLocal<PerfilRequisicao> ATUAL = new ThreadLocal<>();
+    private static final ThreadMXBean THREADS = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final String endpoint;
+    private final Instant inicio = Instant.now();
+    private final List<ComandoSql> comandos = new ArrayList<>();
+    private final Map<String, Integer> entidadesCarregadas = new TreeMap<>();
+    private int comandosOmitidos;
+    private int status;
+    private double duracaoMs;
+    // Só a thread da requisição: hashes de senha no pool próprio não entram na conta; -1 se a JVM não medir
+    private long bytesAlocados;
+
+    @Getter(AccessLevel.NONE)
+    private final int maximoComandos;
+    @Getter(AccessLevel.NONE)
+    private final long inicioNanos = System.nanoTime();
+    @Getter(AccessLevel.NONE)
+    private final long alocadosNoInicio = THREADS.getCurrentThreadAllocatedBytes();
+
+    private PerfilRequisicao(String endpoint, int maximoComandos) {
+        this.endpoint = endpoint;
+        this.maximoComandos = maximoComandos;
+    }
+
+    public static PerfilRequisicao inicia(String endpoint, int maximoComandos) {
+        PerfilRequisicao perfil = new PerfilRequisicao(endpoint, maximoComandos);
+        ATUAL.set(perfil);
+        return perfil;
+    }
+
+    public static PerfilRequisicao atual() {
+        return ATUAL.get();
+    }
+
+    // Fecha o perfil da thread atual e o devolve pronto para ser guardado
+    public static PerfilRequisicao encerra(int status) {
+        PerfilRequisicao perfil = ATUAL.get();
+        ATUAL.remove();
+        if (perfil != null) {
+            perfil.status = status;
+            perfil.duracaoMs = (System.nanoTime() - perfil.inicioNanos) / 1_000_000.0;
+            long alocadosAgora = THREADS.getCurrentThreadAllocatedBytes();
+            perfil.bytesAlocados = perfil.alocadosNoInicio < 0 || alocadosAgora < 0 ? -1 : alocadosAgora - perfil.alocadosNoInicio;
+        }
+        return perfil;
+    }
+
+    public static void registraComando(String sql, long nanos, boolean lote) {
+        PerfilRequisicao perfil = ATUAL.get();
+        if (perfil == null) {
+            return;
+        }
+        // Uma exportação inteira geraria milhares de comandos: guarda os primeiros e conta o resto
+        if (perfil.comandos.size() >= perfil.maximoComandos) {
+            perfil.comandosOmitidos++;
+            return;
+        }
+        perfil.comandos.add(new ComandoSql(sql, nanos / 1_000_000.0, lote));
+    }
+
+    // As linhas são lidas depois do execute, então pertencem ao último comando registrado
+    public static void registraLinha() {
+        PerfilRequisicao perfil = ATUAL.get();
+        if (perfil != null && !perfil.comandos.isEmpty() && perfil.comandosOmitidos == 0) {
+            perfil.comandos.get(perfil.comandos.size() - 1).linhas++;
+        }
+    }
+
+    public static void registraEntidade(Object entidade) {
+        PerfilRequisicao perfil = ATUAL.get();
+        if (perfil != null) {
+            perfil.entidadesCarregadas.merge(entidade.getClass().getSimpleName(), 1, Integer::sum);
+        }
+    }
+
+    public int getTotalComandos() {
+        return comandos.size() + comandosOmitidos;
+    }
+
+    @Getter
+    public static class ComandoSql {
+
+        private final String sql;
+        private final double duracaoMs;
+        private final boolean lote;
+        private long linhas;
+
+        ComandoSql(String sql, double duracaoMs, boolean lote) {
+            this.sql = sql;
+            this.duracaoMs = duracaoMs;
+            this.lote = lote;
+        }
+    }
+}
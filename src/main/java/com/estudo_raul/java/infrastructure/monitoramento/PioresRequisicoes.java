@@ -0,0 +1,72 @@
+package com.estudo_raul.java.infrastructure.monitoramento;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Guarda, por endpoint, os N perfis de requisição mais lentos vistos desde a última limpeza.
+ * Cada endpoint tem um heap de tamanho fixo cuja raiz é o mais rápido dos guardados,
+ * descartado quando chega um perfil mais lento.
+ */
+@Component
+public class PioresRequisicoes {
+
+    private static final Comparator<PerfilRequisicao> POR_DURACAO = Comparator.comparingDouble(PerfilRequisicao::getDuracaoMs);
+
+    private final int quantidadePorEndpoint;
+    private final Map<String, Piores> porEndpoint = new ConcurrentHashMap<>();
+
+    public PioresRequisicoes(@Value("${monitoramento.profiler.piores-por-endpoint:10}") int quantidadePorEndpoint) {
+        this.quantidadePorEndpoint = quantidadePorEndpoint;
+    }
+
+    public void registra(PerfilRequisicao perfil) {
+        Piores piores = porEndpoint.computeIfAbsent(perfil.getEndpoint(),
+                endpoint -> new Piores(new PriorityQueue<>(quantidadePorEndpoint + 1, POR_DURACAO), new ReentrantLock()));
+        piores.trava().lock();
+        try {
+            if (piores.heap().size() < quantidadePorEndpoint) {
+                piores.heap().add(perfil);
+            } else if (POR_DURACAO.compare(perfil, piores.heap().peek()) > 0) {
+                piores.heap().poll();
+                piores.heap().add(perfil);
+            }
+        } finally {
+            piores.trava().unlock();
+        }
+    }
+
+    // Endpoint -> perfis do mais lento para o mais rápido
+    public Map<String, List<PerfilRequisicao>> lista() {
+        Map<String, List<PerfilRequisicao>> resultado = new TreeMap<>();
+        porEndpoint.forEach((endpoint, piores) -> {
+            List<PerfilRequisicao> ordenados;
+            piores.trava().lock();
+            try {
+                ordenados = new ArrayList<>(piores.heap());
+            } finally {
+                piores.trava().unlock();
+            }
+            ordenados.sort(POR_DURACAO.reversed());
+            resultado.put(endpoint, ordenados);
+        });
+        return resultado;
+    }
+
+    public void limpa() {
+        porEndpoint.clear();
+    }
+
+    // Trava própria em vez de synchronized no heap, para não prender a thread portadora com threads virtuais
+    private record Piores(PriorityQueue<PerfilRequisicao> heap, ReentrantLock trava) {
+    }
+}
@@ -0,0 +1,43 @@
+package com.estudo_raul.java.infrastructure.monitoramento;
+
+import com.estudo_raul.java.infrastructure.config.IntegradoresHibernate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Modo de diagnóstico (monitoramento.profiler.habilitado=true): uma fração das requisições
+ * do UsuarioController é perfilada comando a comando e os piores casos de cada endpoint
+ * ficam em GET /admin/perfis-requisicao. Desligado, nada disto é registrado.
+ */
+@Configuration
+@ConditionalOnProperty(name = "monitoramento.profiler.habilitado", havingValue = "true")
+public class ProfilerConfig implements WebMvcConfigurer {
+
+    private final PioresRequisicoes pioresRequisicoes;
+    private final double amostragem;
+    private final int maximoComandos;
+
+    public ProfilerConfig(PioresRequisicoes pioresRequisicoes,
+                          @Value("${monitoramento.profiler.amostragem:0.05}") double amostragem,
+                          @Value("${monitoramento.profiler.maximo-comandos:200}") int maximoComandos) {
+        this.pioresRequisicoes = pioresRequisicoes;
+        this.amostragem = amostragem;
+        this.maximoComandos = maximoComandos;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new ProfilerRequisicaoInterceptor(pioresRequisicoes, amostragem, maximoComandos))
+                .addPathPatterns("/usuario", "/usuario/**");
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer entidadesCarregadas() {
+        return propriedades -> IntegradoresHibernate.acrescenta(propriedades, new EntidadesCarregadasIntegrator());
+    }
+}
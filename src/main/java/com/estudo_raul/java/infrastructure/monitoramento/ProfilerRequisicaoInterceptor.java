@@ -0,0 +1,39 @@
+package com.estudo_raul.java.infrastructure.monitoramento;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// Sorteia as requisições que serão perfiladas e entrega o perfil pronto para PioresRequisicoes
+public class ProfilerRequisicaoInterceptor implements HandlerInterceptor {
+
+    private final PioresRequisicoes pioresRequisicoes;
+    private final double amostragem;
+    private final int maximoComandos;
+
+    public ProfilerRequisicaoInterceptor(PioresRequisicoes pioresRequisicoes, double amostragem, int maximoComandos) {
+        this.pioresRequisicoes = pioresRequisicoes;
+        this.amostragem = amostragem;
+        this.maximoComandos = maximoComandos;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (ThreadLocalRandom.current().nextDouble() < amostragem) {
+            Object padrao = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            PerfilRequisicao.inicia(request.getMethod() + " " + (padrao != null ? padrao : request.getRequestURI()), maximoComandos);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        PerfilRequisicao perfil = PerfilRequisicao.encerra(response.getStatus());
+        if (perfil != null) {
+            pioresRequisicoes.registra(perfil);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.estudo_raul.java.infrastructure.monitoramento;
+
+import java.util.Locale;
+
+/**
+ * Tempo acumulado em cada fase (autenticação, espera por conexão, banco e hash de senha)
+ * da requisição em andamento na thread atual. Quem mede chama registra(); fora de uma
+ * requisição HTTP (jobs agendados, importação em outra thread) a chamada não faz nada.
+ */
+public final class TemposRequisicao {
+
+    private static final ThreadLocal<TemposRequisicao> ATUAL = new ThreadLocal<>();
+
+    private final long inicio = System.nanoTime();
+    private final long[] nanosPorFase = new long[FaseRequisicao.values().length];
+
+    private TemposRequisicao() {
+    }
+
+    public static TemposRequisicao inicia() {
+        TemposRequisicao tempos = new TemposRequisicao();
+        ATUAL.set(tempos);
+        return tempos;
+    }
+
+    public static void encerra() {
+        ATUAL.remove();
+    }
+
+    // Null quando a thread não está atendendo uma requisição
+    public static TemposRequisicao atual() {
+        return ATUAL.get();
+    }
+
+    public static void registra(FaseRequisicao fase, long nanos) {
+        TemposRequisicao tempos = ATUAL.get();
+        if (tempos != null) {
+            tempos.nanosPorFase[fase.ordinal()] += nanos;
+        }
+    }
+
+    public long nanos(FaseRequisicao fase) {
+        return nanosPorFase[fase.ordinal()];
+    }
+
+    public long decorridoNanos() {
+        return System.nanoTime() - inicio;
+    }
+
+    // Valor do cabeçalho Server-Timing, em milissegundos, exibido pelas ferramentas de desenvolvedor do navegador
+    public String serverTiming() {
+        StringBuilder valor = new StringBuilder();
+        for (FaseRequisicao fase : FaseRequisicao.values()) {
+            valor.append(fase.getNome()).append(";dur=").append(emMillis(nanos(fase))).append(", ");
+        }
+        return valor.append("app;dur=").append(emMillis(decorridoNanos())).toString();
+    }
+
+    private static String emMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / 1_000_000.0);
+    }
+}
@@ -0,0 +1,50 @@
+package com.estudo_raul.java.infrastructure.monitoramento;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Abre a contagem de tempo por fase no início da requisição e, ao final, publica cada fase como métrica por endpoint
+public class TemposRequisicaoFilter extends OncePerRequestFilter {
+
+    private final MeterRegistry meterRegistry;
+
+    public TemposRequisicaoFilter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        TemposRequisicao tempos = TemposRequisicao.inicia();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            TemposRequisicao.encerra();
+            publica(request, tempos);
+        }
+    }
+
+    private void publica(HttpServletRequest request, TemposRequisicao tempos) {
+        // Mesmo padrão de URI usado pelo http.server.requests, para cruzar as duas métricas
+        Object padrao = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = padrao != null ? padrao.toString() : "UNKNOWN";
+        for (FaseRequisicao fase : FaseRequisicao.values()) {
+            Timer.builder("requisicao.fase")
+                    .description("Tempo de cada requisição gasto em autenticação, espera por conexão, banco e hash de senha")
+                    .tag("fase", fase.getNome())
+                    .tag("method", request.getMethod())
+                    .tag("uri", uri)
+                    .register(meterRegistry)
+                    .record(tempos.nanos(fase), TimeUnit.NANOSECONDS);
+        }
+    }
+}
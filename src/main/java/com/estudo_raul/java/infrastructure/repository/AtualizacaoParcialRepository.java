@@ -0,0 +1,194 @@
+package com.estudo_raul.java.infrastructure.repository;
+
+import com.estudo_raul.java.infrastructure.entity.Endereco;
+import com.estudo_raul.java.infrastructure.entity.Telefone;
+import com.estudo_raul.java.infrastructure.entity.Usuario;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Atualizações parciais em um único comando: só as colunas informadas entram no SET,
+ * a versão é incrementada no próprio UPDATE e a linha atualizada volta pelas chaves
+ * geradas (o driver do PostgreSQL transforma o pedido em RETURNING). Substitui o
+ * findById + merge + update do JPA, que custava três idas ao banco por edição.
+ *
+ * Os nomes de coluna vêm sempre do UsuarioConverter, nunca da requisição.
+ */
+@Repository
+@RequiredArgsConstructor
+public class AtualizacaoParcialRepository {
+
+    private static final String[] COLUNAS_USUARIO = {"id", "nome", "email", "versao"};
+    private static final String[] COLUNAS_ENDERECO = {"id", "rua", "numero", "complemento", "cidade", "cep", "estado", "usuario_id", "versao"};
+    private static final String[] COLUNAS_TELEFONE = {"id", "numero", "ddd", "tipo", "usuario_id", "versao"};
+
+    // Restringe endereços e telefones ao dono do token, sem uma consulta separada pelo id do usuário
+    private static final String DO_DONO = "id = :id and usuario_id = (select u.id from usuario u where u.email = :email)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Atualiza as colunas informadas do usuário com o e-mail dado.
+     * * @param email E-mail atual do usuário.
+     * @param colunas Coluna -> novo valor; colunas ausentes não são alteradas.
+     * @param versaoEsperada Versão lida pelo cliente, ou null para não conferir.
+     * @return O usuário atualizado (sem senha, endereços e telefones), ou vazio se nenhuma linha atendeu a condição.
+     */
+    public Optional<Usuario> atualizaUsuario(String email, Map<String, Object> colunas, Long versaoEsperada) {
+        MapSqlParameterSource parametros = new MapSqlParameterSource("email", email);
+        return atualiza("usuario", colunas, "email = :email", parametros, versaoEsperada, COLUNAS_USUARIO)
+                .map(linha -> Usuario.builder()
+                        .id(longo(linha.get("id")))
+                        .nome((String) linha.get("nome"))
+                        .email((String) linha.get("email"))
+                        .versao(longo(linha.get("versao")))
+                        .build());
+    }
+
+    public Optional<Endereco> atualizaEndereco(Long id, String emailDono, Map<String, Object> colunas, Long versaoEsperada) {
+        MapSqlParameterSource parametros = new MapSqlParameterSource("id", id).addValue("email", emailDono);
+        return atualiza("endereco", colunas, DO_DONO, parametros, versaoEsperada, COLUNAS_ENDERECO)
+                .map(linha -> Endereco.builder()
+                        .id(longo(linha.get("id")))
+                        .rua((String) linha.get("rua"))
+                        .numero((String) linha.get("numero"))
+                        .complemento((String) linha.get("complemento"))
+                        .cidade((String) linha.get("cidade"))
+                        .cep((String) linha.get("cep"))
+                        .estado((String) linha.get("estado"))
+                        .usuario_id(longo(linha.get("usuario_id")))
+                        .versao(longo(linha.get("versao")))
+                        .build());
+    }
+
+    public Optional<Telefone> atualizaTelefone(Long id, String emailDono, Map<String, Object> colunas, Long versaoEsperada) {
+        MapSqlParameterSource parametros = new MapSqlParameterSource("id", id).addValue("email", emailDono);
+        return atualiza("telefone", colunas, DO_DONO, parametros, versaoEsperada, COLUNAS_TELEFONE)
+                .map(linha -> Telefone.builder()
+                        .id(longo(linha.get("id")))
+                        .numero((String) linha.get("numero"))
+                        .ddd((String) linha.get("ddd"))
+                        .tipo((String) linha.get("tipo"))
+                        .usuario_id(longo(linha.get("usuario_id")))
+                        .versao(longo(linha.get("versao")))
+                        .build());
+    }
+
+    /**
+     * Gera uma nova versão do usuário sem alterar outras colunas. Endereços e telefones fazem
+     * parte do perfil, então quem os altera chama este método na mesma transação.
+     * * @param usuarioId Id do dono dos registros alterados.
+     */
+    public void incrementaVersaoUsuario(Long usuarioId) {
+        jdbcTemplate.update("update usuario set versao = versao + 1 where id = :id", new MapSqlParameterSource("id", usuarioId));
+    }
+
+    // O mesmo para os donos de um lote de alterações, identificados pelo e-mail
+    public void incrementaVersaoUsuarios(Collection<String> emails) {
+        if (!emails.isEmpty()) {
+            jdbcTemplate.update("update usuario set versao = versao + 1 where email in (:emails)",
+                    new MapSqlParameterSource("emails", emails));
+        }
+    }
+
+    // Só usado quando a atualização não encontrou linha, para separar "não existe" de "versão desatualizada"
+    public boolean enderecoExiste(Long id, String emailDono) {
+        return existe("endereco", id, emailDono);
+    }
+
+    public boolean telefoneExiste(Long id, String emailDono) {
+        return existe("telefone", id, emailDono);
+    }
+
+    private Optional<Map<String, Object>> atualiza(String tabela, Map<String, Object> colunas, String condicao,
+                                                   MapSqlParameterSource parametros, Long versaoEsperada, String[] retorno) {
+        if (versaoEsperada != null) {
+            condicao += " and versao = :versaoEsperada";
+            parametros.addValue("versaoEsperada", versaoEsperada);
+        }
+
+        if (colunas.isEmpty()) {
+            // Nada a alterar: devolve a linha atual sem gerar uma nova versão
+            List<Map<String, Object>> linhas = jdbcTemplate.queryForList(
+                    "select " + String.join(", ", retorno) + " from " + tabela + " where " + condicao, parametros);
+            return linhas.stream().findFirst();
+        }
+
+        colunas.forEach((coluna, valor) -> parametros.addValue("novo_" + coluna, valor));
+        KeyHolder linhaAtualizada = new GeneratedKeyHolder();
+        int atualizadas = jdbcTemplate.update(sqlUpdate(tabela, colunas.keySet(), condicao), parametros, linhaAtualizada, retorno);
+        return atualizadas == 0 ? Optional.empty() : Optional.of(linhaAtualizada.getKeyList().get(0));
+    }
+
+    /**
+     * Aplica várias atualizações parciais de endereços ou telefones em batches, um por
+     * conjunto de colunas alteradas, na transação corrente.
+     * * @param tabela "endereco" ou "telefone".
+     * @param linhas As atualizações, cada uma restrita ao dono pelo e-mail.
+     * @return Linhas afetadas por atualização, na ordem recebida; 0 se o registro não existe,
+     * é de outro usuário ou a versão esperada ficou para trás.
+     */
+    public int[] atualizaEmLote(String tabela, List<AtualizacaoLinha> linhas) {
+        if (!tabela.equals("endereco") && !tabela.equals("telefone")) {
+            throw new IllegalArgumentException("Tabela sem atualização em lote: " + tabela);
+        }
+        // Linhas com as mesmas colunas (e com ou sem versão) compartilham o mesmo comando
+        Map<String, List<Integer>> grupos = new LinkedHashMap<>();
+        for (int i = 0; i < linhas.size(); i++) {
+            AtualizacaoLinha linha = linhas.get(i);
+            String chave = String.join(",", linha.colunas().keySet()) + (linha.versaoEsperada() != null ? "|versao" : "");
+            grupos.computeIfAbsent(chave, c -> new ArrayList<>()).add(i);
+        }
+
+        int[] afetadas = new int[linhas.size()];
+        for (List<Integer> grupo : grupos.values()) {
+            AtualizacaoLinha primeira = linhas.get(grupo.get(0));
+            String condicao = DO_DONO + (primeira.versaoEsperada() != null ? " and versao = :versaoEsperada" : "");
+            MapSqlParameterSource[] parametros = new MapSqlParameterSource[grupo.size()];
+            for (int i = 0; i < grupo.size(); i++) {
+                AtualizacaoLinha linha = linhas.get(grupo.get(i));
+                MapSqlParameterSource valores = new MapSqlParameterSource("id", linha.id())
+                        .addValue("email", linha.emailDono())
+                        .addValue("versaoEsperada", linha.versaoEsperada());
+                linha.colunas().forEach((coluna, valor) -> valores.addValue("novo_" + coluna, valor));
+                parametros[i] = valores;
+            }
+            int[] resultado = jdbcTemplate.batchUpdate(sqlUpdate(tabela, primeira.colunas().keySet(), condicao), parametros);
+            for (int i = 0; i < grupo.size(); i++) {
+                afetadas[grupo.get(i)] = resultado[i];
+            }
+        }
+        return afetadas;
+    }
+
+    private boolean existe(String tabela, Long id, String emailDono) {
+        MapSqlParameterSource parametros = new MapSqlParameterSource("id", id).addValue("email", emailDono);
+        return !jdbcTemplate.queryForList("select 1 from " + tabela + " where " + DO_DONO, parametros).isEmpty();
+    }
+
+    // Os valores novos usam o prefixo "novo_" para não colidir com os parâmetros da condição (id, email)
+    private static String sqlUpdate(String tabela, Collection<String> colunas, String condicao) {
+        StringBuilder sql = new StringBuilder("update ").append(tabela).append(" set ");
+        colunas.forEach(coluna -> sql.append(coluna).append(" = :novo_").append(coluna).append(", "));
+        return sql.append("versao = versao + 1 where ").append(condicao).toString();
+    }
+
+    private static Long longo(Object valor) {
+        return valor != null ? ((Number) valor).longValue() : null;
+    }
+
+    // Uma atualização parcial de endereço ou telefone, restrita ao usuário do e-mail
+    public record AtualizacaoLinha(Long id, String emailDono, Map<String, Object> colunas, Long versaoEsperada) {
+    }
+}
@@ -0,0 +1,93 @@
+package com.estudo_raul.java.infrastructure.repository;
+
+import com.estudo_raul.java.infrastructure.banco.IndicesBusca;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Busca de usuários por nome, cidade/estado e telefone no shard da conexão corrente. Devolve só
+ * id, nome e e-mail, em ordem de id a partir de um id (keyset), sem carregar entidades. No
+ * PostgreSQL os filtros usam os índices do IndicesBusca: trigramas para o nome, expressão em
+ * cidade/estado e o índice único de telefone.numero.
+ */
+@Repository
+@RequiredArgsConstructor
+public class BuscaUsuarioRepository {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final IndicesBusca indicesBusca;
+
+    /**
+     * Uma página de usuários que atendem todos os filtros informados.
+     * * @param filtro Os filtros; campos nulos não filtram.
+     * @param aposId Só usuários com id maior que este.
+     * @param limite Tamanho máximo da página.
+     * @return Os usuários encontrados em ordem de id.
+     */
+    public List<UsuarioEncontrado> busca(Filtro filtro, long aposId, int limite) {
+        StringBuilder sql = new StringBuilder("select u.id, u.nome, u.email from usuario u where u.id > :aposId");
+        MapSqlParameterSource parametros = new MapSqlParameterSource("aposId", aposId).addValue("limite", limite);
+
+        if (filtro.nome() != null) {
+            String nome = filtro.nome().toLowerCase(Locale.ROOT);
+            if (!filtro.aproximado()) {
+                sql.append(" and lower(u.nome) like :nome escape '\\'");
+                parametros.addValue("nome", escapaLike(nome) + "%");
+            } else if (indicesBusca.isTrigramas()) {
+                // Similaridade de trigramas acima de pg_trgm.similarity_threshold (0,3 por padrão)
+                sql.append(" and lower(u.nome) % :nome");
+                parametros.addValue("nome", nome);
+            } else {
+                sql.append(" and lower(u.nome) like :nome escape '\\'");
+                parametros.addValue("nome", "%" + escapaLike(nome) + "%");
+            }
+        }
+        if (filtro.cidade() != null || filtro.estado() != null) {
+            sql.append(" and exists (select 1 from endereco e where e.usuario_id = u.id");
+            if (filtro.cidade() != null) {
+                sql.append(" and lower(e.cidade) = :cidade");
+                parametros.addValue("cidade", filtro.cidade().toLowerCase(Locale.ROOT));
+            }
+            if (filtro.estado() != null) {
+                sql.append(" and upper(e.estado) = :estado");
+                parametros.addValue("estado", filtro.estado().toUpperCase(Locale.ROOT));
+            }
+            sql.append(")");
+        }
+        if (filtro.numero() != null) {
+            sql.append(" and exists (select 1 from telefone t where t.usuario_id = u.id and t.numero = :numero");
+            parametros.addValue("numero", filtro.numero());
+            if (filtro.ddd() != null) {
+                sql.append(" and t.ddd = :ddd");
+                parametros.addValue("ddd", filtro.ddd());
+            }
+            sql.append(")");
+        }
+        // Nome, cidade e telefone têm índice e acham poucas linhas, mas com "order by id limit" o planejador
+        // tende a percorrer a chave primária em ordem de id filtrando linha a linha; o "offset 0" da
+        // subconsulta impede que a ordenação seja empurrada para dentro e os filtros vão primeiro aos índices
+        boolean seletivo = filtro.nome() != null || filtro.cidade() != null || filtro.numero() != null;
+        String consulta = seletivo
+                ? "select id, nome, email from (" + sql + " offset 0) encontrados order by id limit :limite"
+                : sql + " order by u.id limit :limite";
+
+        return jdbcTemplate.query(consulta, parametros,
+                (linha, i) -> new UsuarioEncontrado(linha.getLong("id"), linha.getString("nome"), linha.getString("email")));
+    }
+
+    // O texto digitado é literal: % e _ não viram curingas
+    private static String escapaLike(String texto) {
+        return texto.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    public record Filtro(String nome, boolean aproximado, String cidade, String estado, String ddd, String numero) {
+    }
+
+    public record UsuarioEncontrado(long id, String nome, String email) {
+    }
+}
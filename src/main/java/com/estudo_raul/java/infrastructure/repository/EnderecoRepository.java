@@ -2,8 +2,20 @@ package com.estudo_raul.java.infrastructure.repository;
 
 import com.estudo_raul.java.infrastructure.entity.Endereco;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface EnderecoRepository extends JpaRepository<Endereco, Long> {
+
+    // Carrega de uma vez os enderecos de vários usuários (uma página da exportação)
+    @Query("select e from Endereco e where e.usuario_id in :usuarioIds order by e.id")
+    List<Endereco> findByUsuarioIds(@Param("usuarioIds") Collection<Long> usuarioIds);
+
+    @Query("select e.id from Endereco e where e.usuario_id = :usuarioId")
+    List<Long> findIdsByUsuarioId(@Param("usuarioId") Long usuarioId);
 }
@@ -0,0 +1,123 @@
+package com.estudo_raul.java.infrastructure.repository;
+
+import com.estudo_raul.java.infrastructure.eventos.EventoPublicado;
+import com.estudo_raul.java.infrastructure.eventos.EventoUsuario;
+import com.estudo_raul.java.infrastructure.eventos.TipoEvento;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.UncheckedIOException;
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tabela de saída (evento_usuario) dos eventos de alteração, no shard da conexão corrente.
+ * Os eventos entram na transação da alteração e saem, já entregues, na transação do relay.
+ */
+@Repository
+@RequiredArgsConstructor
+public class EventoSaidaRepository {
+
+    private static final String COLUNAS = "id, usuario_id, email, tipo, entidade_id, dados, criado_em";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    // Grava os eventos em um batch; sem usuarioId, o dono é buscado pelo e-mail no próprio insert
+    public void insere(List<EventoUsuario> eventos) {
+        if (eventos.isEmpty()) {
+            return;
+        }
+        OffsetDateTime agora = OffsetDateTime.now(ZoneOffset.UTC);
+        MapSqlParameterSource[] parametros = new MapSqlParameterSource[eventos.size()];
+        for (int i = 0; i < eventos.size(); i++) {
+            EventoUsuario evento = eventos.get(i);
+            parametros[i] = new MapSqlParameterSource()
+                    .addValue("usuarioId", evento.usuarioId(), Types.BIGINT)
+                    .addValue("email", evento.email())
+                    .addValue("tipo", evento.tipo().name())
+                    .addValue("entidadeId", evento.entidadeId(), Types.BIGINT)
+                    .addValue("dados", json(evento.dados()))
+                    .addValue("criadoEm", agora);
+        }
+        jdbcTemplate.batchUpdate("insert into evento_usuario (usuario_id, email, tipo, entidade_id, dados, criado_em) values ("
+                + "coalesce(:usuarioId, (select u.id from usuario u where u.email = :email)), :email, :tipo, :entidadeId, :dados, :criadoEm)",
+                parametros);
+    }
+
+    /**
+     * Trava os eventos mais antigos que nenhum outro relay travou.
+     * * @param shard O shard da conexão, só para identificar os eventos lidos.
+     * @param limite Tamanho máximo do lote.
+     * @return Os eventos em ordem de id, travados até o fim da transação.
+     */
+    public List<EventoPublicado> travaLote(int shard, int limite) {
+        return jdbcTemplate.query("select " + COLUNAS + " from evento_usuario order by id limit :limite for update skip locked",
+                new MapSqlParameterSource("limite", limite), mapeador(shard));
+    }
+
+    /**
+     * Usuários do lote com eventos mais antigos fora dele, travados por outro relay: os eventos
+     * desses usuários esperam o próximo ciclo para não passarem à frente dos anteriores.
+     * * @param usuarios Os usuários do lote.
+     * @param ids Os ids dos eventos do lote.
+     * @param maiorId O maior id do lote.
+     * @return Os usuários que não podem ser entregues agora.
+     */
+    public Set<Long> usuariosComEventosAnteriores(Collection<Long> usuarios, Collection<Long> ids, long maiorId) {
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "select distinct usuario_id from evento_usuario where usuario_id in (:usuarios) and id < :maiorId and id not in (:ids)",
+                new MapSqlParameterSource("usuarios", usuarios).addValue("ids", ids).addValue("maiorId", maiorId), Long.class));
+    }
+
+    // Todos os eventos do usuário, esperando os que um relay está entregando agora
+    public List<EventoPublicado> travaDoUsuario(int shard, long usuarioId) {
+        return jdbcTemplate.query("select " + COLUNAS + " from evento_usuario where usuario_id = :usuarioId order by id for update",
+                new MapSqlParameterSource("usuarioId", usuarioId), mapeador(shard));
+    }
+
+    public void remove(Collection<Long> ids) {
+        if (!ids.isEmpty()) {
+            jdbcTemplate.update("delete from evento_usuario where id in (:ids)", new MapSqlParameterSource("ids", ids));
+        }
+    }
+
+    // Quantidade de eventos na tabela e o instante do mais antigo, para as métricas de atraso
+    public Resumo resumo() {
+        return jdbcTemplate.queryForObject("select count(*), min(criado_em) from evento_usuario", Map.of(),
+                (linha, i) -> new Resumo(linha.getLong(1), linha.getObject(2, OffsetDateTime.class)));
+    }
+
+    private String json(Map<String, Object> dados) {
+        try {
+            return objectMapper.writeValueAsString(dados);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static RowMapper<EventoPublicado> mapeador(int shard) {
+        return (linha, i) -> new EventoPublicado(shard,
+                linha.getLong("id"),
+                linha.getLong("usuario_id"),
+                linha.getString("email"),
+                TipoEvento.valueOf(linha.getString("tipo")),
+                linha.getObject("entidade_id", Long.class),
+                linha.getString("dados"),
+                linha.getObject("criado_em", OffsetDateTime.class));
+    }
+
+    public record Resumo(long pendentes, OffsetDateTime maisAntigo) {
+    }
+}
@@ -0,0 +1,23 @@
+package com.estudo_raul.java.infrastructure.repository;
+
+import com.estudo_raul.java.infrastructure.entity.RevogacaoToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface RevogacaoTokenRepository extends JpaRepository<RevogacaoToken, Long> {
+
+    Optional<RevogacaoToken> findByEmail(String email);
+
+    List<RevogacaoToken> findByRevogadoEmAfter(Instant instante);
+
+    @Transactional
+    @Modifying
+    void deleteByRevogadoEmBefore(Instant instante);
+}
@@ -2,8 +2,23 @@ package com.estudo_raul.java.infrastructure.repository;
 
 import com.estudo_raul.java.infrastructure.entity.Telefone;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface TelefoneRepository extends JpaRepository<Telefone, Long> {
+
+    // Carrega de uma vez os telefones de vários usuários (uma página da exportação)
+    @Query("select t from Telefone t where t.usuario_id in :usuarioIds order by t.id")
+    List<Telefone> findByUsuarioIds(@Param("usuarioIds") Collection<Long> usuarioIds);
+
+    @Query("select t.id from Telefone t where t.usuario_id = :usuarioId")
+    List<Long> findIdsByUsuarioId(@Param("usuarioId") Long usuarioId);
+
+    // Donos atuais de um conjunto de números, para checar a unicidade de um lote antes de gravar
+    List<Telefone> findByNumeroIn(Collection<String> numeros);
 }
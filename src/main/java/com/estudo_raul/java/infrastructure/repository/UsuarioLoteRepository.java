@@ -0,0 +1,230 @@
+package com.estudo_raul.java.infrastructure.repository;
+
+import com.estudo_raul.java.infrastructure.entity.Endereco;
+import com.estudo_raul.java.infrastructure.entity.Telefone;
+import com.estudo_raul.java.infrastructure.entity.Usuario;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inserções em lote via JDBC. Com GenerationType.IDENTITY o Hibernate faz um insert
+ * por entidade; aqui cada tabela é gravada com um único batch e os ids gerados são
+ * lidos de volta pelo driver.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UsuarioLoteRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    // Insere os usuários e preenche o id de cada um, na mesma ordem da lista
+    public void insereUsuarios(List<Usuario> usuarios) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                con -> con.prepareStatement("insert into usuario (nome, email, senha) values (?, ?, ?)",
+                        new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Usuario usuario = usuarios.get(i);
+                        ps.setString(1, usuario.getNome());
+                        ps.setString(2, usuario.getEmail());
+                        ps.setString(3, usuario.getSenha());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return usuarios.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> chaves = keyHolder.getKeyList();
+        for (int i = 0; i < usuarios.size(); i++) {
+            usuarios.get(i).setId(((Number) chaves.get(i).get("id")).longValue());
+        }
+    }
+
+    /**
+     * Insere o usuário se o e-mail ainda estiver livre, em um único comando: a restrição
+     * única decide o conflito, sem consulta prévia e sem abortar a transação.
+     * "on conflict do nothing" sem alvo vale para qualquer restrição única (em usuario, só o
+     * e-mail) e também é aceito pelo H2 da suíte de carga.
+     * * @param usuario O usuário a inserir; recebe o id gerado.
+     * @return False se já existia um usuário com o e-mail.
+     */
+    public boolean insereUsuarioSeEmailLivre(Usuario usuario) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        int inseridos = jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "insert into usuario (nome, email, senha) values (?, ?, ?) on conflict do nothing", new String[]{"id"});
+            ps.setString(1, usuario.getNome());
+            ps.setString(2, usuario.getEmail());
+            ps.setString(3, usuario.getSenha());
+            return ps;
+        }, keyHolder);
+        if (inseridos == 0) {
+            return false;
+        }
+        usuario.setId(((Number) keyHolder.getKeyList().get(0).get("id")).longValue());
+        return true;
+    }
+
+    // Insere os endereços e preenche o id de cada um, na mesma ordem da lista
+    public void insereEnderecos(List<Endereco> enderecos) {
+        if (enderecos.isEmpty()) {
+            return;
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                con -> con.prepareStatement(
+                        "insert into endereco (rua, numero, complemento, cidade, cep, estado, usuario_id) values (?, ?, ?, ?, ?, ?, ?)",
+                        new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Endereco endereco = enderecos.get(i);
+                        ps.setString(1, endereco.getRua());
+                        ps.setString(2, endereco.getNumero());
+                        ps.setString(3, endereco.getComplemento());
+                        ps.setString(4, endereco.getCidade());
+                        ps.setString(5, endereco.getCep());
+                        ps.setString(6, endereco.getEstado());
+                        ps.setLong(7, endereco.getUsuario_id());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return enderecos.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> chaves = keyHolder.getKeyList();
+        for (int i = 0; i < enderecos.size(); i++) {
+            enderecos.get(i).setId(((Number) chaves.get(i).get("id")).longValue());
+        }
+    }
+
+    // Insere os telefones e preenche o id de cada um, na mesma ordem da lista
+    public void insereTelefones(List<Telefone> telefones) {
+        if (telefones.isEmpty()) {
+            return;
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                con -> con.prepareStatement("insert into telefone (numero, ddd, tipo, usuario_id) values (?, ?, ?, ?)",
+                        new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Telefone telefone = telefones.get(i);
+                        ps.setString(1, telefone.getNumero());
+                        ps.setString(2, telefone.getDdd());
+                        ps.setString(3, telefone.getTipo());
+                        ps.setLong(4, telefone.getUsuario_id());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return telefones.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> chaves = keyHolder.getKeyList();
+        for (int i = 0; i < telefones.size(); i++) {
+            telefones.get(i).setId(((Number) chaves.get(i).get("id")).longValue());
+        }
+    }
+
+    /**
+     * Insere os telefones ignorando os de número já cadastrado (inclusive repetidos na
+     * própria lista) e preenche o id dos inseridos.
+     * * @param telefones Os telefones a inserir.
+     * @return Os números que não foram inseridos por conflito; vazio se todos entraram.
+     */
+    public List<String> insereTelefonesSeNumeroLivre(List<Telefone> telefones) {
+        if (telefones.isEmpty()) {
+            return List.of();
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        int[] inseridos = jdbcTemplate.batchUpdate(
+                con -> con.prepareStatement(
+                        "insert into telefone (numero, ddd, tipo, usuario_id) values (?, ?, ?, ?) on conflict do nothing",
+                        new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Telefone telefone = telefones.get(i);
+                        ps.setString(1, telefone.getNumero());
+                        ps.setString(2, telefone.getDdd());
+                        ps.setString(3, telefone.getTipo());
+                        ps.setLong(4, telefone.getUsuario_id());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return telefones.size();
+                    }
+                },
+                keyHolder);
+
+        // Só as linhas inseridas devolvem chave, na ordem do lote
+        List<Map<String, Object>> chaves = keyHolder.getKeyList();
+        List<String> conflitos = new ArrayList<>();
+        int chave = 0;
+        for (int i = 0; i < telefones.size(); i++) {
+            if (inseridos[i] == 0) {
+                conflitos.add(telefones.get(i).getNumero());
+            } else {
+                telefones.get(i).setId(((Number) chaves.get(chave++).get("id")).longValue());
+            }
+        }
+        return conflitos;
+    }
+
+    /**
+     * Remove os endereços do usuário, exceto os ids informados.
+     * * @param usuarioId Dono dos endereços.
+     * @param manter Ids que devem continuar existindo; vazio remove todos.
+     * @return Ids dos endereços removidos, para os eventos de remoção.
+     */
+    public List<Long> removeEnderecos(Long usuarioId, Collection<Long> manter) {
+        return remove("endereco", usuarioId, manter);
+    }
+
+    public List<Long> removeTelefones(Long usuarioId, Collection<Long> manter) {
+        return remove("telefone", usuarioId, manter);
+    }
+
+    // Trava e lê os ids antes de remover: o que for incluído entre os dois comandos fica, como se tivesse chegado depois
+    private List<Long> remove(String tabela, Long usuarioId, Collection<Long> manter) {
+        MapSqlParameterSource parametros = new MapSqlParameterSource("usuarioId", usuarioId);
+        String condicao = " where usuario_id = :usuarioId";
+        if (!manter.isEmpty()) {
+            condicao += " and id not in (:manter)";
+            parametros.addValue("manter", manter);
+        }
+        List<Long> ids = namedParameterJdbcTemplate.queryForList("select id from " + tabela + condicao + " for update",
+                parametros, Long.class);
+        if (!ids.isEmpty()) {
+            namedParameterJdbcTemplate.update("delete from " + tabela + " where id in (:ids)", new MapSqlParameterSource("ids", ids));
+        }
+        return ids;
+    }
+}
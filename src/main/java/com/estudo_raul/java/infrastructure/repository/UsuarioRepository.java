@@ -2,20 +2,75 @@ package com.estudo_raul.java.infrastructure.repository;
 
 
 import com.estudo_raul.java.infrastructure.entity.Usuario;
-import jakarta.transaction.Transactional;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
 
     boolean existsByEmail(String email);
 
+    // Verificação de e-mails em conjunto, usada pela importação em lote
+    @Query("select u.email from Usuario u where u.email in :emails")
+    List<String> findEmailsExistentes(@Param("emails") Collection<String> emails);
+
    Optional <Usuario> findByEmail(String email);
 
+   // Só o id, para operações que precisam do dono mas não da entidade
+   @Query("select u.id from Usuario u where u.email = :email")
+   Optional<Long> findIdByEmail(@Param("email") String email);
+
+   // Só id e versão, para responder o GET condicional do perfil sem carregar endereços e telefones
+   @Query("select u.id as id, u.versao as versao from Usuario u where u.email = :email")
+   Optional<VersaoUsuario> findVersaoByEmail(@Param("email") String email);
+
+   // Carrega o usuário e os endereços em um único select (join fetch)
+   @EntityGraph(attributePaths = "enderecos")
+   Optional<Usuario> findComEnderecosByEmail(String email);
+
+   // Completa os telefones de um usuário já carregado na mesma transação; separado dos
+   // endereços para não gerar o produto cartesiano das duas listas
+   @Query("select u from Usuario u left join fetch u.telefones where u.id = :id")
+   Optional<Usuario> findComTelefonesById(@Param("id") Long id);
+
+   // Usuário com endereços e telefones em duas consultas fixas, em vez de um select por coleção
+   @Transactional(readOnly = true)
+   default Optional<Usuario> buscaCompletoPorEmail(String email) {
+       Optional<Usuario> usuario = findComEnderecosByEmail(email);
+       usuario.ifPresent(u -> findComTelefonesById(u.getId()));
+       return usuario;
+   }
+
+   // Página por keyset: usuários com id maior que o último já lido, em ordem de id, sem OFFSET
+   @QueryHints({
+           @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+           @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+   })
+   Stream<Usuario> findByIdGreaterThanOrderByIdAsc(Long ultimoId, Limit limite);
+
+   // Todos os e-mails em streaming, para reconstruir o filtro de e-mails cadastrados
+   @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"))
+   @Query("select u.email from Usuario u")
+   Stream<String> streamTodosEmails();
+
    @Transactional
     void deleteByEmail(String email);
+
+   interface VersaoUsuario {
+       Long getId();
+       Long getVersao();
+   }
 }
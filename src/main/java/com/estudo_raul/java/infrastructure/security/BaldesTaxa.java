@@ -0,0 +1,103 @@
+package com.estudo_raul.java.infrastructure.security;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets em memória, um por chave (IP, e-mail ou assunto do token), no formato GCRA:
+ * em vez de fichas e horário da última reposição, cada chave guarda só o instante teórico da
+ * próxima chegada (TAT) em um AtomicLong, avançado por compareAndSet, sem travas. O efeito é o
+ * de um balde com capacidade `rajada` reposto a `porMinuto` fichas por minuto. As chaves ficam
+ * em faixas pelo hash da chave; cada faixa tem teto próprio e descarta as chaves ociosas (balde
+ * cheio, TAT no passado) aos poucos, quando chaves novas chegam.
+ */
+class BaldesTaxa {
+
+    private static final int FAIXAS = 16;
+    private static final long INTERVALO_LIMPEZA = TimeUnit.SECONDS.toNanos(1);
+
+    private final String nome;
+    // Tempo que cada requisição consome do balde e quanto de adiantamento a rajada permite
+    private final long intervalo;
+    private final long tolerancia;
+    private final int maximoPorFaixa;
+    private final Faixa[] faixas = new Faixa[FAIXAS];
+
+    BaldesTaxa(String nome, int porMinuto, int rajada, int maximoChaves) {
+        this.nome = nome;
+        this.intervalo = TimeUnit.MINUTES.toNanos(1) / porMinuto;
+        this.tolerancia = intervalo * Math.max(rajada, 1);
+        this.maximoPorFaixa = Math.max(maximoChaves / FAIXAS, 1);
+        for (int i = 0; i < FAIXAS; i++) {
+            faixas[i] = new Faixa(new ConcurrentHashMap<>(), new AtomicLong(System.nanoTime()));
+        }
+    }
+
+    /**
+     * Consome uma ficha do balde da chave.
+     * * @param chave A chave do balde.
+     * @param agora Instante atual em System.nanoTime().
+     * @return 0 se a requisição foi admitida; senão, os nanossegundos até haver ficha de novo.
+     */
+    long consome(String chave, long agora) {
+        AtomicLong chegada = baldeDe(chave, agora);
+        if (chegada == null) {
+            // Faixa cheia mesmo depois da limpeza: admite sem registrar, os outros limites continuam valendo
+            return 0;
+        }
+        while (true) {
+            long atual = chegada.get();
+            long proxima = Math.max(atual, agora) + intervalo;
+            long adiantamento = proxima - agora;
+            if (adiantamento > tolerancia) {
+                return adiantamento - tolerancia;
+            }
+            if (chegada.compareAndSet(atual, proxima)) {
+                return 0;
+            }
+        }
+    }
+
+    // Quantidade de chaves registradas, para a métrica
+    int chaves() {
+        int total = 0;
+        for (Faixa faixa : faixas) {
+            total += faixa.baldes().size();
+        }
+        return total;
+    }
+
+    String nome() {
+        return nome;
+    }
+
+    private AtomicLong baldeDe(String chave, long agora) {
+        Faixa faixa = faixas[Math.floorMod(chave.hashCode(), FAIXAS)];
+        AtomicLong chegada = faixa.baldes().get(chave);
+        if (chegada != null) {
+            return chegada;
+        }
+        limpa(faixa, agora);
+        if (faixa.baldes().size() >= maximoPorFaixa) {
+            return null;
+        }
+        // O balde novo começa cheio: TAT igual ao instante atual
+        return faixa.baldes().computeIfAbsent(chave, c -> new AtomicLong(agora));
+    }
+
+    // Uma chave com TAT no passado tem o balde cheio e equivale a uma chave ausente; no máximo
+    // uma limpeza por faixa a cada intervalo, feita por quem ganhar o compareAndSet. Uma chave
+    // removida enquanto outra thread a consome perde no máximo essa ficha
+    private void limpa(Faixa faixa, long agora) {
+        long prevista = faixa.proximaLimpeza().get();
+        if (agora - prevista < 0 || !faixa.proximaLimpeza().compareAndSet(prevista, agora + INTERVALO_LIMPEZA)) {
+            return;
+        }
+        faixa.baldes().values().removeIf(chegada -> chegada.get() - agora <= 0);
+    }
+
+    private record Faixa(Map<String, AtomicLong> baldes, AtomicLong proximaLimpeza) {
+    }
+}
@@ -0,0 +1,31 @@
+package com.estudo_raul.java.infrastructure.security;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * BCrypt que pede a atualização do hash sempre que o custo gravado for diferente do
+ * custo configurado, nos dois sentidos. O BCryptPasswordEncoder padrão só atualiza
+ * hashes de custo menor, o que impede reduzir o custo para atender o tempo de login.
+ */
+public class CustoBCryptPasswordEncoder extends BCryptPasswordEncoder {
+
+    private final int custo;
+
+    public CustoBCryptPasswordEncoder(int custo) {
+        super(custo);
+        this.custo = custo;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        // Formato do hash: $2a$10$... onde 10 é o custo
+        if (encodedPassword == null || encodedPassword.length() < 7 || encodedPassword.charAt(0) != '$') {
+            return false;
+        }
+        try {
+            return Integer.parseInt(encodedPassword.substring(4, 6)) != custo;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -1,28 +1,47 @@
 package com.estudo_raul.java.infrastructure.security;
 
+import com.estudo_raul.java.infrastructure.monitoramento.FaseRequisicao;
+import com.estudo_raul.java.infrastructure.monitoramento.TemposRequisicao;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 // Define a classe JwtRequestFilter, que estende OncePerRequestFilter
 public class JwtRequestFilter extends OncePerRequestFilter {
 
-    // Define propriedades para armazenar instâncias de JwtUtil e UserDetailsService
+    // Define propriedades para armazenar instâncias de JwtUtil, UserDetailsService e RevogacaoTokenService
     private final JwtUtil jwtUtil;
     private final UserDetailsService userDetailsService;
+    private final RevogacaoTokenService revogacaoTokenService;
+    // Quando verdadeiro, o usuário autenticado é montado só a partir do token, sem consultar o banco
+    private final boolean autenticacaoStateless;
+    // Registro das métricas de tempo da verificação do token
+    private final MeterRegistry meterRegistry;
+    // Papéis do usuário montado a partir do token
+    private final PapeisUsuario papeisUsuario;
 
     // Construtor que inicializa as propriedades com instâncias fornecidas
-    public JwtRequestFilter(JwtUtil jwtUtil, UserDetailsService userDetailsService) {
+    public JwtRequestFilter(JwtUtil jwtUtil, UserDetailsService userDetailsService,
+                            RevogacaoTokenService revogacaoTokenService, boolean autenticacaoStateless,
+                            MeterRegistry meterRegistry, PapeisUsuario papeisUsuario) {
         this.jwtUtil = jwtUtil;
         this.userDetailsService = userDetailsService;
+        this.revogacaoTokenService = revogacaoTokenService;
+        this.autenticacaoStateless = autenticacaoStateless;
+        this.meterRegistry = meterRegistry;
+        this.papeisUsuario = papeisUsuario;
     }
 
     // Método chamado uma vez por requisição para processar o filtro
@@ -35,27 +54,60 @@ public class JwtRequestFilter extends OncePerRequestFilter {
 
         // Verifica se o cabeçalho existe e começa com "Bearer "
         if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-            // Extrai o token JWT do cabeçalho
-            final String token = authorizationHeader.substring(7);
-            // Extrai o nome de usuário do token JWT
-            final String username = jwtUtil.extrairEmailToken(token);
-
-            // Se o nome de usuário não for nulo e o usuário não estiver autenticado ainda
-            if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                // Carrega os detalhes do usuário a partir do nome de usuário
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                // Valida o token JWT
-                if (jwtUtil.validateToken(token, username)) {
-                    // Cria um objeto de autenticação com as informações do usuário
-                    UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                            userDetails, null, userDetails.getAuthorities());
-                    // Define a autenticação no contexto de segurança
-                    SecurityContextHolder.getContext().setAuthentication(authentication);
-                }
+            // Mede a verificação do token inteira: parse, assinatura, revogação e montagem do usuário
+            final long inicio = System.nanoTime();
+            String resultado = "invalido";
+            try {
+                resultado = autentica(authorizationHeader.substring(7));
+            } finally {
+                long nanos = System.nanoTime() - inicio;
+                TemposRequisicao.registra(FaseRequisicao.AUTENTICACAO, nanos);
+                Timer.builder("seguranca.jwt")
+                        .description("Tempo de verificação do token JWT por requisição")
+                        .tag("resultado", resultado)
+                        .register(meterRegistry)
+                        .record(nanos, TimeUnit.NANOSECONDS);
             }
         }
 
         // Continua a cadeia de filtros, permitindo que a requisição prossiga
         chain.doFilter(request, response);
     }
+
+    // Autentica a requisição com o token e devolve o resultado usado como tag da métrica
+    private String autentica(String token) {
+        // Analisa e verifica o token uma única vez (ou reaproveita a verificação do cache)
+        final TokenInfo tokenInfo = jwtUtil.extrairTokenInfo(token);
+        final String username = tokenInfo.email();
+
+        // Sem nome de usuário no token, ou com a requisição já autenticada, não há o que fazer
+        if (username == null || SecurityContextHolder.getContext().getAuthentication() != null) {
+            return "ignorado";
+        }
+        // Valida o token JWT: expiração e revogação são checadas em memória
+        if (tokenInfo.isExpirado()) {
+            return "expirado";
+        }
+        if (revogacaoTokenService.isRevogado(tokenInfo)) {
+            return "revogado";
+        }
+        // Monta os detalhes do usuário a partir do token ou, no modo antigo, do banco
+        UserDetails userDetails = autenticacaoStateless
+                ? usuarioDoToken(username)
+                : userDetailsService.loadUserByUsername(username);
+        // Cria um objeto de autenticação com as informações do usuário
+        UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                userDetails, null, userDetails.getAuthorities());
+        // Define a autenticação no contexto de segurança
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        return "valido";
+    }
+
+    // Cria o principal apenas com o e-mail do token; a senha não é necessária depois da autenticação
+    private UserDetails usuarioDoToken(String email) {
+        return User.withUsername(email)
+                .password("")
+                .authorities(papeisUsuario.autoridades(email))
+                .build();
+    }
 }
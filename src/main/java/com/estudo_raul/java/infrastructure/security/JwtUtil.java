@@ -1,58 +1,133 @@
 package com.estudo_raul.java.infrastructure.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
 
 @Service
 public class JwtUtil {
 
+    // Tempo de validade de cada token emitido
+    public static final Duration VALIDADE_TOKEN = Duration.ofHours(1);
+
+    // Emissão em milissegundos; o "iat" padrão tem precisão de segundos e não separa um login feito logo depois de uma revogação
+    private static final String CLAIM_EMISSAO_MS = "iat_ms";
+
     // Chave secreta usada para assinar e verificar tokens JWT
     private final String secretKey = "sua-chave-secreta-super-segura-que-deve-ser-bem-longa";
 
+    // Chave HMAC e parser montados uma única vez, em vez de a cada chamada
+    private final SecretKey chave = Keys.hmacShaKeyFor(secretKey.getBytes(StandardCharsets.UTF_8));
+    private final JwtParser parser = Jwts.parser().verifyWith(chave).build();
 
+    // Cache de tokens já verificados, indexado pelo SHA-256 do token e expirando junto com o próprio token
+    private final Cache<String, TokenInfo> tokensVerificados;
+
+    public JwtUtil(@Value("${jwt.cache.tamanho-maximo:10000}") long tamanhoMaximoCache) {
+        this.tokensVerificados = Caffeine.newBuilder()
+                .maximumSize(tamanhoMaximoCache) // Remove os tokens menos usados quando o limite é atingido
+                .expireAfter(new ExpiraComToken())
+                .build();
+    }
 
     // Gera um token JWT com o nome de usuário e validade de 1 hora
     public String generateToken(String username) {
+        Date emissao = new Date();
         return Jwts.builder()
-                .setSubject(username) // Define o nome de usuário como o assunto do token
-                .setIssuedAt(new Date()) // Define a data e hora de emissão do token
-                .setExpiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60)) // Define a data e hora de expiração (1 hora a partir da emissão)
-                .signWith(Keys.hmacShaKeyFor(secretKey.getBytes(StandardCharsets.UTF_8)), SignatureAlgorithm.HS256) // Converte a chave secreta em bytes e assina o token com ela
+                .subject(username) // Define o nome de usuário como o assunto do token
+                .issuedAt(emissao) // Define a data e hora de emissão do token
+                .claim(CLAIM_EMISSAO_MS, emissao.getTime()) // A mesma emissão, com os milissegundos
+                .expiration(new Date(emissao.getTime() + VALIDADE_TOKEN.toMillis())) // Define a data e hora de expiração (1 hora a partir da emissão)
+                .signWith(chave, Jwts.SIG.HS256) // Assina o token com a chave secreta
                 .compact(); // Constrói o token JWT
     }
 
-    // Extrai as claims do token JWT (informações adicionais do token)
+    // Extrai as claims do token JWT (informações adicionais do token), sempre verificando a assinatura
     public Claims extractClaims(String token) {
-        return Jwts.parser()
-                .setSigningKey(Keys.hmacShaKeyFor(secretKey.getBytes(StandardCharsets.UTF_8))) // Define a chave secreta para validar a assinatura do token
-                .build()
-                .parseClaimsJws(token) // Analisa o token JWT e obtém as claims
-                .getBody(); // Retorna o corpo das claims
+        return parser
+                .parseSignedClaims(token) // Analisa o token JWT e valida a assinatura
+                .getPayload(); // Retorna o corpo das claims
+    }
+
+    // Analisa o token uma única vez e devolve e-mail, emissão e expiração; chamadas seguintes com o mesmo token vêm do cache
+    public TokenInfo extrairTokenInfo(String token) {
+        return tokensVerificados.get(digest(token), chaveCache -> {
+            Claims claims = extractClaims(token);
+            // Tokens emitidos antes da claim em milissegundos só têm o "iat", em segundos
+            Long emissaoMs = claims.get(CLAIM_EMISSAO_MS, Long.class);
+            return new TokenInfo(
+                    claims.getSubject(),
+                    emissaoMs != null ? Instant.ofEpochMilli(emissaoMs)
+                            : claims.getIssuedAt() != null ? claims.getIssuedAt().toInstant() : null,
+                    emissaoMs != null,
+                    claims.getExpiration() != null ? claims.getExpiration().toInstant() : null);
+        });
     }
 
     // Extrai o nome de usuário do token JWT
     public String extrairEmailToken(String token) {
-        // Obtém o assunto (nome de usuário) das claims do token
-        return extractClaims(token).getSubject();
+        // Obtém o assunto (nome de usuário) do token já verificado
+        return extrairTokenInfo(token).email();
     }
 
     // Verifica se o token JWT está expirado
     public boolean isTokenExpired(String token) {
         // Compara a data de expiração do token com a data atual
-        return extractClaims(token).getExpiration().before(new Date());
+        return extrairTokenInfo(token).isExpirado();
     }
 
     // Valida o token JWT verificando o nome de usuário e se o token não está expirado
     public boolean validateToken(String token, String username) {
-        // Extrai o nome de usuário do token
-        final String extractedUsername = extrairEmailToken(token);
+        TokenInfo info = extrairTokenInfo(token);
         // Verifica se o nome de usuário do token corresponde ao fornecido e se o token não está expirado
-        return (extractedUsername.equals(username) && !isTokenExpired(token));
+        return info.email().equals(username) && !info.isExpirado();
+    }
+
+    // Calcula o SHA-256 do token, para não manter o token em si como chave do cache
+    private String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível", e);
+        }
+    }
+
+    // Faz cada entrada do cache expirar no mesmo instante que o "exp" do token
+    private static class ExpiraComToken implements Expiry<String, TokenInfo> {
+
+        @Override
+        public long expireAfterCreate(String chave, TokenInfo info, long tempoAtual) {
+            if (info.expiraEm() == null) {
+                return Long.MAX_VALUE;
+            }
+            long restanteMillis = info.expiraEm().toEpochMilli() - Instant.now().toEpochMilli();
+            return Math.max(0, restanteMillis) * 1_000_000L;
+        }
+
+        @Override
+        public long expireAfterUpdate(String chave, TokenInfo info, long tempoAtual, long duracaoAtual) {
+            return duracaoAtual;
+        }
+
+        @Override
+        public long expireAfterRead(String chave, TokenInfo info, long tempoAtual, long duracaoAtual) {
+            return duracaoAtual;
+        }
     }
 }
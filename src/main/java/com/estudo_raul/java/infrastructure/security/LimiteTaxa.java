@@ -0,0 +1,90 @@
+package com.estudo_raul.java.infrastructure.security;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limites de taxa por rota (seguranca.limite-taxa.*), aplicados pelo LimiteTaxaFilter antes da
+ * autenticação: login por IP e por e-mail, cadastro por IP e escritas autenticadas pelo assunto
+ * do token. Cada regra tem taxa por minuto e rajada próprias; por-minuto=0 desliga a regra.
+ */
+@Component
+public class LimiteTaxa implements MeterBinder {
+
+    public enum Regra {
+        LOGIN_IP, LOGIN_EMAIL, CADASTRO_IP, ESCRITA
+    }
+
+    private final boolean habilitado;
+    private final Map<Regra, BaldesTaxa> baldes = new EnumMap<>(Regra.class);
+    private final Map<Regra, LongAdder> recusas = new EnumMap<>(Regra.class);
+
+    public LimiteTaxa(@Value("${seguranca.limite-taxa.habilitado:true}") boolean habilitado,
+                      @Value("${seguranca.limite-taxa.maximo-chaves:100000}") int maximoChaves,
+                      @Value("${seguranca.limite-taxa.login-ip.por-minuto:60}") int loginIpPorMinuto,
+                      @Value("${seguranca.limite-taxa.login-ip.rajada:20}") int loginIpRajada,
+                      @Value("${seguranca.limite-taxa.login-email.por-minuto:10}") int loginEmailPorMinuto,
+                      @Value("${seguranca.limite-taxa.login-email.rajada:5}") int loginEmailRajada,
+                      @Value("${seguranca.limite-taxa.cadastro-ip.por-minuto:30}") int cadastroIpPorMinuto,
+                      @Value("${seguranca.limite-taxa.cadastro-ip.rajada:10}") int cadastroIpRajada,
+                      @Value("${seguranca.limite-taxa.escrita.por-minuto:600}") int escritaPorMinuto,
+                      @Value("${seguranca.limite-taxa.escrita.rajada:100}") int escritaRajada) {
+        this.habilitado = habilitado;
+        registra(Regra.LOGIN_IP, loginIpPorMinuto, loginIpRajada, maximoChaves);
+        registra(Regra.LOGIN_EMAIL, loginEmailPorMinuto, loginEmailRajada, maximoChaves);
+        registra(Regra.CADASTRO_IP, cadastroIpPorMinuto, cadastroIpRajada, maximoChaves);
+        registra(Regra.ESCRITA, escritaPorMinuto, escritaRajada, maximoChaves);
+    }
+
+    /**
+     * Consome uma ficha da regra para a chave.
+     * * @param regra A regra da rota.
+     * @param chave IP, e-mail ou assunto do token.
+     * @return 0 se admitida; senão, os nanossegundos até a chave ter ficha de novo.
+     */
+    public long consome(Regra regra, String chave) {
+        BaldesTaxa balde = baldes.get(regra);
+        if (balde == null) {
+            return 0;
+        }
+        long espera = balde.consome(chave, System.nanoTime());
+        if (espera > 0) {
+            recusas.get(regra).increment();
+        }
+        return espera;
+    }
+
+    public boolean isHabilitado() {
+        return habilitado;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        baldes.forEach((regra, balde) -> {
+            Gauge.builder("seguranca.limite.taxa.chaves", balde, BaldesTaxa::chaves)
+                    .description("Chaves com balde registrado por regra de limite de taxa")
+                    .tag("regra", balde.nome())
+                    .register(registry);
+            FunctionCounter.builder("seguranca.limite.taxa.recusas", recusas.get(regra), LongAdder::sum)
+                    .description("Requisições recusadas com 429 por regra de limite de taxa")
+                    .tag("regra", balde.nome())
+                    .register(registry);
+        });
+    }
+
+    private void registra(Regra regra, int porMinuto, int rajada, int maximoChaves) {
+        if (porMinuto <= 0) {
+            return;
+        }
+        baldes.put(regra, new BaldesTaxa(regra.name().toLowerCase().replace('_', '-'), porMinuto, rajada, maximoChaves));
+        recusas.put(regra, new LongAdder());
+    }
+}
@@ -0,0 +1,193 @@
+package com.estudo_raul.java.infrastructure.security;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+// Recusa com 429 quem passou do limite da rota, antes do JwtRequestFilter, do BCrypt e do banco
+public class LimiteTaxaFilter extends OncePerRequestFilter {
+
+    // Corpo de login maior que isso não é examinado; vale só o limite por IP
+    private static final int MAXIMO_CORPO_LOGIN = 4096;
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final LimiteTaxa limiteTaxa;
+    private final JwtUtil jwtUtil;
+
+    public LimiteTaxaFilter(LimiteTaxa limiteTaxa, JwtUtil jwtUtil) {
+        this.limiteTaxa = limiteTaxa;
+        this.jwtUtil = jwtUtil;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String caminho = request.getRequestURI().substring(request.getContextPath().length());
+        String metodo = request.getMethod();
+        // Atrás de um proxy, server.forward-headers-strategy faz o getRemoteAddr devolver o IP do cliente
+        String ip = request.getRemoteAddr();
+
+        if ("POST".equals(metodo) && "/usuario/login".equals(caminho)) {
+            if (recusa(LimiteTaxa.Regra.LOGIN_IP, ip, response)) {
+                return;
+            }
+            // O e-mail vem no corpo: lido aqui uma vez e entregue de novo ao controller
+            CorpoRelido relido = new CorpoRelido(request);
+            String email = relido.email();
+            if (email != null && recusa(LimiteTaxa.Regra.LOGIN_EMAIL, email.trim().toLowerCase(Locale.ROOT), response)) {
+                return;
+            }
+            chain.doFilter(relido, response);
+            return;
+        }
+
+        if ("POST".equals(metodo) && "/usuario".equals(caminho)) {
+            if (recusa(LimiteTaxa.Regra.CADASTRO_IP, ip, response)) {
+                return;
+            }
+        } else if (!"GET".equals(metodo) && !"HEAD".equals(metodo) && !"OPTIONS".equals(metodo)
+                && ("/usuario".equals(caminho) || caminho.startsWith("/usuario/"))) {
+            // Escritas autenticadas (inclusive PUT /usuario, que faz o hash da senha nova) contam por usuário; sem token válido, pelo IP
+            String assunto = assuntoDoToken(request.getHeader("Authorization"));
+            if (recusa(LimiteTaxa.Regra.ESCRITA, assunto != null ? assunto : "ip:" + ip, response)) {
+                return;
+            }
+        }
+
+        chain.doFilter(request, response);
+    }
+
+    private boolean recusa(LimiteTaxa.Regra regra, String chave, HttpServletResponse response) {
+        long espera = limiteTaxa.consome(regra, chave);
+        if (espera == 0) {
+            return false;
+        }
+        // Recusa barata: só status e cabeçalho, sem corpo
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader("Retry-After", String.valueOf(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(espera + 999_999_999))));
+        return true;
+    }
+
+    // A verificação fica no cache do JwtUtil e é reaproveitada pelo JwtRequestFilter em seguida
+    private String assuntoDoToken(String authorizationHeader) {
+        if (authorizationHeader == null || !authorizationHeader.startsWith("Bearer ")) {
+            return null;
+        }
+        try {
+            return jwtUtil.extrairTokenInfo(authorizationHeader.substring(7)).email();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Requisição cujo corpo já teve o começo lido: entrega os bytes lidos e depois o restante
+    private static class CorpoRelido extends HttpServletRequestWrapper {
+
+        private final byte[] inicio;
+        private final boolean completo;
+        private final InputStream corpo;
+
+        CorpoRelido(HttpServletRequest request) throws IOException {
+            super(request);
+            InputStream original = request.getInputStream();
+            this.inicio = original.readNBytes(MAXIMO_CORPO_LOGIN + 1);
+            this.completo = inicio.length <= MAXIMO_CORPO_LOGIN;
+            this.corpo = new SequenceInputStream(new ByteArrayInputStream(inicio), original);
+        }
+
+        // Campo "email" do objeto JSON do corpo; null se o corpo for grande demais ou inválido
+        String email() {
+            if (!completo) {
+                return null;
+            }
+            try (JsonParser parser = JSON.createParser(inicio)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    return null;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String campo = parser.currentName();
+                    JsonToken valor = parser.nextToken();
+                    if ("email".equals(campo) && valor == JsonToken.VALUE_STRING) {
+                        return parser.getText();
+                    }
+                    parser.skipChildren();
+                }
+            } catch (IOException e) {
+                // Corpo inválido: o controller responde o erro; aqui vale só o limite por IP
+            }
+            return null;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            return new ServletInputStream() {
+                private boolean terminado;
+
+                @Override
+                public int read() throws IOException {
+                    int lido = corpo.read();
+                    terminado = lido < 0;
+                    return lido;
+                }
+
+                @Override
+                public int read(byte[] destino, int posicao, int tamanho) throws IOException {
+                    int lidos = corpo.read(destino, posicao, tamanho);
+                    terminado = lidos < 0;
+                    return lidos;
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return terminado;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // O começo do corpo já foi lido em modo bloqueante, então o restante também é: o ouvinte
+                // recebe tudo numa chamada só, com isReady sempre verdadeiro
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    try {
+                        readListener.onDataAvailable();
+                        if (terminado) {
+                            readListener.onAllDataRead();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        readListener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String codificacao = getCharacterEncoding();
+            Charset charset = codificacao != null ? Charset.forName(codificacao) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+    }
+}
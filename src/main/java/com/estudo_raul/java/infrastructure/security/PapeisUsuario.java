@@ -0,0 +1,44 @@
+package com.estudo_raul.java.infrastructure.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Papéis dos usuários autenticados. Não há papel gravado no banco: os e-mails listados em
+ * seguranca.admin.emails recebem ROLE_ADMIN, exigido nas rotas de operação (/admin/**) e nas
+ * que listam dados de outros usuários; os demais ficam só com o próprio cadastro.
+ */
+@Component
+public class PapeisUsuario {
+
+    public static final String ADMIN = "ADMIN";
+
+    private static final List<GrantedAuthority> AUTORIDADES_ADMIN = List.of(new SimpleGrantedAuthority("ROLE_" + ADMIN));
+
+    // E-mails dos administradores, em minúsculas
+    private final Set<String> administradores;
+
+    public PapeisUsuario(@Value("${seguranca.admin.emails:}") List<String> administradores) {
+        this.administradores = administradores.stream()
+                .map(String::trim)
+                .filter(email -> !email.isEmpty())
+                .map(email -> email.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * Autoridades do usuário autenticado.
+     * * @param email O e-mail do usuário.
+     * @return ROLE_ADMIN para os administradores; lista vazia para os demais.
+     */
+    public List<GrantedAuthority> autoridades(String email) {
+        return administradores.contains(email.toLowerCase(Locale.ROOT)) ? AUTORIDADES_ADMIN : List.of();
+    }
+}
@@ -0,0 +1,211 @@
+package com.estudo_raul.java.infrastructure.security;
+
+import com.estudo_raul.java.infrastructure.exceptions.ServicoSobrecarregadoException;
+import com.estudo_raul.java.infrastructure.monitoramento.FaseRequisicao;
+import com.estudo_raul.java.infrastructure.monitoramento.TemposRequisicao;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PasswordEncoder que executa o hash (e a verificação) de senhas em um pool próprio e
+ * limitado. Com o pool e a fila cheios a chamada falha na hora com
+ * ServicoSobrecarregadoException, em vez de ocupar mais threads de requisição com BCrypt.
+ * A importação em lote usa um segundo pool, também fixo: as threads dos dois juntas ficam
+ * dentro do número de CPUs, para a importação não tirar processador do login.
+ * Como MeterBinder, publica o tempo de hash, a fila e as recusas no registro de métricas.
+ */
+public class PasswordEncoderLimitado implements PasswordEncoder, MeterBinder {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    // Só a importação: sem recusa, quem chama espera o próprio lote, então a fila cresce no máximo um lote por importação
+    private final ThreadPoolExecutor executorLote;
+
+    // Métricas de latência (tempo dentro do pool, sem contar a fila) e de recusas
+    private final LongAdder execucoes = new LongAdder();
+    private final LongAdder tempoTotalNanos = new LongAdder();
+    private final AtomicLong tempoMaximoNanos = new AtomicLong();
+    private final LongAdder recusas = new LongAdder();
+    // Criado quando o Spring registra as métricas; até lá só os contadores acima são atualizados
+    private volatile Timer tempoHash;
+
+    public PasswordEncoderLimitado(PasswordEncoder delegate, int threads, int capacidadeFila, int threadsLote) {
+        this.delegate = delegate;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(capacidadeFila), fabricaThreads("hash-senha-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executorLote = new ThreadPoolExecutor(threadsLote, threadsLote, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), fabricaThreads("hash-importacao-"));
+    }
+
+    private static ThreadFactory fabricaThreads(String prefixo) {
+        AtomicInteger contador = new AtomicInteger();
+        return tarefa -> {
+            Thread thread = new Thread(tarefa, prefixo + contador.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return executa(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return executa(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        // Só inspeciona o prefixo do hash, não precisa passar pelo pool
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * Codifica as senhas de um lote da importação no pool próprio dela e espera todas.
+     * * @param senhas As senhas em texto, na ordem das linhas do lote.
+     * @return Os hashes, na mesma ordem.
+     */
+    public List<String> codificaLote(List<? extends CharSequence> senhas) {
+        List<Future<String>> hashes = new ArrayList<>(senhas.size());
+        for (CharSequence senha : senhas) {
+            hashes.add(executorLote.submit(() -> {
+                long inicio = System.nanoTime();
+                try {
+                    return delegate.encode(senha);
+                } finally {
+                    registraTempo(System.nanoTime() - inicio);
+                }
+            }));
+        }
+        List<String> resultado = new ArrayList<>(hashes.size());
+        for (Future<String> hash : hashes) {
+            resultado.add(aguarda(hash));
+        }
+        return resultado;
+    }
+
+    private <T> T executa(Callable<T> operacao) {
+        // Para o detalhamento da requisição conta também a espera na fila do pool
+        long inicio = System.nanoTime();
+        try {
+            return submeteEAguarda(operacao);
+        } finally {
+            TemposRequisicao.registra(FaseRequisicao.HASH, System.nanoTime() - inicio);
+        }
+    }
+
+    private <T> T submeteEAguarda(Callable<T> operacao) {
+        Future<T> resultado;
+        try {
+            resultado = executor.submit(() -> {
+                long inicio = System.nanoTime();
+                try {
+                    return operacao.call();
+                } finally {
+                    registraTempo(System.nanoTime() - inicio);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            recusas.increment();
+            throw new ServicoSobrecarregadoException("Serviço de autenticação sobrecarregado, tente novamente", e);
+        }
+
+        return aguarda(resultado);
+    }
+
+    private static <T> T aguarda(Future<T> resultado) {
+        try {
+            return resultado.get();
+        } catch (InterruptedException e) {
+            resultado.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrompido aguardando o hash da senha", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void registraTempo(long nanos) {
+        execucoes.increment();
+        tempoTotalNanos.add(nanos);
+        tempoMaximoNanos.accumulateAndGet(nanos, Math::max);
+        Timer timer = tempoHash;
+        if (timer != null) {
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        tempoHash = Timer.builder("seguranca.hash.senha")
+                .description("Tempo de cada hash ou verificação de senha dentro do pool, sem a fila")
+                .register(registry);
+        Gauge.builder("seguranca.hash.fila", this, PasswordEncoderLimitado::profundidadeFila)
+                .description("Hashes aguardando uma thread do pool")
+                .register(registry);
+        Gauge.builder("seguranca.hash.threads.ativas", this, PasswordEncoderLimitado::threadsAtivas)
+                .register(registry);
+        FunctionCounter.builder("seguranca.hash.recusas", this, PasswordEncoderLimitado::recusas)
+                .description("Hashes recusados com o pool e a fila cheios")
+                .register(registry);
+    }
+
+    public int profundidadeFila() {
+        return executor.getQueue().size();
+    }
+
+    public int threadsAtivas() {
+        return executor.getActiveCount();
+    }
+
+    public long recusas() {
+        return recusas.sum();
+    }
+
+    public Map<String, Object> estatisticas() {
+        long total = execucoes.sum();
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        resultado.put("threads", executor.getMaximumPoolSize());
+        resultado.put("threadsImportacao", executorLote.getMaximumPoolSize());
+        resultado.put("threadsAtivas", threadsAtivas());
+        resultado.put("profundidadeFila", profundidadeFila());
+        resultado.put("capacidadeFila", executor.getQueue().size() + executor.getQueue().remainingCapacity());
+        resultado.put("execucoes", total);
+        resultado.put("recusas", recusas());
+        resultado.put("latenciaMediaMs", total == 0 ? 0.0 : tempoTotalNanos.sum() / (double) total / 1_000_000);
+        resultado.put("latenciaMaximaMs", tempoMaximoNanos.get() / 1_000_000.0);
+        return resultado;
+    }
+
+    public void encerra() {
+        executor.shutdown();
+        executorLote.shutdown();
+    }
+}
@@ -0,0 +1,69 @@
+package com.estudo_raul.java.infrastructure.security;
+
+import com.estudo_raul.java.business.cache.UsuarioPerfilCache;
+import com.estudo_raul.java.infrastructure.banco.ShardUsuario;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fila de senhas recodificadas no login (algoritmo ou custo diferente da política atual).
+ * O login só enfileira; a gravação acontece em lote, fora da requisição.
+ */
+@Service
+@RequiredArgsConstructor
+public class RehashSenhaService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UsuarioPerfilCache usuarioPerfilCache;
+    private final ShardUsuario shardUsuario;
+
+    @Value("${seguranca.senha.rehash.tamanho-lote:500}")
+    private int tamanhoLote;
+
+    // E-mail -> novo hash; vários logins do mesmo usuário antes da gravação viram uma só escrita
+    private final Map<String, Rehash> pendentes = new ConcurrentHashMap<>();
+
+    public void agenda(String email, String hashAntigo, String hashNovo) {
+        // Mantém o hash antigo do primeiro pedido: é ele que ainda está no banco
+        pendentes.merge(email, new Rehash(email, hashAntigo, hashNovo),
+                (atual, novo) -> new Rehash(email, atual.hashAntigo(), novo.hashNovo()));
+    }
+
+    @Scheduled(fixedDelayString = "${seguranca.senha.rehash.intervalo-ms:5000}")
+    public void gravaPendentes() {
+        while (!pendentes.isEmpty()) {
+            List<Rehash> lote = new ArrayList<>(tamanhoLote);
+            Iterator<Rehash> iterator = pendentes.values().iterator();
+            while (iterator.hasNext() && lote.size() < tamanhoLote) {
+                lote.add(iterator.next());
+                iterator.remove();
+            }
+
+            // A condição no hash antigo evita sobrescrever uma troca de senha feita nesse meio tempo
+            shardUsuario.agrupa(lote, Rehash::email).forEach((shard, doShard) -> shardUsuario.executaNoShard(shard, () ->
+                    jdbcTemplate.batchUpdate("update usuario set senha = ? where email = ? and senha = ?",
+                            doShard, doShard.size(), (ps, rehash) -> {
+                                ps.setString(1, rehash.hashNovo());
+                                ps.setString(2, rehash.email());
+                                ps.setString(3, rehash.hashAntigo());
+                            })));
+            lote.forEach(rehash -> usuarioPerfilCache.invalida(rehash.email()));
+        }
+    }
+
+    public int pendentes() {
+        return pendentes.size();
+    }
+
+    private record Rehash(String email, String hashAntigo, String hashNovo) {
+    }
+}
@@ -0,0 +1,95 @@
+package com.estudo_raul.java.infrastructure.security;
+
+import com.estudo_raul.java.infrastructure.entity.RevogacaoToken;
+import com.estudo_raul.java.infrastructure.repository.RevogacaoTokenRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Mantém em memória a lista de e-mails cujos tokens foram revogados, para que o
+ * filtro JWT possa recusar esses tokens sem consultar o banco a cada requisição.
+ * A lista é atualizada em segundo plano a partir da tabela token_revogacao.
+ */
+@Service
+@RequiredArgsConstructor
+public class RevogacaoTokenService {
+
+    // Margem para cobrir diferenças de relógio entre instâncias ao buscar revogações novas
+    private static final Duration MARGEM_RELOGIO = Duration.ofSeconds(5);
+
+    private final RevogacaoTokenRepository revogacaoTokenRepository;
+
+    // E-mail -> instante até o qual os tokens emitidos são recusados
+    private final Map<String, Instant> revogacoes = new ConcurrentHashMap<>();
+
+    private volatile Instant ultimaRevogacaoVista = Instant.EPOCH;
+
+    @PostConstruct
+    void carregaRevogacoes() {
+        // Revogações mais antigas que a validade do token não afetam nenhum token ainda válido
+        atualizaAPartirDe(Instant.now().minus(JwtUtil.VALIDADE_TOKEN));
+    }
+
+    /**
+     * Revoga todos os tokens já emitidos para o e-mail.
+     * * @param email O e-mail cujos tokens devem ser recusados.
+     */
+    public void revoga(String email) {
+        Instant agora = Instant.now();
+        RevogacaoToken revogacao = revogacaoTokenRepository.findByEmail(email)
+                .orElseGet(() -> RevogacaoToken.builder().email(email).build());
+        revogacao.setRevogadoEm(agora);
+        revogacaoTokenRepository.save(revogacao);
+
+        // Aplica localmente na hora; as demais instâncias recebem na próxima atualização
+        revogacoes.merge(email, agora, (atual, novo) -> novo.isAfter(atual) ? novo : atual);
+    }
+
+    /**
+     * Verifica se o token foi emitido antes de uma revogação do seu e-mail. A emissão é
+     * comparada em milissegundos, então um login logo depois da revogação continua valendo;
+     * nos tokens antigos, só com o "iat" em segundos, um token emitido no mesmo segundo da
+     * revogação também é recusado.
+     * * @param tokenInfo Os dados já verificados do token.
+     * @return True se o token não deve mais ser aceito.
+     */
+    public boolean isRevogado(TokenInfo tokenInfo) {
+        Instant revogadoEm = revogacoes.get(tokenInfo.email());
+        if (revogadoEm == null) {
+            return false;
+        }
+        if (tokenInfo.emitidoEm() == null) {
+            return true;
+        }
+        ChronoUnit precisao = tokenInfo.emissaoEmMilissegundos() ? ChronoUnit.MILLIS : ChronoUnit.SECONDS;
+        return !tokenInfo.emitidoEm().isAfter(revogadoEm.truncatedTo(precisao));
+    }
+
+    // Busca revogações feitas por outras instâncias e descarta as que já não importam
+    @Scheduled(fixedDelayString = "${jwt.revogacao.intervalo-atualizacao-ms:30000}")
+    public void atualizaRevogacoes() {
+        atualizaAPartirDe(ultimaRevogacaoVista.minus(MARGEM_RELOGIO));
+
+        Instant limite = Instant.now().minus(JwtUtil.VALIDADE_TOKEN);
+        revogacoes.values().removeIf(revogadoEm -> revogadoEm.isBefore(limite));
+        revogacaoTokenRepository.deleteByRevogadoEmBefore(limite);
+    }
+
+    private void atualizaAPartirDe(Instant instante) {
+        for (RevogacaoToken revogacao : revogacaoTokenRepository.findByRevogadoEmAfter(instante)) {
+            revogacoes.merge(revogacao.getEmail(), revogacao.getRevogadoEm(),
+                    (atual, novo) -> novo.isAfter(atual) ? novo : atual);
+            if (revogacao.getRevogadoEm().isAfter(ultimaRevogacaoVista)) {
+                ultimaRevogacaoVista = revogacao.getRevogadoEm();
+            }
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.estudo_raul.java.infrastructure.security;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -12,30 +14,52 @@ import org.springframework.security.config.annotation.web.configurers.AbstractHt
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
-    // Instâncias de JwtUtil e UserDetailsService injetadas pelo Spring
+    // Instâncias de JwtUtil, UserDetailsService e RevogacaoTokenService injetadas pelo Spring
     private final JwtUtil jwtUtil;
     private final UserDetailsService userDetailsService;
+    private final RevogacaoTokenService revogacaoTokenService;
+    // Define se o filtro JWT autentica apenas pelo token ou consulta o banco a cada requisição
+    private final boolean autenticacaoStateless;
+    private final MeterRegistry meterRegistry;
+    // Limites de taxa por rota, aplicados antes do filtro JWT
+    private final LimiteTaxa limiteTaxa;
+    // Papéis dos usuários, para as rotas restritas aos administradores
+    private final PapeisUsuario papeisUsuario;
 
-    // Construtor para injeção de dependências de JwtUtil e UserDetailsService
+    // Construtor para injeção de dependências de JwtUtil, UserDetailsService e RevogacaoTokenService
     @Autowired
-    public SecurityConfig(JwtUtil jwtUtil, UserDetailsService userDetailsService) {
+    public SecurityConfig(JwtUtil jwtUtil, UserDetailsService userDetailsService,
+                          RevogacaoTokenService revogacaoTokenService,
+                          @Value("${jwt.autenticacao.stateless:true}") boolean autenticacaoStateless,
+                          MeterRegistry meterRegistry, LimiteTaxa limiteTaxa, PapeisUsuario papeisUsuario) {
         this.jwtUtil = jwtUtil;
         this.userDetailsService = userDetailsService;
+        this.revogacaoTokenService = revogacaoTokenService;
+        this.autenticacaoStateless = autenticacaoStateless;
+        this.meterRegistry = meterRegistry;
+        this.limiteTaxa = limiteTaxa;
+        this.papeisUsuario = papeisUsuario;
     }
 
     // Configuração do filtro de segurança
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
-        // Cria uma instância do JwtRequestFilter com JwtUtil e UserDetailsService
-        JwtRequestFilter jwtRequestFilter = new JwtRequestFilter(jwtUtil, userDetailsService);
+        // Cria uma instância do JwtRequestFilter com JwtUtil, UserDetailsService e a lista de revogação
+        JwtRequestFilter jwtRequestFilter = new JwtRequestFilter(jwtUtil, userDetailsService,
+                revogacaoTokenService, autenticacaoStateless, meterRegistry, papeisUsuario);
 
         http
                 .csrf(AbstractHttpConfigurer::disable) // Desativa proteção CSRF para APIs REST (não aplicável a APIs que não mantêm estado)
@@ -43,6 +67,11 @@ public class SecurityConfig {
                         .requestMatchers("/usuario/login").permitAll() // Permite acesso ao endpoint de login sem autenticação
                         .requestMatchers(HttpMethod.GET, "/auth").permitAll()// Permite acesso ao endpoint GET /auth sem autenticação
                         .requestMatchers(HttpMethod.POST, "/usuario").permitAll() // Permite acesso ao endpoint POST /usuario sem autenticação
+                        .requestMatchers(HttpMethod.GET, "/cep", "/cep/**").permitAll() // Consulta de CEP do formulário de cadastro, feita antes de haver token
+                        .requestMatchers("/actuator/health", "/actuator/prometheus").permitAll() // Coleta do Prometheus e health check; em produção, restringir pela rede
+                        .requestMatchers("/admin/**").hasRole(PapeisUsuario.ADMIN) // Operação (cache, shards, eventos, CEP, perfis) só para os administradores
+                        .requestMatchers(HttpMethod.GET, "/usuario/busca", "/usuario/stream").hasRole(PapeisUsuario.ADMIN) // Listam dados de outros usuários
+                        .requestMatchers(HttpMethod.POST, "/usuario/importacao").hasRole(PapeisUsuario.ADMIN) // Cria contas em massa, com um só token de escrita do limite de taxa
                         .requestMatchers("/usuario/**").authenticated() // Requer autenticação para qualquer endpoint que comece com /usuario/
                         .anyRequest().authenticated() // Requer autenticação para todas as outras requisições
                 )
@@ -51,14 +80,36 @@ public class SecurityConfig {
                 )
                 .addFilterBefore(jwtRequestFilter, UsernamePasswordAuthenticationFilter.class); // Adiciona o filtro JWT antes do filtro de autenticação padrão
 
+        // Quem passou do limite recebe 429 antes de qualquer verificação de token, BCrypt ou banco
+        if (limiteTaxa.isHabilitado()) {
+            http.addFilterBefore(new LimiteTaxaFilter(limiteTaxa, jwtUtil), JwtRequestFilter.class);
+        }
+
         // Retorna a configuração do filtro de segurança construída
         return http.build();
     }
 
-    // Configura o PasswordEncoder para criptografar senhas usando BCrypt
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(); // Retorna uma instância de BCryptPasswordEncoder
+    // Configura o PasswordEncoder para criptografar senhas conforme a política atual, em um pool limitado de threads
+    @Bean(destroyMethod = "encerra")
+    public PasswordEncoderLimitado passwordEncoder(@Value("${seguranca.senha.algoritmo:bcrypt}") String algoritmo,
+                                                   @Value("${seguranca.bcrypt.custo:10}") int custo,
+                                                   @Value("${seguranca.hash.threads:0}") int threads,
+                                                   @Value("${seguranca.hash.capacidade-fila:64}") int capacidadeFila,
+                                                   @Value("${usuario.importacao.threads-hash:0}") int threadsImportacao) {
+        // Cada hash gravado leva o prefixo do algoritmo ({bcrypt}, {pbkdf2}); novos hashes usam o algoritmo configurado
+        Map<String, PasswordEncoder> codificadores = new HashMap<>();
+        codificadores.put("bcrypt", new CustoBCryptPasswordEncoder(custo));
+        codificadores.put("pbkdf2", Pbkdf2PasswordEncoder.defaultsForSpringSecurity_v5_8());
+        DelegatingPasswordEncoder politica = new DelegatingPasswordEncoder(algoritmo, codificadores);
+        // Hashes antigos, gravados sem prefixo, são BCrypt puro; no próximo login são recodificados
+        politica.setDefaultPasswordEncoderForMatches(new BCryptPasswordEncoder());
+
+        // Login e importação dividem as CPUs: sem valor configurado, a importação fica com um quarto
+        // (ao menos uma thread) e o login com o resto; mais threads que CPUs só aumentam a fila do processador
+        int cpus = Runtime.getRuntime().availableProcessors();
+        int threadsLote = threadsImportacao > 0 ? threadsImportacao : Math.max(1, cpus / 4);
+        int threadsPool = threads > 0 ? threads : Math.max(1, cpus - threadsLote);
+        return new PasswordEncoderLimitado(politica, threadsPool, capacidadeFila, threadsLote);
     }
 
     // Configura o AuthenticationManager usando AuthenticationConfiguration
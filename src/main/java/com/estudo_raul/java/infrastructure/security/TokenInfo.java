@@ -0,0 +1,12 @@
+package com.estudo_raul.java.infrastructure.security;
+
+import java.time.Instant;
+
+// Dados já verificados de um token JWT: assunto (e-mail), emissão (em milissegundos ou, em tokens antigos, em segundos) e expiração
+public record TokenInfo(String email, Instant emitidoEm, boolean emissaoEmMilissegundos, Instant expiraEm) {
+
+    // Verifica se o token já passou da data de expiração
+    public boolean isExpirado() {
+        return expiraEm != null && expiraEm.isBefore(Instant.now());
+    }
+}
@@ -1,31 +1,62 @@
 package com.estudo_raul.java.infrastructure.security;
 
+import com.estudo_raul.java.infrastructure.banco.LeituraReplica;
+import com.estudo_raul.java.infrastructure.banco.ShardUsuario;
 import com.estudo_raul.java.infrastructure.entity.Usuario;
 import com.estudo_raul.java.infrastructure.repository.UsuarioRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
 
     // Repositório para acessar dados de usuário no banco de dados
     @Autowired
     private UsuarioRepository usuarioRepository;
 
+    // Leitura do login em réplica, salvo logo após uma escrita do mesmo usuário
+    @Autowired
+    private LeituraReplica leituraReplica;
+
+    // Shard do usuário, quando as tabelas de usuário são particionadas
+    @Autowired
+    private ShardUsuario shardUsuario;
+
+    // Papéis de quem autentica, para as rotas restritas aos administradores
+    @Autowired
+    private PapeisUsuario papeisUsuario;
+
+    // Fila de gravação das senhas recodificadas no login
+    @Autowired
+    private RehashSenhaService rehashSenhaService;
+
     // Implementação do método para carregar detalhes do usuário pelo e-mail
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
         // Busca o usuário no banco de dados pelo e-mail
-        Usuario usuario = usuarioRepository.findByEmail(email)
+        Usuario usuario = shardUsuario.executa(email, () -> leituraReplica.executa(email, () -> usuarioRepository.findByEmail(email)))
                 .orElseThrow(() -> new UsernameNotFoundException("Usuário não encontrado: " + email));
 
         // Cria e retorna um objeto UserDetails com base no usuário encontrado
         return org.springframework.security.core.userdetails.User
                 .withUsername(usuario.getEmail()) // Define o nome de usuário como o e-mail
                 .password(usuario.getSenha()) // Define a senha do usuário
+                .authorities(papeisUsuario.autoridades(usuario.getEmail())) // Define os papéis do usuário
                 .build(); // Constrói o objeto UserDetails
     }
+
+    // Chamado pelo Spring Security após um login válido quando o hash gravado não segue a política atual
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        // Apenas agenda a gravação; o login não espera o update no banco
+        rehashSenhaService.agenda(user.getUsername(), user.getPassword(), newPassword);
+        return org.springframework.security.core.userdetails.User
+                .withUserDetails(user) // Copia os dados do usuário autenticado
+                .password(newPassword) // Com o novo hash
+                .build();
+    }
 }
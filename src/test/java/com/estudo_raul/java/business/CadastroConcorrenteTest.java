@@ -0,0 +1,64 @@
+package com.estudo_raul.java.business;
+
+import com.estudo_raul.java.business.dtos.UsuarioDTO;
+import com.estudo_raul.java.infrastructure.exceptions.ConflictException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Mesmo cenário do fluxo cadastro-concorrente da suíte de carga: um grupo de cadastros do mesmo e-mail ao mesmo tempo
+@SpringBootTest
+@TestPropertySource(locations = "classpath:teste.properties")
+class CadastroConcorrenteTest {
+
+    private static final int CADASTROS = 16;
+
+    @Autowired
+    private UsuarioService usuarioService;
+
+    @Test
+    void cadastrosSimultaneosDoMesmoEmailAceitamSoUm() throws Exception {
+        AtomicInteger aceitos = new AtomicInteger();
+        AtomicInteger conflitos = new AtomicInteger();
+        CountDownLatch largada = new CountDownLatch(1);
+        List<Future<?>> tarefas = new ArrayList<>();
+        try (ExecutorService threads = Executors.newFixedThreadPool(CADASTROS)) {
+            for (int i = 0; i < CADASTROS; i++) {
+                tarefas.add(threads.submit(() -> {
+                    largada.await();
+                    try {
+                        usuarioService.salvaUsuario(UsuarioDTO.builder()
+                                .nome("Disputa")
+                                .email("disputa@teste.com")
+                                .senha("senha123")
+                                .build());
+                        aceitos.incrementAndGet();
+                    } catch (ConflictException e) {
+                        conflitos.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            largada.countDown();
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get();
+            }
+        }
+
+        assertEquals(1, aceitos.get());
+        assertEquals(CADASTROS - 1, conflitos.get());
+        assertTrue(usuarioService.verificaEmailExistente("disputa@teste.com"));
+    }
+}
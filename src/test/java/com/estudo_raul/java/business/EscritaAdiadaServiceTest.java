@@ -0,0 +1,135 @@
+package com.estudo_raul.java.business;
+
+import com.estudo_raul.java.business.cache.UsuarioPerfilCache;
+import com.estudo_raul.java.business.converter.UsuarioConverter;
+import com.estudo_raul.java.business.dtos.EnderecoDTO;
+import com.estudo_raul.java.business.dtos.UsuarioDTO;
+import com.estudo_raul.java.infrastructure.banco.ShardUsuario;
+import com.estudo_raul.java.infrastructure.eventos.SaidaEventos;
+import com.estudo_raul.java.infrastructure.repository.AtualizacaoParcialRepository;
+import com.estudo_raul.java.infrastructure.repository.AtualizacaoParcialRepository.AtualizacaoLinha;
+import com.estudo_raul.java.infrastructure.security.JwtUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// O banco é simulado: cada chamada de atualizaEmLote fica registrada em "gravadas"; os e-mails que começam com
+// "b" ficam no shard 1, e os demais no shard 0
+class EscritaAdiadaServiceTest {
+
+    @TempDir
+    Path pasta;
+
+    private final JwtUtil jwtUtil = new JwtUtil(100);
+    private final AtualizacaoParcialRepository repositorio = mock(AtualizacaoParcialRepository.class);
+    private final UsuarioConverter conversor = mock(UsuarioConverter.class);
+    private final TransactionTemplate transacao = mock(TransactionTemplate.class);
+    private final ShardUsuario shardUsuario = mock(ShardUsuario.class);
+    private final List<AtualizacaoLinha> gravadas = new ArrayList<>();
+    private volatile boolean shard1Fora;
+
+    @BeforeEach
+    void simulaBanco() {
+        when(conversor.paraColunasEndereco(any())).thenAnswer(chamada -> Map.of("rua", ((EnderecoDTO) chamada.getArgument(0)).getRua()));
+        when(conversor.aplicaColunasEndereco(any(), any())).thenCallRealMethod();
+        when(transacao.execute(any())).thenAnswer(chamada -> ((TransactionCallback<?>) chamada.getArgument(0)).doInTransaction(null));
+        when(shardUsuario.agrupa(anyList(), any())).thenAnswer(chamada -> {
+            List<Object> itens = chamada.getArgument(0);
+            Function<Object, String> email = chamada.getArgument(1);
+            Map<Integer, List<Object>> grupos = new TreeMap<>();
+            itens.forEach(item -> grupos.computeIfAbsent(shard(email.apply(item)), shard -> new ArrayList<>()).add(item));
+            return grupos;
+        });
+        when(shardUsuario.executaNoShard(anyInt(), any())).thenAnswer(chamada -> {
+            if (shard1Fora && (int) chamada.getArgument(0) == 1) {
+                throw new DataAccessResourceFailureException("shard 1 fora do ar");
+            }
+            return ((Supplier<?>) chamada.getArgument(1)).get();
+        });
+        when(repositorio.atualizaEmLote(eq("endereco"), anyList())).thenAnswer(chamada -> {
+            List<AtualizacaoLinha> linhas = chamada.getArgument(1);
+            gravadas.addAll(linhas);
+            int[] afetadas = new int[linhas.size()];
+            Arrays.fill(afetadas, 1);
+            return afetadas;
+        });
+    }
+
+    @Test
+    void reaplicaOsPendentesDoDiarioNaSubidaSeguinte() throws Exception {
+        EscritaAdiadaService antes = abre();
+        antes.agendaEndereco(token("a@x.com"), 10L, EnderecoDTO.builder().rua("Rua 1").build());
+        antes.agendaEndereco(token("a@x.com"), 10L, EnderecoDTO.builder().rua("Rua 2").build());
+
+        // Queda: o serviço anterior não grava nem fecha o diário
+        EscritaAdiadaService depois = abre();
+
+        assertEquals(1, depois.quantidadePendentes());
+        UsuarioDTO perfil = UsuarioDTO.builder().email("a@x.com")
+                .enderecos(List.of(EnderecoDTO.builder().id(10L).rua("Rua 0").build())).build();
+        assertEquals("Rua 2", depois.aplicaPendentes("a@x.com", perfil).getEnderecos().get(0).getRua());
+
+        depois.descarrega();
+
+        assertEquals(1, gravadas.size());
+        assertEquals(Map.of("rua", "Rua 2"), gravadas.get(0).colunas());
+        assertEquals(0, abre().quantidadePendentes());
+    }
+
+    @Test
+    void falhaEmUmShardDevolveParaAFilaSoAsAlteracoesDele() throws Exception {
+        EscritaAdiadaService servico = abre();
+        servico.agendaEndereco(token("a@x.com"), 10L, EnderecoDTO.builder().rua("Rua A").build());
+        servico.agendaEndereco(token("b@x.com"), 20L, EnderecoDTO.builder().rua("Rua B").build());
+
+        shard1Fora = true;
+        servico.descarrega();
+
+        assertEquals(List.of(10L), gravadas.stream().map(AtualizacaoLinha::id).toList());
+        assertEquals(1, servico.quantidadePendentes());
+
+        shard1Fora = false;
+        servico.descarrega();
+
+        assertEquals(List.of(10L, 20L), gravadas.stream().map(AtualizacaoLinha::id).toList());
+        assertEquals(0, servico.quantidadePendentes());
+    }
+
+    private EscritaAdiadaService abre() throws Exception {
+        EscritaAdiadaService servico = new EscritaAdiadaService(repositorio, mock(UsuarioPerfilCache.class), conversor, jwtUtil,
+                transacao, shardUsuario, mock(SaidaEventos.class), new ObjectMapper(), true,
+                pasta.resolve("escrita-adiada.diario"), DataSize.ofKilobytes(64), 500);
+        servico.abreDiario();
+        return servico;
+    }
+
+    private String token(String email) {
+        return "Bearer " + jwtUtil.generateToken(email);
+    }
+
+    private static int shard(String email) {
+        return email.startsWith("b") ? 1 : 0;
+    }
+}
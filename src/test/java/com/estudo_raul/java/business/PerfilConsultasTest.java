@@ -0,0 +1,74 @@
+package com.estudo_raul.java.business;
+
+import com.estudo_raul.java.business.cache.UsuarioPerfilCache;
+import com.estudo_raul.java.business.dtos.EnderecoDTO;
+import com.estudo_raul.java.business.dtos.TelefoneDTO;
+import com.estudo_raul.java.business.dtos.UsuarioDTO;
+import com.estudo_raul.java.infrastructure.monitoramento.PerfilRequisicao;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Os comandos são contados pelo listener do datasource-proxy (MonitoramentoJdbcListener), só os da thread do teste
+@SpringBootTest
+@TestPropertySource(locations = "classpath:teste.properties")
+class PerfilConsultasTest {
+
+    // Um select do usuário com os endereços e outro com os telefones, qualquer que seja o tamanho do perfil
+    private static final int COMANDOS_POR_PERFIL = 2;
+
+    @Autowired
+    private UsuarioService usuarioService;
+
+    @Autowired
+    private UsuarioPerfilCache usuarioPerfilCache;
+
+    @Test
+    void carregaPerfilComNumeroFixoDeComandos() {
+        cadastra("pequeno@teste.com", 1);
+        cadastra("grande@teste.com", 8);
+
+        assertComandosFixos(comandosDaCarga("pequeno@teste.com", 1));
+        assertComandosFixos(comandosDaCarga("grande@teste.com", 8));
+    }
+
+    private void cadastra(String email, int itens) {
+        String prefixo = email.substring(0, 1);
+        usuarioService.salvaUsuario(UsuarioDTO.builder()
+                .nome("Perfil")
+                .email(email)
+                .senha("senha123")
+                .enderecos(IntStream.range(0, itens)
+                        .mapToObj(i -> EnderecoDTO.builder().rua("Rua " + i).numero(String.valueOf(i)).cidade("Cidade").build())
+                        .toList())
+                .telefones(IntStream.range(0, itens)
+                        .mapToObj(i -> TelefoneDTO.builder().ddd("11").numero(prefixo + "9000000" + i).build())
+                        .toList())
+                .build());
+    }
+
+    // Falta no cache: a leitura vai ao banco e carrega o perfil inteiro; devolve os comandos executados nela
+    private List<String> comandosDaCarga(String email, int itens) {
+        usuarioPerfilCache.invalida(email);
+        PerfilRequisicao.inicia("perfil", 100);
+        PerfilRequisicao perfilRequisicao;
+        try {
+            UsuarioDTO perfil = usuarioService.buscaUsuarioPorEmail(email);
+            assertEquals(itens, perfil.getEnderecos().size());
+            assertEquals(itens, perfil.getTelefones().size());
+        } finally {
+            perfilRequisicao = PerfilRequisicao.encerra(200);
+        }
+        return perfilRequisicao.getComandos().stream().map(PerfilRequisicao.ComandoSql::getSql).toList();
+    }
+
+    private static void assertComandosFixos(List<String> comandos) {
+        assertEquals(COMANDOS_POR_PERFIL, comandos.size(), () -> String.join("\n", comandos));
+    }
+}
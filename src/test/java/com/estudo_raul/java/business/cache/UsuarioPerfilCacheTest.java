@@ -0,0 +1,61 @@
+package com.estudo_raul.java.business.cache;
+
+import com.estudo_raul.java.business.converter.UsuarioConverter;
+import com.estudo_raul.java.business.dtos.UsuarioDTO;
+import com.estudo_raul.java.infrastructure.banco.LeituraReplica;
+import com.estudo_raul.java.infrastructure.entity.Usuario;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UsuarioPerfilCacheTest {
+
+    private final UsuarioConverter conversor = mock(UsuarioConverter.class);
+    private final UsuarioPerfilCache cache = new UsuarioPerfilCache(conversor, mock(LeituraReplica.class), 100, Duration.ofMinutes(10));
+
+    @Test
+    void invalidacaoDuranteACargaNaoDeixaOPerfilAntigoNoCache() throws Exception {
+        when(conversor.paraUsuarioDTO(any())).thenAnswer(chamada -> UsuarioDTO.builder()
+                .versao(((Usuario) chamada.getArgument(0)).getVersao()).build());
+        AtomicLong versaoNoBanco = new AtomicLong(1);
+        CountDownLatch leuDoBanco = new CountDownLatch(1);
+        CountDownLatch liberaCarga = new CountDownLatch(1);
+
+        // A carga lê a versão 1 e demora; nesse meio tempo a escrita grava a versão 2 e invalida
+        CompletableFuture<UsuarioDTO> carga = CompletableFuture.supplyAsync(() -> cache.busca("a@x.com", email -> {
+            Usuario usuario = Usuario.builder().id(1L).email(email).versao(versaoNoBanco.get()).build();
+            leuDoBanco.countDown();
+            aguarda(liberaCarga);
+            return usuario;
+        }));
+        aguarda(leuDoBanco);
+        versaoNoBanco.set(2);
+        CompletableFuture<Void> invalidacao = CompletableFuture.runAsync(() -> cache.invalida("a@x.com"));
+        Thread.sleep(100);
+        assertFalse(invalidacao.isDone());
+        liberaCarga.countDown();
+        invalidacao.get(5, TimeUnit.SECONDS);
+        assertEquals(1L, carga.get(5, TimeUnit.SECONDS).getVersao());
+
+        UsuarioDTO seguinte = cache.busca("a@x.com", email -> Usuario.builder().id(1L).email(email).versao(versaoNoBanco.get()).build());
+        assertEquals(2L, seguinte.getVersao());
+    }
+
+    private static void aguarda(CountDownLatch sinal) {
+        try {
+            sinal.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
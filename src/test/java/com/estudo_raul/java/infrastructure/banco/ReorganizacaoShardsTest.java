@@ -0,0 +1,142 @@
+package com.estudo_raul.java.infrastructure.banco;
+
+import com.estudo_raul.java.business.UsuarioService;
+import com.estudo_raul.java.business.dtos.EnderecoDTO;
+import com.estudo_raul.java.business.dtos.TelefoneDTO;
+import com.estudo_raul.java.business.dtos.UsuarioDTO;
+import com.estudo_raul.java.infrastructure.repository.UsuarioRepository;
+import com.estudo_raul.java.infrastructure.security.JwtUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Dois bancos H2 só deste contexto; o anel começa com um shard ativo e cresce para dois no primeiro teste que precisar
+@SpringBootTest
+@TestPropertySource(locations = "classpath:teste.properties", properties = {
+        "spring.datasource.url=jdbc:h2:mem:shards0;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+        "banco.shards.habilitados=true",
+        "banco.shards.urls=jdbc:h2:mem:shards0;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH,"
+                + "jdbc:h2:mem:shards1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+        "banco.shards.ativos=1",
+        "banco.shards.reorganizacao.tamanho-pagina=7"
+})
+class ReorganizacaoShardsTest {
+
+    private static final List<String> EMAILS = IntStream.range(0, 40)
+            .mapToObj(i -> "reorganiza" + i + "@teste.com")
+            .toList();
+
+    @Autowired
+    private ReorganizacaoShards reorganizacaoShards;
+
+    @Autowired
+    private ShardUsuario shardUsuario;
+
+    @Autowired
+    private UsuarioService usuarioService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @BeforeEach
+    void cadastraNoShardUnico() {
+        if (shardUsuario.topologia().ativos() > 1) {
+            return;
+        }
+        for (int i = 0; i < EMAILS.size(); i++) {
+            cadastra(EMAILS.get(i), "3" + i);
+        }
+        assertTrue(EMAILS.stream().allMatch(email -> shardsCom(email).equals(List.of(ShardUsuario.GLOBAL))));
+        reorganizaParaDoisShards();
+    }
+
+    @Test
+    void reorganizacaoDeixaCadaUsuarioEmUmShardSo() {
+        assertEquals(new ShardUsuario.Topologia(2, 0), shardUsuario.topologia());
+        assertEquals(0L, reorganizacaoShards.situacao().get("falhas"));
+        assertTrue((Long) reorganizacaoShards.situacao().get("movidos") > 0);
+        for (String email : EMAILS) {
+            assertEquals(List.of(ShardUsuario.posicao(email, 2)), shardsCom(email), email);
+            assertEquals(email, usuarioService.buscaUsuarioPorEmail(email).getEmail());
+        }
+    }
+
+    @Test
+    void trocaDeEmailParaOutroShardLevaEnderecosETelefones() {
+        String email = emailNoShard("origem", 0);
+        String novoEmail = emailNoShard("destino", 1);
+        UsuarioDTO cadastrado = cadastra(email, "4");
+
+        usuarioService.atualizaDadosUsuario("Bearer " + jwtUtil.generateToken(email),
+                UsuarioDTO.builder().email(novoEmail).versao(cadastrado.getVersao()).build());
+
+        assertEquals(List.of(), shardsCom(email));
+        assertEquals(List.of(1), shardsCom(novoEmail));
+        UsuarioDTO movido = usuarioService.buscaUsuarioPorEmail(novoEmail);
+        assertEquals(cadastrado.getId(), movido.getId());
+        assertEquals(ids(cadastrado.getEnderecos().stream().map(EnderecoDTO::getId).toList()),
+                ids(movido.getEnderecos().stream().map(EnderecoDTO::getId).toList()));
+        assertEquals(ids(cadastrado.getTelefones().stream().map(TelefoneDTO::getId).toList()),
+                ids(movido.getTelefones().stream().map(TelefoneDTO::getId).toList()));
+        assertEquals(List.of("Rua 0", "Rua 1"), movido.getEnderecos().stream().map(EnderecoDTO::getRua).sorted().toList());
+    }
+
+    private void reorganizaParaDoisShards() {
+        reorganizacaoShards.inicia(2);
+        long limite = System.currentTimeMillis() + 30_000;
+        while (shardUsuario.topologia().destino() != 0 && System.currentTimeMillis() < limite) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+        assertEquals(0, shardUsuario.topologia().destino(), () -> "Reorganização não terminou: " + reorganizacaoShards.situacao());
+    }
+
+    private UsuarioDTO cadastra(String email, String prefixoTelefone) {
+        return usuarioService.salvaUsuario(UsuarioDTO.builder()
+                .nome("Shard")
+                .email(email)
+                .senha("senha123")
+                .enderecos(IntStream.range(0, 2)
+                        .mapToObj(i -> EnderecoDTO.builder().rua("Rua " + i).numero(String.valueOf(i)).cidade("Cidade").build())
+                        .toList())
+                .telefones(IntStream.range(0, 2)
+                        .mapToObj(i -> TelefoneDTO.builder().ddd("11").numero(prefixoTelefone + "800000" + i).build())
+                        .toList())
+                .build());
+    }
+
+    // Primeiro e-mail da sequência que cai no shard pedido do anel de dois shards
+    private static String emailNoShard(String prefixo, int shard) {
+        return IntStream.iterate(0, i -> i + 1)
+                .mapToObj(i -> prefixo + i + "@teste.com")
+                .filter(email -> ShardUsuario.posicao(email, 2) == shard)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private List<Integer> shardsCom(String email) {
+        return IntStream.range(0, shardUsuario.configurados())
+                .filter(shard -> shardUsuario.executaNoShard(shard, () -> usuarioRepository.existsByEmail(email)))
+                .boxed()
+                .toList();
+    }
+
+    private static List<Long> ids(List<Long> ids) {
+        return ids.stream().sorted().toList();
+    }
+}
@@ -0,0 +1,51 @@
+package com.estudo_raul.java.infrastructure.banco;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardUsuarioTest {
+
+    private static final List<String> EMAILS = IntStream.range(0, 20_000)
+            .mapToObj(i -> "usuario" + i + "@teste.com")
+            .toList();
+
+    // Valores gravados: mudar o hash deixaria os usuários já gravados fora do shard calculado
+    @Test
+    void posicaoNaoMudaEntreExecucoes() {
+        assertEquals(List.of(1, 1, 11, 19), posicoes("ana@teste.com"));
+        assertEquals(List.of(0, 0, 13, 13), posicoes("bruno@teste.com"));
+        assertEquals(List.of(1, 3, 5, 5), posicoes("carla@teste.com"));
+        assertEquals(List.of(0, 0, 0, 0), posicoes("davi@teste.com"));
+    }
+
+    @Test
+    void crescerUmShardSoMoveUsuariosParaOShardNovo() {
+        for (int shards = 1; shards < ShardUsuario.MAXIMO_SHARDS; shards++) {
+            int novo = shards;
+            long movidos = 0;
+            for (String email : EMAILS) {
+                int antes = ShardUsuario.posicao(email, shards);
+                int depois = ShardUsuario.posicao(email, shards + 1);
+                assertTrue(antes >= 0 && antes < shards, email);
+                assertTrue(depois == antes || depois == novo,
+                        () -> email + " foi do shard " + antes + " para o " + depois + " ao crescer para " + (novo + 1));
+                if (depois != antes) {
+                    movidos++;
+                }
+            }
+            // O shard novo recebe a sua parte (1 / (shards + 1)), com folga para a variação do hash
+            double esperado = (double) EMAILS.size() / (shards + 1);
+            assertTrue(Math.abs(movidos - esperado) < esperado * 0.2,
+                    "Movidos " + movidos + " ao crescer para " + (shards + 1) + ", esperado perto de " + (long) esperado);
+        }
+    }
+
+    private static List<Integer> posicoes(String email) {
+        return IntStream.of(2, 4, 16, 64).mapToObj(shards -> ShardUsuario.posicao(email, shards)).toList();
+    }
+}
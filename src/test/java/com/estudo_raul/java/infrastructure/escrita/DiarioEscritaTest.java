@@ -0,0 +1,111 @@
+package com.estudo_raul.java.infrastructure.escrita;
+
+import com.estudo_raul.java.infrastructure.exceptions.ServicoSobrecarregadoException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Uma queda é simulada abrindo o mesmo arquivo de novo sem fechar o diário anterior
+class DiarioEscritaTest {
+
+    @TempDir
+    Path pasta;
+
+    @Test
+    void reaplicaOsRegistrosNaoConfirmadosDepoisDaQueda() throws Exception {
+        Path arquivo = pasta.resolve("queda.diario");
+        DiarioEscrita diario = new DiarioEscrita(arquivo, 4096);
+        for (int i = 1; i <= 5; i++) {
+            diario.anexa(dados("alteracao-" + i));
+        }
+        diario.confirmaAte(2);
+
+        DiarioEscrita reaberto = new DiarioEscrita(arquivo, 4096);
+
+        assertEquals(List.of(3L, 4L, 5L), sequencias(reaberto.recuperados()));
+        assertEquals("alteracao-3", texto(reaberto.recuperados().get(0)));
+        assertEquals("alteracao-5", texto(reaberto.recuperados().get(2)));
+        assertEquals(6L, reaberto.anexa(dados("alteracao-6")));
+    }
+
+    @Test
+    void reaproveitaOEspacoDosRegistrosConfirmados() throws Exception {
+        Path arquivo = pasta.resolve("anel.diario");
+        DiarioEscrita diario = new DiarioEscrita(arquivo, 1024);
+        // Várias voltas no arquivo, sempre com alguns registros pendentes
+        for (int i = 1; i <= 200; i++) {
+            long sequencia = diario.anexa(dados("registro-" + i));
+            diario.confirmaAte(sequencia - 3);
+        }
+
+        DiarioEscrita reaberto = new DiarioEscrita(arquivo, 1024);
+
+        assertEquals(List.of(198L, 199L, 200L), sequencias(reaberto.recuperados()));
+        assertEquals("registro-198", texto(reaberto.recuperados().get(0)));
+        assertEquals("registro-200", texto(reaberto.recuperados().get(2)));
+    }
+
+    @Test
+    void recusaQuandoOsPendentesOcupamODiarioInteiro() throws Exception {
+        DiarioEscrita diario = new DiarioEscrita(pasta.resolve("cheio.diario"), 512);
+        byte[] registro = new byte[100];
+        for (int i = 0; i < 4; i++) {
+            diario.anexa(registro);
+        }
+
+        assertThrows(ServicoSobrecarregadoException.class, () -> diario.anexa(registro));
+
+        diario.confirmaAte(2);
+        diario.anexa(registro);
+    }
+
+    @Test
+    void anexosConcorrentesRecebemSequenciasDistintasEChegamAoDisco() throws Exception {
+        Path arquivo = pasta.resolve("concorrente.diario");
+        DiarioEscrita diario = new DiarioEscrita(arquivo, 1 << 20);
+        Set<Long> sequencias = ConcurrentHashMap.newKeySet();
+        List<Future<?>> tarefas = new ArrayList<>();
+        try (ExecutorService threads = Executors.newFixedThreadPool(8)) {
+            for (int t = 0; t < 8; t++) {
+                tarefas.add(threads.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        sequencias.add(diario.anexa(dados("x".repeat(1 + i % 50))));
+                    }
+                }));
+            }
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get();
+            }
+        }
+
+        assertEquals(1600, sequencias.size());
+        DiarioEscrita reaberto = new DiarioEscrita(arquivo, 1 << 20);
+        assertEquals(1600, reaberto.recuperados().size());
+        assertTrue(sequencias.containsAll(sequencias(reaberto.recuperados())));
+    }
+
+    private static byte[] dados(String texto) {
+        return texto.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String texto(DiarioEscrita.Registro registro) {
+        return new String(registro.dados(), StandardCharsets.UTF_8);
+    }
+
+    private static List<Long> sequencias(List<DiarioEscrita.Registro> registros) {
+        return registros.stream().map(DiarioEscrita.Registro::sequencia).toList();
+    }
+}
@@ -0,0 +1,106 @@
+package com.estudo_raul.java.infrastructure.eventos;
+
+import com.estudo_raul.java.business.UsuarioService;
+import com.estudo_raul.java.business.dtos.EnderecoDTO;
+import com.estudo_raul.java.business.dtos.UsuarioDTO;
+import com.estudo_raul.java.infrastructure.repository.EventoSaidaRepository;
+import com.estudo_raul.java.infrastructure.security.JwtUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.reset;
+
+// Banco próprio: o relay agendado de outro contexto de teste esvaziaria a mesma tabela de saída.
+// O ciclo agendado fica para daqui a uma hora, então só as chamadas de publica() do teste entregam
+@SpringBootTest
+@TestPropertySource(locations = "classpath:teste.properties", properties = {
+        "spring.datasource.url=jdbc:h2:mem:eventos;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH",
+        "usuario.eventos.intervalo-ms=3600000"
+})
+class RelayEventosTest {
+
+    @Autowired
+    private UsuarioService usuarioService;
+
+    @Autowired
+    private RelayEventos relayEventos;
+
+    @Autowired
+    private EventoSaidaRepository eventoSaidaRepository;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @MockitoSpyBean
+    private MemoriaDestinoEventos destino;
+
+    @BeforeEach
+    void esvaziaSaida() {
+        relayEventos.publica();
+        reset(destino);
+        destino.limpa();
+    }
+
+    @Test
+    void entregaOsEventosDoUsuarioEmOrdemERemoveDaSaida() {
+        String email = "relay@teste.com";
+        Long idEndereco = cadastra(email).getEnderecos().get(0).getId();
+        usuarioService.atualizaEndereco(token(email), idEndereco, EnderecoDTO.builder().rua("Rua Nova").build());
+        usuarioService.deletaUsuarioPorEmail(email);
+
+        relayEventos.publica();
+
+        assertEquals(List.of(TipoEvento.USUARIO_CRIADO, TipoEvento.ENDERECO_CRIADO, TipoEvento.ENDERECO_ALTERADO,
+                TipoEvento.USUARIO_EXCLUIDO), tipos(destino.entregues(), email));
+        List<Long> ids = destino.entregues().stream().map(EventoPublicado::id).toList();
+        assertEquals(ids.stream().sorted().toList(), ids);
+        assertEquals(0, eventoSaidaRepository.resumo().pendentes());
+    }
+
+    @Test
+    void loteRecusadoPeloDestinoEEntregueDeNovoNoCicloSeguinte() throws Exception {
+        String email = "falha@teste.com";
+        cadastra(email);
+        doThrow(new IOException("destino fora do ar")).doCallRealMethod().when(destino).entrega(anyList());
+
+        relayEventos.publica();
+
+        assertTrue(destino.entregues().isEmpty());
+        assertEquals(2, eventoSaidaRepository.resumo().pendentes());
+
+        relayEventos.publica();
+
+        assertEquals(List.of(TipoEvento.USUARIO_CRIADO, TipoEvento.ENDERECO_CRIADO), tipos(destino.entregues(), email));
+        assertEquals(0, eventoSaidaRepository.resumo().pendentes());
+    }
+
+    private UsuarioDTO cadastra(String email) {
+        return usuarioService.salvaUsuario(UsuarioDTO.builder()
+                .nome("Relay")
+                .email(email)
+                .senha("senha123")
+                .enderecos(List.of(EnderecoDTO.builder().rua("Rua Antiga").numero("1").cidade("Cidade").build()))
+                .telefones(List.of())
+                .build());
+    }
+
+    private String token(String email) {
+        return "Bearer " + jwtUtil.generateToken(email);
+    }
+
+    private static List<TipoEvento> tipos(List<EventoPublicado> eventos, String email) {
+        return eventos.stream().filter(evento -> email.equals(evento.email())).map(EventoPublicado::tipo).toList();
+    }
+}